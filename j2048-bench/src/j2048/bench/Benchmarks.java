@@ -0,0 +1,58 @@
+package j2048.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks in this package.
+ * <p>
+ * With no arguments, runs every benchmark with the GC profiler, which
+ * reports the bytes allocated per operation next to each score. With
+ * arguments, passes them to the JMH command line, so that, for example,
+ * {@code Benchmarks TileGrid -p size=4 -prof gc} runs only the
+ * {@link TileGridBenchmark} on the standard board.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class Benchmarks {
+
+	/**
+	 * Runs the benchmarks.
+	 * 
+	 * @param args
+	 *            the JMH command-line arguments, if any
+	 * @throws Exception
+	 *             if the benchmarks cannot be run
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		runAll();
+	}
+
+	/**
+	 * Runs every benchmark in this package with the GC profiler.
+	 * 
+	 * @throws RunnerException
+	 *             if the benchmarks cannot be run
+	 */
+	private static void runAll() throws RunnerException {
+		final Options options = new OptionsBuilder()
+				.include(Benchmarks.class.getPackage().getName() + "\\.")
+				.addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private Benchmarks() {
+	}
+
+}
@@ -0,0 +1,105 @@
+package j2048.bench;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.LocationSet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures neighbor lookups on {@link BoardLocation}. Each invocation visits
+ * every cell of the board, so scores are per board, not per lookup.
+ * 
+ * @author William Chargin
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardLocationBenchmark {
+
+	/**
+	 * The directions, in a field so that the benchmark need not call
+	 * {@link Direction#values()}.
+	 */
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	/**
+	 * The side length of the board.
+	 */
+	@Param({ "4", "8", "16" })
+	public int size;
+
+	/**
+	 * Every location on the board, in cell order.
+	 */
+	private BoardLocation[] locations;
+
+	/**
+	 * Collects the locations of the board.
+	 */
+	@Setup
+	public void setUp() {
+		locations = LocationSet.all(size).toArray(new BoardLocation[0]);
+	}
+
+	/**
+	 * Gets the neighbor of every cell in every direction.
+	 * 
+	 * @param bh
+	 *            the sink for results
+	 */
+	@Benchmark
+	public void adjacent(Blackhole bh) {
+		for (BoardLocation loc : locations) {
+			for (Direction d : DIRECTIONS) {
+				bh.consume(loc.getAdjacentLocation(d));
+			}
+		}
+	}
+
+	/**
+	 * Gets the set of all neighbors of every cell.
+	 * 
+	 * @param bh
+	 *            the sink for results
+	 */
+	@Benchmark
+	public void allAdjacent(Blackhole bh) {
+		for (BoardLocation loc : locations) {
+			bh.consume(loc.getAllAdjacentLocations());
+		}
+	}
+
+	/**
+	 * Looks up the canonical location of every cell by its coordinates.
+	 * 
+	 * @param bh
+	 *            the sink for results
+	 */
+	@Benchmark
+	public void of(Blackhole bh) {
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				bh.consume(BoardLocation.of(x, y, size));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+package j2048.bench;
+
+import j2048.BoardLocation;
+import j2048.GameModel;
+import j2048.Tile;
+import j2048.TileGrid;
+
+import java.util.Random;
+
+/**
+ * Builds the boards that the benchmarks run on.
+ * 
+ * @author William Chargin
+ * 
+ */
+final class Boards {
+
+	/**
+	 * How full a board is at the start of a benchmark.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	enum Fill {
+
+		/**
+		 * No tiles.
+		 */
+		EMPTY(0),
+
+		/**
+		 * Half of the cells hold tiles.
+		 */
+		HALF(0.5),
+
+		/**
+		 * Every cell holds a tile.
+		 */
+		FULL(1);
+
+		/**
+		 * The fraction of cells that hold tiles.
+		 */
+		private final double fraction;
+
+		/**
+		 * Creates a fill level.
+		 * 
+		 * @param fraction
+		 *            the fraction of cells that hold tiles
+		 */
+		private Fill(double fraction) {
+			this.fraction = fraction;
+		}
+
+	}
+
+	/**
+	 * The seed for all board contents, so that every run measures the same
+	 * boards.
+	 */
+	static final long SEED = 2048;
+
+	/**
+	 * Fills a grid with tiles in random cells. The tile values are small
+	 * powers of two, chosen so that a full board still has legal moves.
+	 * 
+	 * @param grid
+	 *            the grid to fill, which should be empty
+	 * @param fill
+	 *            how many cells to fill
+	 * @param random
+	 *            the source of randomness
+	 */
+	static void fill(TileGrid grid, Fill fill, Random random) {
+		final int size = grid.getSize();
+		final int cells = size * size;
+		final int count = (int) Math.round(cells * fill.fraction);
+		for (int placed = 0; placed < count; placed++) {
+			final BoardLocation loc = grid.getUnoccupiedLocations().select(
+					random.nextInt(cells - placed));
+			final Tile tile = new Tile();
+			tile.setValue(2 << random.nextInt(4));
+			grid.put(loc, tile);
+		}
+	}
+
+	/**
+	 * Creates a game model holding a filled grid.
+	 * 
+	 * @param size
+	 *            the side length of the board
+	 * @param fill
+	 *            how many cells to fill
+	 * @return the new model
+	 */
+	static GameModel model(int size, Fill fill) {
+		final GameModel model = new GameModel(size);
+		fill(model.getGrid(), fill, new Random(SEED));
+		return model;
+	}
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private Boards() {
+	}
+
+}
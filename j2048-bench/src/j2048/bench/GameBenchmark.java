@@ -0,0 +1,122 @@
+package j2048.bench;
+
+import j2048.Direction;
+import j2048.GameModel;
+import j2048.LocationSet;
+import j2048.Tile;
+import j2048.TurnPerformer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many whole games per second a turn performer can play, with
+ * moves chosen in a random order as by {@link j2048.sim.BatchSimulation}.
+ * <p>
+ * The performer is given by class name and must have a constructor that
+ * takes a {@link Random}.
+ * 
+ * @author William Chargin
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameBenchmark {
+
+	/**
+	 * The fully qualified name of the turn performer class.
+	 */
+	@Param({ "j2048.engine.BitboardTurnPerformer",
+			"j2048.engine.ArrayBoardTurnPerformer" })
+	public String performer;
+
+	/**
+	 * The side length of the board.
+	 */
+	@Param({ "4" })
+	public int size;
+
+	/**
+	 * The turn performer being measured.
+	 */
+	private TurnPerformer turnPerformer;
+
+	/**
+	 * The source of randomness for initial tiles and move order.
+	 */
+	private Random random;
+
+	/**
+	 * The model, which is reset for each game.
+	 */
+	private GameModel model;
+
+	/**
+	 * The directions, shuffled in place to choose moves.
+	 */
+	private final Direction[] directions = Direction.values();
+
+	/**
+	 * Creates the turn performer and the model.
+	 * 
+	 * @throws ReflectiveOperationException
+	 *             if the performer class cannot be instantiated
+	 */
+	@Setup
+	public void setUp() throws ReflectiveOperationException {
+		turnPerformer = Class.forName(performer)
+				.asSubclass(TurnPerformer.class).getConstructor(Random.class)
+				.newInstance(new Random(Boards.SEED));
+		random = new Random(Boards.SEED);
+		model = new GameModel(size);
+	}
+
+	/**
+	 * Plays a game from two tiles until no move is possible.
+	 * 
+	 * @return the number of accepted turns
+	 */
+	@Benchmark
+	public int game() {
+		model.reset();
+		for (int i = 0; i < 2; i++) {
+			final LocationSet free = model.getGrid().getUnoccupiedLocations();
+			final Tile tile = new Tile();
+			tile.setValue(2);
+			model.addTile(tile, free.select(random.nextInt(free.size())));
+		}
+		int turns = 0;
+		while (!model.isLost()) {
+			boolean accepted = false;
+			for (int i = directions.length; i > 0 && !accepted; i--) {
+				final int pick = random.nextInt(i);
+				final Direction direction = directions[pick];
+				directions[pick] = directions[i - 1];
+				directions[i - 1] = direction;
+				accepted = turnPerformer.turn(direction, model);
+			}
+			if (!accepted) {
+				break;
+			}
+			turns++;
+		}
+		return turns;
+	}
+
+}
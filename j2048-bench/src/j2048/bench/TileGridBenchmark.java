@@ -0,0 +1,184 @@
+package j2048.bench;
+
+import j2048.BoardLocation;
+import j2048.LocationSet;
+import j2048.Tile;
+import j2048.TileGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the basic operations of {@link TileGrid}. Each invocation works on
+ * the next cell of the board in turn, so that every cell is measured equally.
+ * 
+ * @author William Chargin
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileGridBenchmark {
+
+	/**
+	 * The side length of the board.
+	 */
+	@Param({ "4", "8" })
+	public int size;
+
+	/**
+	 * How full the board is; one of the names of {@link Boards.Fill}.
+	 */
+	@Param({ "EMPTY", "HALF", "FULL" })
+	public String fill;
+
+	/**
+	 * The grid being measured.
+	 */
+	private TileGrid grid;
+
+	/**
+	 * Every location on the board, in cell order.
+	 */
+	private BoardLocation[] locations;
+
+	/**
+	 * The tiles in the grid, or a single tile outside the grid if the grid is
+	 * empty.
+	 */
+	private Tile[] tiles;
+
+	/**
+	 * A tile that is not in the grid.
+	 */
+	private Tile spare;
+
+	/**
+	 * The index of the next cell or tile to use.
+	 */
+	private int next;
+
+	/**
+	 * Builds the grid.
+	 */
+	@Setup
+	public void setUp() {
+		grid = new TileGrid(size);
+		Boards.fill(grid, Boards.Fill.valueOf(fill), new Random(Boards.SEED));
+		locations = LocationSet.all(size).toArray(new BoardLocation[0]);
+		final List<Tile> inGrid = new ArrayList<>();
+		for (BoardLocation loc : grid.getOccupiedLocations()) {
+			inGrid.add(grid.at(loc));
+		}
+		spare = new Tile();
+		spare.setValue(2);
+		if (inGrid.isEmpty()) {
+			inGrid.add(spare);
+		}
+		tiles = inGrid.toArray(new Tile[0]);
+	}
+
+	/**
+	 * Gets the tile at a location.
+	 * 
+	 * @return the tile, or {@code null}
+	 */
+	@Benchmark
+	public Tile at() {
+		return grid.at(nextLocation());
+	}
+
+	/**
+	 * Finds the location of a tile.
+	 * 
+	 * @return the location, or {@code null} on an empty board
+	 */
+	@Benchmark
+	public BoardLocation find() {
+		next = next + 1 < tiles.length ? next + 1 : 0;
+		return grid.find(tiles[next]);
+	}
+
+	/**
+	 * Replaces the tile at a location with a new tile, then restores it. This
+	 * costs two puts and one or two removes.
+	 * 
+	 * @return the original tile at the location, or {@code null}
+	 */
+	@Benchmark
+	public Tile putRemove() {
+		final BoardLocation loc = nextLocation();
+		final Tile previous = grid.remove(loc);
+		grid.put(loc, spare);
+		grid.remove(loc);
+		if (previous != null) {
+			grid.put(loc, previous);
+		}
+		return previous;
+	}
+
+	/**
+	 * Gets the set of empty locations when the grid has not changed since
+	 * the last call.
+	 * 
+	 * @return the set of empty locations
+	 */
+	@Benchmark
+	public LocationSet unoccupiedCached() {
+		return grid.getUnoccupiedLocations();
+	}
+
+	/**
+	 * Gets the set of empty locations after a change to the grid, as a turn
+	 * performer would each turn.
+	 * 
+	 * @return the set of empty locations
+	 */
+	@Benchmark
+	public LocationSet unoccupiedAfterChange() {
+		putRemove();
+		return grid.getUnoccupiedLocations();
+	}
+
+	/**
+	 * Iterates over the set of empty locations with a for-each loop.
+	 * 
+	 * @return the sum of the cell indices, to defeat dead-code elimination
+	 */
+	@Benchmark
+	public int unoccupiedIterate() {
+		int sum = 0;
+		for (BoardLocation loc : grid.getUnoccupiedLocations()) {
+			sum += loc.getIndex();
+		}
+		return sum;
+	}
+
+	/**
+	 * Advances to the next cell.
+	 * 
+	 * @return the location of the next cell
+	 */
+	private BoardLocation nextLocation() {
+		next = next + 1 < locations.length ? next + 1 : 0;
+		return locations[next];
+	}
+
+}
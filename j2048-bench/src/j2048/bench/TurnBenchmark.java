@@ -0,0 +1,136 @@
+package j2048.bench;
+
+import j2048.Direction;
+import j2048.GameModel;
+import j2048.GameSnapshot;
+import j2048.TurnPerformer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures single turns of the turn performers. So that each turn starts from
+ * a board with the requested fill level, {@link #turn()} first restores the
+ * model from a snapshot taken during setup, inside the measured method, since
+ * per-invocation setup would cost more to time than a turn takes.
+ * {@link #restoreOnly()} measures the restore alone; subtract its score, and
+ * its allocation rate under the GC profiler, from those of {@link #turn()} to
+ * get the cost of the turn. {@link GameBenchmark} measures whole games without
+ * this overhead.
+ * <p>
+ * The performer is given by class name, as for
+ * {@link j2048.sim.BatchSimulation}, and must have a constructor that takes
+ * a {@link Random}. Use {@code -p size=8} to measure larger boards with
+ * performers that support them.
+ * 
+ * @author William Chargin
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TurnBenchmark {
+
+	/**
+	 * The directions, in a field so that the benchmark need not call
+	 * {@link Direction#values()}.
+	 */
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	/**
+	 * The fully qualified name of the turn performer class.
+	 */
+	@Param({ "j2048.engine.BitboardTurnPerformer",
+			"j2048.engine.ArrayBoardTurnPerformer" })
+	public String performer;
+
+	/**
+	 * The side length of the board.
+	 */
+	@Param({ "4" })
+	public int size;
+
+	/**
+	 * How full the board is before a single turn; one of the names of
+	 * {@link Boards.Fill}.
+	 */
+	@Param({ "EMPTY", "HALF", "FULL" })
+	public String fill;
+
+	/**
+	 * The turn performer being measured.
+	 */
+	private TurnPerformer turnPerformer;
+
+	/**
+	 * The model for the single-turn benchmark.
+	 */
+	private GameModel model;
+
+	/**
+	 * The state of the model before each turn.
+	 */
+	private GameSnapshot template;
+
+	/**
+	 * The direction of the next single turn.
+	 */
+	private int nextDirection;
+
+	/**
+	 * Creates the turn performer and the board.
+	 * 
+	 * @throws ReflectiveOperationException
+	 *             if the performer class cannot be instantiated
+	 */
+	@Setup
+	public void setUp() throws ReflectiveOperationException {
+		turnPerformer = Class.forName(performer)
+				.asSubclass(TurnPerformer.class).getConstructor(Random.class)
+				.newInstance(new Random(Boards.SEED));
+		model = Boards.model(size, Boards.Fill.valueOf(fill));
+		template = model.snapshot();
+	}
+
+	/**
+	 * Restores the board without making a turn, as a baseline for
+	 * {@link #turn()}. The score does not depend on the performer.
+	 * 
+	 * @return the model
+	 */
+	@Benchmark
+	public GameModel restoreOnly() {
+		model.restore(template);
+		nextDirection = (nextDirection + 1) % DIRECTIONS.length;
+		return model;
+	}
+
+	/**
+	 * Restores the board and performs a single turn. On an empty board, this
+	 * measures the cost of rejecting a move.
+	 * 
+	 * @return whether the turn was accepted
+	 */
+	@Benchmark
+	public boolean turn() {
+		model.restore(template);
+		nextDirection = (nextDirection + 1) % DIRECTIONS.length;
+		return turnPerformer.turn(DIRECTIONS[nextDirection], model);
+	}
+
+}
@@ -1,11 +1,20 @@
 package j2048;
 
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * A data structure representing a point on the grid. This point may or may not
  * contain a tile. This class is immutable.
+ * <p>
+ * Each location belongs to a square board of a particular size, between
+ * {@value #MIN_BOARD_SIZE} and {@value #MAX_BOARD_SIZE} cells on a side. Unless
+ * otherwise specified, the board size is {@value #BOARD_SIZE}. Locations on
+ * boards of different sizes are never equal.
+ * <p>
+ * There is a canonical instance for every cell, available from
+ * {@link #of(int, int)} and {@link #of(int, int, int)}. Adjacent locations are
+ * precomputed, so walking from a location to its neighbors, or asking for
+ * the {@linkplain #getAllAdjacentLocations() set of its neighbors}, does not
+ * allocate any objects. Locations created with the constructor are still
+ * equal to the canonical instances.
  * 
  * @author William Chargin
  * 
@@ -13,10 +22,205 @@ import java.util.Set;
 public final class BoardLocation {
 
 	/**
-	 * The side length of the grid.
+	 * The default side length of the grid.
 	 */
 	public static final int BOARD_SIZE = 4;
 
+	/**
+	 * The smallest supported side length of the grid.
+	 */
+	public static final int MIN_BOARD_SIZE = 2;
+
+	/**
+	 * The largest supported side length of the grid.
+	 */
+	public static final int MAX_BOARD_SIZE = 16;
+
+	/**
+	 * The canonical locations of a board of one size, and their adjacency.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	private static final class Layout {
+
+		/**
+		 * The canonical instance for each cell, indexed by
+		 * {@linkplain BoardLocation#getIndex() cell index}.
+		 */
+		private final BoardLocation[] locations;
+
+		/**
+		 * The canonical adjacent location in each direction, indexed first by
+		 * cell index and then by {@link Direction#ordinal()}. Missing
+		 * neighbors are {@code null}.
+		 */
+		private final BoardLocation[][] adjacent;
+
+		/**
+		 * The set of all adjacent locations of each cell, indexed by cell
+		 * index.
+		 */
+		private final LocationSet[] allAdjacent;
+
+		/**
+		 * Creates the layout of a board.
+		 * 
+		 * @param size
+		 *            the side length of the board
+		 */
+		private Layout(int size) {
+			locations = new BoardLocation[size * size];
+			for (int i = 0; i < locations.length; i++) {
+				locations[i] = new BoardLocation(i % size, i / size, size);
+			}
+			final Direction[] directions = Direction.values();
+			adjacent = new BoardLocation[locations.length][];
+			allAdjacent = new LocationSet[locations.length];
+			for (int i = 0; i < locations.length; i++) {
+				final BoardLocation loc = locations[i];
+				final long[] all = new long[LocationSet.wordsFor(size)];
+				adjacent[i] = new BoardLocation[directions.length];
+				for (Direction d : directions) {
+					final int x = loc.x + d.getX(), y = loc.y + d.getY();
+					if (x >= 0 && y >= 0 && x < size && y < size) {
+						final int index = y * size + x;
+						adjacent[i][d.ordinal()] = locations[index];
+						all[index / Long.SIZE] |= 1L << index;
+					}
+				}
+				allAdjacent[i] = new LocationSet(size, all);
+			}
+		}
+
+	}
+
+	/**
+	 * The layout of each supported board size, indexed by size.
+	 */
+	private static final Layout[] LAYOUTS = new Layout[MAX_BOARD_SIZE + 1];
+	static {
+		for (int size = MIN_BOARD_SIZE; size <= MAX_BOARD_SIZE; size++) {
+			LAYOUTS[size] = new Layout(size);
+		}
+	}
+
+	/**
+	 * The canonical locations of a board of the default size.
+	 */
+	private static final BoardLocation[] LOCATIONS = LAYOUTS[BOARD_SIZE].locations;
+
+	/**
+	 * Checks that the given board size is supported.
+	 * 
+	 * @param size
+	 *            the side length of the board
+	 * @throws IllegalArgumentException
+	 *             if the size is less than {@value #MIN_BOARD_SIZE} or
+	 *             greater than {@value #MAX_BOARD_SIZE}
+	 */
+	public static void checkBoardSize(int size) throws IllegalArgumentException {
+		if (size < MIN_BOARD_SIZE || size > MAX_BOARD_SIZE) {
+			throw new IllegalArgumentException("unsupported board size: "
+					+ size);
+		}
+	}
+
+	/**
+	 * Gets the canonical location with the given cell index on a board of the
+	 * default size.
+	 * 
+	 * @param index
+	 *            the cell index, as returned by {@link #getIndex()}
+	 * @return the location with that index
+	 * @throws IllegalArgumentException
+	 *             if {@code index} is negative, or greater than or equal to
+	 *             the number of cells on the board
+	 */
+	public static BoardLocation fromIndex(int index)
+			throws IllegalArgumentException {
+		if (index < 0 || index >= LOCATIONS.length) {
+			throw new IllegalArgumentException("index out of range: " + index);
+		}
+		return LOCATIONS[index];
+	}
+
+	/**
+	 * Gets the canonical location with the given cell index on a board of the
+	 * given size.
+	 * 
+	 * @param index
+	 *            the cell index, as returned by {@link #getIndex()}
+	 * @param size
+	 *            the side length of the board
+	 * @return the location with that index
+	 * @throws IllegalArgumentException
+	 *             if the board size is not supported, or {@code index} is
+	 *             negative or greater than or equal to the number of cells on
+	 *             the board
+	 */
+	public static BoardLocation fromIndex(int index, int size)
+			throws IllegalArgumentException {
+		checkBoardSize(size);
+		final BoardLocation[] locations = LAYOUTS[size].locations;
+		if (index < 0 || index >= locations.length) {
+			throw new IllegalArgumentException("index out of range: " + index);
+		}
+		return locations[index];
+	}
+
+	/**
+	 * Gets the canonical location with the given coordinates on a board of
+	 * the default size. The coordinates must satisfy the same conditions as
+	 * those given to the {@linkplain #BoardLocation(int, int) constructor},
+	 * but no new object is created.
+	 * 
+	 * @param x
+	 *            the {@code x}-position of the location
+	 * @param y
+	 *            the {@code y}-position of the location
+	 * @return the location with the given coordinates
+	 * @throws IllegalArgumentException
+	 *             if {@code x} or {@code y} is negative, or greater than or
+	 *             equal to {@value #BOARD_SIZE}
+	 */
+	public static BoardLocation of(int x, int y)
+			throws IllegalArgumentException {
+		if (x < 0 || y < 0 || x >= BOARD_SIZE || y >= BOARD_SIZE) {
+			// Let the constructor report the problem.
+			return new BoardLocation(x, y);
+		}
+		return LOCATIONS[y * BOARD_SIZE + x];
+	}
+
+	/**
+	 * Gets the canonical location with the given coordinates on a board of
+	 * the given size. The arguments must satisfy the same conditions as those
+	 * given to the {@linkplain #BoardLocation(int, int, int) constructor}, but
+	 * no new object is created.
+	 * 
+	 * @param x
+	 *            the {@code x}-position of the location
+	 * @param y
+	 *            the {@code y}-position of the location
+	 * @param size
+	 *            the side length of the board
+	 * @return the location with the given coordinates
+	 * @throws IllegalArgumentException
+	 *             if the board size is not supported, or {@code x} or
+	 *             {@code y} is negative or greater than or equal to the board
+	 *             size
+	 */
+	public static BoardLocation of(int x, int y, int size)
+			throws IllegalArgumentException {
+		checkBoardSize(size);
+		if (x < 0 || y < 0 || x >= size || y >= size) {
+			// Let the constructor report the problem.
+			return new BoardLocation(x, y, size);
+		}
+		return LAYOUTS[size].locations[y * size + x];
+	}
+
 	/**
 	 * The {@code x}-position of this location in the grid. The leftmost cells
 	 * in the grid have {@code x}-position {@code 0}.
@@ -30,9 +234,14 @@ public final class BoardLocation {
 	private final int y;
 
 	/**
-	 * Creates a location with the given coordinates. The coordinates must be
-	 * non-negative (greater than or equal to zero) and less than the board size
-	 * of {@value #BOARD_SIZE}.
+	 * The side length of the board containing this location.
+	 */
+	private final int size;
+
+	/**
+	 * Creates a location with the given coordinates on a board of the default
+	 * size. The coordinates must be non-negative (greater than or equal to
+	 * zero) and less than the board size of {@value #BOARD_SIZE}.
 	 * 
 	 * @param x
 	 *            the {@code x}-position for this tile
@@ -43,17 +252,40 @@ public final class BoardLocation {
 	 *             equal to {@value #BOARD_SIZE}
 	 */
 	public BoardLocation(int x, int y) throws IllegalArgumentException {
+		this(x, y, BOARD_SIZE);
+	}
+
+	/**
+	 * Creates a location with the given coordinates on a board of the given
+	 * size. The coordinates must be non-negative (greater than or equal to
+	 * zero) and less than the board size.
+	 * 
+	 * @param x
+	 *            the {@code x}-position for this tile
+	 * @param y
+	 *            the {@code y}-position for this tile
+	 * @param size
+	 *            the side length of the board
+	 * @throws IllegalArgumentException
+	 *             if the board size is not supported, or {@code x} or
+	 *             {@code y} is negative or greater than or equal to the board
+	 *             size
+	 */
+	public BoardLocation(int x, int y, int size)
+			throws IllegalArgumentException {
+		checkBoardSize(size);
 		if (x < 0) {
 			throw new IllegalArgumentException("x is negative: " + x);
 		} else if (y < 0) {
 			throw new IllegalArgumentException("y is negative: " + y);
-		} else if (x >= BOARD_SIZE) {
+		} else if (x >= size) {
 			throw new IllegalArgumentException("x is too big: " + x);
-		} else if (y >= BOARD_SIZE) {
+		} else if (y >= size) {
 			throw new IllegalArgumentException("y is too big: " + y);
 		}
 		this.x = x;
 		this.y = y;
+		this.size = size;
 	}
 
 	@Override
@@ -69,6 +301,8 @@ public final class BoardLocation {
 			return false;
 		if (y != other.y)
 			return false;
+		if (size != other.size)
+			return false;
 		return true;
 	}
 
@@ -82,13 +316,7 @@ public final class BoardLocation {
 	 *         such a location would be invalid
 	 */
 	public BoardLocation getAdjacentLocation(Direction direction) {
-		if (hasAdjacentLocation(direction)) {
-			final int dx = direction.getX(), dy = direction.getY();
-			final int x = this.x + dx, y = this.y + dy;
-			return new BoardLocation(x, y);
-		} else {
-			return null;
-		}
+		return LAYOUTS[size].adjacent[getIndex()][direction.ordinal()];
 	}
 
 	/**
@@ -96,19 +324,31 @@ public final class BoardLocation {
 	 * same as calling {@link #getAdjacentLocation(Direction)} for each
 	 * {@link Direction}, and only taking the non-{@code null} values.
 	 * 
-	 * @return a (possibly empty) set containing all valid board locations
-	 *         adjacent to this location
+	 * @return an immutable (possibly empty) set containing all valid board
+	 *         locations adjacent to this location
 	 */
-	public Set<BoardLocation> getAllAdjacentLocations() {
-		final Direction[] directions = Direction.values();
-		final Set<BoardLocation> result = new HashSet<>();
-		for (Direction d : directions) {
-			BoardLocation adjacent = getAdjacentLocation(d);
-			if (adjacent != null) {
-				result.add(adjacent);
-			}
-		}
-		return result;
+	public LocationSet getAllAdjacentLocations() {
+		return LAYOUTS[size].allAdjacent[getIndex()];
+	}
+
+	/**
+	 * Gets the side length of the board containing this location.
+	 * 
+	 * @return the board size
+	 */
+	public int getBoardSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the cell index of this location. Cells are numbered in row-major
+	 * order, so the index is {@code y * size + x}, where {@code size} is the
+	 * {@linkplain #getBoardSize() board size}.
+	 * 
+	 * @return the cell index
+	 */
+	public int getIndex() {
+		return y * size + x;
 	}
 
 	/**
@@ -139,9 +379,7 @@ public final class BoardLocation {
 	 *         given direction is valid, or {@code false} if it is not
 	 */
 	public boolean hasAdjacentLocation(Direction direction) {
-		final int dx = direction.getX(), dy = direction.getY();
-		final int x = this.x + dx, y = this.y + dy;
-		return x >= 0 && y >= 0 && x < BOARD_SIZE && y < BOARD_SIZE;
+		return getAdjacentLocation(direction) != null;
 	}
 
 	@Override
@@ -150,6 +388,7 @@ public final class BoardLocation {
 		int result = 1;
 		result = prime * result + x;
 		result = prime * result + y;
+		result = prime * result + size;
 		return result;
 	}
 
@@ -0,0 +1,355 @@
+package j2048;
+
+/**
+ * A single change to the state of a game, as reported to a
+ * {@link GameListener}. Events carry everything needed to display the change,
+ * so a consumer can process them after the model has moved on. This class is
+ * immutable.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class GameEvent {
+
+	/**
+	 * The kinds of game event.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	public static enum Type {
+
+		/**
+		 * A new tile was added to the grid.
+		 */
+		SPAWNED,
+
+		/**
+		 * A tile moved from one cell to another.
+		 */
+		MOVED,
+
+		/**
+		 * A tile moved onto another tile, which disappeared, and took a new
+		 * value.
+		 */
+		MERGED,
+
+		/**
+		 * A tile was removed from the grid.
+		 */
+		REMOVED,
+
+		/**
+		 * The value of a tile in the grid was changed directly, without a
+		 * merge.
+		 */
+		VALUE_CHANGED,
+
+		/**
+		 * The score changed.
+		 */
+		SCORE_CHANGED,
+
+		/**
+		 * The user won the game.
+		 */
+		WON,
+
+		/**
+		 * The user lost the game.
+		 */
+		LOST;
+
+	}
+
+	/**
+	 * The shared event for {@link Type#WON}.
+	 */
+	private static final GameEvent WON = new GameEvent(Type.WON, null, null,
+			null, null, 0, 0);
+
+	/**
+	 * The shared event for {@link Type#LOST}.
+	 */
+	private static final GameEvent LOST = new GameEvent(Type.LOST, null, null,
+			null, null, 0, 0);
+
+	/**
+	 * Creates an event for a game that was lost.
+	 * 
+	 * @return a {@link Type#LOST} event
+	 */
+	public static GameEvent lost() {
+		return LOST;
+	}
+
+	/**
+	 * Creates an event for a merge.
+	 * 
+	 * @param tile
+	 *            the tile that moved
+	 * @param target
+	 *            the tile that disappeared
+	 * @param from
+	 *            the location of the moving tile before the merge
+	 * @param to
+	 *            the location of both tiles after the merge
+	 * @param value
+	 *            the value of the moving tile after the merge
+	 * @return a {@link Type#MERGED} event
+	 */
+	public static GameEvent merged(Tile tile, Tile target, BoardLocation from,
+			BoardLocation to, int value) {
+		return new GameEvent(Type.MERGED, tile, target, from, to, value, 0);
+	}
+
+	/**
+	 * Creates an event for a tile movement.
+	 * 
+	 * @param tile
+	 *            the tile that moved
+	 * @param from
+	 *            the location of the tile before the move
+	 * @param to
+	 *            the location of the tile after the move
+	 * @return a {@link Type#MOVED} event
+	 */
+	public static GameEvent moved(Tile tile, BoardLocation from,
+			BoardLocation to) {
+		return new GameEvent(Type.MOVED, tile, null, from, to,
+				tile.getValue(), 0);
+	}
+
+	/**
+	 * Creates an event for a tile removal.
+	 * 
+	 * @param tile
+	 *            the tile that was removed
+	 * @param location
+	 *            the location of the tile before it was removed
+	 * @return a {@link Type#REMOVED} event
+	 */
+	public static GameEvent removed(Tile tile, BoardLocation location) {
+		return new GameEvent(Type.REMOVED, tile, null, location, null,
+				tile.getValue(), 0);
+	}
+
+	/**
+	 * Creates an event for a change in score.
+	 * 
+	 * @param previousScore
+	 *            the score before the change
+	 * @param score
+	 *            the score after the change
+	 * @return a {@link Type#SCORE_CHANGED} event
+	 */
+	public static GameEvent scoreChanged(int previousScore, int score) {
+		return new GameEvent(Type.SCORE_CHANGED, null, null, null, null,
+				score, previousScore);
+	}
+
+	/**
+	 * Creates an event for a new tile.
+	 * 
+	 * @param tile
+	 *            the new tile
+	 * @param location
+	 *            the location of the new tile
+	 * @param value
+	 *            the value of the new tile
+	 * @return a {@link Type#SPAWNED} event
+	 */
+	public static GameEvent spawned(Tile tile, BoardLocation location,
+			int value) {
+		return new GameEvent(Type.SPAWNED, tile, null, null, location, value,
+				0);
+	}
+
+	/**
+	 * Creates an event for a tile whose value was changed directly.
+	 * 
+	 * @param tile
+	 *            the tile
+	 * @param location
+	 *            the location of the tile
+	 * @param value
+	 *            the new value of the tile
+	 * @return a {@link Type#VALUE_CHANGED} event
+	 */
+	public static GameEvent valueChanged(Tile tile, BoardLocation location,
+			int value) {
+		return new GameEvent(Type.VALUE_CHANGED, tile, null, location,
+				location, value, 0);
+	}
+
+	/**
+	 * Creates an event for a game that was won.
+	 * 
+	 * @return a {@link Type#WON} event
+	 */
+	public static GameEvent won() {
+		return WON;
+	}
+
+	/**
+	 * The type of this event.
+	 */
+	private final Type type;
+
+	/**
+	 * The tile that spawned, moved or was removed, if any.
+	 */
+	private final Tile tile;
+
+	/**
+	 * The tile that disappeared in a merge, if any.
+	 */
+	private final Tile target;
+
+	/**
+	 * The location of the tile before the event, if any.
+	 */
+	private final BoardLocation from;
+
+	/**
+	 * The location of the tile after the event, if any.
+	 */
+	private final BoardLocation to;
+
+	/**
+	 * The value of the tile after the event, or the new score.
+	 */
+	private final int value;
+
+	/**
+	 * The score before a {@link Type#SCORE_CHANGED} event.
+	 */
+	private final int previousValue;
+
+	/**
+	 * Creates an event.
+	 * 
+	 * @param type
+	 *            the type of event
+	 * @param tile
+	 *            the tile involved, if any
+	 * @param target
+	 *            the tile merged into, if any
+	 * @param from
+	 *            the location before the event, if any
+	 * @param to
+	 *            the location after the event, if any
+	 * @param value
+	 *            the value of the tile after the event, or the new score
+	 * @param previousValue
+	 *            the previous score
+	 */
+	private GameEvent(Type type, Tile tile, Tile target, BoardLocation from,
+			BoardLocation to, int value, int previousValue) {
+		this.type = type;
+		this.tile = tile;
+		this.target = target;
+		this.from = from;
+		this.to = to;
+		this.value = value;
+		this.previousValue = previousValue;
+	}
+
+	/**
+	 * Gets the location of the tile before this event.
+	 * 
+	 * @return the previous location of the tile, or {@code null} for events
+	 *         that do not involve a tile already in the grid
+	 */
+	public BoardLocation getFrom() {
+		return from;
+	}
+
+	/**
+	 * Gets the score before this event.
+	 * 
+	 * @return the previous score, or {@code 0} if this is not a
+	 *         {@link Type#SCORE_CHANGED} event
+	 */
+	public int getPreviousScore() {
+		return type == Type.SCORE_CHANGED ? previousValue : 0;
+	}
+
+	/**
+	 * Gets the score after this event.
+	 * 
+	 * @return the new score, or {@code 0} if this is not a
+	 *         {@link Type#SCORE_CHANGED} event
+	 */
+	public int getScore() {
+		return type == Type.SCORE_CHANGED ? value : 0;
+	}
+
+	/**
+	 * Gets the tile that disappeared in a merge.
+	 * 
+	 * @return the target tile, or {@code null} if this is not a
+	 *         {@link Type#MERGED} event
+	 */
+	public Tile getTarget() {
+		return target;
+	}
+
+	/**
+	 * Gets the tile that spawned, moved, merged, changed value or was
+	 * removed.
+	 * 
+	 * @return the tile, or {@code null} for events that do not involve a
+	 *         tile
+	 */
+	public Tile getTile() {
+		return tile;
+	}
+
+	/**
+	 * Gets the location of the tile after this event.
+	 * 
+	 * @return the new location of the tile, or {@code null} for events that
+	 *         do not leave a tile in the grid
+	 */
+	public BoardLocation getTo() {
+		return to;
+	}
+
+	/**
+	 * Gets the type of this event.
+	 * 
+	 * @return the event type
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the value of the tile just after this event. Because the tile
+	 * itself may have changed again by the time the event is processed,
+	 * consumers should display this value rather than the tile's current
+	 * value.
+	 * 
+	 * @return the value of the tile, or {@code 0} for events that do not
+	 *         involve a tile
+	 */
+	public int getValue() {
+		return tile == null ? 0 : value;
+	}
+
+	@Override
+	public String toString() {
+		switch (type) {
+		case SCORE_CHANGED:
+			return type + "(" + previousValue + " -> " + value + ")";
+		case WON:
+		case LOST:
+			return type.toString();
+		default:
+			return type + "(" + value + ", " + from + " -> " + to + ")";
+		}
+	}
+
+}
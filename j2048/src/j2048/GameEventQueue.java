@@ -0,0 +1,66 @@
+package j2048;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A {@link GameListener} that stores each batch of events for later
+ * processing. This lets a model run at full speed on one thread while a
+ * consumer, such as a view, takes batches at its own pace on another. The
+ * queue is unbounded and thread-safe.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class GameEventQueue implements GameListener {
+
+	/**
+	 * The batches not yet taken, oldest first.
+	 */
+	private final Queue<List<GameEvent>> batches =
+			new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Discards all waiting batches.
+	 */
+	public void clear() {
+		batches.clear();
+	}
+
+	@Override
+	public void gameChanged(List<GameEvent> events) {
+		batches.add(events);
+	}
+
+	/**
+	 * Determines whether any batches are waiting.
+	 * 
+	 * @return {@code true} if {@link #poll()} would return {@code null}
+	 */
+	public boolean isEmpty() {
+		return batches.isEmpty();
+	}
+
+	/**
+	 * Takes the oldest waiting batch.
+	 * 
+	 * @return the oldest batch, or {@code null} if none is waiting
+	 */
+	public List<GameEvent> poll() {
+		return batches.poll();
+	}
+
+	/**
+	 * Counts the waiting batches. This takes time proportional to the number
+	 * of batches, so it is meant for short queues, such as the turns a view
+	 * has yet to animate.
+	 * 
+	 * @return the number of batches that {@link #poll()} would return before
+	 *         returning {@code null}
+	 */
+	public int size() {
+		return batches.size();
+	}
+
+}
@@ -0,0 +1,31 @@
+package j2048;
+
+import java.util.List;
+
+/**
+ * A listener that is notified of changes to a {@link GameModel}.
+ * 
+ * @author William Chargin
+ * 
+ */
+public interface GameListener {
+
+	/**
+	 * Invoked after the model changes, with the events of one change. A
+	 * committed turn is delivered as a single call, in the order in which its
+	 * steps were applied, followed by any score change and the outcome of the
+	 * game. Single changes, such as
+	 * {@link GameModel#addTile(Tile, BoardLocation)}, are delivered as a list
+	 * of one event.
+	 * <p>
+	 * This method is called on the thread that changed the model, while the
+	 * model is in a consistent state. Listeners that do slow work, such as
+	 * animation, should queue the events (for example, with a
+	 * {@link GameEventQueue}) and process them on their own thread.
+	 * 
+	 * @param events
+	 *            the events, as an unmodifiable list
+	 */
+	public void gameChanged(List<GameEvent> events);
+
+}
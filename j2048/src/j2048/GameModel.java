@@ -0,0 +1,483 @@
+package j2048;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A {@link TileGameContext} that keeps the grid and score in memory. This
+ * allows a {@link TurnPerformer} to be run without a window, for example in
+ * tests or batch simulations.
+ * <p>
+ * Views and other observers follow the game by registering a
+ * {@link GameListener}. Every change to the model is reported as a batch of
+ * {@link GameEvent}s, with one batch per committed turn, so observers never
+ * need to inspect the grid and need not keep up with the model. A turn
+ * performer that changes the model one call at a time, through
+ * {@link #moveTile(Tile, Direction, int)} and the like, produces one batch
+ * per call, unless the turn is bracketed by {@link #beginTurn()} and
+ * {@link #endTurn()}: then everything that happens in between is reported as
+ * a single batch. Changes made directly to the value of a tile in the grid,
+ * through {@link Tile#setValue(int)}, are reported as
+ * {@link GameEvent.Type#VALUE_CHANGED} events.
+ * <p>
+ * Each game has its own {@link SplitRandom}, seeded when the model is
+ * created or reset. A game played with the same seed and the same moves, by
+ * a turn performer that draws from {@link #getRandom()}, is the same game.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class GameModel implements TileGameContext {
+
+	/**
+	 * The tile grid used in this game.
+	 */
+	private final TileGrid grid;
+
+	/**
+	 * The user's current score.
+	 */
+	private int score;
+
+	/**
+	 * Whether {@link #winGame()} has been called since the last reset.
+	 */
+	private boolean won;
+
+	/**
+	 * Whether {@link #loseGame()} has been called since the last reset.
+	 */
+	private boolean lost;
+
+	/**
+	 * The source of randomness for the current game.
+	 */
+	private final SplitRandom random;
+
+	/**
+	 * The seed of the current game.
+	 */
+	private long seed;
+
+	/**
+	 * The listeners to notify of changes.
+	 */
+	private final List<GameListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The number of calls to {@link #beginTurn()} not yet matched by a call to
+	 * {@link #endTurn()}.
+	 */
+	private int turnDepth;
+
+	/**
+	 * The events of the open turn, or {@code null} if there are none yet.
+	 */
+	private List<GameEvent> turnEvents;
+
+	/**
+	 * Whether the model is changing tile values itself, as part of a merge,
+	 * so that the changes are already described by other events.
+	 */
+	private boolean applying;
+
+	/**
+	 * Creates an empty game on a board of the default size, with a score of
+	 * {@code 0} and a new seed.
+	 */
+	public GameModel() {
+		this(BoardLocation.BOARD_SIZE);
+	}
+
+	/**
+	 * Creates an empty game on a board of the given size, with a score of
+	 * {@code 0} and a new seed.
+	 * 
+	 * @param size
+	 *            the side length of the board
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}
+	 */
+	public GameModel(int size) throws IllegalArgumentException {
+		this(size, SplitRandom.newSeed());
+	}
+
+	/**
+	 * Creates an empty game on a board of the given size, with a score of
+	 * {@code 0} and the given seed.
+	 * 
+	 * @param size
+	 *            the side length of the board
+	 * @param seed
+	 *            the seed of the game's source of randomness
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}
+	 */
+	public GameModel(int size, long seed) throws IllegalArgumentException {
+		grid = new TileGrid(size);
+		random = new SplitRandom(seed);
+		this.seed = seed;
+		grid.addTileListener(new TileListener() {
+			@Override
+			public void valueChanged(Tile tile, int oldValue, int newValue) {
+				if (!applying && !listeners.isEmpty()) {
+					fire(Collections.singletonList(GameEvent.valueChanged(
+							tile, grid.find(tile), newValue)));
+				}
+			}
+		});
+	}
+
+	@Override
+	public void addTile(Tile tile, BoardLocation location)
+			throws IllegalArgumentException {
+		if (tile == null) {
+			throw new IllegalArgumentException("tile must not be null");
+		}
+		if (location == null) {
+			throw new IllegalArgumentException("location must not be null");
+		}
+		final BoardLocation from = grid.find(tile);
+		final Tile previous = grid.at(location);
+		grid.put(location, tile);
+		if (!listeners.isEmpty() && previous != tile) {
+			final List<GameEvent> events = new ArrayList<>(2);
+			if (previous != null) {
+				events.add(GameEvent.removed(previous, location));
+			}
+			events.add(from == null ? GameEvent.spawned(tile, location,
+					tile.getValue()) : GameEvent.moved(tile, from, location));
+			fire(events);
+		}
+	}
+
+	/**
+	 * Adds a listener to be notified of changes to this game.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 * @throws IllegalArgumentException
+	 *             if {@code listener == null}
+	 */
+	public void addGameListener(GameListener listener)
+			throws IllegalArgumentException {
+		if (listener == null) {
+			throw new IllegalArgumentException("listener must not be null");
+		}
+		listeners.add(listener);
+	}
+
+	/**
+	 * Starts collecting events into a single batch, which is sent to the
+	 * listeners by the matching call to {@link #endTurn()}. Calls may be
+	 * nested; the batch is sent when the outermost turn ends.
+	 */
+	public void beginTurn() {
+		turnDepth++;
+	}
+
+	@Override
+	public void commitTurn(TurnBatch batch) throws IllegalArgumentException {
+		if (batch == null) {
+			throw new IllegalArgumentException("batch must not be null");
+		}
+		final int newScore = score + batch.getPoints();
+		if (newScore < 0) {
+			throw new IllegalArgumentException("score must not be negative: "
+					+ newScore);
+		}
+		final List<GameEvent> events = listeners.isEmpty() ? null
+				: new ArrayList<GameEvent>();
+		applying = true;
+		try {
+			batch.applyTo(grid, events);
+		} finally {
+			applying = false;
+		}
+		final int previousScore = score;
+		score = newScore;
+		won |= batch.isWon();
+		lost |= batch.isLost();
+		if (events != null) {
+			if (newScore != previousScore) {
+				events.add(GameEvent.scoreChanged(previousScore, newScore));
+			}
+			if (batch.isWon()) {
+				events.add(GameEvent.won());
+			}
+			if (batch.isLost()) {
+				events.add(GameEvent.lost());
+			}
+			fire(events);
+		}
+	}
+
+	/**
+	 * Ends a turn started by {@link #beginTurn()}. If this ends the outermost
+	 * turn, every event fired since it began is sent to the listeners as one
+	 * batch; if there were none, the listeners are not notified.
+	 * 
+	 * @throws IllegalStateException
+	 *             if no turn has begun
+	 */
+	public void endTurn() throws IllegalStateException {
+		if (turnDepth == 0) {
+			throw new IllegalStateException("no turn in progress");
+		}
+		if (--turnDepth == 0 && turnEvents != null) {
+			final List<GameEvent> events = turnEvents;
+			turnEvents = null;
+			fire(events);
+		}
+	}
+
+	@Override
+	public TileGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * Gets the source of randomness for the current game. It is reseeded
+	 * whenever the model is reset.
+	 * 
+	 * @return the source of randomness
+	 */
+	@Override
+	public SplitRandom getRandom() {
+		return random;
+	}
+
+	@Override
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Gets the seed of the current game.
+	 * 
+	 * @return the seed with which the model was created or last reset
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	@Override
+	public int incrementScoreBy(int value) {
+		setScore(score + value);
+		return score;
+	}
+
+	/**
+	 * Determines whether the user has lost this game.
+	 * 
+	 * @return {@code true} if {@link #loseGame()} has been called since the
+	 *         game was created or last reset
+	 */
+	public boolean isLost() {
+		return lost;
+	}
+
+	/**
+	 * Determines whether the user has won this game.
+	 * 
+	 * @return {@code true} if {@link #winGame()} has been called since the
+	 *         game was created or last reset
+	 */
+	public boolean isWon() {
+		return won;
+	}
+
+	@Override
+	public void loseGame() {
+		lost = true;
+		fire(Collections.singletonList(GameEvent.lost()));
+	}
+
+	@Override
+	public void mergeTiles(Tile target, Tile mover, Direction direction,
+			int movementSteps, int newValue) throws IllegalArgumentException {
+		commitTurn(new TurnBatch().merge(target, mover, direction,
+				movementSteps, newValue));
+	}
+
+	@Override
+	public void moveTile(Tile tile, Direction direction, int count)
+			throws IllegalArgumentException {
+		commitTurn(new TurnBatch().move(tile, direction, count));
+	}
+
+	/**
+	 * Clears the grid, the score, and the win and loss flags, so that this
+	 * model can be reused for a new game. The new game's seed is drawn from
+	 * the old game's source of randomness, so a series of games is
+	 * determined by the seed of the first.
+	 */
+	public void reset() {
+		reset(random.nextLong());
+	}
+
+	/**
+	 * Clears the grid, the score, and the win and loss flags, and starts a
+	 * new game with the given seed.
+	 * 
+	 * @param seed
+	 *            the seed of the new game
+	 */
+	public void reset(long seed) {
+		final List<GameEvent> events = new ArrayList<>();
+		for (BoardLocation loc : grid.getOccupiedLocations()) {
+			final Tile tile = grid.remove(loc);
+			if (!listeners.isEmpty()) {
+				events.add(GameEvent.removed(tile, loc));
+			}
+		}
+		if (score != 0 && !listeners.isEmpty()) {
+			events.add(GameEvent.scoreChanged(score, 0));
+		}
+		score = 0;
+		won = false;
+		lost = false;
+		random.setSeed(seed);
+		this.seed = seed;
+		if (!events.isEmpty()) {
+			fire(events);
+		}
+	}
+
+	/**
+	 * Replaces the state of this model with the state in a snapshot, so that
+	 * the game continues from where the snapshot was taken. The tiles on the
+	 * grid are replaced with new tiles, and the whole change is reported as
+	 * one batch of events: the old tiles are removed, the new tiles spawn,
+	 * the score changes, and the game is won or lost if the snapshot says so.
+	 * 
+	 * @param snapshot
+	 *            the snapshot to restore
+	 * @throws IllegalArgumentException
+	 *             if {@code snapshot == null}, or if it is of a board of a
+	 *             different size
+	 */
+	public void restore(GameSnapshot snapshot)
+			throws IllegalArgumentException {
+		if (snapshot == null) {
+			throw new IllegalArgumentException("snapshot must not be null");
+		}
+		final int size = grid.getSize();
+		if (snapshot.getBoardSize() != size) {
+			throw new IllegalArgumentException("size mismatch: "
+					+ snapshot.getBoardSize() + " != " + size);
+		}
+		final List<GameEvent> events = new ArrayList<>();
+		for (BoardLocation loc : grid.getOccupiedLocations()) {
+			events.add(GameEvent.removed(grid.remove(loc), loc));
+		}
+		for (int i = 0; i < size * size; i++) {
+			final int value = snapshot.getValue(i);
+			if (value != 0) {
+				final BoardLocation loc = BoardLocation.fromIndex(i, size);
+				final Tile tile = new Tile();
+				tile.setValue(value);
+				grid.put(loc, tile);
+				events.add(GameEvent.spawned(tile, loc, value));
+			}
+		}
+		if (snapshot.getScore() != score) {
+			events.add(GameEvent.scoreChanged(score, snapshot.getScore()));
+		}
+		score = snapshot.getScore();
+		won = snapshot.isWon();
+		lost = snapshot.isLost();
+		if (won) {
+			events.add(GameEvent.won());
+		}
+		if (lost) {
+			events.add(GameEvent.lost());
+		}
+		seed = snapshot.getSeed();
+		random.setState(snapshot.getRandomState(), snapshot.getRandomGamma());
+		if (!events.isEmpty()) {
+			fire(events);
+		}
+	}
+
+	/**
+	 * Removes a listener that was added with
+	 * {@link #addGameListener(GameListener)}.
+	 * 
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public void removeGameListener(GameListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public void setScore(int score) throws IllegalArgumentException {
+		if (score < 0) {
+			throw new IllegalArgumentException("score must not be negative: "
+					+ score);
+		}
+		final int previousScore = this.score;
+		this.score = score;
+		if (score != previousScore) {
+			fire(Collections.singletonList(GameEvent.scoreChanged(
+					previousScore, score)));
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the current state of this game, including the
+	 * exact state of its source of randomness.
+	 * 
+	 * @return the snapshot
+	 * @throws IllegalStateException
+	 *             if a tile on the grid has a negative value
+	 */
+	public GameSnapshot snapshot() throws IllegalStateException {
+		final int size = grid.getSize();
+		final int[] values = new int[size * size];
+		for (BoardLocation loc : grid.getOccupiedLocations()) {
+			final int value = grid.at(loc).getValue();
+			if (value < 0) {
+				throw new IllegalStateException("negative tile value at "
+						+ loc + ": " + value);
+			}
+			values[loc.getIndex()] = value;
+		}
+		return new GameSnapshot(size, values, score, won, lost, seed,
+				random.getState(), random.getGamma());
+	}
+
+	@Override
+	public void winGame() {
+		won = true;
+		fire(Collections.singletonList(GameEvent.won()));
+	}
+
+	/**
+	 * Notifies the listeners of a batch of events, or adds the events to the
+	 * batch of the open turn if there is one.
+	 * 
+	 * @param events
+	 *            the events
+	 */
+	private void fire(List<GameEvent> events) {
+		if (listeners.isEmpty()) {
+			return;
+		}
+		if (turnDepth > 0) {
+			if (turnEvents == null) {
+				turnEvents = new ArrayList<>();
+			}
+			turnEvents.addAll(events);
+			return;
+		}
+		final List<GameEvent> batch = Collections.unmodifiableList(events);
+		for (GameListener listener : listeners) {
+			listener.gameChanged(batch);
+		}
+	}
+
+}
@@ -0,0 +1,314 @@
+package j2048;
+
+import j2048.record.GameRecord;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The complete state of a {@link GameModel} at one moment: the values on the
+ * grid, the score, the outcome, and the seed and exact state of the game's
+ * source of randomness. A model {@linkplain GameModel#restore(GameSnapshot)
+ * restored} from a snapshot continues the game exactly as the original
+ * would have. Snapshots are created with {@link GameModel#snapshot()}. This
+ * class is immutable.
+ * <p>
+ * The binary form written by {@link #write(OutputStream)} takes a few dozen
+ * bytes for the standard board. It consists of, in order:
+ * <ol>
+ * <li>the four bytes {@code "2SNP"} and a version byte;</li>
+ * <li>the board size, as one byte;</li>
+ * <li>a flags byte, with bit 0 set if the game is won and bit 1 set if it is
+ * lost;</li>
+ * <li>the score, as a variable-length integer;</li>
+ * <li>the seed, and the state and increment of the source of randomness, as
+ * eight bytes each;</li>
+ * <li>the value in each cell, in row-major order, as a variable-length
+ * integer, with {@code 0} for an empty cell.</li>
+ * </ol>
+ * Variable-length and fixed-length integers are encoded as in a
+ * {@link GameRecord}.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class GameSnapshot {
+
+	/**
+	 * The first four bytes of every snapshot, {@code "2SNP"} in ASCII.
+	 */
+	private static final int MAGIC = 0x32534e50;
+
+	/**
+	 * The version of the binary format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The flag bit for a game that is won.
+	 */
+	private static final int WON = 1;
+
+	/**
+	 * The flag bit for a game that is lost.
+	 */
+	private static final int LOST = 2;
+
+	/**
+	 * Reads a snapshot from an array in the format written by
+	 * {@link #toByteArray()}.
+	 * 
+	 * @param bytes
+	 *            the bytes of the snapshot
+	 * @return the snapshot
+	 * @throws IOException
+	 *             if the array does not hold a valid snapshot
+	 */
+	public static GameSnapshot fromByteArray(byte[] bytes) throws IOException {
+		return read(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * Reads a snapshot in the format written by {@link #write(OutputStream)}.
+	 * 
+	 * @param in
+	 *            the stream from which to read
+	 * @return the snapshot
+	 * @throws IOException
+	 *             if the stream cannot be read, or does not hold a valid
+	 *             snapshot
+	 */
+	public static GameSnapshot read(InputStream in) throws IOException {
+		final DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC) {
+			throw new IOException("not a game snapshot");
+		}
+		final int version = data.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("unsupported snapshot version: " + version);
+		}
+		final int boardSize = data.readUnsignedByte();
+		if (boardSize < BoardLocation.MIN_BOARD_SIZE
+				|| boardSize > BoardLocation.MAX_BOARD_SIZE) {
+			throw new IOException("unsupported board size: " + boardSize);
+		}
+		final int flags = data.readUnsignedByte();
+		final int score = GameRecord.readVarInt(data);
+		final long seed = data.readLong();
+		final long randomState = data.readLong();
+		final long randomGamma = data.readLong();
+		if ((randomGamma & 1) == 0) {
+			throw new IOException("bad random increment");
+		}
+		final int[] values = new int[boardSize * boardSize];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = GameRecord.readVarInt(data);
+		}
+		return new GameSnapshot(boardSize, values, score, (flags & WON) != 0,
+				(flags & LOST) != 0, seed, randomState, randomGamma);
+	}
+
+	/**
+	 * The side length of the board.
+	 */
+	private final int boardSize;
+
+	/**
+	 * The value in each cell, in row-major order, or {@code 0} for an empty
+	 * cell.
+	 */
+	private final int[] values;
+
+	/**
+	 * The score.
+	 */
+	private final int score;
+
+	/**
+	 * Whether the game is won.
+	 */
+	private final boolean won;
+
+	/**
+	 * Whether the game is lost.
+	 */
+	private final boolean lost;
+
+	/**
+	 * The seed of the game.
+	 */
+	private final long seed;
+
+	/**
+	 * The state of the game's source of randomness.
+	 */
+	private final long randomState;
+
+	/**
+	 * The increment of the game's source of randomness.
+	 */
+	private final long randomGamma;
+
+	/**
+	 * Creates a snapshot. The array must not be modified after it is passed
+	 * to this constructor.
+	 * 
+	 * @param boardSize
+	 *            the side length of the board
+	 * @param values
+	 *            the value in each cell, in row-major order
+	 * @param score
+	 *            the score
+	 * @param won
+	 *            whether the game is won
+	 * @param lost
+	 *            whether the game is lost
+	 * @param seed
+	 *            the seed of the game
+	 * @param randomState
+	 *            the state of the game's source of randomness
+	 * @param randomGamma
+	 *            the increment of the game's source of randomness
+	 */
+	GameSnapshot(int boardSize, int[] values, int score, boolean won,
+			boolean lost, long seed, long randomState, long randomGamma) {
+		this.boardSize = boardSize;
+		this.values = values;
+		this.score = score;
+		this.won = won;
+		this.lost = lost;
+		this.seed = seed;
+		this.randomState = randomState;
+		this.randomGamma = randomGamma;
+	}
+
+	/**
+	 * Gets the side length of the board.
+	 * 
+	 * @return the board size
+	 */
+	public int getBoardSize() {
+		return boardSize;
+	}
+
+	/**
+	 * Gets the score.
+	 * 
+	 * @return the score
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Gets the seed of the game.
+	 * 
+	 * @return the seed with which the game's model was created or last reset
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Gets the value in a cell.
+	 * 
+	 * @param index
+	 *            the cell index, as returned by
+	 *            {@link BoardLocation#getIndex()}
+	 * @return the value of the tile in that cell, or {@code 0} if the cell is
+	 *         empty
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is out of range
+	 */
+	public int getValue(int index) throws IndexOutOfBoundsException {
+		return values[index];
+	}
+
+	/**
+	 * Determines whether the game is lost.
+	 * 
+	 * @return {@code true} if the game is lost
+	 */
+	public boolean isLost() {
+		return lost;
+	}
+
+	/**
+	 * Determines whether the game is won.
+	 * 
+	 * @return {@code true} if the game is won
+	 */
+	public boolean isWon() {
+		return won;
+	}
+
+	/**
+	 * Writes this snapshot in its binary form to a byte array.
+	 * 
+	 * @return the bytes of this snapshot
+	 */
+	public byte[] toByteArray() {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(
+				32 + 2 * values.length);
+		try {
+			write(out);
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public String toString() {
+		return "GameSnapshot[size=" + boardSize + ", score=" + score
+				+ ", won=" + won + ", lost=" + lost + "]";
+	}
+
+	/**
+	 * Writes this snapshot in its binary form, as described in the class
+	 * comment. The stream is not flushed or closed.
+	 * 
+	 * @param out
+	 *            the stream to which to write
+	 * @throws IOException
+	 *             if the stream cannot be written
+	 */
+	public void write(OutputStream out) throws IOException {
+		final DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeByte(VERSION);
+		data.writeByte(boardSize);
+		data.writeByte((won ? WON : 0) | (lost ? LOST : 0));
+		GameRecord.writeVarInt(data, score);
+		data.writeLong(seed);
+		data.writeLong(randomState);
+		data.writeLong(randomGamma);
+		for (int value : values) {
+			GameRecord.writeVarInt(data, value);
+		}
+	}
+
+	/**
+	 * Gets the increment of the game's source of randomness.
+	 * 
+	 * @return the increment
+	 */
+	long getRandomGamma() {
+		return randomGamma;
+	}
+
+	/**
+	 * Gets the state of the game's source of randomness.
+	 * 
+	 * @return the state
+	 */
+	long getRandomState() {
+		return randomState;
+	}
+
+}
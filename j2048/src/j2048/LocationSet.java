@@ -0,0 +1,415 @@
+package j2048;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of locations on one board, stored as a bit mask with one bit per
+ * cell. This class is immutable.
+ * <p>
+ * Membership tests and {@link #size()} take constant time,
+ * {@linkplain #select(int) selecting} the {@code k}-th location takes time
+ * proportional to {@code k} within one machine word, and
+ * {@link #union(LocationSet)} and {@link #intersection(LocationSet)} cost one
+ * machine word per 64 cells. Iterating yields the
+ * {@linkplain BoardLocation#of(int, int, int) canonical} locations in order
+ * of increasing cell index, so iteration allocates nothing but the iterator;
+ * callers that must not allocate at all can walk the set with
+ * {@link #nextIndex(int)} instead.
+ * <p>
+ * All locations in a set belong to a board of the same size. Operations that
+ * combine two sets require them to have the same board size.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class LocationSet extends AbstractSet<BoardLocation> {
+
+	/**
+	 * The number of cells stored in each element of {@link #words}.
+	 */
+	private static final int WORD_BITS = Long.SIZE;
+
+	/**
+	 * Creates a set containing every location on a board of the given size.
+	 * 
+	 * @param boardSize
+	 *            the side length of the board
+	 * @return a set of all locations on the board
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}
+	 */
+	public static LocationSet all(int boardSize)
+			throws IllegalArgumentException {
+		return empty(boardSize).complement();
+	}
+
+	/**
+	 * Creates an empty set of locations on a board of the given size.
+	 * 
+	 * @param boardSize
+	 *            the side length of the board
+	 * @return an empty set
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}
+	 */
+	public static LocationSet empty(int boardSize)
+			throws IllegalArgumentException {
+		BoardLocation.checkBoardSize(boardSize);
+		return new LocationSet(boardSize, new long[wordsFor(boardSize)]);
+	}
+
+	/**
+	 * Computes the number of words needed for a board of the given size.
+	 * 
+	 * @param boardSize
+	 *            the side length of the board
+	 * @return the length of the {@link #words} array
+	 */
+	static int wordsFor(int boardSize) {
+		return (boardSize * boardSize + WORD_BITS - 1) / WORD_BITS;
+	}
+
+	/**
+	 * The side length of the board containing the locations.
+	 */
+	private final int boardSize;
+
+	/**
+	 * The bit mask of cells in this set. Bit {@code i % 64} of word
+	 * {@code i / 64} is set if cell {@code i} is in the set. Bits beyond the
+	 * last cell are always clear.
+	 */
+	private final long[] words;
+
+	/**
+	 * The number of cells in this set.
+	 */
+	private final int size;
+
+	/**
+	 * Creates a set from a bit mask. The array must not be modified after it
+	 * is passed to this constructor.
+	 * 
+	 * @param boardSize
+	 *            the side length of the board
+	 * @param words
+	 *            the bit mask, as described in {@link #words}
+	 */
+	LocationSet(int boardSize, long[] words) {
+		this.boardSize = boardSize;
+		this.words = words;
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+		this.size = count;
+	}
+
+	/**
+	 * Creates a set that contains every location on the board that this set
+	 * does not contain.
+	 * 
+	 * @return the complement of this set
+	 */
+	public LocationSet complement() {
+		final long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			result[i] = ~words[i];
+		}
+		final int spare = result.length * WORD_BITS - boardSize * boardSize;
+		result[result.length - 1] &= -1L >>> spare;
+		return new LocationSet(boardSize, result);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof BoardLocation)) {
+			return false;
+		}
+		final BoardLocation location = (BoardLocation) o;
+		return location.getBoardSize() == boardSize
+				&& containsIndex(location.getIndex());
+	}
+
+	/**
+	 * Determines whether this set contains the cell with the given index.
+	 * 
+	 * @param index
+	 *            the cell index, as returned by
+	 *            {@link BoardLocation#getIndex()}
+	 * @return {@code true} if the cell is in this set, or {@code false} if it
+	 *         is not or if the index is out of range
+	 */
+	public boolean containsIndex(int index) {
+		if (index < 0 || index >= boardSize * boardSize) {
+			return false;
+		}
+		return (words[index / WORD_BITS] & (1L << index)) != 0;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof LocationSet) {
+			final LocationSet other = (LocationSet) obj;
+			return other.boardSize == boardSize
+					&& Arrays.equals(other.words, words);
+		}
+		return super.equals(obj);
+	}
+
+	/**
+	 * Gets the side length of the board containing the locations in this set.
+	 * 
+	 * @return the board size
+	 */
+	public int getBoardSize() {
+		return boardSize;
+	}
+
+	@Override
+	public int hashCode() {
+		// Must agree with the Set contract, so that equal sets of other
+		// types have equal hash codes.
+		return super.hashCode();
+	}
+
+	/**
+	 * Creates a set containing the locations that are in both this set and
+	 * the given set.
+	 * 
+	 * @param other
+	 *            the other set
+	 * @return the intersection of the two sets
+	 * @throws IllegalArgumentException
+	 *             if {@code other == null}, or if the sets are on boards of
+	 *             different sizes
+	 */
+	public LocationSet intersection(LocationSet other)
+			throws IllegalArgumentException {
+		checkCompatible(other);
+		final long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			result[i] = words[i] & other.words[i];
+		}
+		return new LocationSet(boardSize, result);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public Iterator<BoardLocation> iterator() {
+		return new Iterator<BoardLocation>() {
+
+			private int next = nextIndex(0);
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public BoardLocation next() {
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				final BoardLocation result = BoardLocation.fromIndex(next,
+						boardSize);
+				next = nextIndex(next + 1);
+				return result;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("set is immutable");
+			}
+
+		};
+	}
+
+	/**
+	 * Finds the first cell in this set whose index is at least the given
+	 * index. To visit every cell in order, use:
+	 * 
+	 * <pre>
+	 * for (int i = set.nextIndex(0); i &gt;= 0; i = set.nextIndex(i + 1)) {
+	 * 	// ...
+	 * }
+	 * </pre>
+	 * 
+	 * @param from
+	 *            the index at which to start searching
+	 * @return the index of the next cell in this set, or {@code -1} if there
+	 *         is none
+	 */
+	public int nextIndex(int from) {
+		if (from < 0) {
+			from = 0;
+		}
+		int w = from / WORD_BITS;
+		if (w >= words.length) {
+			return -1;
+		}
+		long word = words[w] & (-1L << from);
+		while (word == 0) {
+			if (++w == words.length) {
+				return -1;
+			}
+			word = words[w];
+		}
+		return w * WORD_BITS + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Gets the {@code k}-th location in this set, in order of increasing cell
+	 * index. Together with {@link #size()}, this allows choosing a location
+	 * uniformly at random without iterating.
+	 * 
+	 * @param k
+	 *            the zero-based rank of the location
+	 * @return the location with the given rank
+	 * @throws IllegalArgumentException
+	 *             if {@code k} is negative, or greater than or equal to the
+	 *             size of this set
+	 */
+	public BoardLocation select(int k) throws IllegalArgumentException {
+		if (k < 0 || k >= size) {
+			throw new IllegalArgumentException("rank out of range: " + k);
+		}
+		int remaining = k;
+		for (int w = 0;; w++) {
+			long word = words[w];
+			final int count = Long.bitCount(word);
+			if (remaining < count) {
+				for (int i = 0; i < remaining; i++) {
+					word &= word - 1;
+				}
+				return BoardLocation.fromIndex(
+						w * WORD_BITS + Long.numberOfTrailingZeros(word),
+						boardSize);
+			}
+			remaining -= count;
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Creates a set containing the locations that are in this set, the given
+	 * set, or both.
+	 * 
+	 * @param other
+	 *            the other set
+	 * @return the union of the two sets
+	 * @throws IllegalArgumentException
+	 *             if {@code other == null}, or if the sets are on boards of
+	 *             different sizes
+	 */
+	public LocationSet union(LocationSet other)
+			throws IllegalArgumentException {
+		checkCompatible(other);
+		final long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++) {
+			result[i] = words[i] | other.words[i];
+		}
+		return new LocationSet(boardSize, result);
+	}
+
+	/**
+	 * Creates a set containing the locations in this set and the given
+	 * location.
+	 * 
+	 * @param location
+	 *            the location to add
+	 * @return a set with the location added, or this set if it already
+	 *         contains the location
+	 * @throws IllegalArgumentException
+	 *             if {@code location == null}, or if the location is on a
+	 *             board of a different size
+	 */
+	public LocationSet with(BoardLocation location)
+			throws IllegalArgumentException {
+		final int index = indexOf(location);
+		if (containsIndex(index)) {
+			return this;
+		}
+		final long[] result = words.clone();
+		result[index / WORD_BITS] |= 1L << index;
+		return new LocationSet(boardSize, result);
+	}
+
+	/**
+	 * Creates a set containing the locations in this set other than the given
+	 * location.
+	 * 
+	 * @param location
+	 *            the location to remove
+	 * @return a set with the location removed, or this set if it does not
+	 *         contain the location
+	 * @throws IllegalArgumentException
+	 *             if {@code location == null}, or if the location is on a
+	 *             board of a different size
+	 */
+	public LocationSet without(BoardLocation location)
+			throws IllegalArgumentException {
+		final int index = indexOf(location);
+		if (!containsIndex(index)) {
+			return this;
+		}
+		final long[] result = words.clone();
+		result[index / WORD_BITS] &= ~(1L << index);
+		return new LocationSet(boardSize, result);
+	}
+
+	/**
+	 * Checks that another set can be combined with this one.
+	 * 
+	 * @param other
+	 *            the other set
+	 * @throws IllegalArgumentException
+	 *             if {@code other == null}, or if the sets are on boards of
+	 *             different sizes
+	 */
+	private void checkCompatible(LocationSet other)
+			throws IllegalArgumentException {
+		if (other == null) {
+			throw new IllegalArgumentException("other must not be null");
+		}
+		if (other.boardSize != boardSize) {
+			throw new IllegalArgumentException("board size mismatch: "
+					+ other.boardSize + " != " + boardSize);
+		}
+	}
+
+	/**
+	 * Gets the cell index of a location on this set's board.
+	 * 
+	 * @param location
+	 *            the location
+	 * @return the cell index
+	 * @throws IllegalArgumentException
+	 *             if {@code location == null}, or if the location is on a
+	 *             board of a different size
+	 */
+	private int indexOf(BoardLocation location)
+			throws IllegalArgumentException {
+		if (location == null) {
+			throw new IllegalArgumentException("location must not be null");
+		}
+		if (location.getBoardSize() != boardSize) {
+			throw new IllegalArgumentException("location " + location
+					+ " is on a board of size " + location.getBoardSize()
+					+ ", not " + boardSize);
+		}
+		return location.getIndex();
+	}
+
+}
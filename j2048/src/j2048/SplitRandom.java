@@ -0,0 +1,237 @@
+package j2048;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fast, splittable source of pseudorandom numbers, using the SplitMix64
+ * algorithm. Each game should have its own generator, so that games running
+ * on different threads never share one, and so that a game can be played
+ * again exactly from its seed.
+ * <p>
+ * Unlike {@link Random}, from which it inherits its interface, this class
+ * keeps 64 bits of state and does no synchronization, so it is not
+ * thread-safe; that is the point. Use {@link #split()} to derive an
+ * independent generator for another thread or another purpose. The sequence
+ * produced from a given seed is fixed. {@link #nextInt()},
+ * {@link #nextInt(int)}, {@link #nextLong()} and {@link #split()} give the
+ * same results as the methods of {@code java.util.SplittableRandom} in later
+ * versions of Java.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class SplitRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The default increment, the odd integer closest to
+	 * {@code 2^64 / phi}.
+	 */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * The source of seeds for generators created without one.
+	 */
+	private static final AtomicLong SEEDER = new AtomicLong(
+			mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+
+	/**
+	 * Creates a new seed that is very likely to differ from every other seed
+	 * created by this method.
+	 * 
+	 * @return a new seed
+	 */
+	public static long newSeed() {
+		return mix64(SEEDER.getAndAdd(2 * GOLDEN_GAMMA));
+	}
+
+	/**
+	 * Scrambles a 64-bit value, using the finalizer of MurmurHash3 as
+	 * improved by David Stafford (variant 13).
+	 * 
+	 * @param z
+	 *            the value
+	 * @return the scrambled value
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Scrambles a 64-bit value into a 32-bit value, using variant 4 of David
+	 * Stafford's finalizer.
+	 * 
+	 * @param z
+	 *            the value
+	 * @return the scrambled value
+	 */
+	private static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+	/**
+	 * Scrambles a 64-bit value into an increment for a split generator. The
+	 * result is odd and has enough bit transitions to give a good sequence.
+	 * 
+	 * @param z
+	 *            the value
+	 * @return the increment
+	 */
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		final int transitions = Long.bitCount(z ^ (z >>> 1));
+		return transitions < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+
+	/**
+	 * The state of the generator, advanced by {@link #gamma} for each value.
+	 * This field has no initializer, because {@link Random}'s constructor
+	 * sets it through {@link #setSeed(long)} before initializers would run.
+	 */
+	private long state;
+
+	/**
+	 * The increment of {@link #state}, which is always odd.
+	 */
+	private long gamma;
+
+	/**
+	 * Creates a generator with a seed from {@link #newSeed()}.
+	 */
+	public SplitRandom() {
+		this(newSeed());
+	}
+
+	/**
+	 * Creates a generator with the given seed.
+	 * 
+	 * @param seed
+	 *            the seed
+	 */
+	public SplitRandom(long seed) {
+		super(seed);
+	}
+
+	/**
+	 * Creates a generator with the given state and increment.
+	 * 
+	 * @param state
+	 *            the initial state
+	 * @param gamma
+	 *            the increment, which must be odd
+	 */
+	private SplitRandom(long state, long gamma) {
+		super(0);
+		this.state = state;
+		this.gamma = gamma;
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public int nextInt() {
+		return mix32(state += gamma);
+	}
+
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("bound must be positive: "
+					+ bound);
+		}
+		// Reject the values that would make the lower results more likely,
+		// as java.util.SplittableRandom does.
+		int r = nextInt();
+		final int m = bound - 1;
+		if ((bound & m) == 0) {
+			return r & m;
+		}
+		int u = r >>> 1;
+		while (u + m - (r = u % bound) < 0) {
+			u = nextInt() >>> 1;
+		}
+		return r;
+	}
+
+	@Override
+	public long nextLong() {
+		return mix64(state += gamma);
+	}
+
+	/**
+	 * Sets the seed of this generator, which also resets its increment. Two
+	 * generators given the same seed produce the same sequence, whatever
+	 * they did before.
+	 * 
+	 * @param seed
+	 *            the seed
+	 */
+	@Override
+	public void setSeed(long seed) {
+		super.setSeed(seed);
+		state = seed;
+		gamma = GOLDEN_GAMMA;
+	}
+
+	/**
+	 * Gets the increment of this generator, so that its exact state can be
+	 * saved.
+	 * 
+	 * @return the increment, which is always odd
+	 */
+	long getGamma() {
+		return gamma;
+	}
+
+	/**
+	 * Gets the state of this generator, so that its exact state can be
+	 * saved.
+	 * 
+	 * @return the state
+	 */
+	long getState() {
+		return state;
+	}
+
+	/**
+	 * Puts this generator into a state saved with {@link #getState()} and
+	 * {@link #getGamma()}.
+	 * 
+	 * @param state
+	 *            the state
+	 * @param gamma
+	 *            the increment
+	 * @throws IllegalArgumentException
+	 *             if the increment is even
+	 */
+	void setState(long state, long gamma) throws IllegalArgumentException {
+		if ((gamma & 1) == 0) {
+			throw new IllegalArgumentException("gamma must be odd: " + gamma);
+		}
+		this.state = state;
+		this.gamma = gamma;
+	}
+
+	/**
+	 * Creates a new generator from this one. The new generator produces a
+	 * sequence that is, for practical purposes, independent of this one's,
+	 * and this generator's sequence is advanced. Splitting is deterministic:
+	 * two generators in the same state split into equal generators.
+	 * 
+	 * @return the new generator
+	 */
+	public SplitRandom split() {
+		return new SplitRandom(nextLong(), mixGamma(state += gamma));
+	}
+
+}
@@ -1,5 +1,8 @@
 package j2048;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A tile in a game of 2048.
  * 
@@ -13,6 +16,31 @@ public class Tile {
 	 */
 	private int value;
 
+	/**
+	 * The listeners to notify when the value changes, or {@code null} if no
+	 * listener has ever been added.
+	 */
+	private List<TileListener> listeners;
+
+	/**
+	 * Adds a listener to be notified when the value of this tile changes.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 * @throws IllegalArgumentException
+	 *             if {@code listener == null}
+	 */
+	public void addTileListener(TileListener listener)
+			throws IllegalArgumentException {
+		if (listener == null) {
+			throw new IllegalArgumentException("listener must not be null");
+		}
+		if (listeners == null) {
+			listeners = new ArrayList<>(2);
+		}
+		listeners.add(listener);
+	}
+
 	/**
 	 * Gets the current value of this tile.
 	 * 
@@ -23,13 +51,34 @@ public class Tile {
 	}
 
 	/**
-	 * Sets the value of this tile.
+	 * Removes a listener previously added with
+	 * {@link #addTileListener(TileListener)}. If the listener was added more
+	 * than once, only one registration is removed.
+	 * 
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public void removeTileListener(TileListener listener) {
+		if (listeners != null) {
+			listeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Sets the value of this tile, notifying any listeners if the value
+	 * changes.
 	 * 
 	 * @param value
 	 *            the new tile value
 	 */
 	public void setValue(int value) {
+		final int oldValue = this.value;
 		this.value = value;
+		if (listeners != null && oldValue != value) {
+			for (int i = 0; i < listeners.size(); i++) {
+				listeners.get(i).valueChanged(this, oldValue, value);
+			}
+		}
 	}
 
 }
@@ -1,5 +1,7 @@
 package j2048;
 
+import java.util.Random;
+
 /**
  * An interface to allow the game logic to interact with the outside world. This
  * interface provides methods to manipulate the current score and to end the
@@ -23,6 +25,23 @@ public interface TileGameContext {
 	public void addTile(Tile tile, BoardLocation location)
 			throws IllegalArgumentException;
 
+	/**
+	 * Commits a complete turn in one call. The whole batch is checked before
+	 * anything changes: if any step is invalid, or if the batch would make the
+	 * score negative, this method throws an exception and the game is left
+	 * exactly as it was. Otherwise the grid is updated, the batch's points are
+	 * added to the score, the game is won or lost if the batch says so, and
+	 * any view is given the whole turn at once.
+	 * 
+	 * @param batch
+	 *            the turn to commit
+	 * @throws IllegalArgumentException
+	 *             if {@code batch == null}, if any step of the batch is
+	 *             invalid (see {@link TurnBatch#applyTo(TileGrid)}), or if the
+	 *             new score would be negative
+	 */
+	public void commitTurn(TurnBatch batch) throws IllegalArgumentException;
+
 	/**
 	 * Gets the grid for this game. Modifications to the grid are not advised;
 	 * instead, use the mutator methods of this object.
@@ -31,6 +50,16 @@ public interface TileGameContext {
 	 */
 	public TileGrid getGrid();
 
+	/**
+	 * Gets the source of randomness for this game. Turn performers should use
+	 * it to choose new tiles, so that a game can be played again exactly from
+	 * its seed. The source belongs to this game alone and is not
+	 * thread-safe.
+	 * 
+	 * @return the source of randomness
+	 */
+	public Random getRandom();
+
 	/**
 	 * Gets the user's score in the game. This can be modified with
 	 * {@link #incrementScoreBy(int)} or {@link #setScore(int)}.
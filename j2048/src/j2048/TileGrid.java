@@ -1,12 +1,32 @@
 package j2048;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
- * A grid of tiles in a game of 2048.
+ * A grid of tiles in a game of 2048. The grid is square, and its size is fixed
+ * when it is created; all locations passed to a grid must belong to a board of
+ * the same size.
+ * <p>
+ * Tiles are stored in a flat array indexed by cell, with a reverse index from
+ * each tile to its cell, so {@link #at(BoardLocation)},
+ * {@link #put(BoardLocation, Tile)}, {@link #remove(BoardLocation)} and
+ * {@link #find(Tile)} all take constant time. The grid also keeps track of how
+ * many cells are occupied and of the highest tile value, including changes
+ * made through {@link Tile#setValue(int)} while a tile is in the grid, and
+ * passes those changes on to any listeners added with
+ * {@link #addTileListener(TileListener)}.
+ * <p>
+ * Occupied cells are also tracked in a bit mask, so the sets returned by
+ * {@link #getOccupiedLocations()} and {@link #getUnoccupiedLocations()} are
+ * compact, immutable {@link LocationSet}s. Each set is built at most once
+ * between changes to the grid, and repeated calls return the same instance.
+ * {@link #getAllOccupiedLocations()} and {@link #getAllUnoccupiedLocations()}
+ * return modifiable copies of these sets.
  * 
  * @author William Chargin
  * 
@@ -14,14 +34,123 @@ import java.util.Set;
 public class TileGrid {
 
 	/**
-	 * The map of board locations to the tile at a location.
+	 * The side length of this grid.
 	 */
-	private final Map<BoardLocation, Tile> tiles = new HashMap<>();
+	private final int size;
 
 	/**
-	 * Creates a tile grid.
+	 * The tile in each cell, or {@code null} for empty cells.
+	 */
+	private final Tile[] tiles;
+
+	/**
+	 * The cell index of each tile in the grid, compared by identity.
+	 */
+	private final Map<Tile, Integer> cells = new IdentityHashMap<>();
+
+	/**
+	 * The listener that tracks value changes of tiles in the grid.
+	 */
+	private final TileListener valueTracker = new TileListener() {
+		@Override
+		public void valueChanged(Tile tile, int oldValue, int newValue) {
+			if (newValue > maxValue) {
+				maxValue = newValue;
+			} else if (oldValue == maxValue && newValue < oldValue) {
+				maxValueStale = true;
+			}
+			if (tileListeners != null) {
+				for (int i = 0; i < tileListeners.size(); i++) {
+					tileListeners.get(i).valueChanged(tile, oldValue,
+							newValue);
+				}
+			}
+		}
+	};
+
+	/**
+	 * The listeners to notify when the value of a tile in the grid changes,
+	 * or {@code null} if no listener has ever been added.
+	 */
+	private List<TileListener> tileListeners;
+
+	/**
+	 * The number of occupied cells.
+	 */
+	private int occupied;
+
+	/**
+	 * The bit mask of occupied cells, in the format used by
+	 * {@link LocationSet}.
+	 */
+	private final long[] occupancy;
+
+	/**
+	 * The set of occupied locations, or {@code null} if the grid has changed
+	 * since it was last built.
+	 */
+	private LocationSet occupiedSet;
+
+	/**
+	 * The set of unoccupied locations, or {@code null} if the grid has changed
+	 * since it was last built.
+	 */
+	private LocationSet unoccupiedSet;
+
+	/**
+	 * The highest tile value in the grid, unless {@link #maxValueStale} is
+	 * set.
+	 */
+	private int maxValue;
+
+	/**
+	 * Whether the tile with the highest value has been removed or reduced
+	 * since {@link #maxValue} was last computed.
+	 */
+	private boolean maxValueStale;
+
+	/**
+	 * Creates a tile grid of the default size, {@value BoardLocation#BOARD_SIZE}
+	 * cells on a side.
 	 */
 	public TileGrid() {
+		this(BoardLocation.BOARD_SIZE);
+	}
+
+	/**
+	 * Creates a tile grid of the given size.
+	 * 
+	 * @param size
+	 *            the side length of the grid
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}
+	 */
+	public TileGrid(int size) throws IllegalArgumentException {
+		BoardLocation.checkBoardSize(size);
+		this.size = size;
+		this.tiles = new Tile[size * size];
+		this.occupancy = new long[LocationSet.wordsFor(size)];
+	}
+
+	/**
+	 * Adds a listener to be notified when the value of any tile in this grid
+	 * changes. The listener is not notified of changes to tiles that are not
+	 * in the grid.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 * @throws IllegalArgumentException
+	 *             if {@code listener == null}
+	 */
+	public void addTileListener(TileListener listener)
+			throws IllegalArgumentException {
+		if (listener == null) {
+			throw new IllegalArgumentException("listener must not be null");
+		}
+		if (tileListeners == null) {
+			tileListeners = new ArrayList<>(2);
+		}
+		tileListeners.add(listener);
 	}
 
 	/**
@@ -32,13 +161,38 @@ public class TileGrid {
 	 * @return the tile at the given location, or {@code null} if no such tile
 	 *         exists
 	 * @throws IllegalArgumentException
-	 *             if {@code location == null}
+	 *             if {@code location == null}, or if the location is on a
+	 *             board of a different size
 	 */
 	public Tile at(BoardLocation location) throws IllegalArgumentException {
-		if (location == null) {
-			throw new IllegalArgumentException("location must not be null");
+		return tiles[indexOf(location)];
+	}
+
+	/**
+	 * Determines whether any move is possible on this grid, that is, whether
+	 * it has an empty cell or two adjacent tiles of the same value. A game
+	 * whose grid has no possible move is lost.
+	 * 
+	 * @return {@code true} if some move would change this grid
+	 */
+	public boolean canMove() {
+		if (occupied < tiles.length) {
+			return true;
+		}
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				final int value = tiles[y * size + x].getValue();
+				if (x + 1 < size
+						&& tiles[y * size + x + 1].getValue() == value) {
+					return true;
+				}
+				if (y + 1 < size
+						&& tiles[(y + 1) * size + x].getValue() == value) {
+					return true;
+				}
+			}
 		}
-		return tiles.get(location);
+		return false;
 	}
 
 	/**
@@ -55,12 +209,8 @@ public class TileGrid {
 		if (tile == null) {
 			throw new IllegalArgumentException("tile must not be null");
 		}
-		for (Map.Entry<BoardLocation, Tile> entry : tiles.entrySet()) {
-			if (entry.getValue() == tile) {
-				return entry.getKey();
-			}
-		}
-		return null;
+		final Integer cell = cells.get(tile);
+		return cell == null ? null : BoardLocation.fromIndex(cell, size);
 	}
 
 	/**
@@ -68,9 +218,10 @@ public class TileGrid {
 	 * the returned set will not affect this grid.
 	 * 
 	 * @return a set of all occupied locations in this tile grid
+	 * @see #getOccupiedLocations()
 	 */
 	public Set<BoardLocation> getAllOccupiedLocations() {
-		return new HashSet<>(tiles.keySet());
+		return new HashSet<>(getOccupiedLocations());
 	}
 
 	/**
@@ -78,40 +229,125 @@ public class TileGrid {
 	 * to the returned set will not affect this grid.
 	 * 
 	 * @return a set of all unoccupied locations in this tile grid
+	 * @see #getUnoccupiedLocations()
 	 */
 	public Set<BoardLocation> getAllUnoccupiedLocations() {
-		Set<BoardLocation> unoccupied = new HashSet<>();
-		Set<BoardLocation> occupied = tiles.keySet();
-		for (int i = 0; i < BoardLocation.BOARD_SIZE; i++) {
-			for (int j = 0; j < BoardLocation.BOARD_SIZE; j++) {
-				BoardLocation loc = new BoardLocation(i, j);
-				if (!occupied.contains(loc)) {
-					unoccupied.add(loc);
+		return new HashSet<>(getUnoccupiedLocations());
+	}
+
+	/**
+	 * Gets the highest value of any tile in this grid.
+	 * 
+	 * @return the highest tile value, or {@code 0} if the grid is empty
+	 */
+	public int getMaxValue() {
+		if (maxValueStale) {
+			maxValue = 0;
+			for (Tile tile : tiles) {
+				if (tile != null && tile.getValue() > maxValue) {
+					maxValue = tile.getValue();
 				}
 			}
+			maxValueStale = false;
+		}
+		return maxValue;
+	}
+
+	/**
+	 * Gets the set of occupied locations in this tile grid. The returned set
+	 * is immutable, and does not change when this grid changes. Unlike
+	 * {@link #getAllOccupiedLocations()}, this does not copy the set, and
+	 * allocates nothing if the grid has not changed since the last call.
+	 * 
+	 * @return the set of occupied locations
+	 */
+	public LocationSet getOccupiedLocations() {
+		if (occupiedSet == null) {
+			occupiedSet = new LocationSet(size, occupancy.clone());
+		}
+		return occupiedSet;
+	}
+
+	/**
+	 * Gets the side length of this grid.
+	 * 
+	 * @return the number of cells along each side
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of occupied locations in this tile grid.
+	 * 
+	 * @return the number of tiles in the grid
+	 */
+	public int getOccupiedCount() {
+		return occupied;
+	}
+
+	/**
+	 * Gets the number of unoccupied locations in this tile grid.
+	 * 
+	 * @return the number of empty cells in the grid
+	 */
+	public int getUnoccupiedCount() {
+		return tiles.length - occupied;
+	}
+
+	/**
+	 * Gets the set of unoccupied locations in this tile grid. The returned set
+	 * is immutable, and does not change when this grid changes. Unlike
+	 * {@link #getAllUnoccupiedLocations()}, this does not copy the set, and
+	 * allocates nothing if the grid has not changed since the last call.
+	 * 
+	 * @return the set of unoccupied locations
+	 */
+	public LocationSet getUnoccupiedLocations() {
+		if (unoccupiedSet == null) {
+			unoccupiedSet = getOccupiedLocations().complement();
 		}
-		return unoccupied;
+		return unoccupiedSet;
 	}
 
 	/**
 	 * Puts the given tile at the given location. Any previous tile at this
-	 * location will be removed.
+	 * location will be removed. A tile can occupy only one location, so if the
+	 * tile is already elsewhere in this grid, it is moved.
 	 * 
 	 * @param location
 	 *            the location at which to place a tile
 	 * @param tile
 	 *            the tile to place
 	 * @throws IllegalArgumentException
-	 *             if {@code location == null} or {@code tile == null}
+	 *             if {@code location == null} or {@code tile == null}, or if
+	 *             the location is on a board of a different size
 	 */
 	public void put(BoardLocation location, Tile tile) {
-		if (location == null) {
-			throw new IllegalArgumentException("location must not be null");
-		}
+		final int index = indexOf(location);
 		if (tile == null) {
 			throw new IllegalArgumentException("tile must not be null");
 		}
-		tiles.put(location, tile);
+		final Tile previous = tiles[index];
+		if (previous == tile) {
+			return;
+		}
+		if (previous != null) {
+			remove(index);
+		}
+		final Integer oldIndex = cells.put(tile, index);
+		if (oldIndex != null) {
+			tiles[oldIndex] = null;
+			setOccupied(oldIndex, false);
+		} else {
+			tile.addTileListener(valueTracker);
+			occupied++;
+			if (tile.getValue() > maxValue) {
+				maxValue = tile.getValue();
+			}
+		}
+		tiles[index] = tile;
+		setOccupied(index, true);
 	}
 
 	/**
@@ -122,13 +358,89 @@ public class TileGrid {
 	 * @return the tile that was removed, or {@code null} if no tile was at the
 	 *         given location
 	 * @throws IllegalArgumentException
-	 *             if {@code location == null}
+	 *             if {@code location == null}, or if the location is on a
+	 *             board of a different size
 	 */
 	public Tile remove(BoardLocation location) throws IllegalArgumentException {
+		return remove(indexOf(location));
+	}
+
+	/**
+	 * Removes a listener previously added with
+	 * {@link #addTileListener(TileListener)}.
+	 * 
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public void removeTileListener(TileListener listener) {
+		if (tileListeners != null) {
+			tileListeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Gets the cell index of a location in this grid.
+	 * 
+	 * @param location
+	 *            the location
+	 * @return the index of the location's cell in {@link #tiles}
+	 * @throws IllegalArgumentException
+	 *             if {@code location == null}, or if the location is on a
+	 *             board of a different size
+	 */
+	private int indexOf(BoardLocation location)
+			throws IllegalArgumentException {
 		if (location == null) {
 			throw new IllegalArgumentException("location must not be null");
 		}
-		return tiles.remove(location);
+		if (location.getBoardSize() != size) {
+			throw new IllegalArgumentException("location " + location
+					+ " is on a board of size " + location.getBoardSize()
+					+ ", not " + size);
+		}
+		return location.getIndex();
+	}
+
+	/**
+	 * Removes the tile in the given cell.
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @return the tile that was removed, or {@code null} if the cell was empty
+	 */
+	private Tile remove(int index) {
+		final Tile tile = tiles[index];
+		if (tile == null) {
+			return null;
+		}
+		tiles[index] = null;
+		setOccupied(index, false);
+		cells.remove(tile);
+		tile.removeTileListener(valueTracker);
+		occupied--;
+		if (tile.getValue() >= maxValue) {
+			maxValueStale = true;
+		}
+		return tile;
+	}
+
+	/**
+	 * Updates the occupancy bit of the given cell, and discards the cached
+	 * location sets.
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @param value
+	 *            whether the cell is now occupied
+	 */
+	private void setOccupied(int index, boolean value) {
+		if (value) {
+			occupancy[index / Long.SIZE] |= 1L << index;
+		} else {
+			occupancy[index / Long.SIZE] &= ~(1L << index);
+		}
+		occupiedSet = null;
+		unoccupiedSet = null;
 	}
 
 }
@@ -0,0 +1,24 @@
+package j2048;
+
+/**
+ * A listener that is notified when the value of a {@link Tile} changes.
+ * 
+ * @author William Chargin
+ * 
+ */
+public interface TileListener {
+
+	/**
+	 * Invoked after the value of a tile changes. This is not invoked if the
+	 * tile is set to the value it already has.
+	 * 
+	 * @param tile
+	 *            the tile whose value changed
+	 * @param oldValue
+	 *            the previous value of the tile
+	 * @param newValue
+	 *            the current value of the tile
+	 */
+	public void valueChanged(Tile tile, int oldValue, int newValue);
+
+}
@@ -0,0 +1,516 @@
+package j2048;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A complete turn, built up as a sequence of tile movements, merges and
+ * spawns, together with the points scored and whether the turn wins or loses
+ * the game. A batch is committed in one call to
+ * {@link TileGameContext#commitTurn(TurnBatch)}.
+ * <p>
+ * The steps of a batch are applied in order, with the same meaning as the
+ * corresponding methods of {@link TileGameContext}: a tile may move several
+ * times, and later steps see the positions left by earlier ones. When a batch
+ * is {@linkplain #applyTo(TileGrid) applied to a grid}, every step is checked
+ * before the grid is changed, so a batch that fails leaves the grid exactly
+ * as it was.
+ * <p>
+ * This class is not thread-safe.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class TurnBatch {
+
+	/**
+	 * The kinds of step in a batch.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	public static enum Kind {
+
+		/**
+		 * A tile moves some number of cells in a direction.
+		 */
+		MOVE,
+
+		/**
+		 * A tile moves onto another tile, which disappears, and takes a new
+		 * value.
+		 */
+		MERGE,
+
+		/**
+		 * A new tile appears in an empty cell.
+		 */
+		SPAWN;
+
+	}
+
+	/**
+	 * A single step of a batch. This class is immutable.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	public static final class Step {
+
+		/**
+		 * The kind of this step.
+		 */
+		private final Kind kind;
+
+		/**
+		 * The tile that moves or spawns.
+		 */
+		private final Tile tile;
+
+		/**
+		 * The tile that is merged into, or {@code null} if this step is not a
+		 * merge.
+		 */
+		private final Tile target;
+
+		/**
+		 * The direction of movement, or {@code null} for a spawn.
+		 */
+		private final Direction direction;
+
+		/**
+		 * The number of cells moved, or {@code 0} for a spawn.
+		 */
+		private final int count;
+
+		/**
+		 * The value of the tile after a merge, or {@code 0} if this step is
+		 * not a merge.
+		 */
+		private final int newValue;
+
+		/**
+		 * The location of a spawned tile, or {@code null} if this step is not
+		 * a spawn.
+		 */
+		private final BoardLocation location;
+
+		/**
+		 * Creates a step.
+		 * 
+		 * @param kind
+		 *            the kind of step
+		 * @param tile
+		 *            the tile that moves or spawns
+		 * @param target
+		 *            the tile merged into, if any
+		 * @param direction
+		 *            the direction of movement, if any
+		 * @param count
+		 *            the number of cells moved
+		 * @param newValue
+		 *            the value after a merge
+		 * @param location
+		 *            the location of a spawned tile, if any
+		 */
+		private Step(Kind kind, Tile tile, Tile target, Direction direction,
+				int count, int newValue, BoardLocation location) {
+			this.kind = kind;
+			this.tile = tile;
+			this.target = target;
+			this.direction = direction;
+			this.count = count;
+			this.newValue = newValue;
+			this.location = location;
+		}
+
+		/**
+		 * Gets the number of cells moved.
+		 * 
+		 * @return the movement distance, or {@code 0} for a spawn
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Gets the direction of movement.
+		 * 
+		 * @return the direction, or {@code null} for a spawn
+		 */
+		public Direction getDirection() {
+			return direction;
+		}
+
+		/**
+		 * Gets the kind of this step.
+		 * 
+		 * @return the kind
+		 */
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * Gets the location of a spawned tile.
+		 * 
+		 * @return the location, or {@code null} if this step is not a spawn
+		 */
+		public BoardLocation getLocation() {
+			return location;
+		}
+
+		/**
+		 * Gets the value of the moving tile after a merge.
+		 * 
+		 * @return the new value, or {@code 0} if this step is not a merge
+		 */
+		public int getNewValue() {
+			return newValue;
+		}
+
+		/**
+		 * Gets the tile merged into, which disappears.
+		 * 
+		 * @return the target tile, or {@code null} if this step is not a merge
+		 */
+		public Tile getTarget() {
+			return target;
+		}
+
+		/**
+		 * Gets the tile that moves or spawns.
+		 * 
+		 * @return the tile
+		 */
+		public Tile getTile() {
+			return tile;
+		}
+
+	}
+
+	/**
+	 * The steps of this batch, in order.
+	 */
+	private final List<Step> steps = new ArrayList<>();
+
+	/**
+	 * The number of points scored in this batch.
+	 */
+	private int points;
+
+	/**
+	 * Whether this batch wins the game.
+	 */
+	private boolean won;
+
+	/**
+	 * Whether this batch loses the game.
+	 */
+	private boolean lost;
+
+	/**
+	 * Adds points to the score of this batch.
+	 * 
+	 * @param value
+	 *            the number of points to add
+	 * @return this batch
+	 */
+	public TurnBatch addPoints(int value) {
+		points += value;
+		return this;
+	}
+
+	/**
+	 * Applies the steps of this batch to the given grid. Every step is checked
+	 * first, and if any step is invalid, the grid is not changed at all. This
+	 * does not affect the score or the outcome of the game; those are up to
+	 * the {@link TileGameContext}.
+	 * 
+	 * @param grid
+	 *            the grid to update
+	 * @throws IllegalArgumentException
+	 *             if {@code grid == null}, if a step moves a tile that is
+	 *             not in the grid or moves it off the board, if a merge does
+	 *             not land on its target, or if a spawn is on an occupied cell
+	 *             or adds a tile that is already in the grid
+	 */
+	public void applyTo(TileGrid grid) throws IllegalArgumentException {
+		applyTo(grid, null);
+	}
+
+	/**
+	 * Applies the steps of this batch to the given grid, as with
+	 * {@link #applyTo(TileGrid)}, and reports the changes made. If the batch
+	 * is valid, one {@link GameEvent} per step is added to the given list,
+	 * plus a {@link GameEvent.Type#REMOVED} event for any tile pushed off its
+	 * cell by a plain move. If the batch is invalid, the list is not changed.
+	 * 
+	 * @param grid
+	 *            the grid to update
+	 * @param events
+	 *            the list to which to add events, or {@code null} if events
+	 *            are not needed
+	 * @throws IllegalArgumentException
+	 *             in the same cases as {@link #applyTo(TileGrid)}
+	 */
+	public void applyTo(TileGrid grid, List<GameEvent> events)
+			throws IllegalArgumentException {
+		if (grid == null) {
+			throw new IllegalArgumentException("grid must not be null");
+		}
+		final int size = grid.getSize();
+		final Tile[] cells = new Tile[size * size];
+		final Map<Tile, BoardLocation> positions = new IdentityHashMap<>();
+		for (BoardLocation loc : grid.getOccupiedLocations()) {
+			cells[loc.getIndex()] = grid.at(loc);
+			positions.put(cells[loc.getIndex()], loc);
+		}
+		final List<GameEvent> pending = events == null ? null
+				: new ArrayList<GameEvent>(steps.size());
+
+		// Check every step against a scratch copy of the grid.
+		for (Step step : steps) {
+			switch (step.kind) {
+			case SPAWN:
+				if (step.location.getBoardSize() != size) {
+					throw new IllegalArgumentException("location "
+							+ step.location + " is on a board of size "
+							+ step.location.getBoardSize() + ", not " + size);
+				}
+				if (cells[step.location.getIndex()] != null) {
+					throw new IllegalArgumentException("location "
+							+ step.location + " is already occupied");
+				}
+				if (positions.containsKey(step.tile)) {
+					throw new IllegalArgumentException(
+							"tile is already in grid");
+				}
+				cells[step.location.getIndex()] = step.tile;
+				positions.put(step.tile, step.location);
+				if (pending != null) {
+					pending.add(GameEvent.spawned(step.tile, step.location,
+							step.tile.getValue()));
+				}
+				break;
+			case MOVE:
+			case MERGE:
+				final BoardLocation from = positions.get(step.tile);
+				if (from == null) {
+					throw new IllegalArgumentException("tile must be in grid");
+				}
+				BoardLocation to = from;
+				for (int i = 0; i < step.count; i++) {
+					to = to.getAdjacentLocation(step.direction);
+					if (to == null) {
+						throw new IllegalArgumentException(
+								"Trying to move too far: " + step.count);
+					}
+				}
+				final Tile displaced = cells[to.getIndex()];
+				if (step.kind == Kind.MERGE && displaced != step.target) {
+					throw new IllegalArgumentException("merge from " + from
+							+ " does not land on its target");
+				}
+				if (displaced != null && displaced != step.tile) {
+					positions.remove(displaced);
+				}
+				cells[from.getIndex()] = null;
+				cells[to.getIndex()] = step.tile;
+				positions.put(step.tile, to);
+				if (pending != null) {
+					if (step.kind == Kind.MERGE) {
+						pending.add(GameEvent.merged(step.tile, displaced, from,
+								to, step.newValue));
+					} else {
+						if (displaced != null && displaced != step.tile) {
+							pending.add(GameEvent.removed(displaced, to));
+						}
+						pending.add(GameEvent.moved(step.tile, from, to));
+					}
+				}
+				break;
+			default:
+				throw new AssertionError("Unexpected kind " + step.kind);
+			}
+		}
+
+		// The steps are valid, so update the grid in one pass over the cells.
+		for (int i = 0; i < cells.length; i++) {
+			final BoardLocation loc = BoardLocation.fromIndex(i, size);
+			final Tile current = grid.at(loc);
+			if (current != null && !positions.containsKey(current)) {
+				grid.remove(loc);
+			}
+		}
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] != null) {
+				grid.put(BoardLocation.fromIndex(i, size), cells[i]);
+			}
+		}
+		for (Step step : steps) {
+			if (step.kind == Kind.MERGE) {
+				step.tile.setValue(step.newValue);
+			}
+		}
+		if (events != null) {
+			events.addAll(pending);
+		}
+	}
+
+	/**
+	 * Gets the number of points scored in this batch.
+	 * 
+	 * @return the points scored
+	 */
+	public int getPoints() {
+		return points;
+	}
+
+	/**
+	 * Gets the steps of this batch.
+	 * 
+	 * @return an unmodifiable list of the steps, in order
+	 */
+	public List<Step> getSteps() {
+		return Collections.unmodifiableList(steps);
+	}
+
+	/**
+	 * Determines whether this batch loses the game.
+	 * 
+	 * @return {@code true} if {@link #lose()} has been called
+	 */
+	public boolean isLost() {
+		return lost;
+	}
+
+	/**
+	 * Determines whether this batch wins the game.
+	 * 
+	 * @return {@code true} if {@link #win()} has been called
+	 */
+	public boolean isWon() {
+		return won;
+	}
+
+	/**
+	 * Marks this batch as losing the game.
+	 * 
+	 * @return this batch
+	 */
+	public TurnBatch lose() {
+		lost = true;
+		return this;
+	}
+
+	/**
+	 * Adds a merge of the mover tile onto the target tile, with the same
+	 * meaning as
+	 * {@link TileGameContext#mergeTiles(Tile, Tile, Direction, int, int)}.
+	 * The mover must land on the target's cell.
+	 * 
+	 * @param target
+	 *            the tile that will disappear after the merge is completed
+	 * @param mover
+	 *            the tile that will move onto the target tile
+	 * @param direction
+	 *            the direction of movement
+	 * @param movementSteps
+	 *            the number of steps the mover tile should move
+	 * @param newValue
+	 *            the value of the merged tile
+	 * @return this batch
+	 * @throws IllegalArgumentException
+	 *             if any argument is {@code null}, or if
+	 *             {@code movementSteps < 1}
+	 */
+	public TurnBatch merge(Tile target, Tile mover, Direction direction,
+			int movementSteps, int newValue) throws IllegalArgumentException {
+		if (target == null) {
+			throw new IllegalArgumentException("tile must not be null");
+		}
+		if (mover == null) {
+			throw new IllegalArgumentException("tile must not be null");
+		}
+		if (direction == null) {
+			throw new IllegalArgumentException("direction must not be null");
+		}
+		if (movementSteps < 1) {
+			throw new IllegalArgumentException(
+					"movementSteps must be positive: " + movementSteps);
+		}
+		steps.add(new Step(Kind.MERGE, mover, target, direction,
+				movementSteps, newValue, null));
+		return this;
+	}
+
+	/**
+	 * Adds a movement of the given tile, with the same meaning as
+	 * {@link TileGameContext#moveTile(Tile, Direction, int)}.
+	 * 
+	 * @param tile
+	 *            the tile to move
+	 * @param direction
+	 *            the direction in which to move the tile
+	 * @param count
+	 *            the number of spaces to move the tile
+	 * @return this batch
+	 * @throws IllegalArgumentException
+	 *             if either object argument is {@code null}, or if
+	 *             {@code count} is negative
+	 */
+	public TurnBatch move(Tile tile, Direction direction, int count)
+			throws IllegalArgumentException {
+		if (tile == null) {
+			throw new IllegalArgumentException("tile must not be null");
+		}
+		if (direction == null) {
+			throw new IllegalArgumentException("direction must not be null");
+		}
+		if (count < 0) {
+			throw new IllegalArgumentException("count must not be negative: "
+					+ count);
+		}
+		steps.add(new Step(Kind.MOVE, tile, null, direction, count, 0, null));
+		return this;
+	}
+
+	/**
+	 * Adds a new tile at the given location, which must be empty when the
+	 * step is applied.
+	 * 
+	 * @param tile
+	 *            the tile to add
+	 * @param location
+	 *            the location at which to add the tile
+	 * @return this batch
+	 * @throws IllegalArgumentException
+	 *             if either argument is {@code null}
+	 */
+	public TurnBatch spawn(Tile tile, BoardLocation location)
+			throws IllegalArgumentException {
+		if (tile == null) {
+			throw new IllegalArgumentException("tile must not be null");
+		}
+		if (location == null) {
+			throw new IllegalArgumentException("location must not be null");
+		}
+		steps.add(new Step(Kind.SPAWN, tile, null, null, 0, 0, location));
+		return this;
+	}
+
+	/**
+	 * Marks this batch as winning the game.
+	 * 
+	 * @return this batch
+	 */
+	public TurnBatch win() {
+		won = true;
+		return this;
+	}
+
+}
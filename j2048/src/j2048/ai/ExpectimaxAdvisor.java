@@ -0,0 +1,491 @@
+package j2048.ai;
+
+import j2048.Direction;
+import j2048.TileGrid;
+import j2048.engine.Bitboard;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A {@link MoveAdvisor} that searches the game tree with depth-limited
+ * expectimax.
+ * <p>
+ * Player nodes take the best of the four moves. Chance nodes average over
+ * every empty cell receiving a {@code 2} (with probability 0.9) or a {@code 4}
+ * (with probability 0.1). Branches whose cumulative probability falls below a
+ * threshold are cut off and evaluated with a static {@link Heuristic}.
+ * <p>
+ * The search runs on a {@link ForkJoinPool}: each root move is a separate
+ * task, and chance nodes near the root with enough empty cells are split into
+ * one task per cell. Chance node values are kept in a
+ * {@link TranspositionTable} shared by all tasks, so positions reached by
+ * different move orders are searched only once. The table outlives each
+ * search, so that the next search can reuse the subtrees of this one.
+ * Advisors that are not given a table share one, which is allocated when the
+ * first of them is created and sized by the {@value #TABLE_PROPERTY} system
+ * property.
+ * <p>
+ * Each advisor has its own pool of search threads, which is shut down by
+ * {@link #close()}; a closed advisor cannot advise.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class ExpectimaxAdvisor implements MoveAdvisor, Closeable {
+
+	/**
+	 * The default search depth, in player moves.
+	 */
+	public static final int DEFAULT_DEPTH = 3;
+
+	/**
+	 * The system property that sets the size of the transposition table
+	 * shared by advisors that are not given one, in gigabytes.
+	 */
+	public static final String TABLE_PROPERTY = "j2048.ai.tableGigabytes";
+
+	/**
+	 * The size of the transposition table, in gigabytes, if the
+	 * {@value #TABLE_PROPERTY} property is not set.
+	 */
+	public static final double DEFAULT_TABLE_GIGABYTES = 0.0625;
+
+	/**
+	 * The cumulative probability below which a branch is not searched further.
+	 */
+	private static final double PROBABILITY_THRESHOLD = 0.0001;
+
+	/**
+	 * The smallest remaining depth at which a chance node is split into
+	 * parallel tasks.
+	 */
+	private static final int SPLIT_DEPTH = 2;
+
+	/**
+	 * The smallest number of empty cells for which a chance node is split into
+	 * parallel tasks.
+	 */
+	private static final int SPLIT_CELLS = 4;
+
+	/**
+	 * The transposition table shared by advisors that are not given one, or
+	 * {@code null} if it has not been needed yet.
+	 */
+	private static TranspositionTable sharedTable;
+
+	/**
+	 * Gets the transposition table shared by advisors that are not given
+	 * one, creating it with the size given by the {@value #TABLE_PROPERTY}
+	 * property if this is the first call.
+	 * 
+	 * @return the shared table
+	 * @throws IllegalArgumentException
+	 *             if the property is not a valid size
+	 */
+	private static synchronized TranspositionTable defaultTable()
+			throws IllegalArgumentException {
+		if (sharedTable == null) {
+			final String size = System.getProperty(TABLE_PROPERTY);
+			sharedTable = TranspositionTable.ofGigabytes(size == null
+					? DEFAULT_TABLE_GIGABYTES : Double.parseDouble(size));
+		}
+		return sharedTable;
+	}
+
+	/**
+	 * The state of a single call to {@link ExpectimaxAdvisor#advise(TileGrid)}.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	private static final class Search {
+
+		/**
+		 * The table of positions searched so far, shared with other searches.
+		 */
+		private final TranspositionTable table;
+
+		/**
+		 * Creates the state for a new search.
+		 * 
+		 * @param table
+		 *            the table of positions searched so far
+		 */
+		private Search(TranspositionTable table) {
+			this.table = table;
+		}
+
+		/**
+		 * Computes the expected value of a position where a tile is about to
+		 * spawn.
+		 * 
+		 * @param board
+		 *            the packed board
+		 * @param depth
+		 *            the number of player moves left to search
+		 * @param probability
+		 *            the cumulative probability of reaching this position
+		 * @return the expected value
+		 */
+		private double chance(long board, int depth, double probability) {
+			if (depth <= 0 || probability < PROBABILITY_THRESHOLD) {
+				return Heuristic.evaluate(board);
+			}
+			final long entry = table.probe(board);
+			if (entry != TranspositionTable.MISS
+					&& TranspositionTable.depthOf(entry) >= depth) {
+				return TranspositionTable.valueOf(entry);
+			}
+
+			final int empty = Bitboard.countEmpty(board);
+			final double cellProbability = probability / empty;
+			double total = 0;
+			if (depth >= SPLIT_DEPTH && empty >= SPLIT_CELLS) {
+				final List<SpawnTask> tasks = new ArrayList<>(empty);
+				for (int k = 0; k < empty; k++) {
+					tasks.add(new SpawnTask(this, board,
+							Bitboard.emptyCellIndex(board, k), depth,
+							cellProbability));
+				}
+				for (SpawnTask task : ForkJoinTask.invokeAll(tasks)) {
+					total += task.join();
+				}
+			} else {
+				for (int k = 0; k < empty; k++) {
+					total += spawn(board, Bitboard.emptyCellIndex(board, k),
+							depth, cellProbability);
+				}
+			}
+			final double value = total / empty;
+			table.store(board, depth, value, null);
+			return value;
+		}
+
+		/**
+		 * Computes the value of a position where the player is about to move.
+		 * 
+		 * @param board
+		 *            the packed board
+		 * @param depth
+		 *            the number of player moves left to search, including
+		 *            this one
+		 * @param probability
+		 *            the cumulative probability of reaching this position
+		 * @return the value of the best move, or {@code 0} if no move is
+		 *         possible
+		 */
+		private double max(long board, int depth, double probability) {
+			double best = 0;
+			for (Direction direction : Direction.values()) {
+				final long moved = Bitboard.move(board, direction);
+				if (moved != board) {
+					best = Math.max(best,
+							chance(moved, depth - 1, probability));
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Computes the expected value of spawning a tile in one cell.
+		 * 
+		 * @param board
+		 *            the packed board
+		 * @param index
+		 *            the index of the empty cell
+		 * @param depth
+		 *            the number of player moves left to search
+		 * @param probability
+		 *            the cumulative probability of choosing this cell
+		 * @return the expected value, weighted over the possible tiles
+		 */
+		private double spawn(long board, int index, int depth,
+				double probability) {
+			return 0.9
+					* max(Bitboard.withExponent(board, index, 1), depth,
+							probability * 0.9)
+					+ 0.1
+					* max(Bitboard.withExponent(board, index, 2), depth,
+							probability * 0.1);
+		}
+
+	}
+
+	/**
+	 * A task that evaluates one root move.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	private static final class MoveTask extends RecursiveTask<Double> {
+
+		/**
+		 * 
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The search this task belongs to.
+		 */
+		private final Search search;
+
+		/**
+		 * The board after the move, before a tile spawns.
+		 */
+		private final long board;
+
+		/**
+		 * The number of player moves left to search.
+		 */
+		private final int depth;
+
+		/**
+		 * Creates a task to evaluate a root move.
+		 * 
+		 * @param search
+		 *            the search this task belongs to
+		 * @param board
+		 *            the board after the move
+		 * @param depth
+		 *            the number of player moves left to search
+		 */
+		private MoveTask(Search search, long board, int depth) {
+			this.search = search;
+			this.board = board;
+			this.depth = depth;
+		}
+
+		@Override
+		protected Double compute() {
+			return search.chance(board, depth, 1.0);
+		}
+
+	}
+
+	/**
+	 * A task that evaluates one cell of a chance node.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	private static final class SpawnTask extends RecursiveTask<Double> {
+
+		/**
+		 * 
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The search this task belongs to.
+		 */
+		private final Search search;
+
+		/**
+		 * The board before the tile spawns.
+		 */
+		private final long board;
+
+		/**
+		 * The index of the cell that receives the tile.
+		 */
+		private final int index;
+
+		/**
+		 * The number of player moves left to search.
+		 */
+		private final int depth;
+
+		/**
+		 * The cumulative probability of choosing this cell.
+		 */
+		private final double probability;
+
+		/**
+		 * Creates a task to evaluate one cell of a chance node.
+		 * 
+		 * @param search
+		 *            the search this task belongs to
+		 * @param board
+		 *            the board before the tile spawns
+		 * @param index
+		 *            the index of the empty cell
+		 * @param depth
+		 *            the number of player moves left to search
+		 * @param probability
+		 *            the cumulative probability of choosing this cell
+		 */
+		private SpawnTask(Search search, long board, int index, int depth,
+				double probability) {
+			this.search = search;
+			this.board = board;
+			this.index = index;
+			this.depth = depth;
+			this.probability = probability;
+		}
+
+		@Override
+		protected Double compute() {
+			return search.spawn(board, index, depth, probability);
+		}
+
+	}
+
+	/**
+	 * The pool on which searches run.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The search depth, in player moves.
+	 */
+	private final int depth;
+
+	/**
+	 * The table of positions searched so far.
+	 */
+	private final TranspositionTable table;
+
+	/**
+	 * Creates an advisor that searches to the default depth, using one thread
+	 * per available processor and the shared transposition table.
+	 */
+	public ExpectimaxAdvisor() {
+		this(DEFAULT_DEPTH, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates an advisor with the given search depth and parallelism, using
+	 * the shared transposition table.
+	 * 
+	 * @param depth
+	 *            the number of player moves to look ahead, including the
+	 *            advised move
+	 * @param parallelism
+	 *            the number of threads that search
+	 * @throws IllegalArgumentException
+	 *             if {@code depth < 1}, if {@code parallelism < 1}, if
+	 *             {@code depth} is greater than
+	 *             {@link TranspositionTable#MAX_DEPTH}, or if the
+	 *             {@value #TABLE_PROPERTY} property is not a valid size
+	 */
+	public ExpectimaxAdvisor(int depth, int parallelism)
+			throws IllegalArgumentException {
+		this(depth, parallelism, defaultTable());
+	}
+
+	/**
+	 * Creates an advisor with the given search depth, parallelism and
+	 * transposition table. The table may be shared with other advisors.
+	 * 
+	 * @param depth
+	 *            the number of player moves to look ahead, including the
+	 *            advised move
+	 * @param parallelism
+	 *            the number of threads that search
+	 * @param table
+	 *            the table of searched positions
+	 * @throws IllegalArgumentException
+	 *             if {@code depth < 1}, if {@code parallelism < 1}, if
+	 *             {@code depth} is greater than
+	 *             {@link TranspositionTable#MAX_DEPTH}, or if
+	 *             {@code table == null}
+	 */
+	public ExpectimaxAdvisor(int depth, int parallelism,
+			TranspositionTable table) throws IllegalArgumentException {
+		if (depth < 1 || depth > TranspositionTable.MAX_DEPTH) {
+			throw new IllegalArgumentException("depth out of range: " + depth);
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive: "
+					+ parallelism);
+		}
+		if (table == null) {
+			throw new IllegalArgumentException("table must not be null");
+		}
+		this.depth = depth;
+		this.pool = new ForkJoinPool(parallelism);
+		this.table = table;
+	}
+
+	@Override
+	public Direction advise(TileGrid grid) throws IllegalArgumentException {
+		if (grid == null) {
+			throw new IllegalArgumentException("grid must not be null");
+		}
+		return advise(Bitboard.encode(grid));
+	}
+
+	/**
+	 * Chooses a move for the given packed board.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @return the recommended direction, or {@code null} if no move is
+	 *         possible
+	 * @throws RejectedExecutionException
+	 *             if this advisor has been closed
+	 */
+	public Direction advise(long board) throws RejectedExecutionException {
+		table.newSearch();
+		final Search search = new Search(table);
+		final Direction[] directions = Direction.values();
+		final MoveTask[] tasks = new MoveTask[directions.length];
+		for (int i = 0; i < directions.length; i++) {
+			final long moved = Bitboard.move(board, directions[i]);
+			if (moved != board) {
+				tasks[i] = new MoveTask(search, moved, depth - 1);
+				pool.execute(tasks[i]);
+			}
+		}
+
+		Direction best = null;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < directions.length; i++) {
+			if (tasks[i] == null) {
+				continue;
+			}
+			final double value = tasks[i].join();
+			if (value > bestValue) {
+				bestValue = value;
+				best = directions[i];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Shuts down the search threads of this advisor. Searches in progress
+	 * finish, but no new search can start. The transposition table is left
+	 * as it is, since it may be shared.
+	 */
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Gets the search depth.
+	 * 
+	 * @return the number of player moves to look ahead, including the advised
+	 *         move
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Gets the transposition table.
+	 * 
+	 * @return the table of positions searched so far
+	 */
+	public TranspositionTable getTable() {
+		return table;
+	}
+
+}
@@ -0,0 +1,132 @@
+package j2048.ai;
+
+import j2048.engine.Bitboard;
+
+/**
+ * A static evaluation of packed boards, used at the leaves of a search. The
+ * evaluation rewards empty cells, adjacent equal tiles, and rows and columns
+ * that are monotonic, and penalizes boards with many large tiles. Each row's
+ * contribution is precomputed in a 65,536-entry table, so evaluating a
+ * board costs eight table lookups.
+ * 
+ * @author William Chargin
+ * 
+ */
+final class Heuristic {
+
+	/**
+	 * A constant added to every evaluation, so that losing positions (which
+	 * evaluate to zero) compare worse than any position still in play.
+	 */
+	private static final float LOST_PENALTY = 200000f;
+
+	/**
+	 * The power applied to exponents when measuring monotonicity.
+	 */
+	private static final double MONOTONICITY_POWER = 4;
+
+	/**
+	 * The weight of the monotonicity penalty.
+	 */
+	private static final float MONOTONICITY_WEIGHT = 47f;
+
+	/**
+	 * The power applied to exponents when summing tile weights.
+	 */
+	private static final double SUM_POWER = 3.5;
+
+	/**
+	 * The weight of the tile-sum penalty.
+	 */
+	private static final float SUM_WEIGHT = 11f;
+
+	/**
+	 * The weight of the reward for adjacent equal tiles.
+	 */
+	private static final float MERGES_WEIGHT = 700f;
+
+	/**
+	 * The weight of the reward for empty cells.
+	 */
+	private static final float EMPTY_WEIGHT = 270f;
+
+	/**
+	 * The contribution of each possible row (or transposed column).
+	 */
+	private static final float[] ROW_VALUE = new float[1 << 16];
+
+	static {
+		final int[] line = new int[Bitboard.SIZE];
+		for (int row = 0; row < ROW_VALUE.length; row++) {
+			for (int i = 0; i < line.length; i++) {
+				line[i] = (row >>> (4 * i)) & 0xF;
+			}
+			float sum = 0;
+			int empty = 0, merges = 0;
+			int prev = 0, counter = 0;
+			for (int rank : line) {
+				sum += Math.pow(rank, SUM_POWER);
+				if (rank == 0) {
+					empty++;
+				} else {
+					if (prev == rank) {
+						counter++;
+					} else if (counter > 0) {
+						merges += 1 + counter;
+						counter = 0;
+					}
+					prev = rank;
+				}
+			}
+			if (counter > 0) {
+				merges += 1 + counter;
+			}
+			float monotonicLeft = 0, monotonicRight = 0;
+			for (int i = 1; i < line.length; i++) {
+				final double a = Math.pow(line[i - 1], MONOTONICITY_POWER);
+				final double b = Math.pow(line[i], MONOTONICITY_POWER);
+				if (line[i - 1] > line[i]) {
+					monotonicLeft += a - b;
+				} else {
+					monotonicRight += b - a;
+				}
+			}
+			ROW_VALUE[row] = LOST_PENALTY + EMPTY_WEIGHT * empty
+					+ MERGES_WEIGHT * merges - MONOTONICITY_WEIGHT
+					* Math.min(monotonicLeft, monotonicRight) - SUM_WEIGHT
+					* sum;
+		}
+	}
+
+	/**
+	 * Evaluates the given board.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @return the value of the board; higher is better
+	 */
+	static float evaluate(long board) {
+		return evaluateRows(board) + evaluateRows(Bitboard.transpose(board));
+	}
+
+	/**
+	 * Sums the table entries of the four rows of a board.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @return the sum of the row values
+	 */
+	private static float evaluateRows(long board) {
+		return ROW_VALUE[(int) (board & 0xFFFF)]
+				+ ROW_VALUE[(int) ((board >>> 16) & 0xFFFF)]
+				+ ROW_VALUE[(int) ((board >>> 32) & 0xFFFF)]
+				+ ROW_VALUE[(int) ((board >>> 48) & 0xFFFF)];
+	}
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private Heuristic() {
+	}
+
+}
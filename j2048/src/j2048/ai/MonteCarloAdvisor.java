@@ -0,0 +1,287 @@
+package j2048.ai;
+
+import j2048.Direction;
+import j2048.TileGrid;
+import j2048.engine.Bitboard;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link MoveAdvisor} that estimates the value of each move with random
+ * playouts.
+ * <p>
+ * For each legal direction, the advisor plays the move and then a number of
+ * random games to completion, and recommends the direction with the best mean
+ * final score. The playouts are divided evenly among a fixed set of threads,
+ * so the total number of playouts per direction is the number of threads
+ * times the number of playouts per thread.
+ * <p>
+ * Playouts run on packed {@link Bitboard}s held in local variables, with a
+ * thread-local source of randomness, so a playout allocates nothing. An
+ * optional time budget stops all threads after a fixed amount of time; each
+ * thread cycles through the directions so that they receive equal numbers of
+ * playouts even when the budget runs out.
+ * <p>
+ * Each advisor has its own pool of playout threads, which is shut down by
+ * {@link #close()}; a closed advisor cannot advise.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class MonteCarloAdvisor implements MoveAdvisor, Closeable {
+
+	/**
+	 * The default number of playouts per direction on each thread.
+	 */
+	public static final int DEFAULT_PLAYOUTS_PER_THREAD = 100;
+
+	/**
+	 * The directions, in a shared array so that playouts need not call
+	 * {@link Direction#values()}.
+	 */
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	/**
+	 * Plays random moves from the given board until no move is possible.
+	 * 
+	 * @param board
+	 *            the packed board, before a tile spawns
+	 * @param random
+	 *            the source of randomness
+	 * @return the points scored during the playout
+	 */
+	private static int playout(long board, ThreadLocalRandom random) {
+		int score = 0;
+		while (true) {
+			final int empty = Bitboard.countEmpty(board);
+			final int index = Bitboard.emptyCellIndex(board,
+					random.nextInt(empty));
+			board = Bitboard.withExponent(board, index,
+					random.nextInt(10) == 0 ? 2 : 1);
+
+			final int first = random.nextInt(DIRECTIONS.length);
+			long moved = board;
+			for (int i = 0; i < DIRECTIONS.length && moved == board; i++) {
+				final Direction direction = DIRECTIONS[(first + i)
+						% DIRECTIONS.length];
+				moved = Bitboard.move(board, direction);
+				if (moved != board) {
+					score += Bitboard.moveScore(board, direction);
+				}
+			}
+			if (moved == board) {
+				return score;
+			}
+			board = moved;
+		}
+	}
+
+	/**
+	 * The threads that run playouts.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * The number of threads that run playouts.
+	 */
+	private final int threads;
+
+	/**
+	 * The number of playouts per direction on each thread.
+	 */
+	private final int playoutsPerThread;
+
+	/**
+	 * The maximum time to spend on one move, in nanoseconds, or {@code 0} for
+	 * no limit.
+	 */
+	private volatile long timeBudgetNanos;
+
+	/**
+	 * Creates an advisor with the default number of playouts, using one thread
+	 * per available processor.
+	 */
+	public MonteCarloAdvisor() {
+		this(DEFAULT_PLAYOUTS_PER_THREAD, Runtime.getRuntime()
+				.availableProcessors());
+	}
+
+	/**
+	 * Creates an advisor with the given number of playouts and threads.
+	 * 
+	 * @param playoutsPerThread
+	 *            the number of playouts per direction on each thread
+	 * @param threads
+	 *            the number of threads
+	 * @throws IllegalArgumentException
+	 *             if either argument is less than {@code 1}
+	 */
+	public MonteCarloAdvisor(int playoutsPerThread, int threads)
+			throws IllegalArgumentException {
+		if (playoutsPerThread < 1) {
+			throw new IllegalArgumentException(
+					"playoutsPerThread must be positive: " + playoutsPerThread);
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: "
+					+ threads);
+		}
+		this.playoutsPerThread = playoutsPerThread;
+		this.threads = threads;
+		this.executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						final Thread thread = new Thread(r,
+								"MonteCarloAdvisor");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	@Override
+	public Direction advise(TileGrid grid) throws IllegalArgumentException {
+		if (grid == null) {
+			throw new IllegalArgumentException("grid must not be null");
+		}
+		return advise(Bitboard.encode(grid));
+	}
+
+	/**
+	 * Chooses a move for the given packed board.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @return the recommended direction, or {@code null} if no move is
+	 *         possible
+	 * @throws RejectedExecutionException
+	 *             if this advisor has been closed, or is closed before the
+	 *             playouts finish
+	 */
+	public Direction advise(final long board)
+			throws RejectedExecutionException {
+		final Direction[] legal = new Direction[DIRECTIONS.length];
+		int count = 0;
+		for (Direction direction : DIRECTIONS) {
+			if (Bitboard.move(board, direction) != board) {
+				legal[count++] = direction;
+			}
+		}
+		if (count <= 1) {
+			return legal[0];
+		}
+
+		final int legalCount = count;
+		final long budget = timeBudgetNanos;
+		final long deadline = System.nanoTime() + budget;
+		final List<Callable<long[]>> workers = new ArrayList<>(threads);
+		for (int i = 0; i < threads; i++) {
+			workers.add(new Callable<long[]>() {
+				@Override
+				public long[] call() {
+					final ThreadLocalRandom random = ThreadLocalRandom
+							.current();
+					// Two entries per direction: total score, then count.
+					final long[] totals = new long[2 * legalCount];
+					for (int n = 0; n < playoutsPerThread; n++) {
+						if (budget > 0 && System.nanoTime() - deadline > 0) {
+							break;
+						}
+						for (int d = 0; d < legalCount; d++) {
+							final long moved = Bitboard.move(board, legal[d]);
+							totals[2 * d] += Bitboard.moveScore(board,
+									legal[d]) + playout(moved, random);
+							totals[2 * d + 1]++;
+						}
+					}
+					return totals;
+				}
+			});
+		}
+
+		final long[] totals = new long[2 * legalCount];
+		try {
+			for (Future<long[]> result : executor.invokeAll(workers)) {
+				final long[] partial = result.get();
+				for (int i = 0; i < totals.length; i++) {
+					totals[i] += partial[i];
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (CancellationException e) {
+			throw new RejectedExecutionException("advisor closed", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("playout failed", e.getCause());
+		}
+
+		Direction best = legal[0];
+		double bestMean = Double.NEGATIVE_INFINITY;
+		for (int d = 0; d < legalCount; d++) {
+			if (totals[2 * d + 1] == 0) {
+				continue;
+			}
+			final double mean = (double) totals[2 * d] / totals[2 * d + 1];
+			if (mean > bestMean) {
+				bestMean = mean;
+				best = legal[d];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Stops the playout threads of this advisor. Playouts that have not
+	 * started are cancelled, and no new advice can be given.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Gets the maximum time to spend choosing one move.
+	 * 
+	 * @param unit
+	 *            the unit of the result
+	 * @return the time budget, or {@code 0} if there is no limit
+	 */
+	public long getTimeBudget(TimeUnit unit) {
+		return unit.convert(timeBudgetNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Sets the maximum time to spend choosing one move. When the budget runs
+	 * out, each thread finishes its current round of playouts and stops, so
+	 * the actual time may exceed the budget by the length of one round.
+	 * 
+	 * @param budget
+	 *            the time budget, or {@code 0} for no limit
+	 * @param unit
+	 *            the unit of {@code budget}
+	 * @throws IllegalArgumentException
+	 *             if {@code budget} is negative
+	 */
+	public void setTimeBudget(long budget, TimeUnit unit)
+			throws IllegalArgumentException {
+		if (budget < 0) {
+			throw new IllegalArgumentException("budget must not be negative: "
+					+ budget);
+		}
+		timeBudgetNanos = unit.toNanos(budget);
+	}
+
+}
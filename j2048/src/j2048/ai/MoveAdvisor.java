@@ -0,0 +1,29 @@
+package j2048.ai;
+
+import j2048.Direction;
+import j2048.TileGrid;
+
+/**
+ * An automated player that chooses which direction to move in a game of
+ * 2048. The chosen direction can then be passed to any
+ * {@link j2048.TurnPerformer}.
+ * 
+ * @author William Chargin
+ * 
+ */
+public interface MoveAdvisor {
+
+	/**
+	 * Chooses a move for the given grid. The grid is not modified.
+	 * Implementations should be safe to call from several threads at once.
+	 * 
+	 * @param grid
+	 *            the current state of the game
+	 * @return the recommended direction, or {@code null} if no move is
+	 *         possible
+	 * @throws IllegalArgumentException
+	 *             if {@code grid == null}
+	 */
+	public Direction advise(TileGrid grid) throws IllegalArgumentException;
+
+}
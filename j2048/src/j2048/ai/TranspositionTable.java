@@ -0,0 +1,325 @@
+package j2048.ai;
+
+import j2048.Direction;
+import j2048.engine.Bitboard;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed-size cache of searched positions, keyed by packed {@link Bitboard}
+ * and held outside the Java heap.
+ * <p>
+ * Each entry records the depth to which a position was searched, its value,
+ * and the best move found from it, packed into a single {@code long}. Entries
+ * occupy 16 bytes of direct memory each, so a table of tens of millions of
+ * entries costs the garbage collector nothing. Four entries share a bucket of
+ * 64 bytes, about the size of a cache line; a position may be stored in any
+ * entry of the bucket that its board hashes to.
+ * <p>
+ * Probes and stores from any number of threads proceed without locks. Each
+ * entry is written as two words, the data and the board XORed with the data,
+ * and a probe accepts an entry only if the two words XOR back to the board
+ * being probed. An entry torn by a concurrent store therefore reads as a
+ * miss, never as the value of another position. Two threads storing into the
+ * same bucket at once may lose one of the stores, which costs only a
+ * re-search later.
+ * <p>
+ * When a bucket is full, a store replaces the entry that is least worth
+ * keeping: entries left over from earlier searches go first, and then the
+ * entry searched to the smallest depth. A store never replaces an entry for
+ * the same position from the current search that was searched more deeply.
+ * Call {@link #newSearch()} at the start of each search to age the entries of
+ * the previous ones.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class TranspositionTable {
+
+	/**
+	 * The number of bytes taken by one entry.
+	 */
+	public static final int ENTRY_BYTES = 16;
+
+	/**
+	 * The greatest depth that can be stored.
+	 */
+	public static final int MAX_DEPTH = 0xFF;
+
+	/**
+	 * The value returned by {@link #probe(long)} when the board is not in the
+	 * table.
+	 */
+	public static final long MISS = 0;
+
+	/**
+	 * The number of entries in a bucket.
+	 */
+	private static final int BUCKET_ENTRIES = 4;
+
+	/**
+	 * The number of bytes taken by one bucket.
+	 */
+	private static final int BUCKET_BYTES = BUCKET_ENTRIES * ENTRY_BYTES;
+
+	/**
+	 * The base-two logarithm of the size of each buffer, in bytes.
+	 */
+	private static final int CHUNK_SHIFT = 30;
+
+	/**
+	 * The number of bytes in a gigabyte.
+	 */
+	private static final long GIGABYTE = 1L << 30;
+
+	/**
+	 * The directions, indexed by ordinal.
+	 */
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	/**
+	 * Gets the depth of a probed entry.
+	 * 
+	 * @param entry
+	 *            an entry returned by {@link #probe(long)}, other than
+	 *            {@link #MISS}
+	 * @return the depth to which the position was searched
+	 */
+	public static int depthOf(long entry) {
+		return (int) (entry >>> 32) & 0xFF;
+	}
+
+	/**
+	 * Gets the best move of a probed entry.
+	 * 
+	 * @param entry
+	 *            an entry returned by {@link #probe(long)}, other than
+	 *            {@link #MISS}
+	 * @return the best move from the position, or {@code null} if none was
+	 *         stored
+	 */
+	public static Direction moveOf(long entry) {
+		final int move = (int) (entry >>> 40) & 0x7;
+		return move == 0 ? null : DIRECTIONS[move - 1];
+	}
+
+	/**
+	 * Creates a table of the given size in gigabytes.
+	 * 
+	 * @param gigabytes
+	 *            the size of the table, in units of 2<sup>30</sup> bytes
+	 * @return the new table
+	 * @throws IllegalArgumentException
+	 *             if the size is too small to hold a single bucket
+	 * @see #TranspositionTable(long)
+	 */
+	public static TranspositionTable ofGigabytes(double gigabytes)
+			throws IllegalArgumentException {
+		return new TranspositionTable((long) (gigabytes * GIGABYTE));
+	}
+
+	/**
+	 * Gets the value of a probed entry.
+	 * 
+	 * @param entry
+	 *            an entry returned by {@link #probe(long)}, other than
+	 *            {@link #MISS}
+	 * @return the value of the position, to single precision
+	 */
+	public static double valueOf(long entry) {
+		return Float.intBitsToFloat((int) entry);
+	}
+
+	/**
+	 * Gets the search generation of an entry.
+	 * 
+	 * @param entry
+	 *            the entry
+	 * @return the generation, modulo 256
+	 */
+	private static int generationOf(long entry) {
+		return (int) (entry >>> 48) & 0xFF;
+	}
+
+	/**
+	 * Mixes the bits of a board, so that boards differing in a few cells hash
+	 * to unrelated buckets.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @return the hash
+	 */
+	private static long hash(long board) {
+		long h = board;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * The direct buffers holding the entries, all of the same size, which is
+	 * at most 2<sup>{@value #CHUNK_SHIFT}</sup> bytes.
+	 */
+	private final ByteBuffer[] chunks;
+
+	/**
+	 * The number of buckets, minus one.
+	 */
+	private final long bucketMask;
+
+	/**
+	 * The number of searches started, of which the low eight bits are stored
+	 * with each entry.
+	 */
+	private final AtomicInteger generation = new AtomicInteger();
+
+	/**
+	 * Creates an empty table of at most the given size. The number of buckets
+	 * is rounded down to a power of two.
+	 * 
+	 * @param bytes
+	 *            the greatest number of bytes of direct memory to allocate
+	 * @throws IllegalArgumentException
+	 *             if the size is too small to hold a single bucket
+	 * @throws OutOfMemoryError
+	 *             if there is not enough direct memory; see the
+	 *             {@code -XX:MaxDirectMemorySize} option of the JVM
+	 */
+	public TranspositionTable(long bytes) throws IllegalArgumentException,
+			OutOfMemoryError {
+		if (bytes < BUCKET_BYTES) {
+			throw new IllegalArgumentException("table must hold at least "
+					+ BUCKET_BYTES + " bytes: " + bytes);
+		}
+		final long buckets = Long.highestOneBit(bytes / BUCKET_BYTES);
+		final long size = buckets * BUCKET_BYTES;
+		final long chunkSize = Math.min(size, 1L << CHUNK_SHIFT);
+		chunks = new ByteBuffer[(int) (size / chunkSize)];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = ByteBuffer.allocateDirect((int) chunkSize).order(
+					ByteOrder.nativeOrder());
+		}
+		bucketMask = buckets - 1;
+	}
+
+	/**
+	 * Removes every entry from the table. This must not be called while
+	 * other threads are using the table.
+	 */
+	public void clear() {
+		for (ByteBuffer chunk : chunks) {
+			for (int i = 0; i < chunk.capacity(); i += 8) {
+				chunk.putLong(i, 0);
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of entries that the table can hold.
+	 * 
+	 * @return the capacity
+	 */
+	public long getCapacity() {
+		return (bucketMask + 1) * BUCKET_ENTRIES;
+	}
+
+	/**
+	 * Gets the number of bytes of direct memory held by the table.
+	 * 
+	 * @return the size, in bytes
+	 */
+	public long getSizeBytes() {
+		return getCapacity() * ENTRY_BYTES;
+	}
+
+	/**
+	 * Marks the start of a new search. Entries stored before this call are
+	 * replaced before any stored after it.
+	 */
+	public void newSearch() {
+		generation.incrementAndGet();
+	}
+
+	/**
+	 * Looks up a position.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @return the entry for the board, to be read with {@link #depthOf(long)},
+	 *         {@link #valueOf(long)} and {@link #moveOf(long)}, or
+	 *         {@link #MISS} if the board is not in the table
+	 */
+	public long probe(long board) {
+		final long bucket = (hash(board) & bucketMask) * BUCKET_BYTES;
+		final ByteBuffer chunk = chunks[(int) (bucket >>> CHUNK_SHIFT)];
+		final int base = (int) (bucket & ((1L << CHUNK_SHIFT) - 1));
+		for (int i = 0; i < BUCKET_BYTES; i += ENTRY_BYTES) {
+			final long data = chunk.getLong(base + i + 8);
+			if (data != MISS && (chunk.getLong(base + i) ^ data) == board) {
+				return data;
+			}
+		}
+		return MISS;
+	}
+
+	/**
+	 * Stores the result of searching a position, unless the table already
+	 * holds a deeper result for it from the current search.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @param depth
+	 *            the depth to which the position was searched
+	 * @param value
+	 *            the value of the position
+	 * @param move
+	 *            the best move from the position, or {@code null} if there is
+	 *            none
+	 * @throws IllegalArgumentException
+	 *             if the depth is not between {@code 1} and
+	 *             {@link #MAX_DEPTH}, inclusive
+	 */
+	public void store(long board, int depth, double value, Direction move)
+			throws IllegalArgumentException {
+		if (depth < 1 || depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("depth out of range: " + depth);
+		}
+		final int current = generation.get() & 0xFF;
+		final long bucket = (hash(board) & bucketMask) * BUCKET_BYTES;
+		final ByteBuffer chunk = chunks[(int) (bucket >>> CHUNK_SHIFT)];
+		final int base = (int) (bucket & ((1L << CHUNK_SHIFT) - 1));
+
+		int victim = base;
+		int victimWorth = Integer.MAX_VALUE;
+		for (int i = 0; i < BUCKET_BYTES; i += ENTRY_BYTES) {
+			final long data = chunk.getLong(base + i + 8);
+			final boolean fresh = generationOf(data) == current;
+			if (data != MISS && (chunk.getLong(base + i) ^ data) == board) {
+				if (fresh && depthOf(data) > depth) {
+					return;
+				}
+				victim = base + i;
+				break;
+			}
+			final int worth = data == MISS ? -1 : (fresh ? MAX_DEPTH + 1 : 0)
+					+ depthOf(data);
+			if (worth < victimWorth) {
+				victim = base + i;
+				victimWorth = worth;
+			}
+		}
+
+		final long data = (long) current << 48
+				| (long) (move == null ? 0 : move.ordinal() + 1) << 40
+				| (long) depth << 32
+				| Float.floatToRawIntBits((float) value) & 0xFFFFFFFFL;
+		chunk.putLong(victim, board ^ data);
+		chunk.putLong(victim + 8, data);
+	}
+
+}
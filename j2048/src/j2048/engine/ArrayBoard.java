@@ -0,0 +1,287 @@
+package j2048.engine;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.Tile;
+import j2048.TileGrid;
+
+/**
+ * A compact, mutable board of any supported size, stored as one byte per cell.
+ * <p>
+ * Like a {@link Bitboard}, each cell stores the base-2 exponent of its tile
+ * value, or {@code 0} if it is empty, and cells are numbered in row-major
+ * order. Unlike a {@code Bitboard}, the board can be any size from
+ * {@value BoardLocation#MIN_BOARD_SIZE} to
+ * {@value BoardLocation#MAX_BOARD_SIZE} cells on a side, so its memory use is
+ * one byte per cell plus a small constant. Moves are computed in place.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class ArrayBoard {
+
+	/**
+	 * The largest exponent that a cell can hold. Tiles with this exponent do
+	 * not merge with each other, so that tile values fit in an {@code int}.
+	 */
+	public static final int MAX_EXPONENT = 30;
+
+	/**
+	 * The side length of this board.
+	 */
+	private final int size;
+
+	/**
+	 * The exponent in each cell, in row-major order.
+	 */
+	private final byte[] cells;
+
+	/**
+	 * Creates an empty board of the given size.
+	 * 
+	 * @param size
+	 *            the side length of the board
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}
+	 */
+	public ArrayBoard(int size) throws IllegalArgumentException {
+		BoardLocation.checkBoardSize(size);
+		this.size = size;
+		this.cells = new byte[size * size];
+	}
+
+	/**
+	 * Determines whether any move is possible on this board.
+	 * 
+	 * @return {@code true} if at least one direction changes the board
+	 */
+	public boolean canMove() {
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				final int e = cells[y * size + x];
+				if (e == 0) {
+					return true;
+				}
+				if (e < MAX_EXPONENT) {
+					if (x + 1 < size && cells[y * size + x + 1] == e) {
+						return true;
+					}
+					if (y + 1 < size && cells[(y + 1) * size + x] == e) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Makes this board a copy of another board of the same size.
+	 * 
+	 * @param other
+	 *            the board to copy
+	 * @throws IllegalArgumentException
+	 *             if the boards have different sizes
+	 */
+	public void copyFrom(ArrayBoard other) throws IllegalArgumentException {
+		if (other.size != size) {
+			throw new IllegalArgumentException("size mismatch: " + other.size
+					+ " != " + size);
+		}
+		System.arraycopy(other.cells, 0, cells, 0, cells.length);
+	}
+
+	/**
+	 * Counts the empty cells on this board.
+	 * 
+	 * @return the number of cells whose exponent is zero
+	 */
+	public int countEmpty() {
+		int count = 0;
+		for (byte e : cells) {
+			if (e == 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the index of the {@code k}-th empty cell, in order of increasing
+	 * cell index.
+	 * 
+	 * @param k
+	 *            the zero-based rank of the empty cell to find
+	 * @return the cell index of the {@code k}-th empty cell
+	 * @throws IllegalArgumentException
+	 *             if the board has {@code k} or fewer empty cells
+	 */
+	public int emptyCellIndex(int k) throws IllegalArgumentException {
+		int remaining = k;
+		if (k >= 0) {
+			for (int i = 0; i < cells.length; i++) {
+				if (cells[i] == 0 && remaining-- == 0) {
+					return i;
+				}
+			}
+		}
+		throw new IllegalArgumentException("no empty cell with rank " + k);
+	}
+
+	/**
+	 * Gets the exponent stored in the given cell.
+	 * 
+	 * @param index
+	 *            the cell index
+	 * @return the exponent in that cell, or {@code 0} if the cell is empty
+	 */
+	public int exponentAt(int index) {
+		return cells[index];
+	}
+
+	/**
+	 * Gets the side length of this board.
+	 * 
+	 * @return the board size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Replaces the contents of this board with the tiles of the given grid.
+	 * 
+	 * @param grid
+	 *            the grid to copy
+	 * @throws IllegalArgumentException
+	 *             if {@code grid == null}, if the grid is a different size,
+	 *             or if any tile has a value that is not a power of two
+	 *             between {@code 2} and {@code 2^}{@value #MAX_EXPONENT}
+	 */
+	public void load(TileGrid grid) throws IllegalArgumentException {
+		if (grid == null) {
+			throw new IllegalArgumentException("grid must not be null");
+		}
+		if (grid.getSize() != size) {
+			throw new IllegalArgumentException("size mismatch: "
+					+ grid.getSize() + " != " + size);
+		}
+		for (int i = 0; i < cells.length; i++) {
+			final Tile tile = grid.at(BoardLocation.fromIndex(i, size));
+			cells[i] = tile == null ? 0 : (byte) exponentOf(tile.getValue());
+		}
+	}
+
+	/**
+	 * Gets the largest exponent on this board.
+	 * 
+	 * @return the largest exponent, or {@code 0} if the board is empty
+	 */
+	public int maxExponent() {
+		int max = 0;
+		for (byte e : cells) {
+			max = Math.max(max, e);
+		}
+		return max;
+	}
+
+	/**
+	 * Slides and merges every line of this board in the given direction.
+	 * 
+	 * @param direction
+	 *            the direction of movement
+	 * @return the points scored by the move, or {@code -1} if the move is not
+	 *         possible, in which case the board is unchanged
+	 */
+	public int move(Direction direction) {
+		final int start, step, lineStep;
+		switch (direction) {
+		case WEST:
+			start = 0;
+			step = 1;
+			lineStep = size;
+			break;
+		case EAST:
+			start = size - 1;
+			step = -1;
+			lineStep = size;
+			break;
+		case NORTH:
+			start = 0;
+			step = size;
+			lineStep = 1;
+			break;
+		case SOUTH:
+			start = (size - 1) * size;
+			step = -size;
+			lineStep = 1;
+			break;
+		default:
+			throw new AssertionError("Unexpected direction " + direction);
+		}
+
+		int score = 0;
+		boolean changed = false;
+		for (int line = 0; line < size; line++) {
+			final int first = start + line * lineStep;
+			int write = 0, last = 0;
+			for (int read = 0; read < size; read++) {
+				final int e = cells[first + read * step];
+				if (e == 0) {
+					continue;
+				}
+				cells[first + read * step] = 0;
+				if (e == last && e < MAX_EXPONENT) {
+					cells[first + (write - 1) * step] = (byte) (e + 1);
+					score += 1 << (e + 1);
+					last = 0;
+					changed = true;
+				} else {
+					cells[first + write * step] = (byte) e;
+					changed |= write != read;
+					write++;
+					last = e;
+				}
+			}
+		}
+		return changed ? score : -1;
+	}
+
+	/**
+	 * Sets the exponent stored in the given cell.
+	 * 
+	 * @param index
+	 *            the cell index
+	 * @param exponent
+	 *            the new exponent, or {@code 0} to empty the cell
+	 * @throws IllegalArgumentException
+	 *             if the exponent is negative or greater than
+	 *             {@value #MAX_EXPONENT}
+	 */
+	public void setExponent(int index, int exponent)
+			throws IllegalArgumentException {
+		if (exponent < 0 || exponent > MAX_EXPONENT) {
+			throw new IllegalArgumentException("exponent out of range: "
+					+ exponent);
+		}
+		cells[index] = (byte) exponent;
+	}
+
+	/**
+	 * Computes the base-2 exponent of a tile value.
+	 * 
+	 * @param value
+	 *            the tile value
+	 * @return the exponent {@code e} such that {@code value == 1 << e}
+	 * @throws IllegalArgumentException
+	 *             if the value is not a power of two between {@code 2} and
+	 *             {@code 2^}{@value #MAX_EXPONENT}
+	 */
+	private static int exponentOf(int value) throws IllegalArgumentException {
+		if (value < 2 || Integer.bitCount(value) != 1) {
+			throw new IllegalArgumentException("not a tile value: " + value);
+		}
+		return Integer.numberOfTrailingZeros(value);
+	}
+
+}
@@ -0,0 +1,106 @@
+package j2048.engine;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.Tile;
+import j2048.TileGameContext;
+import j2048.TurnBatch;
+import j2048.TurnPerformer;
+
+import java.util.Random;
+
+/**
+ * A complete {@link TurnPerformer} backed by the {@link ArrayBoard} engine,
+ * for boards of any supported size.
+ * <p>
+ * Each turn copies the grid into an {@code ArrayBoard} and computes the move
+ * in place. If the move changes the board, the tile movements and merges, the
+ * new tile, and the outcome of the turn are collected in a {@link TurnBatch}
+ * and committed to the {@link TileGameContext} in one call, so that any view
+ * attached to the context can animate the whole turn at once. For the standard
+ * 4x4 board, {@link BitboardTurnPerformer} is faster.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class ArrayBoardTurnPerformer implements TurnPerformer {
+
+	/**
+	 * The tile value that wins the game when it is first created.
+	 */
+	public static final int WINNING_VALUE = BitboardTurnPerformer.WINNING_VALUE;
+
+	/**
+	 * The base-2 exponent of {@link #WINNING_VALUE}.
+	 */
+	private static final int WINNING_EXPONENT = Integer
+			.numberOfTrailingZeros(WINNING_VALUE);
+
+	/**
+	 * The source of randomness for spawned tiles, or {@code null} to use the
+	 * context's.
+	 */
+	private final Random random;
+
+	/**
+	 * Creates a turn performer that spawns tiles using the source of
+	 * randomness of each game, as given by {@link TileGameContext#getRandom()}.
+	 */
+	public ArrayBoardTurnPerformer() {
+		random = null;
+	}
+
+	/**
+	 * Creates a turn performer that spawns tiles using the given source of
+	 * randomness, rather than the context's.
+	 * 
+	 * @param random
+	 *            the source of randomness for spawned tiles
+	 * @throws IllegalArgumentException
+	 *             if {@code random == null}
+	 */
+	public ArrayBoardTurnPerformer(Random random)
+			throws IllegalArgumentException {
+		if (random == null) {
+			throw new IllegalArgumentException("random must not be null");
+		}
+		this.random = random;
+	}
+
+	@Override
+	public boolean turn(Direction direction, TileGameContext context) {
+		final int size = context.getGrid().getSize();
+		final ArrayBoard board = new ArrayBoard(size);
+		board.load(context.getGrid());
+		final int maxBefore = board.maxExponent();
+		if (board.move(direction) < 0) {
+			return false;
+		}
+
+		final TurnBatch batch = new TurnBatch();
+		MoveReplay.replay(direction, context.getGrid(), batch,
+				1 << ArrayBoard.MAX_EXPONENT);
+		final boolean won = maxBefore < WINNING_EXPONENT
+				&& board.maxExponent() >= WINNING_EXPONENT;
+
+		final int free = board.countEmpty();
+		final Random random = this.random != null ? this.random : context
+				.getRandom();
+		final int index = board.emptyCellIndex(random.nextInt(free));
+		final int exponent = random.nextInt(10) == 0 ? 2 : 1;
+		board.setExponent(index, exponent);
+		final Tile spawned = new Tile();
+		spawned.setValue(1 << exponent);
+		batch.spawn(spawned, BoardLocation.fromIndex(index, size));
+
+		if (won) {
+			batch.win();
+		}
+		if (!board.canMove()) {
+			batch.lose();
+		}
+		context.commitTurn(batch);
+		return true;
+	}
+
+}
@@ -0,0 +1,417 @@
+package j2048.engine;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.Tile;
+import j2048.TileGrid;
+
+/**
+ * Static operations on a 4x4 board packed into a single {@code long}.
+ * <p>
+ * Each of the sixteen cells occupies four bits and stores the base-2 exponent
+ * of its tile value, so a cell holding {@code 2} stores {@code 1}, a cell
+ * holding {@code 2048} stores {@code 11}, and an empty cell stores {@code 0}.
+ * The cell at {@code (x, y)} is stored at nibble {@code 4 * y + x}, so that
+ * each row of the board is one 16-bit word with its leftmost cell in the
+ * lowest nibble.
+ * <p>
+ * Moves are computed with precomputed lookup tables: one 65,536-entry table
+ * per direction maps every possible row (or column) to its result after
+ * sliding and merging. Columns are handled by transposing the board.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class Bitboard {
+
+	/**
+	 * The side length of a board that can be packed into a {@code long}.
+	 */
+	public static final int SIZE = 4;
+
+	/**
+	 * The number of cells on a packed board.
+	 */
+	public static final int CELLS = SIZE * SIZE;
+
+	/**
+	 * The largest exponent that fits in a cell. Tiles with this exponent (a
+	 * value of {@code 32768}) do not merge with each other.
+	 */
+	public static final int MAX_EXPONENT = 15;
+
+	/**
+	 * A mask selecting the lowest row of a board.
+	 */
+	private static final long ROW_MASK = 0xFFFFL;
+
+	/**
+	 * The result of sliding each possible row toward its low nibble
+	 * ({@link Direction#WEST}).
+	 */
+	private static final char[] ROW_WEST = new char[1 << 16];
+
+	/**
+	 * The result of sliding each possible row toward its high nibble
+	 * ({@link Direction#EAST}).
+	 */
+	private static final char[] ROW_EAST = new char[1 << 16];
+
+	/**
+	 * The result of sliding each possible column (given as a row of the
+	 * transposed board) toward {@link Direction#NORTH}, already unpacked into
+	 * the leftmost column of an untransposed board.
+	 */
+	private static final long[] COL_NORTH = new long[1 << 16];
+
+	/**
+	 * The result of sliding each possible column (given as a row of the
+	 * transposed board) toward {@link Direction#SOUTH}, already unpacked into
+	 * the leftmost column of an untransposed board.
+	 */
+	private static final long[] COL_SOUTH = new long[1 << 16];
+
+	/**
+	 * The points scored by sliding each possible row. A line scores the same
+	 * in either direction, because the same number of equal pairs merge.
+	 */
+	private static final int[] ROW_SCORE = new int[1 << 16];
+
+	static {
+		final int[] line = new int[SIZE];
+		for (int row = 0; row < ROW_WEST.length; row++) {
+			for (int i = 0; i < SIZE; i++) {
+				line[i] = (row >>> (4 * i)) & 0xF;
+			}
+			ROW_SCORE[row] = slideTowardZero(line);
+			int result = 0;
+			for (int i = 0; i < SIZE; i++) {
+				result |= line[i] << (4 * i);
+			}
+			ROW_WEST[row] = (char) result;
+		}
+		for (int row = 0; row < ROW_EAST.length; row++) {
+			ROW_EAST[row] = (char) reverseRow(ROW_WEST[reverseRow(row)]);
+			COL_NORTH[row] = unpackColumn(ROW_WEST[row]);
+		}
+		for (int row = 0; row < COL_SOUTH.length; row++) {
+			COL_SOUTH[row] = unpackColumn(ROW_EAST[row]);
+		}
+	}
+
+	/**
+	 * Counts the empty cells on the given board.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @return the number of cells whose exponent is zero
+	 */
+	public static int countEmpty(long board) {
+		return Long.bitCount(emptyMask(board));
+	}
+
+	/**
+	 * Determines whether any move is possible on the given board.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @return {@code true} if at least one direction changes the board
+	 */
+	public static boolean canMove(long board) {
+		if (emptyMask(board) != 0) {
+			return true;
+		}
+		return move(board, Direction.WEST) != board
+				|| move(board, Direction.NORTH) != board;
+	}
+
+	/**
+	 * Finds the index of the {@code k}-th empty cell of the given board, in
+	 * order of increasing cell index.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @param k
+	 *            the zero-based rank of the empty cell to find
+	 * @return the cell index of the {@code k}-th empty cell
+	 * @throws IllegalArgumentException
+	 *             if the board has {@code k} or fewer empty cells
+	 */
+	public static int emptyCellIndex(long board, int k)
+			throws IllegalArgumentException {
+		long empty = emptyMask(board);
+		if (k < 0 || k >= Long.bitCount(empty)) {
+			throw new IllegalArgumentException("no empty cell with rank " + k);
+		}
+		for (int i = 0; i < k; i++) {
+			empty &= empty - 1;
+		}
+		return Long.numberOfTrailingZeros(empty) >>> 2;
+	}
+
+	/**
+	 * Packs the given tile grid into a board.
+	 * 
+	 * @param grid
+	 *            the grid to pack
+	 * @return the packed board
+	 * @throws IllegalArgumentException
+	 *             if {@code grid == null}, if the grid is not {@value #SIZE}
+	 *             cells on a side, or if any tile has a value that is not a
+	 *             power of two between {@code 2} and {@code 32768}
+	 */
+	public static long encode(TileGrid grid) throws IllegalArgumentException {
+		if (grid == null) {
+			throw new IllegalArgumentException("grid must not be null");
+		}
+		if (grid.getSize() != SIZE) {
+			throw new IllegalArgumentException("grid size must be " + SIZE
+					+ ", not " + grid.getSize());
+		}
+		long board = 0;
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				final Tile tile = grid.at(BoardLocation.of(x, y));
+				if (tile != null) {
+					final int exponent = exponentOf(tile.getValue());
+					board |= (long) exponent << (4 * (4 * y + x));
+				}
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Gets the exponent stored in the given cell.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @param index
+	 *            the cell index, {@code 4 * y + x}
+	 * @return the exponent in that cell, or {@code 0} if the cell is empty
+	 */
+	public static int exponentAt(long board, int index) {
+		return (int) (board >>> (4 * index)) & 0xF;
+	}
+
+	/**
+	 * Computes the base-2 exponent of a tile value.
+	 * 
+	 * @param value
+	 *            the tile value
+	 * @return the exponent {@code e} such that {@code value == 1 << e}
+	 * @throws IllegalArgumentException
+	 *             if the value is not a power of two between {@code 2} and
+	 *             {@code 32768}
+	 */
+	public static int exponentOf(int value) throws IllegalArgumentException {
+		if (value < 2 || Integer.bitCount(value) != 1
+				|| value > 1 << MAX_EXPONENT) {
+			throw new IllegalArgumentException("not a packable tile value: "
+					+ value);
+		}
+		return Integer.numberOfTrailingZeros(value);
+	}
+
+	/**
+	 * Gets the largest exponent on the given board.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @return the largest exponent, or {@code 0} if the board is empty
+	 */
+	public static int maxExponent(long board) {
+		int max = 0;
+		while (board != 0) {
+			max = Math.max(max, (int) board & 0xF);
+			board >>>= 4;
+		}
+		return max;
+	}
+
+	/**
+	 * Slides and merges every line of the board in the given direction.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @param direction
+	 *            the direction of movement
+	 * @return the resulting board, which is equal to {@code board} if the
+	 *         move is not possible
+	 */
+	public static long move(long board, Direction direction) {
+		switch (direction) {
+		case WEST:
+			return moveRows(board, ROW_WEST);
+		case EAST:
+			return moveRows(board, ROW_EAST);
+		case NORTH:
+			return moveColumns(board, COL_NORTH);
+		case SOUTH:
+			return moveColumns(board, COL_SOUTH);
+		default:
+			throw new AssertionError("Unexpected direction " + direction);
+		}
+	}
+
+	/**
+	 * Computes the number of points scored by moving in the given direction.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @param direction
+	 *            the direction of movement
+	 * @return the sum of the values of all tiles created by merges
+	 */
+	public static int moveScore(long board, Direction direction) {
+		if (direction.getY() != 0) {
+			board = transpose(board);
+		}
+		return ROW_SCORE[(int) (board & ROW_MASK)]
+				+ ROW_SCORE[(int) ((board >>> 16) & ROW_MASK)]
+				+ ROW_SCORE[(int) ((board >>> 32) & ROW_MASK)]
+				+ ROW_SCORE[(int) ((board >>> 48) & ROW_MASK)];
+	}
+
+	/**
+	 * Transposes the board, exchanging the cells at {@code (x, y)} and
+	 * {@code (y, x)}.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @return the transposed board
+	 */
+	public static long transpose(long board) {
+		final long a1 = board & 0xF0F00F0FF0F00F0FL;
+		final long a2 = board & 0x0000F0F00000F0F0L;
+		final long a3 = board & 0x0F0F00000F0F0000L;
+		final long a = a1 | (a2 << 12) | (a3 >>> 12);
+		final long b1 = a & 0xFF00FF0000FF00FFL;
+		final long b2 = a & 0x00FF00FF00000000L;
+		final long b3 = a & 0x00000000FF00FF00L;
+		return b1 | (b2 >>> 24) | (b3 << 24);
+	}
+
+	/**
+	 * Sets the exponent stored in the given cell.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @param index
+	 *            the cell index, {@code 4 * y + x}
+	 * @param exponent
+	 *            the new exponent, or {@code 0} to empty the cell
+	 * @return the updated board
+	 */
+	public static long withExponent(long board, int index, int exponent) {
+		final int shift = 4 * index;
+		return (board & ~(0xFL << shift)) | ((long) exponent << shift);
+	}
+
+	/**
+	 * Computes a mask with the lowest bit of every empty cell's nibble set.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @return the mask of empty cells
+	 */
+	private static long emptyMask(long board) {
+		board |= (board >>> 2) & 0x3333333333333333L;
+		board |= board >>> 1;
+		return ~board & 0x1111111111111111L;
+	}
+
+	/**
+	 * Looks up each transposed row of the board in a column table.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @param table
+	 *            {@link #COL_NORTH} or {@link #COL_SOUTH}
+	 * @return the resulting board
+	 */
+	private static long moveColumns(long board, long[] table) {
+		final long t = transpose(board);
+		return table[(int) (t & ROW_MASK)]
+				| table[(int) ((t >>> 16) & ROW_MASK)] << 4
+				| table[(int) ((t >>> 32) & ROW_MASK)] << 8
+				| table[(int) ((t >>> 48) & ROW_MASK)] << 12;
+	}
+
+	/**
+	 * Looks up each row of the board in a row table.
+	 * 
+	 * @param board
+	 *            the packed board
+	 * @param table
+	 *            {@link #ROW_WEST} or {@link #ROW_EAST}
+	 * @return the resulting board
+	 */
+	private static long moveRows(long board, char[] table) {
+		return (long) table[(int) (board & ROW_MASK)]
+				| (long) table[(int) ((board >>> 16) & ROW_MASK)] << 16
+				| (long) table[(int) ((board >>> 32) & ROW_MASK)] << 32
+				| (long) table[(int) ((board >>> 48) & ROW_MASK)] << 48;
+	}
+
+	/**
+	 * Reverses the order of the four cells in a row.
+	 * 
+	 * @param row
+	 *            the 16-bit row
+	 * @return the reversed row
+	 */
+	private static int reverseRow(int row) {
+		return ((row & 0xF) << 12) | ((row & 0xF0) << 4)
+				| ((row >>> 4) & 0xF0) | ((row >>> 12) & 0xF);
+	}
+
+	/**
+	 * Slides and merges a line of exponents toward index zero, in place.
+	 * 
+	 * @param line
+	 *            the exponents of the line
+	 * @return the points scored by the merges
+	 */
+	private static int slideTowardZero(int[] line) {
+		int score = 0;
+		int next = 0;
+		int last = 0;
+		for (int i = 0; i < line.length; i++) {
+			final int e = line[i];
+			if (e == 0) {
+				continue;
+			}
+			line[i] = 0;
+			if (e == last && e < MAX_EXPONENT) {
+				line[next - 1] = e + 1;
+				score += 1 << (e + 1);
+				last = 0;
+			} else {
+				line[next++] = e;
+				last = e;
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * Spreads a 16-bit row into the leftmost column of a board, so that
+	 * nibble {@code i} of the row becomes the cell at {@code (0, i)}.
+	 * 
+	 * @param row
+	 *            the 16-bit row
+	 * @return the column, as a board
+	 */
+	private static long unpackColumn(int row) {
+		return (row & 0xFL) | ((row >>> 4) & 0xFL) << 16
+				| ((row >>> 8) & 0xFL) << 32 | ((row >>> 12) & 0xFL) << 48;
+	}
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private Bitboard() {
+	}
+
+}
@@ -0,0 +1,100 @@
+package j2048.engine;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.Tile;
+import j2048.TileGameContext;
+import j2048.TurnBatch;
+import j2048.TurnPerformer;
+
+import java.util.Random;
+
+/**
+ * A complete {@link TurnPerformer} backed by the {@link Bitboard} engine.
+ * <p>
+ * Each turn packs the grid into a bitboard and computes the move with table
+ * lookups. If the move changes the board, the tile movements and merges, the
+ * new tile, and the outcome of the turn are collected in a {@link TurnBatch}
+ * and committed to the {@link TileGameContext} in one call, so that any view
+ * attached to the context can animate the whole turn at once.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class BitboardTurnPerformer implements TurnPerformer {
+
+	/**
+	 * The tile value that wins the game when it is first created.
+	 */
+	public static final int WINNING_VALUE = 2048;
+
+	/**
+	 * The base-2 exponent of {@link #WINNING_VALUE}.
+	 */
+	private static final int WINNING_EXPONENT = Integer
+			.numberOfTrailingZeros(WINNING_VALUE);
+
+	/**
+	 * The source of randomness for spawned tiles, or {@code null} to use the
+	 * context's.
+	 */
+	private final Random random;
+
+	/**
+	 * Creates a turn performer that spawns tiles using the source of
+	 * randomness of each game, as given by {@link TileGameContext#getRandom()}.
+	 */
+	public BitboardTurnPerformer() {
+		random = null;
+	}
+
+	/**
+	 * Creates a turn performer that spawns tiles using the given source of
+	 * randomness, rather than the context's.
+	 * 
+	 * @param random
+	 *            the source of randomness for spawned tiles
+	 * @throws IllegalArgumentException
+	 *             if {@code random == null}
+	 */
+	public BitboardTurnPerformer(Random random) throws IllegalArgumentException {
+		if (random == null) {
+			throw new IllegalArgumentException("random must not be null");
+		}
+		this.random = random;
+	}
+
+	@Override
+	public boolean turn(Direction direction, TileGameContext context) {
+		final long board = Bitboard.encode(context.getGrid());
+		final long moved = Bitboard.move(board, direction);
+		if (moved == board) {
+			return false;
+		}
+
+		final TurnBatch batch = new TurnBatch();
+		MoveReplay.replay(direction, context.getGrid(), batch,
+				1 << Bitboard.MAX_EXPONENT);
+		final boolean won = Bitboard.maxExponent(board) < WINNING_EXPONENT
+				&& Bitboard.maxExponent(moved) >= WINNING_EXPONENT;
+
+		final int free = Bitboard.countEmpty(moved);
+		final Random random = this.random != null ? this.random : context
+				.getRandom();
+		final int index = Bitboard.emptyCellIndex(moved, random.nextInt(free));
+		final int exponent = random.nextInt(10) == 0 ? 2 : 1;
+		final Tile spawned = new Tile();
+		spawned.setValue(1 << exponent);
+		batch.spawn(spawned, BoardLocation.fromIndex(index));
+
+		if (won) {
+			batch.win();
+		}
+		if (!Bitboard.canMove(Bitboard.withExponent(moved, index, exponent))) {
+			batch.lose();
+		}
+		context.commitTurn(batch);
+		return true;
+	}
+
+}
@@ -0,0 +1,107 @@
+package j2048.engine;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.Tile;
+import j2048.TileGameContext;
+import j2048.TileGrid;
+import j2048.TurnBatch;
+
+/**
+ * Replays a move as the steps of a {@link TurnBatch}, so that the context's
+ * grid and any attached view see each tile movement and merge when the batch
+ * is {@linkplain TileGameContext#commitTurn(TurnBatch) committed}. The
+ * engines compute whether a move is possible and what it produces; this class
+ * turns the move into the individual tile movements and merges.
+ * 
+ * @author William Chargin
+ * 
+ */
+final class MoveReplay {
+
+	/**
+	 * Gets the location of the {@code i}-th cell of a line, counting from the
+	 * edge toward which tiles move.
+	 * 
+	 * @param direction
+	 *            the direction of movement
+	 * @param line
+	 *            the index of the row or column
+	 * @param i
+	 *            the position within the line
+	 * @param size
+	 *            the side length of the board
+	 * @return the location of the cell
+	 */
+	private static BoardLocation cellOf(Direction direction, int line, int i,
+			int size) {
+		final int last = size - 1;
+		switch (direction) {
+		case WEST:
+			return BoardLocation.of(i, line, size);
+		case EAST:
+			return BoardLocation.of(last - i, line, size);
+		case NORTH:
+			return BoardLocation.of(line, i, size);
+		case SOUTH:
+			return BoardLocation.of(line, last - i, size);
+		default:
+			throw new AssertionError("Unexpected direction " + direction);
+		}
+	}
+
+	/**
+	 * Adds the steps that slide and merge the tiles of a grid in the given
+	 * direction to a batch, along with the points scored. The grid itself is
+	 * not changed.
+	 * 
+	 * @param direction
+	 *            the direction of movement
+	 * @param grid
+	 *            the grid to move
+	 * @param batch
+	 *            the batch to which to add the steps
+	 * @param mergeLimit
+	 *            the tile value at and above which equal tiles no longer
+	 *            merge
+	 * @return the points scored by the move
+	 */
+	static int replay(Direction direction, TileGrid grid, TurnBatch batch,
+			int mergeLimit) {
+		final int size = grid.getSize();
+		int score = 0;
+		for (int line = 0; line < size; line++) {
+			Tile last = null;
+			int next = 0;
+			for (int i = 0; i < size; i++) {
+				final Tile tile = grid.at(cellOf(direction, line, i, size));
+				if (tile == null) {
+					continue;
+				}
+				final int value = tile.getValue();
+				if (last != null && last.getValue() == value
+						&& value < mergeLimit) {
+					final int newValue = 2 * value;
+					batch.merge(last, tile, direction, i - next + 1, newValue);
+					score += newValue;
+					last = null;
+				} else {
+					if (i != next) {
+						batch.move(tile, direction, i - next);
+					}
+					last = tile;
+					next++;
+				}
+			}
+		}
+		batch.addPoints(score);
+		return score;
+	}
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private MoveReplay() {
+	}
+
+}
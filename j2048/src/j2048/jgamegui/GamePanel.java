@@ -2,17 +2,26 @@ package j2048.jgamegui;
 
 import j2048.BoardLocation;
 import j2048.Direction;
+import j2048.GameEvent;
+import j2048.GameEventQueue;
+import j2048.GameModel;
+import j2048.GameSnapshot;
+import j2048.LocationSet;
 import j2048.Logic;
 import j2048.Tile;
-import j2048.TileGameContext;
-import j2048.TileGrid;
+import j2048.TurnPerformer;
+import j2048.metrics.Metrics;
+import j2048.record.GameRecord;
+import j2048.record.GameRecorder;
 
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.event.KeyEvent;
-import java.util.Iterator;
-import java.util.Set;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
 
 import jgame.Context;
 import jgame.GContainer;
@@ -24,6 +33,21 @@ import jgame.listener.FrameListener;
 
 /**
  * The main view for a game of 2048.
+ * <p>
+ * Arrow keys are read once per frame. Each new key press is queued, and
+ * queued moves are applied to the model as soon as the grid is less than
+ * {@link #MAX_TURNS_AHEAD} turns behind it, so a move made while a turn is
+ * being animated takes effect at once rather than being dropped. If the
+ * player gets further ahead than that, up to {@link #MAX_QUEUED_MOVES} moves
+ * wait in the queue and any more are ignored.
+ * <p>
+ * If the panel is given a {@link SaveFile}, it restores the game and best
+ * score saved there and saves them again, in the background, about once a
+ * second while the game changes.
+ * <p>
+ * When a game is won or lost, {@link #REPLAY_KEY} opens a
+ * {@link ReplayViewer} on the record of that game in place of the board, and
+ * closes it again.
  * 
  * @author William Chargin
  * 
@@ -135,9 +159,42 @@ public class GamePanel extends GContainer {
 	}
 
 	/**
-	 * The tile grid used in this game.
+	 * The largest number of key presses waiting to be applied.
 	 */
-	private final TileGrid gridData = new TileGrid();
+	public static final int MAX_QUEUED_MOVES = 4;
+
+	/**
+	 * The number of turns that the model can be ahead of the grid before
+	 * further moves wait in the queue.
+	 */
+	public static final int MAX_TURNS_AHEAD = 2;
+
+	/**
+	 * The number of frames between saves of a changing game.
+	 */
+	public static final int AUTOSAVE_INTERVAL = 60;
+
+	/**
+	 * The key that shows and hides the performance overlay.
+	 */
+	public static final int OVERLAY_KEY = KeyEvent.VK_F3;
+
+	/**
+	 * The key that opens and closes the replay of a game that has been won or
+	 * lost.
+	 */
+	public static final int REPLAY_KEY = KeyEvent.VK_R;
+
+	/**
+	 * The model of the game shown in this panel.
+	 */
+	private final GameModel model;
+
+	/**
+	 * The events from the model that affect the score and the outcome of the
+	 * game, waiting to be displayed.
+	 */
+	private final GameEventQueue events = new GameEventQueue();
 
 	/**
 	 * The message representing the user's current score.
@@ -154,10 +211,106 @@ public class GamePanel extends GContainer {
 	 */
 	private final GridPanel grid;
 
-	private TileGameContext tgc;
+	/**
+	 * The recorder for the current game.
+	 */
+	private final GameRecorder recorder;
+
+	/**
+	 * The turn performer, wrapped so that every move is recorded and
+	 * measured.
+	 */
+	private final TurnPerformer performer;
 
+	/**
+	 * The record of the last finished game, or {@code null} if no game has
+	 * finished.
+	 */
+	private GameRecord lastRecord;
+
+	/**
+	 * The panel shown at the end of the game, or {@code null} if the game has
+	 * not ended.
+	 */
+	private ReplayPanel endPanel;
+
+	/**
+	 * The viewer showing the replay of the game, or {@code null} if it is not
+	 * open.
+	 */
+	private ReplayViewer viewer;
+
+	/**
+	 * The moves pressed but not yet applied, oldest first.
+	 */
+	private final Queue<Direction> moves = new ArrayDeque<>(MAX_QUEUED_MOVES);
+
+	/**
+	 * The file in which the game is saved, or {@code null} if it is not
+	 * saved.
+	 */
+	private SaveFile saveFile;
+
+	/**
+	 * Whether the game has changed since it was last saved.
+	 */
+	private boolean unsaved;
+
+	/**
+	 * The number of frames since the game was last saved.
+	 */
+	private int framesSinceSave;
+
+	/**
+	 * The performance overlay.
+	 */
+	private final PerformanceOverlay overlay = new PerformanceOverlay(
+			J2048.TARGET_FPS);
+
+	/**
+	 * Whether the performance overlay is shown.
+	 */
+	private boolean overlayVisible;
+
+	/**
+	 * Creates a game panel on a board of the default size.
+	 */
 	public GamePanel() {
+		this(BoardLocation.BOARD_SIZE);
+	}
+
+	/**
+	 * Creates a game panel on a board of the given size, using the standard
+	 * rules.
+	 * 
+	 * @param size
+	 *            the number of cells along each side of the board
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}
+	 */
+	public GamePanel(int size) throws IllegalArgumentException {
+		this(size, new Logic());
+	}
+
+	/**
+	 * Creates a game panel on a board of the given size, using the given
+	 * turn performer to apply the user's moves.
+	 * 
+	 * @param size
+	 *            the number of cells along each side of the board
+	 * @param performer
+	 *            the turn performer
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}, or
+	 *             if {@code performer == null}
+	 */
+	public GamePanel(int size, TurnPerformer performer)
+			throws IllegalArgumentException {
+		if (performer == null) {
+			throw new IllegalArgumentException("performer must not be null");
+		}
 		setSize(500, 600);
+		model = new GameModel(size);
 
 		final GMessage title = new GMessage("2048");
 		title.setColor(J2048.TEXT_COLOR);
@@ -172,183 +325,260 @@ public class GamePanel extends GContainer {
 		addAt(scoreValue = new ScoreDisplay("Score"), 275, 10);
 		addAt(bestValue = new ScoreDisplay("Best"), 275, 55);
 
-		grid = new GridPanel();
+		grid = new GridPanel(size);
 		grid.setAnchorTopLeft();
 		addAt(grid, 0, 100);
 
-		final Runnable spawnTwo = new Runnable() {
-			@Override
-			public void run() {
-				for (int i = 0; i < 2; i++) {
-					Tile t = new Tile();
-					t.setValue(2);
-					final Set<BoardLocation> free = gridData
-							.getAllUnoccupiedLocations();
-					int index = (int) (Math.random() * free.size());
-					Iterator<BoardLocation> it = free.iterator();
-					for (int j = 0; j < index - 1; j++) {
-						it.next();
-					}
-					tgc.addTile(t, it.next());
-				}
-			}
-		};
-		tgc = new TileGameContext() {
-
-			private void doReplay(Color color, String message) {
-				final AlphaTween in = new AlphaTween(30, 0, 1);
-				final ReplayPanel panel = new ReplayPanel(color, message,
-						new ButtonListener() {
-							@Override
-							public void mouseClicked(Context context) {
-								for (BoardLocation loc : gridData
-										.getAllOccupiedLocations()) {
-									Tile t = gridData.at(loc);
-									grid.removeTile(t);
-									gridData.remove(loc);
-								}
-								spawnTwo.run();
-							}
-						});
-				panel.setAlpha(0);
-				panel.addController(in);
-				addSibling(panel);
-			}
-
-			@Override
-			public void addTile(Tile tile, BoardLocation location)
-					throws IllegalArgumentException {
-				if (tile == null) {
-					throw new IllegalArgumentException("tile must not be null");
-				}
-				if (location == null) {
-					throw new IllegalArgumentException(
-							"location must not be null");
-				}
-				grid.addTileAt(tile, location);
-				gridData.put(location, tile);
-			}
+		recorder = new GameRecorder(size, 0);
+		this.performer = recorder.wrap(Metrics.wrap(performer));
+		model.addGameListener(grid);
+		model.addGameListener(events);
+		model.addGameListener(recorder);
+		spawnTwo();
+		addListener(new FrameListener() {
 
-			@Override
-			public TileGrid getGrid() {
-				return gridData;
-			}
+			private Direction lastDir = null;
 
-			@Override
-			public int getScore() {
-				return scoreValue.getScore();
-			}
+			private boolean overlayKeyDown;
 
-			@Override
-			public int incrementScoreBy(int value) {
-				int newScore = getScore() + value;
-				setScore(newScore);
-				return newScore;
-			}
+			private boolean replayKeyDown;
 
 			@Override
-			public void loseGame() {
-				doReplay(Color.RED, "Game over!");
-			}
+			public void invoke(GObject target, Context context) {
+				showEvents();
 
-			@Override
-			public void mergeTiles(Tile target, Tile mover,
-					Direction direction, int movementSteps, int newValue)
-					throws IllegalArgumentException {
-				if (target == null) {
-					throw new IllegalArgumentException("tile must not be null");
+				final boolean overlayKey = context.getKeyCodesPressed()
+						.contains(OVERLAY_KEY);
+				if (overlayKey && !overlayKeyDown) {
+					setOverlayVisible(!overlayVisible);
 				}
-				if (mover == null) {
-					throw new IllegalArgumentException("tile must not be null");
-				}
-				if (direction == null) {
-					throw new IllegalArgumentException(
-							"direction must not be null");
-				}
-				mover.setValue(newValue);
-				grid.mergeTile(target, mover, direction, movementSteps,
-						newValue);
-				moveTile(mover, direction, movementSteps);
-			}
+				overlayKeyDown = overlayKey;
 
-			@Override
-			public void moveTile(Tile tile, Direction direction, int count)
-					throws IllegalArgumentException {
-				if (tile == null) {
-					throw new IllegalArgumentException("tile must not be null");
-				}
-				if (direction == null) {
-					throw new IllegalArgumentException(
-							"direction must not be null");
+				final boolean replayKey = context.getKeyCodesPressed()
+						.contains(REPLAY_KEY);
+				if (replayKey && !replayKeyDown) {
+					toggleReplay();
 				}
-				BoardLocation loc = gridData.find(tile);
-				if (loc == null) {
-					throw new IllegalArgumentException("tile must be in grid");
+				replayKeyDown = replayKey;
+
+				// The arrow keys belong to the viewer while it is open.
+				final Direction dir = viewer == null ? pressedDirection(context)
+						: null;
+				if (dir != null && dir != lastDir
+						&& moves.size() < MAX_QUEUED_MOVES) {
+					moves.add(dir);
 				}
-				grid.moveTile(tile, direction, count);
-				gridData.remove(loc);
-				for (int i = 0; i < count; i++) {
-					loc = loc.getAdjacentLocation(direction);
-					if (loc == null) {
-						throw new IllegalArgumentException(
-								"Trying to move too far: " + count);
-					}
+				lastDir = dir;
+				applyMoves();
+
+				if (++framesSinceSave >= AUTOSAVE_INTERVAL && unsaved) {
+					save();
 				}
-				gridData.put(loc, tile);
 			}
+		});
 
-			@Override
-			public void setScore(int score) throws IllegalArgumentException {
-				GamePanel.this.setScore(score);
-			}
+	}
 
-			@Override
-			public void winGame() {
-				doReplay(Color.GREEN, "You win!");
+	/**
+	 * Applies queued moves to the model until the queue is empty or the grid
+	 * falls {@link #MAX_TURNS_AHEAD} turns behind.
+	 */
+	private void applyMoves() {
+		while (!moves.isEmpty()
+				&& grid.getPendingTurns() < MAX_TURNS_AHEAD) {
+			final long start = System.nanoTime();
+			unsaved |= performer.turn(moves.poll(), model);
+			overlay.turnPerformed(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Finishes the record of the game and shows a panel offering to start a
+	 * new game.
+	 * 
+	 * @param color
+	 *            the color of the panel
+	 * @param message
+	 *            the message to display
+	 */
+	private void doReplay(Color color, String message) {
+		lastRecord = recorder.checkpoint().finish(model.snapshot());
+		final AlphaTween in = new AlphaTween(30, 0, 1);
+		final ReplayPanel panel = new ReplayPanel(color, message,
+				new ButtonListener() {
+					@Override
+					public void mouseClicked(Context context) {
+						endPanel = null;
+						moves.clear();
+						lastRecord = recorder.finish(model);
+						model.reset();
+						spawnTwo();
+						unsaved = true;
+					}
+				});
+		panel.setAlpha(0);
+		panel.addController(in);
+		addSibling(panel);
+		endPanel = panel;
+	}
+
+	/**
+	 * Finds the direction of the arrow key being pressed. If several arrow
+	 * keys are pressed, the last one reported by the context is used.
+	 * 
+	 * @param context
+	 *            the context from which to read the keys
+	 * @return the direction of the pressed key, or {@code null} if no arrow
+	 *         key is pressed
+	 */
+	private static Direction pressedDirection(Context context) {
+		Direction dir = null;
+		for (int key : context.getKeyCodesPressed()) {
+			switch (key) {
+			case KeyEvent.VK_LEFT:
+				dir = Direction.WEST;
+				break;
+			case KeyEvent.VK_RIGHT:
+				dir = Direction.EAST;
+				break;
+			case KeyEvent.VK_UP:
+				dir = Direction.NORTH;
+				break;
+			case KeyEvent.VK_DOWN:
+				dir = Direction.SOUTH;
+				break;
+			default:
+				continue;
 			}
-		};
-		spawnTwo.run();
-		addListener(new FrameListener() {
+		}
+		return dir;
+	}
 
-			private int tick = 0;
-			private Direction lastDir = null;
+	/**
+	 * Shows or hides the parts of this panel and the end-of-game panel.
+	 * 
+	 * @param visible
+	 *            whether to show them
+	 */
+	private void setChildrenVisible(boolean visible) {
+		for (GObject child : getObjects()) {
+			child.setVisible(visible);
+		}
+		if (endPanel != null) {
+			endPanel.setVisible(visible);
+		}
+	}
 
-			@Override
-			public void invoke(GObject target, Context context) {
-				Direction dir = null;
-				for (int key : context.getKeyCodesPressed()) {
-					switch (key) {
-					case KeyEvent.VK_LEFT:
-						dir = Direction.WEST;
-						break;
-					case KeyEvent.VK_RIGHT:
-						dir = Direction.EAST;
-						break;
-					case KeyEvent.VK_UP:
-						dir = Direction.NORTH;
-						break;
-					case KeyEvent.VK_DOWN:
-						dir = Direction.SOUTH;
-						break;
-					default:
-						continue;
-					}
-				}
-				if (dir == null) {
-					lastDir = dir;
-				} else if (dir == lastDir) {
-					return;
-				}
-				lastDir = dir;
-				if (dir != null && tick == 0) {
-					new Logic().turn(dir, tgc);
-					tick = GridPanel.TURN_DURATION;
-				} else if (tick > 0) {
-					tick--;
+	/**
+	 * Updates the score displays and shows the end of the game for any
+	 * events that have arrived from the model.
+	 */
+	private void showEvents() {
+		List<GameEvent> batch;
+		while ((batch = events.poll()) != null) {
+			for (GameEvent event : batch) {
+				switch (event.getType()) {
+				case SCORE_CHANGED:
+					setScore(event.getScore());
+					break;
+				case WON:
+					doReplay(Color.GREEN, "You win!");
+					break;
+				case LOST:
+					doReplay(Color.RED, "Game over!");
+					break;
+				default:
+					break;
 				}
 			}
-		});
+		}
+	}
 
+	/**
+	 * Adds two tiles of value {@code 2} to random empty cells, to start a
+	 * game, and starts recording the game.
+	 */
+	private void spawnTwo() {
+		recorder.reset(model.getSeed());
+		for (int i = 0; i < 2; i++) {
+			Tile t = new Tile();
+			t.setValue(2);
+			final LocationSet free = model.getGrid().getUnoccupiedLocations();
+			int index = model.getRandom().nextInt(free.size());
+			model.addTile(t, free.select(index));
+		}
+	}
+
+	/**
+	 * Opens the replay of the game that has ended, hiding the board and the
+	 * end-of-game panel, or closes it and shows them again. Nothing happens
+	 * if the game has not ended.
+	 */
+	private void toggleReplay() {
+		if (viewer != null) {
+			viewer.removeSelf();
+			viewer = null;
+			setChildrenVisible(true);
+			return;
+		}
+		if (endPanel == null || lastRecord == null) {
+			return;
+		}
+		try {
+			viewer = new ReplayViewer(lastRecord);
+		} catch (IllegalArgumentException e) {
+			// A record whose starting tiles cannot be placed has nothing to
+			// show, so the end-of-game panel stays up.
+			return;
+		}
+		setChildrenVisible(false);
+		viewer.setAnchorTopLeft();
+		addAt(viewer, 0, 0);
+	}
+
+	/**
+	 * Gets the record of the last finished game. A game is finished when it
+	 * is won or lost, and again, with any further moves, when the user starts
+	 * a new one.
+	 * 
+	 * @return the record, or {@code null} if no game has finished
+	 */
+	public GameRecord getLastRecord() {
+		return lastRecord;
+	}
+
+	/**
+	 * Determines whether the performance overlay is shown.
+	 * 
+	 * @return {@code true} if the overlay is drawn over this panel
+	 */
+	public boolean isOverlayVisible() {
+		return overlayVisible;
+	}
+
+	@Override
+	public void paint(Graphics2D g) {
+		if (!overlayVisible) {
+			super.paint(g);
+			return;
+		}
+		final long start = System.nanoTime();
+		super.paint(g);
+		overlay.framePainted(System.nanoTime() - start);
+		overlay.paint(g, grid.getTileViewCount(), grid.getActiveTweens());
+	}
+
+	/**
+	 * Saves the game and best score to the save file, if there is one. This
+	 * takes constant time; the file is encoded and written in the background.
+	 */
+	public void save() {
+		if (saveFile != null) {
+			saveFile.save(bestValue.getScore(), model.snapshot(),
+					recorder.checkpoint());
+		}
+		unsaved = false;
+		framesSinceSave = 0;
 	}
 
 	/**
@@ -361,6 +591,66 @@ public class GamePanel extends GContainer {
 		bestValue.setScore(newBestScore);
 	}
 
+	/**
+	 * Shows or hides the performance overlay, which reports the frame rate,
+	 * paint and turn times, animation load and garbage collection of the
+	 * game. The overlay can also be toggled with {@link #OVERLAY_KEY}.
+	 * 
+	 * @param visible
+	 *            whether to draw the overlay over this panel
+	 */
+	public void setOverlayVisible(boolean visible) {
+		if (visible && !overlayVisible) {
+			overlay.reset();
+		}
+		overlayVisible = visible;
+	}
+
+	/**
+	 * Sets the file in which this panel saves its game and best score, and
+	 * restores them from it. A saved game on a board of this panel's size
+	 * replaces the current game at once, without animation; a file that
+	 * cannot be read is ignored, and overwritten by the next save.
+	 * 
+	 * @param saveFile
+	 *            the save file, or {@code null} to stop saving
+	 */
+	public void setSaveFile(SaveFile saveFile) {
+		this.saveFile = saveFile;
+		if (saveFile == null) {
+			return;
+		}
+		final SaveFile.Contents contents;
+		try {
+			contents = saveFile.load();
+		} catch (IOException e) {
+			return;
+		}
+		if (contents == null) {
+			return;
+		}
+		if (contents.getBestScore() > bestValue.getScore()) {
+			setBestScore(contents.getBestScore());
+		}
+		final GameSnapshot snapshot = contents.getSnapshot();
+		final int size = model.getGrid().getSize();
+		if (snapshot.getBoardSize() == size
+				&& contents.getRecord().getBoardSize() == size) {
+			moves.clear();
+			try {
+				model.restore(snapshot);
+				recorder.resume(contents.getRecord());
+			} catch (IllegalArgumentException e) {
+				// A save that cannot be restored is ignored like one that
+				// cannot be read, and the player starts a new game.
+				model.reset();
+				spawnTwo();
+			}
+			// Build the views directly rather than animating the restore.
+			grid.showGrid(model.getGrid());
+		}
+	}
+
 	/**
 	 * Updates the "score" display to reflect the new score.
 	 * 
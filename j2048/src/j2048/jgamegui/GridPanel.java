@@ -1,13 +1,26 @@
 package j2048.jgamegui;
 
 import j2048.BoardLocation;
-import j2048.Direction;
+import j2048.GameEvent;
+import j2048.GameEventQueue;
+import j2048.GameListener;
+import j2048.GameModel;
 import j2048.Tile;
+import j2048.TileGrid;
+import j2048.metrics.Metric;
+import j2048.metrics.Metrics;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.RoundRectangle2D;
+import java.awt.image.VolatileImage;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import jgame.Context;
@@ -16,35 +29,137 @@ import jgame.GObject;
 import jgame.controller.MovementTween;
 import jgame.controller.ScaleTween;
 import jgame.listener.DelayListener;
+import jgame.listener.FrameListener;
 
 /**
  * A panel to display the grid of a 2048 game.
+ * <p>
+ * The panel follows a {@link GameModel} by listening for its events. Batches
+ * of events are queued as they arrive and animated one turn at a time, so the
+ * model never waits for the view; if the model gets ahead, the view catches
+ * up. Tiles are drawn with the values carried by the events, not the current
+ * values of the model's tiles; a turn performer that sets the value of a
+ * tile directly is shown through the model's
+ * {@link GameEvent.Type#VALUE_CHANGED} events.
+ * <p>
+ * With {@linkplain #setAdaptiveSpeed(boolean) adaptive speed}, which is the
+ * default, each turn is animated faster the more turns are waiting behind
+ * it: a turn with {@code n} turns waiting takes {@link #TURN_DURATION}
+ * {@code / (n + 1)} frames. Turns that would take fewer than
+ * {@link #MIN_TURN_DURATION} frames are not animated at all; their tiles are
+ * put straight into their final places, so the panel can show hundreds of
+ * turns per second. Without adaptive speed, every turn takes
+ * {@link #TURN_DURATION} frames.
+ * <p>
+ * The empty grid behind the tiles is rendered once into an image, which is
+ * drawn under the tiles on every frame and rendered again only if the panel
+ * is resized, it is painted on a different device, or the image is lost.
  * 
  * @author William Chargin
  * 
  */
-public class GridPanel extends GContainer {
+public class GridPanel extends GContainer implements GameListener {
 
 	/**
 	 * The number of frames in a turn. This should be an even number.
 	 */
 	public static final int TURN_DURATION = 6;
 
+	/**
+	 * The number of frames in the shortest animated turn. Turns that would be
+	 * shorter than this are shown at once.
+	 */
+	public static final int MIN_TURN_DURATION = 2;
+
 	/**
 	 * The gutter between grid cells.
 	 */
 	public static final int GUTTER = 15;
 
+	/**
+	 * The color of an empty cell.
+	 */
+	private static final Color CELL_COLOR = new Color(228, 238, 218, 89);
+
+	/**
+	 * The time taken to paint the grid and its tiles, in nanoseconds.
+	 */
+	private static final Metric PAINT_NANOS = Metrics.get("grid.paint.nanos");
+
 	/**
 	 * The map of tiles to their corresponding views.
 	 */
 	private final Map<Tile, TileView> views = new HashMap<>();
 
 	/**
-	 * Creates a grid panel for the 2048 game.
+	 * The number of cells along each side of the grid.
+	 */
+	private final int side;
+
+	/**
+	 * The batches of events waiting to be animated.
+	 */
+	private final GameEventQueue queue = new GameEventQueue();
+
+	/**
+	 * The number of frames left in the animation of the current turn.
+	 */
+	private int busy;
+
+	/**
+	 * The number of frames shown so far.
+	 */
+	private int frame;
+
+	/**
+	 * The number of tweens running on the tile views.
+	 */
+	private int tweens;
+
+	/**
+	 * The number of tweens that end at each frame, indexed by frame number
+	 * modulo the length of the array. No tween lasts longer than
+	 * {@link #TURN_DURATION}, so the array never wraps onto a live slot.
+	 */
+	private final int[] tweenEnds = new int[TURN_DURATION + 1];
+
+	/**
+	 * Whether turns are animated faster when the panel is behind the model.
+	 */
+	private boolean adaptiveSpeed = true;
+
+	/**
+	 * The rendered empty grid, in device pixels, or {@code null} if it has
+	 * not been rendered yet.
+	 */
+	private VolatileImage background;
+
+	/**
+	 * Creates a grid panel for a 2048 game on a board of the default size.
 	 */
 	public GridPanel() {
+		this(BoardLocation.BOARD_SIZE);
+	}
+
+	/**
+	 * Creates a grid panel for a 2048 game on a board of the given size. The
+	 * panel is the same size for every board; the cells shrink to fit.
+	 * 
+	 * @param side
+	 *            the number of cells along each side of the grid
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}
+	 */
+	public GridPanel(int side) throws IllegalArgumentException {
+		BoardLocation.checkBoardSize(side);
+		this.side = side;
 		setSize(500, 500);
+		addListener(new FrameListener() {
+			@Override
+			public void invoke(GObject target, Context context) {
+				nextFrame();
+			}
+		});
 	}
 
 	/**
@@ -54,43 +169,337 @@ public class GridPanel extends GContainer {
 	 *            the tile to display
 	 * @param location
 	 *            the location of the tile in the board
+	 * @param value
+	 *            the value to display on the tile
 	 * @return the newly created {@link TileView}
 	 */
-	public TileView addTileAt(Tile tile, BoardLocation location) {
-		final int side = BoardLocation.BOARD_SIZE;
+	public TileView addTileAt(Tile tile, BoardLocation location, int value) {
+		return addTileAt(tile, location, value, TURN_DURATION);
+	}
+
+	@Override
+	public void gameChanged(List<GameEvent> events) {
+		queue.gameChanged(events);
+	}
+
+	/**
+	 * Counts the tweens running on the tile views of this panel.
+	 * 
+	 * @return the number of tweens started less than their duration ago
+	 */
+	public int getActiveTweens() {
+		return tweens;
+	}
+
+	/**
+	 * Counts the turns that this panel has yet to finish showing, including
+	 * the one being animated. This is how far the panel is behind the model.
+	 * 
+	 * @return the number of batches of events not yet fully shown
+	 */
+	public int getPendingTurns() {
+		return queue.size() + (busy > 0 ? 1 : 0);
+	}
+
+	/**
+	 * Counts the tile views in this panel, including the targets of merges
+	 * that have not yet disappeared.
+	 * 
+	 * @return the number of tile views
+	 */
+	public int getTileViewCount() {
+		return views.size();
+	}
+
+	/**
+	 * Animates the mover tile moving onto the target tile, which disappears
+	 * halfway through the turn.
+	 * 
+	 * @param target
+	 *            the tile that disappears
+	 * @param mover
+	 *            the tile that moves
+	 * @param from
+	 *            the location of the mover before the merge
+	 * @param to
+	 *            the location of both tiles
+	 * @param newValue
+	 *            the value of the mover after the merge
+	 */
+	public void mergeTile(Tile target, Tile mover, BoardLocation from,
+			BoardLocation to, int newValue) {
+		mergeTile(target, mover, from, to, newValue, TURN_DURATION);
+	}
+
+	/**
+	 * Moves the given tile view from one cell to another.
+	 * 
+	 * @param tile
+	 *            the tile to move
+	 * @param from
+	 *            the location of the tile before the move
+	 * @param to
+	 *            the location of the tile after the move
+	 */
+	public void moveTile(Tile tile, BoardLocation from, BoardLocation to) {
+		moveTile(tile, from, to, TURN_DURATION);
+	}
+
+	/**
+	 * Gets the view of a tile.
+	 * 
+	 * @param tile
+	 *            the tile
+	 * @return the view showing the tile, or {@code null} if there is none
+	 */
+	TileView viewOf(Tile tile) {
+		return views.get(tile);
+	}
+
+	/**
+	 * Advances the animation by one frame, and starts showing the next turns
+	 * if the current one has finished. This is called on every frame.
+	 */
+	void nextFrame() {
+		final int slot = ++frame % tweenEnds.length;
+		tweens -= tweenEnds[slot];
+		tweenEnds[slot] = 0;
+		if (busy > 0) {
+			busy--;
+		}
+		if (busy > 0) {
+			return;
+		}
+		// Counting the queue takes linear time, so count it once and keep
+		// track of the batches taken.
+		int waiting = queue.size();
+		List<GameEvent> batch;
+		while (busy == 0 && (batch = queue.poll()) != null) {
+			show(batch, turnDuration(--waiting));
+		}
+	}
+
+	@Override
+	public void paint(Graphics2D g) {
+		final long start = Metrics.isEnabled() ? System.nanoTime() : 0;
+		final GraphicsConfiguration config = g.getDeviceConfiguration();
+		final AffineTransform device = config.getDefaultTransform();
+		final int w = Math.max(1,
+				(int) Math.ceil(getWidth() * device.getScaleX()));
+		final int h = Math.max(1,
+				(int) Math.ceil(getHeight() * device.getScaleY()));
+		do {
+			int status = VolatileImage.IMAGE_INCOMPATIBLE;
+			if (background != null && background.getWidth() == w
+					&& background.getHeight() == h) {
+				status = background.validate(config);
+			}
+			if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+				if (background != null) {
+					background.flush();
+				}
+				background = config.createCompatibleVolatileImage(w, h,
+						Transparency.TRANSLUCENT);
+				status = VolatileImage.IMAGE_RESTORED;
+			}
+			if (status == VolatileImage.IMAGE_RESTORED) {
+				renderBackground(background, w / getWidth(), h / getHeight());
+			}
+			g.drawImage(background, 0, 0, getIntWidth(), getIntHeight(), null);
+		} while (background.contentsLost());
+		super.paint(g);
+		if (start != 0) {
+			PAINT_NANOS.record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Sets whether turns are animated faster when the panel is behind the
+	 * model. This is on by default.
+	 * 
+	 * @param adaptiveSpeed
+	 *            {@code true} to shorten or skip the animation of turns that
+	 *            have other turns waiting behind them, or {@code false} to
+	 *            animate every turn for {@link #TURN_DURATION} frames
+	 */
+	public void setAdaptiveSpeed(boolean adaptiveSpeed) {
+		this.adaptiveSpeed = adaptiveSpeed;
+	}
+
+	/**
+	 * Replaces everything shown in this panel with the tiles of the given
+	 * grid, at once and without animation. Any events waiting to be animated
+	 * are discarded. This lets the panel jump to any point in a game, for
+	 * example when scrubbing through a replay.
+	 * 
+	 * @param grid
+	 *            the grid to show
+	 * @throws IllegalArgumentException
+	 *             if {@code grid == null}, or if it is a different size
+	 */
+	public void showGrid(TileGrid grid) throws IllegalArgumentException {
+		if (grid == null) {
+			throw new IllegalArgumentException("grid must not be null");
+		}
+		if (grid.getSize() != side) {
+			throw new IllegalArgumentException("size mismatch: "
+					+ grid.getSize() + " != " + side);
+		}
+		queue.clear();
+		busy = 0;
+		tweens = 0;
+		Arrays.fill(tweenEnds, 0);
+		for (TileView view : views.values()) {
+			remove(view);
+		}
+		views.clear();
+		for (BoardLocation loc : grid.getOccupiedLocations()) {
+			final Tile tile = grid.at(loc);
+			createView(tile, loc, tile.getValue());
+		}
+	}
+
+	/**
+	 * Adds a view for the given tile at the given location, growing it from
+	 * nothing over the given number of frames.
+	 * 
+	 * @param tile
+	 *            the tile to display
+	 * @param location
+	 *            the location of the tile in the board
+	 * @param value
+	 *            the value to display on the tile
+	 * @param duration
+	 *            the number of frames to animate for, or {@code 0} to add the
+	 *            view at full size
+	 * @return the new view
+	 */
+	private TileView addTileAt(Tile tile, BoardLocation location, int value,
+			int duration) {
+		final TileView view = createView(tile, location, value);
+		if (duration > 0) {
+			view.setScale(0);
+			view.addController(new ScaleTween(duration, 0, 1));
+			tweenStarted(duration);
+		}
+		return view;
+	}
+
+	/**
+	 * Gets the position of the center of a cell, as used by
+	 * {@link #addAt(GObject, double, double)}.
+	 * 
+	 * @param location
+	 *            the location of the cell
+	 * @return the coordinates of the center of the cell
+	 */
+	private double[] centerOf(BoardLocation location) {
 		final double width = (getWidth() - ((side + 1) * GUTTER)) / side;
 		final double height = (getHeight() - ((side + 1) * GUTTER)) / side;
+		return new double[] {
+				GUTTER + (GUTTER + width) * location.getX() + width / 2,
+				GUTTER + (GUTTER + height) * location.getY() + height / 2 };
+	}
 
-		TileView view = new TileView(tile);
-		view.setSize(width, height);
+	/**
+	 * Creates and adds a view for the given tile at the given location, at
+	 * full size.
+	 * 
+	 * @param tile
+	 *            the tile to display
+	 * @param location
+	 *            the location of the tile in the board
+	 * @param value
+	 *            the value to display on the tile
+	 * @return the new view
+	 */
+	private TileView createView(Tile tile, BoardLocation location, int value) {
+		final double width = (getWidth() - ((side + 1) * GUTTER)) / side;
+		final double height = (getHeight() - ((side + 1) * GUTTER)) / side;
 
-		final double x = GUTTER + (GUTTER + width) * location.getX() + (width)
-				/ 2;
-		final double y = GUTTER + (GUTTER + height) * location.getY()
-				+ (height) / 2;
-		addAt(view, x, y);
+		TileView view = new TileView(tile, value);
+		view.setSize(width, height);
 
-		view.setScale(0);
-		view.addController(new ScaleTween(TURN_DURATION, 0, 1));
+		final double[] center = centerOf(location);
+		addAt(view, center[0], center[1]);
 
 		views.put(tile, view);
-
 		return view;
 	}
 
-	public void mergeTile(final Tile target, final Tile mover,
-			final Direction direction, final int movementSteps,
-			final int newValue) {
+	/**
+	 * Renders the empty grid into an image.
+	 * 
+	 * @param image
+	 *            the image to render into
+	 * @param scaleX
+	 *            the number of image pixels per unit of panel width
+	 * @param scaleY
+	 *            the number of image pixels per unit of panel height
+	 */
+	private void renderBackground(VolatileImage image, double scaleX,
+			double scaleY) {
+		final Graphics2D g = image.createGraphics();
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g.setComposite(AlphaComposite.SrcOver);
+		GObject.antialias(g);
+		g.scale(scaleX, scaleY);
+
+		g.setColor(J2048.MAIN_COLOR);
+		g.fillRoundRect(0, 0, getIntWidth(), getIntHeight(), 6, 6);
+
+		final double width = (getWidth() - ((side + 1) * GUTTER)) / side;
+		final double height = (getHeight() - ((side + 1) * GUTTER)) / side;
+		g.setColor(CELL_COLOR);
+		final RoundRectangle2D cell = new RoundRectangle2D.Double();
+		for (int i = 0; i < side; i++) {
+			for (int j = 0; j < side; j++) {
+				cell.setRoundRect(GUTTER + (GUTTER + width) * i, GUTTER
+						+ (GUTTER + height) * j, width, height,
+						TileView.CORNER_RADIUS, TileView.CORNER_RADIUS);
+				g.fill(cell);
+			}
+		}
+		g.dispose();
+	}
+
+	/**
+	 * Animates the mover tile moving onto the target tile over the given
+	 * number of frames.
+	 * 
+	 * @param target
+	 *            the tile that disappears
+	 * @param mover
+	 *            the tile that moves
+	 * @param from
+	 *            the location of the mover before the merge
+	 * @param to
+	 *            the location of both tiles
+	 * @param newValue
+	 *            the value of the mover after the merge
+	 * @param duration
+	 *            the number of frames to animate for, or {@code 0} to merge
+	 *            the tiles at once
+	 */
+	private void mergeTile(final Tile target, Tile mover, BoardLocation from,
+			BoardLocation to, int newValue, int duration) {
 		final TileView vm = views.get(mover);
 
-		moveTile(mover, direction, movementSteps);
+		moveTile(mover, from, to, duration);
+		vm.setValue(newValue);
+		if (duration == 0) {
+			removeTile(target);
+			return;
+		}
 
-		final ScaleTween scale = new ScaleTween(TURN_DURATION / 2, 1.0, 1.2);
-		scale.chain(new ScaleTween(TURN_DURATION / 2, 1.2, 1.0));
+		final int half = duration / 2;
+		final ScaleTween scale = new ScaleTween(half, 1.0, 1.2);
+		scale.chain(new ScaleTween(duration - half, 1.2, 1.0));
 		vm.addController(scale);
+		tweenStarted(duration);
 
-		vm.getTile().setValue(newValue);
-		vm.addListener(new DelayListener(TURN_DURATION / 2) {
+		vm.addListener(new DelayListener(half) {
 			@Override
 			public void invoke(GObject t, Context context) {
 				vm.removeListener(this);
@@ -100,43 +509,108 @@ public class GridPanel extends GContainer {
 	}
 
 	/**
-	 * Moves the given tile view one square in the given direction.
+	 * Moves the given tile view from one cell to another over the given
+	 * number of frames.
 	 * 
 	 * @param tile
 	 *            the tile to move
-	 * @param direction
-	 *            the direction in which to move the tile
-	 * @param count
+	 * @param from
+	 *            the location of the tile before the move
+	 * @param to
+	 *            the location of the tile after the move
+	 * @param duration
+	 *            the number of frames to animate for, or {@code 0} to move
+	 *            the view at once
 	 */
-	public void moveTile(Tile tile, Direction direction, int count) {
+	private void moveTile(Tile tile, BoardLocation from, BoardLocation to,
+			int duration) {
 		final TileView tileView = views.get(tile);
-		final double dx = (tileView.getWidth() + GUTTER) * count;
-		final double dy = (tileView.getHeight() + GUTTER) * count;
+		if (duration == 0) {
+			// Earlier turns have finished animating, so no tween is still
+			// moving this view and it can be placed directly.
+			final double[] center = centerOf(to);
+			tileView.setLocation(center[0], center[1]);
+			return;
+		}
+		final double dx = (tileView.getWidth() + GUTTER)
+				* (to.getX() - from.getX());
+		final double dy = (tileView.getHeight() + GUTTER)
+				* (to.getY() - from.getY());
 
-		tileView.addController(new MovementTween(TURN_DURATION, dx
-				* direction.getX(), dy * direction.getY()));
+		tileView.addController(new MovementTween(duration, dx, dy));
+		tweenStarted(duration);
 	}
 
-	@Override
-	public void paint(Graphics2D g) {
-		g.setColor(J2048.MAIN_COLOR);
-		g.fillRoundRect(0, 0, getIntWidth(), getIntHeight(), 6, 6);
-
-		final int side = BoardLocation.BOARD_SIZE;
-		final double width = (getWidth() - ((side + 1) * GUTTER)) / side;
-		final double height = (getHeight() - ((side + 1) * GUTTER)) / side;
-		g.setColor(new Color(228, 238, 218, 89));
-
-		for (int i = 0; i < side; i++) {
-			for (int j = 0; j < side; j++) {
-				RoundRectangle2D rr = new RoundRectangle2D.Double(GUTTER
-						+ (GUTTER + width) * i, GUTTER + (GUTTER + height) * j,
-						width, height, TileView.CORNER_RADIUS,
-						TileView.CORNER_RADIUS);
-				g.fill(rr);
+	/**
+	 * Shows one batch of events from the model. Batches that move tiles are
+	 * animated for the given number of frames, during which no other batch
+	 * is shown; other batches, such as the tiles of a new game, are shown
+	 * immediately.
+	 * 
+	 * @param events
+	 *            the events to show
+	 * @param duration
+	 *            the number of frames to animate for, or {@code 0} to show
+	 *            the batch at once
+	 */
+	private void show(List<GameEvent> events, int duration) {
+		for (GameEvent event : events) {
+			switch (event.getType()) {
+			case SPAWNED:
+				addTileAt(event.getTile(), event.getTo(), event.getValue(),
+						duration);
+				break;
+			case MOVED:
+				moveTile(event.getTile(), event.getFrom(), event.getTo(),
+						duration);
+				busy = duration;
+				break;
+			case MERGED:
+				mergeTile(event.getTarget(), event.getTile(), event.getFrom(),
+						event.getTo(), event.getValue(), duration);
+				busy = duration;
+				break;
+			case REMOVED:
+				removeTile(event.getTile());
+				break;
+			case VALUE_CHANGED:
+				final TileView view = views.get(event.getTile());
+				if (view != null) {
+					view.setValue(event.getValue());
+				}
+				break;
+			default:
+				break;
 			}
 		}
-		super.paint(g);
+	}
+
+	/**
+	 * Chooses the number of frames for which to animate a turn.
+	 * 
+	 * @param waiting
+	 *            the number of turns waiting behind the turn
+	 * @return the number of frames, or {@code 0} if the turn should be shown
+	 *         at once
+	 */
+	private int turnDuration(int waiting) {
+		if (!adaptiveSpeed || waiting <= 0) {
+			return TURN_DURATION;
+		}
+		final int duration = TURN_DURATION / (waiting + 1);
+		return duration < MIN_TURN_DURATION ? 0 : duration;
+	}
+
+	/**
+	 * Counts a tween that has just been started on a tile view.
+	 * 
+	 * @param duration
+	 *            the duration of the tween, in frames, which must be between
+	 *            {@code 1} and {@link #TURN_DURATION}
+	 */
+	private void tweenStarted(int duration) {
+		tweens++;
+		tweenEnds[(frame + duration) % tweenEnds.length]++;
 	}
 
 	/**
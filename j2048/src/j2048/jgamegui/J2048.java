@@ -1,6 +1,9 @@
 package j2048.jgamegui;
 
+import j2048.metrics.Metrics;
+
 import java.awt.Color;
+import java.nio.file.Paths;
 
 import jgame.GContainer;
 import jgame.GRootContainer;
@@ -25,17 +28,67 @@ public class J2048 extends GameApplet {
 	public static final Color LIGHT_TEXT = new Color(238, 228, 218);
 	public static final Color BUTTON_COLOR = new Color(143, 122, 102);
 
+	/**
+	 * The number of frames per second at which the game runs.
+	 */
+	public static final int TARGET_FPS = 60;
+
+	/**
+	 * The system property that shows the performance overlay from the start,
+	 * for example on kiosks that have no keyboard.
+	 */
+	public static final String OVERLAY_PROPERTY = "j2048.overlay";
+
+	/**
+	 * The game shown by this applet.
+	 */
+	private final GamePanel game;
+
+	/**
+	 * The file in which the game is kept between runs, or {@code null} if
+	 * the applet may not write files.
+	 */
+	private SaveFile saveFile;
+
 	public J2048() {
-		core.setTargetFPS(60);
+		core.setTargetFPS(TARGET_FPS);
+		Metrics.registerMBean();
 
 		GRootContainer root = new GRootContainer(LIGHT_COLOR);
 		core.setRootContainer(root);
 
 		GContainer container = new GContainer();
-		GamePanel game = new GamePanel();
+		game = new GamePanel();
+		try {
+			saveFile = new SaveFile(Paths.get(
+					System.getProperty("user.home"), ".j2048", "save"));
+			game.setSaveFile(saveFile);
+		} catch (SecurityException e) {
+			// Sandboxed applets cannot keep a save file.
+			saveFile = null;
+		}
+		try {
+			game.setOverlayVisible(Boolean.getBoolean(OVERLAY_PROPERTY));
+		} catch (SecurityException e) {
+			// Nor read the property; the overlay stays hidden.
+		}
 		container.setSize(game.getWidth() + 50, game.getHeight() + 50);
 		container.addAtCenter(game);
 		root.add(container);
 	}
 
+	@Override
+	public void destroy() {
+		if (saveFile != null) {
+			saveFile.close();
+		}
+		super.destroy();
+	}
+
+	@Override
+	public void stop() {
+		game.save();
+		super.stop();
+	}
+
 }
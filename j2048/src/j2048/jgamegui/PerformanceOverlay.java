@@ -0,0 +1,289 @@
+package j2048.jgamegui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * A heads-up display of how smoothly the game is running, drawn over a
+ * {@link GamePanel} while it is
+ * {@linkplain GamePanel#setOverlayVisible(boolean) shown}. It shows:
+ * <ul>
+ * <li>the frame rate over the last second, and the worst single frame, with
+ * the target frame rate;</li>
+ * <li>the median and 99th percentile of the time between frames and of the
+ * time taken to paint the panel;</li>
+ * <li>the number of tile views and running tweens in the grid;</li>
+ * <li>the time taken by the turn performer for the last turn;</li>
+ * <li>the heap in use, and the garbage collections per second;</li>
+ * <li>a bar for each of the last {@value #HISTORY} frames, red if the frame
+ * took longer than the target.</li>
+ * </ul>
+ * Frame and paint times are kept in {@linkplain RollingHistogram rolling
+ * histograms}, so the figures describe the last few seconds. The text is
+ * refreshed every {@value #REFRESH_INTERVAL} frames, so that the overlay
+ * itself stays cheap to draw.
+ * 
+ * @author William Chargin
+ * 
+ */
+final class PerformanceOverlay {
+
+	/**
+	 * The number of frames kept in the histograms and drawn as bars.
+	 */
+	static final int HISTORY = 120;
+
+	/**
+	 * The number of frames between refreshes of the text.
+	 */
+	static final int REFRESH_INTERVAL = 15;
+
+	/**
+	 * The background of the overlay.
+	 */
+	private static final Color BACKGROUND = new Color(0, 0, 0, 170);
+
+	/**
+	 * The color of frames that met the target.
+	 */
+	private static final Color GOOD_FRAME = new Color(120, 220, 120);
+
+	/**
+	 * The color of frames that missed the target.
+	 */
+	private static final Color SLOW_FRAME = new Color(240, 90, 80);
+
+	/**
+	 * The font of the text.
+	 */
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
+	/**
+	 * The width of the overlay.
+	 */
+	private static final int WIDTH = 280;
+
+	/**
+	 * The height of a line of text.
+	 */
+	private static final int LINE_HEIGHT = 15;
+
+	/**
+	 * The height of the bar chart; a bar this tall is twice the target.
+	 */
+	private static final int CHART_HEIGHT = 40;
+
+	/**
+	 * The margin around the contents of the overlay.
+	 */
+	private static final int MARGIN = 8;
+
+	/**
+	 * The number of nanoseconds in a millisecond.
+	 */
+	private static final double MILLIS = 1e6;
+
+	/**
+	 * The target frame rate.
+	 */
+	private final int targetFps;
+
+	/**
+	 * The target time between frames, in nanoseconds.
+	 */
+	private final long frameBudget;
+
+	/**
+	 * The time between consecutive frames, in nanoseconds.
+	 */
+	private final RollingHistogram frameTimes = new RollingHistogram(HISTORY);
+
+	/**
+	 * The time taken to paint each frame, in nanoseconds.
+	 */
+	private final RollingHistogram paintTimes = new RollingHistogram(HISTORY);
+
+	/**
+	 * The garbage collectors of this JVM.
+	 */
+	private final List<GarbageCollectorMXBean> collectors = ManagementFactory
+			.getGarbageCollectorMXBeans();
+
+	/**
+	 * The lines of text, as of the last refresh.
+	 */
+	private final String[] lines = new String[6];
+
+	/**
+	 * The time at which the last frame was painted, or {@code 0} if no frame
+	 * has been painted since the overlay was last reset.
+	 */
+	private long lastFrame;
+
+	/**
+	 * The time taken by the turn performer for the last turn, in
+	 * nanoseconds, or {@code -1} if no turn has been measured.
+	 */
+	private long lastTurn = -1;
+
+	/**
+	 * The number of frames since the text was refreshed.
+	 */
+	private int framesSinceRefresh = REFRESH_INTERVAL;
+
+	/**
+	 * The time of the last refresh, in nanoseconds.
+	 */
+	private long lastRefresh;
+
+	/**
+	 * The total number of garbage collections at the last refresh.
+	 */
+	private long lastGcCount;
+
+	/**
+	 * The total time spent in garbage collection at the last refresh, in
+	 * milliseconds.
+	 */
+	private long lastGcTime;
+
+	/**
+	 * Creates an overlay.
+	 * 
+	 * @param targetFps
+	 *            the target frame rate
+	 */
+	PerformanceOverlay(int targetFps) {
+		this.targetFps = targetFps;
+		this.frameBudget = 1000000000L / targetFps;
+	}
+
+	/**
+	 * Records that a frame has been painted. The time between frames is
+	 * measured from one call to the next.
+	 * 
+	 * @param paintNanos
+	 *            the time taken to paint the frame, in nanoseconds
+	 */
+	void framePainted(long paintNanos) {
+		final long now = System.nanoTime();
+		if (lastFrame != 0) {
+			frameTimes.add(now - lastFrame);
+		}
+		lastFrame = now;
+		paintTimes.add(paintNanos);
+	}
+
+	/**
+	 * Draws the overlay at the top left of the panel, refreshing the text if
+	 * it is due.
+	 * 
+	 * @param g
+	 *            the graphics context of the panel
+	 * @param tileViews
+	 *            the number of tile views in the grid
+	 * @param tweens
+	 *            the number of tweens running in the grid
+	 */
+	void paint(Graphics2D g, int tileViews, int tweens) {
+		if (++framesSinceRefresh >= REFRESH_INTERVAL) {
+			refresh(tileViews, tweens);
+			framesSinceRefresh = 0;
+		}
+		final int height = 2 * MARGIN + lines.length * LINE_HEIGHT
+				+ CHART_HEIGHT;
+		g.setColor(BACKGROUND);
+		g.fillRoundRect(0, 0, WIDTH, height, 6, 6);
+
+		g.setFont(FONT);
+		g.setColor(Color.WHITE);
+		for (int i = 0; i < lines.length; i++) {
+			g.drawString(lines[i], MARGIN, MARGIN + (i + 1) * LINE_HEIGHT - 3);
+		}
+
+		// One bar per frame, newest on the right, with a line at the target.
+		final int base = height - MARGIN;
+		for (int age = 0; age < frameTimes.size(); age++) {
+			final long frame = frameTimes.getRecent(age);
+			final int bar = (int) Math.min(CHART_HEIGHT, frame * CHART_HEIGHT
+					/ (2 * frameBudget));
+			g.setColor(frame > frameBudget ? SLOW_FRAME : GOOD_FRAME);
+			g.fillRect(WIDTH - MARGIN - 2 * (age + 1), base - bar, 1, bar);
+		}
+		g.setColor(Color.LIGHT_GRAY);
+		g.drawLine(MARGIN, base - CHART_HEIGHT / 2, WIDTH - MARGIN, base
+				- CHART_HEIGHT / 2);
+	}
+
+	/**
+	 * Forgets every frame, so that the time while the overlay was hidden is
+	 * not counted as one long frame.
+	 */
+	void reset() {
+		lastFrame = 0;
+		lastRefresh = 0;
+		framesSinceRefresh = REFRESH_INTERVAL;
+	}
+
+	/**
+	 * Records the time taken by the turn performer for a turn.
+	 * 
+	 * @param nanos
+	 *            the duration of the turn, in nanoseconds
+	 */
+	void turnPerformed(long nanos) {
+		lastTurn = nanos;
+	}
+
+	/**
+	 * Recomputes the lines of text.
+	 * 
+	 * @param tileViews
+	 *            the number of tile views in the grid
+	 * @param tweens
+	 *            the number of tweens running in the grid
+	 */
+	private void refresh(int tileViews, int tweens) {
+		// The frame rate over roughly the last second.
+		final int recent = Math.min(frameTimes.size(), targetFps);
+		long recentNanos = 0;
+		for (int age = 0; age < recent; age++) {
+			recentNanos += frameTimes.getRecent(age);
+		}
+		final double fps = recentNanos == 0 ? 0 : recent * 1e9 / recentNanos;
+		final long worst = frameTimes.getMax();
+		lines[0] = String.format("FPS %5.1f / %d, worst %5.1f", fps,
+				targetFps, worst == 0 ? 0 : 1e9 / worst);
+		lines[1] = String.format("frame p50 %5.1f p99 %5.1f ms",
+				frameTimes.getPercentile(50) / MILLIS,
+				frameTimes.getPercentile(99) / MILLIS);
+		lines[2] = String.format("paint p50 %5.1f p99 %5.1f ms",
+				paintTimes.getPercentile(50) / MILLIS,
+				paintTimes.getPercentile(99) / MILLIS);
+		lines[3] = String.format("tiles %d, tweens %d", tileViews, tweens);
+		lines[4] = lastTurn < 0 ? "turn -" : String.format("turn %.3f ms",
+				lastTurn / MILLIS);
+
+		final Runtime runtime = Runtime.getRuntime();
+		long gcCount = 0, gcTime = 0;
+		for (GarbageCollectorMXBean collector : collectors) {
+			gcCount += Math.max(0, collector.getCollectionCount());
+			gcTime += Math.max(0, collector.getCollectionTime());
+		}
+		final long now = System.nanoTime();
+		final double seconds = lastRefresh == 0 ? 0 : (now - lastRefresh) / 1e9;
+		lines[5] = String.format("heap %.0f/%.0f MB, GC %.1f/s %.0f ms/s",
+				(runtime.totalMemory() - runtime.freeMemory()) / 1048576.0,
+				runtime.maxMemory() / 1048576.0,
+				seconds == 0 ? 0 : (gcCount - lastGcCount) / seconds,
+				seconds == 0 ? 0 : (gcTime - lastGcTime) / seconds);
+		lastRefresh = now;
+		lastGcCount = gcCount;
+		lastGcTime = gcTime;
+	}
+
+}
@@ -0,0 +1,188 @@
+package j2048.jgamegui;
+
+import j2048.record.GameRecord;
+import j2048.record.ReplayCursor;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.event.KeyEvent;
+
+import jgame.Context;
+import jgame.GContainer;
+import jgame.GMessage;
+import jgame.GObject;
+import jgame.listener.FrameListener;
+
+/**
+ * A view for scrubbing through a recorded game. The left and right arrow
+ * keys step one move back or forward, page up and page down jump a twentieth
+ * of the game, and home and end go to the start and end. Each jump rebuilds
+ * the grid directly from a {@link ReplayCursor}, so it takes about the same
+ * time wherever it lands.
+ * <p>
+ * A damaged record can hold a move that the standard rules reject. The
+ * viewer then stops at the last valid move and says so in place of the
+ * score.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class ReplayViewer extends GContainer {
+
+	/**
+	 * The height of the progress bar.
+	 */
+	private static final int BAR_HEIGHT = 6;
+
+	/**
+	 * The position in the game being shown.
+	 */
+	private final ReplayCursor cursor;
+
+	/**
+	 * The number of moves to jump with page up and page down.
+	 */
+	private final int jump;
+
+	/**
+	 * The grid showing the board at the current position.
+	 */
+	private final GridPanel grid;
+
+	/**
+	 * The message showing the current move and score.
+	 */
+	private final GMessage status;
+
+	/**
+	 * Creates a viewer at the start of a recorded game.
+	 * 
+	 * @param record
+	 *            the record to show
+	 * @throws IllegalArgumentException
+	 *             if {@code record == null}, or if its starting tiles are
+	 *             invalid
+	 */
+	public ReplayViewer(GameRecord record) throws IllegalArgumentException {
+		setSize(500, 600);
+		cursor = new ReplayCursor(record);
+		jump = Math.max(1, record.getMoveCount() / 20);
+
+		status = new GMessage();
+		status.setColor(J2048.TEXT_COLOR);
+		status.setSize(500, 80);
+		status.setAnchorTopLeft();
+		status.setAlignmentX(0.5);
+		status.setAlignmentY(0.5);
+		status.setFontSize(24);
+		status.setFontStyle(Font.BOLD);
+		add(status);
+
+		grid = new GridPanel(record.getBoardSize());
+		grid.setAnchorTopLeft();
+		addAt(grid, 0, 100);
+
+		addListener(new FrameListener() {
+
+			private int lastKey = KeyEvent.VK_UNDEFINED;
+
+			@Override
+			public void invoke(GObject target, Context context) {
+				int key = KeyEvent.VK_UNDEFINED;
+				for (int code : context.getKeyCodesPressed()) {
+					switch (code) {
+					case KeyEvent.VK_LEFT:
+					case KeyEvent.VK_RIGHT:
+					case KeyEvent.VK_PAGE_UP:
+					case KeyEvent.VK_PAGE_DOWN:
+					case KeyEvent.VK_HOME:
+					case KeyEvent.VK_END:
+						key = code;
+						break;
+					default:
+						continue;
+					}
+				}
+				if (key == lastKey) {
+					return;
+				}
+				lastKey = key;
+				final int move = cursor.getMove();
+				try {
+					switch (key) {
+					case KeyEvent.VK_LEFT:
+						seek(move - 1);
+						break;
+					case KeyEvent.VK_RIGHT:
+						seek(move + 1);
+						break;
+					case KeyEvent.VK_PAGE_UP:
+						seek(move - jump);
+						break;
+					case KeyEvent.VK_PAGE_DOWN:
+						seek(move + jump);
+						break;
+					case KeyEvent.VK_HOME:
+						seek(0);
+						break;
+					case KeyEvent.VK_END:
+						seek(cursor.getRecord().getMoveCount());
+						break;
+					default:
+						break;
+					}
+				} catch (IllegalArgumentException e) {
+					// The cursor stops at the last move it could make.
+					refresh();
+					status.setText("Damaged record: " + e.getMessage());
+				}
+			}
+		});
+		refresh();
+	}
+
+	@Override
+	public void paint(Graphics2D g) {
+		final int moves = cursor.getRecord().getMoveCount();
+		final int y = 100 - 2 * BAR_HEIGHT;
+		g.setColor(J2048.MAIN_COLOR);
+		g.fillRoundRect(0, y, getIntWidth(), BAR_HEIGHT, 3, 3);
+		if (moves > 0) {
+			g.setColor(J2048.BUTTON_COLOR);
+			g.fillRoundRect(0, y, getIntWidth() * cursor.getMove() / moves,
+					BAR_HEIGHT, 3, 3);
+		}
+		super.paint(g);
+	}
+
+	/**
+	 * Moves to the given move, clamped to the length of the game, and shows
+	 * the board there.
+	 * 
+	 * @param move
+	 *            the move number
+	 * @throws IllegalArgumentException
+	 *             if a move on the way is invalid under the standard rules;
+	 *             the cursor then stops at the last valid move, but the
+	 *             board shown is not updated
+	 */
+	public void seek(int move) throws IllegalArgumentException {
+		final int target = Math.max(0,
+				Math.min(move, cursor.getRecord().getMoveCount()));
+		if (target != cursor.getMove()) {
+			cursor.seek(target);
+			refresh();
+		}
+	}
+
+	/**
+	 * Shows the board, move and score at the current position.
+	 */
+	private void refresh() {
+		grid.showGrid(cursor.toGrid());
+		status.setText("Move " + cursor.getMove() + " of "
+				+ cursor.getRecord().getMoveCount() + "   Score "
+				+ cursor.getScore());
+	}
+
+}
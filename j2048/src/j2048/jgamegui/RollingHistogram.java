@@ -0,0 +1,214 @@
+package j2048.jgamegui;
+
+/**
+ * A histogram of the most recent measurements of some duration, such as the
+ * time between frames. Once the histogram is full, each new measurement
+ * replaces the oldest one, so the statistics always describe the last few
+ * seconds rather than the whole run.
+ * <p>
+ * Measurements are counted in buckets whose width grows with their value,
+ * {@value #SUB_BUCKETS} to each power of two, so a percentile is found by
+ * walking a fixed number of buckets and is accurate to within about six
+ * percent. Adding a measurement takes constant time and does not allocate.
+ * This class is not thread-safe.
+ * 
+ * @author William Chargin
+ * 
+ */
+final class RollingHistogram {
+
+	/**
+	 * The number of bits of a measurement, after its leading one bit, that
+	 * select its bucket.
+	 */
+	private static final int SUB_BITS = 4;
+
+	/**
+	 * The number of buckets for each power of two.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	/**
+	 * The measurements, oldest first starting at {@link #next} once the
+	 * histogram is full.
+	 */
+	private final long[] samples;
+
+	/**
+	 * The number of measurements in each bucket.
+	 */
+	private final int[] counts = new int[Long.SIZE * SUB_BUCKETS];
+
+	/**
+	 * The index in {@link #samples} at which the next measurement goes.
+	 */
+	private int next;
+
+	/**
+	 * The number of measurements held.
+	 */
+	private int size;
+
+	/**
+	 * The sum of the measurements held.
+	 */
+	private long total;
+
+	/**
+	 * Creates an empty histogram.
+	 * 
+	 * @param capacity
+	 *            the number of measurements to keep
+	 * @throws IllegalArgumentException
+	 *             if {@code capacity < 1}
+	 */
+	RollingHistogram(int capacity) throws IllegalArgumentException {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: "
+					+ capacity);
+		}
+		samples = new long[capacity];
+	}
+
+	/**
+	 * Finds the bucket of a measurement.
+	 * 
+	 * @param value
+	 *            the measurement
+	 * @return the index of its bucket
+	 */
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) Math.max(value, 0);
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int shift = exponent - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS
+				+ (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	/**
+	 * Finds the largest measurement that falls in a bucket.
+	 * 
+	 * @param bucket
+	 *            the index of the bucket
+	 * @return the upper bound of the bucket
+	 */
+	private static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int shift = bucket / SUB_BUCKETS - 1;
+		final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1;
+	}
+
+	/**
+	 * Adds a measurement, replacing the oldest one if the histogram is full.
+	 * 
+	 * @param value
+	 *            the measurement
+	 */
+	void add(long value) {
+		if (size == samples.length) {
+			counts[bucketOf(samples[next])]--;
+			total -= samples[next];
+		} else {
+			size++;
+		}
+		samples[next] = value;
+		counts[bucketOf(value)]++;
+		total += value;
+		next = (next + 1) % samples.length;
+	}
+
+	/**
+	 * Gets the number of measurements that the histogram keeps.
+	 * 
+	 * @return the capacity
+	 */
+	int getCapacity() {
+		return samples.length;
+	}
+
+	/**
+	 * Gets the largest measurement held.
+	 * 
+	 * @return the largest measurement, or {@code 0} if there are none
+	 */
+	long getMax() {
+		long max = 0;
+		for (int i = 0; i < size; i++) {
+			max = Math.max(max, samples[i]);
+		}
+		return max;
+	}
+
+	/**
+	 * Gets the mean of the measurements held.
+	 * 
+	 * @return the mean, or {@code 0} if there are none
+	 */
+	double getMean() {
+		return size == 0 ? 0 : (double) total / size;
+	}
+
+	/**
+	 * Estimates a percentile of the measurements held, using the
+	 * nearest-rank method. The result is the upper bound of the bucket that
+	 * holds the measurement of that rank, but never more than the largest
+	 * measurement.
+	 * 
+	 * @param percentile
+	 *            the percentile, between {@code 0} and {@code 100} inclusive
+	 * @return the estimate, or {@code 0} if there are no measurements
+	 * @throws IllegalArgumentException
+	 *             if the percentile is out of range
+	 */
+	long getPercentile(double percentile) throws IllegalArgumentException {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile out of range: "
+					+ percentile);
+		}
+		if (size == 0) {
+			return 0;
+		}
+		final int rank = Math.max(1,
+				(int) Math.ceil(percentile / 100 * size));
+		int seen = 0;
+		for (int bucket = 0; bucket < counts.length; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank) {
+				return Math.min(upperBound(bucket), getMax());
+			}
+		}
+		throw new AssertionError("bucket counts do not add up to " + size);
+	}
+
+	/**
+	 * Gets a measurement by age.
+	 * 
+	 * @param age
+	 *            the age of the measurement, {@code 0} for the most recent
+	 * @return the measurement
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code age} is negative or not less than
+	 *             {@link #size()}
+	 */
+	long getRecent(int age) throws IndexOutOfBoundsException {
+		if (age < 0 || age >= size) {
+			throw new IndexOutOfBoundsException("age out of range: " + age);
+		}
+		return samples[(next - 1 - age + samples.length) % samples.length];
+	}
+
+	/**
+	 * Gets the number of measurements held.
+	 * 
+	 * @return the measurement count, which is at most the capacity
+	 */
+	int size() {
+		return size;
+	}
+
+}
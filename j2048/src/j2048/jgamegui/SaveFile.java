@@ -0,0 +1,455 @@
+package j2048.jgamegui;
+
+import j2048.GameSnapshot;
+import j2048.record.GameRecord;
+import j2048.record.GameRecorder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * The file in which the game in progress and the best score are kept
+ * between runs.
+ * <p>
+ * Saving takes constant time on the calling thread: it keeps only a
+ * {@link GameSnapshot} and a {@linkplain GameRecorder.Checkpoint checkpoint}
+ * of the record, and leaves finishing the record, encoding the file and the
+ * disk I/O to a background thread, so the frame loop never waits for work
+ * that grows with the length of the game. If several saves are requested
+ * before the background thread gets to them, only the latest is encoded and
+ * written. Each write goes to a
+ * temporary file that is then moved over the save file, so a crash while
+ * saving leaves the previous save intact.
+ * <p>
+ * The file consists of the four bytes {@code "2SAV"}, a version byte, the
+ * best score, the lengths and bytes of a {@link GameSnapshot} and of the
+ * {@link GameRecord} of the game so far, and a CRC-32 of everything before
+ * it. Integers are four bytes, big-endian.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class SaveFile implements Closeable {
+
+	/**
+	 * The contents of a save file. This class is immutable.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	public static final class Contents {
+
+		/**
+		 * The best score.
+		 */
+		private final int bestScore;
+
+		/**
+		 * The game in progress.
+		 */
+		private final GameSnapshot snapshot;
+
+		/**
+		 * The record of the game in progress.
+		 */
+		private final GameRecord record;
+
+		/**
+		 * Creates the contents of a save file.
+		 * 
+		 * @param bestScore
+		 *            the best score
+		 * @param snapshot
+		 *            the game in progress
+		 * @param record
+		 *            the record of the game in progress
+		 */
+		private Contents(int bestScore, GameSnapshot snapshot,
+				GameRecord record) {
+			this.bestScore = bestScore;
+			this.snapshot = snapshot;
+			this.record = record;
+		}
+
+		/**
+		 * Gets the best score.
+		 * 
+		 * @return the best score
+		 */
+		public int getBestScore() {
+			return bestScore;
+		}
+
+		/**
+		 * Gets the record of the game in progress.
+		 * 
+		 * @return the record of the game so far
+		 */
+		public GameRecord getRecord() {
+			return record;
+		}
+
+		/**
+		 * Gets the game in progress.
+		 * 
+		 * @return the snapshot of the game
+		 */
+		public GameSnapshot getSnapshot() {
+			return snapshot;
+		}
+
+	}
+
+	/**
+	 * A save waiting to be written.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	private static final class Pending {
+
+		/**
+		 * The best score.
+		 */
+		private final int bestScore;
+
+		/**
+		 * The game in progress.
+		 */
+		private final GameSnapshot snapshot;
+
+		/**
+		 * The record of the game in progress, not yet finished.
+		 */
+		private final GameRecorder.Checkpoint record;
+
+		/**
+		 * Creates a pending save.
+		 * 
+		 * @param bestScore
+		 *            the best score
+		 * @param snapshot
+		 *            the game in progress
+		 * @param record
+		 *            the record of the game in progress
+		 */
+		private Pending(int bestScore, GameSnapshot snapshot,
+				GameRecorder.Checkpoint record) {
+			this.bestScore = bestScore;
+			this.snapshot = snapshot;
+			this.record = record;
+		}
+
+		/**
+		 * Finishes the record and encodes the file.
+		 * 
+		 * @return the bytes of the file
+		 */
+		private byte[] encode() {
+			return SaveFile.encode(bestScore, snapshot,
+					record.finish(snapshot));
+		}
+
+	}
+
+	/**
+	 * The first four bytes of every save file, {@code "2SAV"} in ASCII.
+	 */
+	private static final int MAGIC = 0x32534156;
+
+	/**
+	 * The version of the file format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The longest time that {@link #close()} waits for a pending write, in
+	 * seconds.
+	 */
+	private static final int CLOSE_TIMEOUT = 5;
+
+	/**
+	 * Encodes the contents of a save file.
+	 * 
+	 * @param bestScore
+	 *            the best score
+	 * @param snapshot
+	 *            the game in progress
+	 * @param record
+	 *            the record of the game in progress
+	 * @return the bytes of the file
+	 */
+	private static byte[] encode(int bestScore, GameSnapshot snapshot,
+			GameRecord record) {
+		final byte[] snapshotBytes = snapshot.toByteArray();
+		final byte[] recordBytes = record.toByteArray();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				snapshotBytes.length + recordBytes.length + 24);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeInt(bestScore);
+			out.writeInt(snapshotBytes.length);
+			out.write(snapshotBytes);
+			out.writeInt(recordBytes.length);
+			out.write(recordBytes);
+			final CRC32 crc = new CRC32();
+			crc.update(bytes.toByteArray());
+			out.writeInt((int) crc.getValue());
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes the contents of a save file.
+	 * 
+	 * @param bytes
+	 *            the bytes of the file
+	 * @return the contents
+	 * @throws IOException
+	 *             if the bytes are not a valid save file
+	 */
+	private static Contents decode(byte[] bytes) throws IOException {
+		if (bytes.length < 4) {
+			throw new IOException("save file truncated");
+		}
+		// Check the whole file before parsing any of it, so that a damaged
+		// file cannot drive the parsers into huge allocations.
+		final int end = bytes.length - 4;
+		final CRC32 crc = new CRC32();
+		crc.update(bytes, 0, end);
+		final int stored = (bytes[end] & 0xFF) << 24
+				| (bytes[end + 1] & 0xFF) << 16 | (bytes[end + 2] & 0xFF) << 8
+				| bytes[end + 3] & 0xFF;
+		if (stored != (int) crc.getValue()) {
+			throw new IOException("save file checksum mismatch");
+		}
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(bytes, 0, end));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("not a save file");
+		}
+		final int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("unsupported save file version: "
+					+ version);
+		}
+		final int bestScore = in.readInt();
+		try {
+			final GameSnapshot snapshot = GameSnapshot
+					.fromByteArray(readBlock(in));
+			final GameRecord record = GameRecord
+					.fromByteArray(readBlock(in));
+			if (snapshot.getBoardSize() != record.getBoardSize()) {
+				throw new IOException("size mismatch: "
+						+ snapshot.getBoardSize() + " != "
+						+ record.getBoardSize());
+			}
+			return new Contents(bestScore, snapshot, record);
+		} catch (RuntimeException e) {
+			throw new IOException("bad save file", e);
+		}
+	}
+
+	/**
+	 * Reads a block of bytes preceded by its length.
+	 * 
+	 * @param in
+	 *            the stream from which to read
+	 * @return the bytes of the block
+	 * @throws IOException
+	 *             if the stream cannot be read, or the length is invalid
+	 */
+	private static byte[] readBlock(DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0 || length > in.available()) {
+			throw new IOException("bad block length: " + length);
+		}
+		final byte[] block = new byte[length];
+		in.readFully(block);
+		return block;
+	}
+
+	/**
+	 * The path of the save file.
+	 */
+	private final Path path;
+
+	/**
+	 * The thread that writes the file.
+	 */
+	private final ExecutorService writer = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "j2048-save");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * The save waiting to be written, or {@code null} if there is none.
+	 */
+	private final AtomicReference<Pending> pending = new AtomicReference<>();
+
+	/**
+	 * Creates a save file at the given path. Nothing is read or written until
+	 * {@link #load()} or
+	 * {@link #save(int, GameSnapshot, GameRecorder.Checkpoint)} is called.
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @throws IllegalArgumentException
+	 *             if {@code path == null}
+	 */
+	public SaveFile(Path path) throws IllegalArgumentException {
+		if (path == null) {
+			throw new IllegalArgumentException("path must not be null");
+		}
+		this.path = path;
+	}
+
+	/**
+	 * Writes any pending save and stops the background thread. This waits
+	 * a few seconds at most.
+	 */
+	@Override
+	public void close() {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Gets the path of this save file.
+	 * 
+	 * @return the path
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Reads this save file.
+	 * 
+	 * @return the contents of the file, or {@code null} if it does not exist
+	 * @throws IOException
+	 *             if the file cannot be read, or is not a valid save file
+	 */
+	public Contents load() throws IOException {
+		try {
+			return decode(Files.readAllBytes(path));
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the given state. This takes constant time: the record is
+	 * finished, and the file encoded and written, in the background. If this
+	 * save file has been closed, nothing is written. This may be called from
+	 * any thread, including while the save file is being closed.
+	 * 
+	 * @param bestScore
+	 *            the best score
+	 * @param snapshot
+	 *            the game in progress
+	 * @param record
+	 *            a checkpoint of the record of the game in progress, taken
+	 *            when the snapshot was
+	 * @throws IllegalArgumentException
+	 *             if {@code snapshot == null} or {@code record == null}, or
+	 *             if they are of boards of different sizes
+	 */
+	public void save(int bestScore, GameSnapshot snapshot,
+			GameRecorder.Checkpoint record) throws IllegalArgumentException {
+		if (snapshot == null) {
+			throw new IllegalArgumentException("snapshot must not be null");
+		}
+		if (record == null) {
+			throw new IllegalArgumentException("record must not be null");
+		}
+		if (snapshot.getBoardSize() != record.getBoardSize()) {
+			throw new IllegalArgumentException("size mismatch: "
+					+ snapshot.getBoardSize() + " != "
+					+ record.getBoardSize());
+		}
+		// Only schedule a write if none is waiting; a waiting write will
+		// pick up this save instead of the one it was scheduled for.
+		final Pending save = new Pending(bestScore, snapshot, record);
+		if (pending.getAndSet(save) == null) {
+			try {
+				writer.execute(new Runnable() {
+					@Override
+					public void run() {
+						final Pending next = pending.getAndSet(null);
+						if (next != null) {
+							write(next.encode());
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// Closed: nothing will write this save, so do not leave it
+				// waiting for a write that never comes.
+				pending.set(null);
+			}
+		}
+	}
+
+	/**
+	 * Writes bytes to a temporary file and moves it over this save file.
+	 * Errors are ignored, since a failed save only loses progress.
+	 * 
+	 * @param bytes
+	 *            the bytes to write
+	 */
+	private void write(byte[] bytes) {
+		try {
+			final Path parent = path.toAbsolutePath().getParent();
+			Files.createDirectories(parent);
+			final Path temp = Files.createTempFile(parent, ".j2048", ".tmp");
+			try {
+				// Reach the disk before the move, so the move never
+				// replaces a good save with an incomplete one.
+				Files.write(temp, bytes, StandardOpenOption.WRITE,
+						StandardOpenOption.DSYNC);
+				try {
+					Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE,
+							StandardCopyOption.REPLACE_EXISTING);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp, path,
+							StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException | SecurityException e) {
+			// Keep playing; the next save may succeed.
+		}
+	}
+
+}
@@ -0,0 +1,244 @@
+package j2048.jgamegui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jgame.GObject;
+
+/**
+ * A cache of pre-rendered tile images, so that a tile can be painted with a
+ * single {@link Graphics2D#drawImage} call. Each image holds the rounded
+ * background and the label of one tile value at one size, rendered at the
+ * resolution of the screen, so that tiles stay sharp on high-density
+ * displays.
+ * <p>
+ * Images are created on first use and kept until the cache is full, when the
+ * least recently used image is dropped. A game only uses a few dozen images,
+ * so in practice each is rendered once. This class is used only from the
+ * frame thread and is not thread-safe.
+ * 
+ * @author William Chargin
+ * 
+ */
+final class TileSprites {
+
+	/**
+	 * The key of a cached image.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	private static final class Key {
+
+		/**
+		 * The tile value.
+		 */
+		private final int value;
+
+		/**
+		 * The width of the image, in device pixels.
+		 */
+		private final int width;
+
+		/**
+		 * The height of the image, in device pixels.
+		 */
+		private final int height;
+
+		/**
+		 * Creates a key.
+		 * 
+		 * @param value
+		 *            the tile value
+		 * @param width
+		 *            the width of the image, in device pixels
+		 * @param height
+		 *            the height of the image, in device pixels
+		 */
+		private Key(int value, int width, int height) {
+			this.value = value;
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return other.value == value && other.width == width
+					&& other.height == height;
+		}
+
+		@Override
+		public int hashCode() {
+			return (value * 31 + width) * 31 + height;
+		}
+
+	}
+
+	/**
+	 * The largest number of images kept.
+	 */
+	private static final int CAPACITY = 256;
+
+	/**
+	 * The width of a tile on the default 4x4 board, for which the label font
+	 * sizes are chosen. Labels on tiles of other widths are scaled to match.
+	 */
+	private static final double REFERENCE_WIDTH = 106.25;
+
+	/**
+	 * The background colors for the tile values, from {@code 2} up to
+	 * {@code 2048}. Larger values use the last color.
+	 */
+	private static final Color[] COLORS;
+	static {
+		final int[] hexes = { 0xeee4da, 0xede0c8, 0xf2b179, 0xf59563, 0xf67c5f,
+				0xf65e3b, 0xedcf72, 0xedcc61, 0xedc850, 0xedc53f, 0xedc22e };
+		COLORS = new Color[hexes.length];
+		for (int i = 0; i < hexes.length; i++) {
+			COLORS[i] = new Color(hexes[i]);
+		}
+	}
+
+	/**
+	 * The cached images, in order of last use.
+	 */
+	private static final Map<Key, BufferedImage> cache =
+			new LinkedHashMap<Key, BufferedImage>(64, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<Key, BufferedImage> eldest) {
+					return size() > CAPACITY;
+				}
+
+			};
+
+	/**
+	 * Gets the image for a tile, rendering it if it is not cached. The image
+	 * is at the resolution of the device that the given graphics context
+	 * draws on, so it should be drawn scaled to the given size.
+	 * 
+	 * @param g
+	 *            the graphics context on which the tile will be drawn
+	 * @param value
+	 *            the tile value
+	 * @param width
+	 *            the width of the tile
+	 * @param height
+	 *            the height of the tile
+	 * @return the image of the tile
+	 */
+	static BufferedImage get(Graphics2D g, int value, double width,
+			double height) {
+		final GraphicsConfiguration config = g.getDeviceConfiguration();
+		final AffineTransform device = config.getDefaultTransform();
+		final int w = Math.max(1, (int) Math.ceil(width * device.getScaleX()));
+		final int h = Math.max(1, (int) Math.ceil(height * device.getScaleY()));
+		final Key key = new Key(value, w, h);
+		BufferedImage image = cache.get(key);
+		if (image == null) {
+			image = render(config, g.getFont(), value, w, h, w / width);
+			cache.put(key, image);
+		}
+		return image;
+	}
+
+	/**
+	 * Gets the background color for a tile value.
+	 * 
+	 * @param value
+	 *            the tile value
+	 * @return the background color
+	 */
+	private static Color backgroundColor(int value) {
+		// The smallest power of two not less than the value is
+		// 2^(index + 1).
+		final int index = value <= 2 ? 0
+				: 31 - Integer.numberOfLeadingZeros(value - 1);
+		return COLORS[Math.min(index, COLORS.length - 1)];
+	}
+
+	/**
+	 * Gets the size of the label font for a tile value on a tile of the
+	 * reference width.
+	 * 
+	 * @param value
+	 *            the tile value
+	 * @return the font size
+	 */
+	private static int fontSize(int value) {
+		if (value >= 1000) {
+			return 35;
+		} else if (value >= 100) {
+			return 45;
+		} else {
+			return 50;
+		}
+	}
+
+	/**
+	 * Renders the image for a tile.
+	 * 
+	 * @param config
+	 *            the configuration of the device that the image will be
+	 *            drawn on
+	 * @param font
+	 *            the font from which to derive the label font
+	 * @param value
+	 *            the tile value
+	 * @param w
+	 *            the width of the image, in device pixels
+	 * @param h
+	 *            the height of the image, in device pixels
+	 * @param scale
+	 *            the number of device pixels per unit of tile width
+	 * @return the new image
+	 */
+	private static BufferedImage render(GraphicsConfiguration config,
+			Font font, int value, int w, int h, double scale) {
+		final BufferedImage image = config.createCompatibleImage(w, h,
+				Transparency.TRANSLUCENT);
+		final Graphics2D g = image.createGraphics();
+		GObject.antialias(g);
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+				RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+		g.setColor(backgroundColor(value));
+		final double arc = TileView.CORNER_RADIUS * scale;
+		g.fill(new RoundRectangle2D.Double(0, 0, w, h, arc, arc));
+
+		final String text = Integer.toString(value);
+		g.setFont(font.deriveFont(Font.BOLD, (float) (fontSize(value) * w
+				/ REFERENCE_WIDTH)));
+		g.setColor(value >= 8 ? Color.WHITE : J2048.TEXT_COLOR);
+		final FontMetrics metrics = g.getFontMetrics();
+		g.drawString(text, (w - metrics.stringWidth(text)) / 2f, (h
+				- metrics.getAscent() - metrics.getDescent())
+				/ 2f + metrics.getAscent());
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private TileSprites() {
+	}
+
+}
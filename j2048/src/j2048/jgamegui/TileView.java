@@ -1,19 +1,26 @@
 package j2048.jgamegui;
 
 import j2048.Tile;
+import j2048.metrics.Metric;
+import j2048.metrics.Metrics;
 
-import java.awt.Color;
-import java.awt.Font;
 import java.awt.Graphics2D;
-import java.awt.geom.RoundRectangle2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
 
-import jgame.Context;
-import jgame.GMessage;
 import jgame.GObject;
-import jgame.listener.FrameListener;
 
 /**
- * A GUI component representing a {@link Tile} in a game of 2048.
+ * A GUI component representing a {@link Tile} in a game of 2048. Each tile
+ * is painted with one pre-rendered image from {@link TileSprites}.
+ * <p>
+ * The image is looked up only when the displayed value, the size of the view
+ * or the device it is painted on changes, so a view that is not changing
+ * costs one image copy per frame. The displayed value changes only through
+ * {@link #setValue(int)}, which {@link GridPanel} calls as it shows each
+ * merge and each direct change to the value of the tile; the view does not
+ * follow the tile directly, because the model may already be several turns
+ * ahead of what is on screen.
  * 
  * @author William Chargin
  * 
@@ -26,9 +33,21 @@ public class TileView extends GObject {
 	private final Tile tile;
 
 	/**
-	 * The message with the text of this tile.
+	 * The value displayed on this view. This can lag behind the value of the
+	 * tile while the view catches up with the model.
 	 */
-	private final GMessage label;
+	private int value;
+
+	/**
+	 * The image painted for this view, or {@code null} if the value or size
+	 * has changed since the image was last looked up.
+	 */
+	private BufferedImage sprite;
+
+	/**
+	 * The device for which {@link #sprite} was looked up.
+	 */
+	private GraphicsConfiguration spriteDevice;
 
 	/**
 	 * The rounded-rectangle corner radius for cells.
@@ -36,44 +55,22 @@ public class TileView extends GObject {
 	public static final int CORNER_RADIUS = 3;
 
 	/**
-	 * The colors for the tile values.
+	 * The time taken to paint one tile, in nanoseconds.
 	 */
-	private static final Color[] colors = new Color[11];
-	static {
-		final int[] hexes = { 0xeee4da, 0xede0c8, 0xf2b179, 0xf59563, 0xf67c5f,
-				0xf65e3b, 0xedcf72, 0xedcc61, 0xedc850, 0xedc53f, 0xedc22e };
-		if (hexes.length != colors.length) {
-			throw new AssertionError(
-					"hex values don't match colors (length mismatch)");
-		}
-		for (int i = 0; i < hexes.length; i++) {
-			colors[i] = new Color(hexes[i]);
-		}
-	}
+	private static final Metric PAINT_NANOS = Metrics.get("tile.paint.nanos");
 
 	/**
 	 * Creates a view for the given tile.
 	 * 
 	 * @param tile
 	 *            the tile to be represented in this view
+	 * @param value
+	 *            the value to display
 	 */
-	public TileView(Tile tile) {
+	public TileView(Tile tile, int value) {
 		super();
 		this.tile = tile;
-
-		label = new GMessage();
-		label.setAlignmentX(0.5);
-		label.setAlignmentY(0.5);
-		label.setFontStyle(Font.BOLD);
-		label.setAnchorTopLeft();
-		add(label);
-
-		addListener(new FrameListener() {
-			@Override
-			public void invoke(GObject target, Context context) {
-				updateLabel();
-			}
-		});
+		this.value = value;
 	}
 
 	/**
@@ -85,43 +82,55 @@ public class TileView extends GObject {
 		return tile;
 	}
 
+	/**
+	 * Gets the value displayed on this view.
+	 * 
+	 * @return the displayed value
+	 */
+	public int getValue() {
+		return value;
+	}
+
 	@Override
 	public void paint(Graphics2D g) {
-		int index = 0, power = 2;
-		final int tileValue = tile.getValue();
-		while (power < tileValue && index + 1 < colors.length) {
-			power *= 2;
-			index++;
+		final long start = Metrics.isEnabled() ? System.nanoTime() : 0;
+		final double width = getWidth(), height = getHeight();
+		final GraphicsConfiguration device = g.getDeviceConfiguration();
+		if (sprite == null || device != spriteDevice) {
+			sprite = TileSprites.get(g, value, width, height);
+			spriteDevice = device;
 		}
-		g.setColor(colors[index]);
-
-		RoundRectangle2D rr = new RoundRectangle2D.Double(0, 0, getWidth(),
-				getHeight(), 3, 3);
-		g.fill(rr);
-
+		// At normal density the sprite is exactly this size, so this is a
+		// plain copy; on denser screens it maps one image pixel to one
+		// device pixel.
+		g.drawImage(sprite, 0, 0, (int) Math.ceil(width),
+				(int) Math.ceil(height), null);
 		super.paint(g);
+		if (start != 0) {
+			PAINT_NANOS.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void setSize(double width, double height) {
+		if (width != getWidth() || height != getHeight()) {
+			sprite = null;
+		}
+		super.setSize(width, height);
 	}
 
 	/**
-	 * Updates the contents of the {@link #label} field to reflect the most
-	 * recent values.
+	 * Sets the value displayed on this view. The view is repainted with a new
+	 * image only if the value differs from the one already displayed.
+	 * 
+	 * @param value
+	 *            the new displayed value
 	 */
-	private void updateLabel() {
-		label.setSize(getWidth(), getHeight());
-
-		final int tileValue = tile.getValue();
-		label.setText(Integer.toString(tileValue));
-		if (tileValue >= 8) {
-			label.setColor(Color.WHITE);
-		} else {
-			label.setColor(J2048.TEXT_COLOR);
+	public void setValue(int value) {
+		if (value != this.value) {
+			this.value = value;
+			sprite = null;
 		}
-		label.setFontSize(50);
-		if (tileValue >= 100 && tileValue < 1000) {
-			label.setFontSize(45);
-		} else if (tileValue >= 1000) {
-			label.setFontSize(35);
-		}
-
 	}
+
 }
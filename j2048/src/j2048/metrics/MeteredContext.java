@@ -0,0 +1,157 @@
+package j2048.metrics;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.Tile;
+import j2048.TileGameContext;
+import j2048.TileGrid;
+import j2048.TurnBatch;
+
+import java.util.Random;
+
+/**
+ * A context that passes everything through to another context, and counts
+ * the calls made to it during one turn, and the tiles that the turn moves
+ * and merges.
+ * 
+ * @author William Chargin
+ * 
+ */
+class MeteredContext implements TileGameContext {
+
+	/**
+	 * The context being measured.
+	 */
+	private final TileGameContext delegate;
+
+	/**
+	 * The number of calls to this context.
+	 */
+	private int calls;
+
+	/**
+	 * The number of tiles moved without merging.
+	 */
+	private int moved;
+
+	/**
+	 * The number of merges.
+	 */
+	private int merged;
+
+	/**
+	 * Creates a context that measures the given context.
+	 * 
+	 * @param delegate
+	 *            the context being measured
+	 */
+	MeteredContext(TileGameContext delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void addTile(Tile tile, BoardLocation location)
+			throws IllegalArgumentException {
+		calls++;
+		delegate.addTile(tile, location);
+	}
+
+	@Override
+	public void commitTurn(TurnBatch batch) throws IllegalArgumentException {
+		calls++;
+		delegate.commitTurn(batch);
+		for (TurnBatch.Step step : batch.getSteps()) {
+			if (step.getKind() == TurnBatch.Kind.MOVE) {
+				moved++;
+			} else if (step.getKind() == TurnBatch.Kind.MERGE) {
+				merged++;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of calls to this context.
+	 * 
+	 * @return the call count
+	 */
+	int getCalls() {
+		return calls;
+	}
+
+	@Override
+	public TileGrid getGrid() {
+		calls++;
+		return delegate.getGrid();
+	}
+
+	/**
+	 * Gets the number of merges.
+	 * 
+	 * @return the merge count
+	 */
+	int getMerged() {
+		return merged;
+	}
+
+	/**
+	 * Gets the number of tiles moved without merging.
+	 * 
+	 * @return the move count
+	 */
+	int getMoved() {
+		return moved;
+	}
+
+	@Override
+	public Random getRandom() {
+		calls++;
+		return delegate.getRandom();
+	}
+
+	@Override
+	public int getScore() {
+		calls++;
+		return delegate.getScore();
+	}
+
+	@Override
+	public int incrementScoreBy(int value) {
+		calls++;
+		return delegate.incrementScoreBy(value);
+	}
+
+	@Override
+	public void loseGame() {
+		calls++;
+		delegate.loseGame();
+	}
+
+	@Override
+	public void mergeTiles(Tile target, Tile mover, Direction direction,
+			int movementSteps, int newValue) throws IllegalArgumentException {
+		calls++;
+		delegate.mergeTiles(target, mover, direction, movementSteps, newValue);
+		merged++;
+	}
+
+	@Override
+	public void moveTile(Tile tile, Direction direction, int count)
+			throws IllegalArgumentException {
+		calls++;
+		delegate.moveTile(tile, direction, count);
+		moved++;
+	}
+
+	@Override
+	public void setScore(int score) throws IllegalArgumentException {
+		calls++;
+		delegate.setScore(score);
+	}
+
+	@Override
+	public void winGame() {
+		calls++;
+		delegate.winGame();
+	}
+
+}
@@ -0,0 +1,127 @@
+package j2048.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named series of measurements, such as the duration of each turn,
+ * summarized by their count, total and maximum. Recording a measurement takes
+ * a few atomic operations and does not allocate. This class is thread-safe.
+ * <p>
+ * Metrics are created by {@link Metrics#get(String)}, and can be read over
+ * JMX through {@link MetricsMXBean}.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class Metric {
+
+	/**
+	 * The name of this metric.
+	 */
+	private final String name;
+
+	/**
+	 * The number of measurements.
+	 */
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * The sum of the measurements.
+	 */
+	private final AtomicLong total = new AtomicLong();
+
+	/**
+	 * The largest measurement.
+	 */
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * Creates a metric with no measurements.
+	 * 
+	 * @param name
+	 *            the name of the metric
+	 */
+	Metric(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the number of measurements.
+	 * 
+	 * @return the measurement count
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Gets the largest measurement.
+	 * 
+	 * @return the largest measurement, or {@code 0} if there are none
+	 */
+	public long getMax() {
+		final long result = max.get();
+		return result == Long.MIN_VALUE ? 0 : result;
+	}
+
+	/**
+	 * Gets the mean of the measurements.
+	 * 
+	 * @return the mean, or {@code 0} if there are no measurements
+	 */
+	public double getMean() {
+		final long n = count.get();
+		return n == 0 ? 0 : (double) total.get() / n;
+	}
+
+	/**
+	 * Gets the name of this metric.
+	 * 
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the sum of the measurements.
+	 * 
+	 * @return the total
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+
+	/**
+	 * Adds a measurement.
+	 * 
+	 * @param value
+	 *            the measurement
+	 */
+	public void record(long value) {
+		count.incrementAndGet();
+		total.addAndGet(value);
+		long current;
+		while (value > (current = max.get())
+				&& !max.compareAndSet(current, value)) {
+			// Another thread raised the maximum; compare again.
+		}
+	}
+
+	/**
+	 * Discards every measurement. Measurements recorded while this method
+	 * runs may be partly discarded.
+	 */
+	public void reset() {
+		count.set(0);
+		total.set(0);
+		max.set(Long.MIN_VALUE);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: count %d, mean %.1f, max %d", name,
+				getCount(), getMean(), getMax());
+	}
+
+}
@@ -0,0 +1,268 @@
+package j2048.metrics;
+
+import j2048.Direction;
+import j2048.TileGameContext;
+import j2048.TurnPerformer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The registry of {@linkplain Metric metrics} for the hot paths of the game:
+ * turns, and the painting of the grid and its tiles.
+ * <p>
+ * Measurement is off by default, and costs one volatile read per measured
+ * operation while it is off. It is switched on by starting the JVM with
+ * {@code -D}{@value #PROPERTY}{@code =true}, by calling
+ * {@link #setEnabled(boolean)}, or over JMX once {@link #registerMBean()}
+ * has been called. While it is on, each turn of a
+ * {@linkplain #wrap(TurnPerformer) wrapped} turn performer records these
+ * metrics, where {@code P} is the simple name of the performer's class:
+ * <ul>
+ * <li>{@code turn.P.nanos}, the duration of the turn;</li>
+ * <li>{@code turn.P.bytes}, the bytes allocated by the thread during the
+ * turn, if the JVM can measure them;</li>
+ * <li>{@code turn.P.calls}, the number of calls to the
+ * {@link TileGameContext};</li>
+ * <li>{@code turn.P.moved} and {@code turn.P.merged}, the number of tiles
+ * moved without merging, and the number of merges.</li>
+ * </ul>
+ * The GUI also records {@code grid.paint.nanos}, the time taken to paint the
+ * whole grid, including its tiles, and {@code tile.paint.nanos}, the time
+ * taken to paint each tile.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class Metrics {
+
+	/**
+	 * The system property that enables measurement when the JVM starts.
+	 */
+	public static final String PROPERTY = "j2048.metrics";
+
+	/**
+	 * The JMX object name under which {@link #registerMBean()} registers the
+	 * registry.
+	 */
+	public static final String OBJECT_NAME = "j2048:type=Metrics";
+
+	/**
+	 * Whether measurements are recorded.
+	 */
+	private static volatile boolean enabled = Boolean.getBoolean(PROPERTY);
+
+	/**
+	 * Every metric that has been created, by name.
+	 */
+	private static final ConcurrentMap<String, Metric> METRICS =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * The thread bean that measures allocation, or {@code null} if this JVM
+	 * cannot measure it.
+	 */
+	private static final com.sun.management.ThreadMXBean THREADS =
+			allocationBean();
+
+	/**
+	 * Measures the bytes allocated by the current thread so far.
+	 * 
+	 * @return the number of bytes, or {@code -1} if this JVM cannot measure
+	 *         allocation
+	 */
+	public static long allocatedBytes() {
+		if (THREADS == null || !THREADS.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Gets the metric with the given name, creating it if it does not exist.
+	 * Code on a hot path should look its metrics up once and keep them.
+	 * 
+	 * @param name
+	 *            the name of the metric
+	 * @return the metric
+	 * @throws IllegalArgumentException
+	 *             if {@code name == null}
+	 */
+	public static Metric get(String name) throws IllegalArgumentException {
+		if (name == null) {
+			throw new IllegalArgumentException("name must not be null");
+		}
+		final Metric metric = METRICS.get(name);
+		if (metric != null) {
+			return metric;
+		}
+		final Metric created = new Metric(name);
+		final Metric existing = METRICS.putIfAbsent(name, created);
+		return existing == null ? created : existing;
+	}
+
+	/**
+	 * Gets every metric that has been created.
+	 * 
+	 * @return an unmodifiable map from the name of each metric to the metric,
+	 *         in order of name
+	 */
+	public static SortedMap<String, Metric> getAll() {
+		return Collections.unmodifiableSortedMap(new TreeMap<>(METRICS));
+	}
+
+	/**
+	 * Determines whether measurement is enabled.
+	 * 
+	 * @return {@code true} if measurements are being recorded
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Registers the registry with the platform MBean server under the name
+	 * {@value #OBJECT_NAME}, if it is not registered already. Failures are
+	 * ignored, since the game runs the same without them.
+	 */
+	public static void registerMBean() {
+		try {
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			final MBeanServer server = ManagementFactory
+					.getPlatformMBeanServer();
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new MetricsMXBean() {
+					@Override
+					public Map<String, Metric> getMetrics() {
+						return getAll();
+					}
+
+					@Override
+					public boolean isEnabled() {
+						return Metrics.isEnabled();
+					}
+
+					@Override
+					public void reset() {
+						Metrics.reset();
+					}
+
+					@Override
+					public void setEnabled(boolean enabled) {
+						Metrics.setEnabled(enabled);
+					}
+				}, name);
+			}
+		} catch (JMException | SecurityException e) {
+			// Sandboxed applets and embedders without JMX go unmonitored.
+		}
+	}
+
+	/**
+	 * Discards the measurements of every metric.
+	 */
+	public static void reset() {
+		for (Metric metric : METRICS.values()) {
+			metric.reset();
+		}
+	}
+
+	/**
+	 * Enables or disables measurement.
+	 * 
+	 * @param enabled
+	 *            whether to record measurements
+	 */
+	public static void setEnabled(boolean enabled) {
+		Metrics.enabled = enabled;
+	}
+
+	/**
+	 * Wraps a turn performer so that its turns are measured while
+	 * measurement is enabled, as described in the class comment. While it is
+	 * disabled, the wrapper only passes each turn to the performer.
+	 * 
+	 * @param performer
+	 *            the turn performer to measure
+	 * @return the wrapped performer
+	 * @throws IllegalArgumentException
+	 *             if {@code performer == null}
+	 */
+	public static TurnPerformer wrap(final TurnPerformer performer)
+			throws IllegalArgumentException {
+		if (performer == null) {
+			throw new IllegalArgumentException("performer must not be null");
+		}
+		final Class<?> type = performer.getClass();
+		final String prefix = "turn."
+				+ (type.getSimpleName().isEmpty() ? type.getName() : type
+						.getSimpleName()) + ".";
+		final Metric nanos = get(prefix + "nanos");
+		final Metric bytes = get(prefix + "bytes");
+		final Metric calls = get(prefix + "calls");
+		final Metric moved = get(prefix + "moved");
+		final Metric merged = get(prefix + "merged");
+		return new TurnPerformer() {
+			@Override
+			public boolean turn(Direction direction, TileGameContext context) {
+				if (!enabled) {
+					return performer.turn(direction, context);
+				}
+				final MeteredContext metered = new MeteredContext(context);
+				final long allocatedBefore = allocatedBytes();
+				final long start = System.nanoTime();
+				try {
+					return performer.turn(direction, metered);
+				} finally {
+					nanos.record(System.nanoTime() - start);
+					final long allocatedAfter = allocatedBytes();
+					if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+						bytes.record(allocatedAfter - allocatedBefore);
+					}
+					calls.record(metered.getCalls());
+					moved.record(metered.getMoved());
+					merged.record(metered.getMerged());
+				}
+			}
+		};
+	}
+
+	/**
+	 * Finds the thread bean that measures allocation.
+	 * 
+	 * @return the bean, or {@code null} if this JVM cannot measure
+	 *         allocation
+	 */
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		try {
+			final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean) {
+				final com.sun.management.ThreadMXBean sun =
+						(com.sun.management.ThreadMXBean) bean;
+				if (sun.isThreadAllocatedMemorySupported()) {
+					return sun;
+				}
+			}
+		} catch (SecurityException e) {
+			// Fall through; allocation is not measured.
+		}
+		return null;
+	}
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private Metrics() {
+	}
+
+}
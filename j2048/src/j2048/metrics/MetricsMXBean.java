@@ -0,0 +1,48 @@
+package j2048.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of the {@linkplain Metrics metrics registry},
+ * registered by {@link Metrics#registerMBean()} under the name
+ * {@value Metrics#OBJECT_NAME}. This allows a tool such as JConsole or
+ * VisualVM to switch measurement on, read the metrics, and reset them.
+ * 
+ * @author William Chargin
+ * 
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * Gets every metric that has been created.
+	 * 
+	 * @return a map from the name of each metric to the metric
+	 * @see Metrics#getAll()
+	 */
+	public Map<String, Metric> getMetrics();
+
+	/**
+	 * Determines whether measurement is enabled.
+	 * 
+	 * @return {@code true} if measurements are being recorded
+	 * @see Metrics#isEnabled()
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Discards the measurements of every metric.
+	 * 
+	 * @see Metrics#reset()
+	 */
+	public void reset();
+
+	/**
+	 * Enables or disables measurement.
+	 * 
+	 * @param enabled
+	 *            whether to record measurements
+	 * @see Metrics#setEnabled(boolean)
+	 */
+	public void setEnabled(boolean enabled);
+
+}
@@ -0,0 +1,758 @@
+package j2048.record;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.GameSnapshot;
+import j2048.Tile;
+import j2048.TileGrid;
+import j2048.engine.ArrayBoard;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A complete record of one game: the moves made, the tiles that appeared,
+ * and a checksum of the final board. A record holds everything needed to
+ * replay the game with {@link GameReplayer}, whatever turn performer made the
+ * original moves. Records are created with a {@link GameRecorder}. This
+ * class is immutable.
+ * <p>
+ * Each spawn is tagged with the number of moves that had been made when the
+ * tile appeared, counting the move that caused it. Tiles placed before the
+ * first move, such as the two starting tiles, have move number {@code 0}; a
+ * tile that appeared during the first move has move number {@code 1}.
+ * <p>
+ * A record may also hold keyframes: a snapshot of the board and score every
+ * {@linkplain #getKeyframeInterval() few moves}. A {@link ReplayCursor} uses
+ * them to reach any move of a long game by replaying at most one interval of
+ * moves, rather than the whole game.
+ * <p>
+ * The binary form written by {@link #write(OutputStream)} is compact: each
+ * move takes two bits, and each spawn usually takes three bytes. It consists
+ * of, in order:
+ * <ol>
+ * <li>the four bytes {@code "2048"} and a version byte;</li>
+ * <li>the board size, as one byte;</li>
+ * <li>the seed, as eight bytes;</li>
+ * <li>the number of moves, as a variable-length integer, followed by the
+ * moves packed four to a byte, lowest bits first;</li>
+ * <li>the number of spawns, as a variable-length integer, followed by the
+ * move number (as a difference from the previous spawn), cell index and
+ * value of each spawn, each as a variable-length integer;</li>
+ * <li>the final score, as a variable-length integer;</li>
+ * <li>the checksum, as four bytes;</li>
+ * <li>the keyframe interval and the number of keyframes, as variable-length
+ * integers, followed by the score and spawn index (the number of spawns
+ * before the keyframe's move was over) of each keyframe, as variable-length
+ * integers, and its board, as one exponent byte per cell. Keyframe {@code k}
+ * is the state just after move {@code (k + 1) * interval}.</li>
+ * </ol>
+ * Version 1 records, which have no keyframes, can still be read.
+ * Variable-length integers use seven bits per byte, lowest bits first, with
+ * the high bit set on every byte but the last. Fixed-length integers are
+ * big-endian.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class GameRecord {
+
+	/**
+	 * The first four bytes of every record, {@code "2048"} in ASCII.
+	 */
+	private static final int MAGIC = 0x32303438;
+
+	/**
+	 * The version of the binary format.
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * The direction for each two-bit move code. This table, not the order of
+	 * the {@link Direction} constants, defines the binary format.
+	 */
+	private static final Direction[] CODES = { Direction.NORTH,
+			Direction.EAST, Direction.SOUTH, Direction.WEST };
+
+	/**
+	 * The greatest number of moves, spawns or keyframes for which space is
+	 * allocated before any of them is read. A damaged count can make a
+	 * reader allocate at most about twice as much as the input it has read.
+	 */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * Computes the checksum of the tiles on a grid. Two grids have the same
+	 * checksum if they are the same size and have tiles of the same values
+	 * in the same cells, whatever tile objects they hold.
+	 * 
+	 * @param grid
+	 *            the grid
+	 * @return the checksum of the grid
+	 * @throws IllegalArgumentException
+	 *             if {@code grid == null}
+	 */
+	public static int checksum(TileGrid grid) throws IllegalArgumentException {
+		if (grid == null) {
+			throw new IllegalArgumentException("grid must not be null");
+		}
+		final int size = grid.getSize();
+		final int[] values = new int[size * size];
+		for (int i = 0; i < values.length; i++) {
+			final Tile tile = grid.at(BoardLocation.fromIndex(i, size));
+			values[i] = tile == null ? 0 : tile.getValue();
+		}
+		return checksum(size, values);
+	}
+
+	/**
+	 * Computes the checksum of the board of a snapshot, which is the same as
+	 * the checksum of the grid from which the snapshot was taken.
+	 * 
+	 * @param snapshot
+	 *            the snapshot
+	 * @return the checksum of the snapshot's board
+	 * @throws IllegalArgumentException
+	 *             if {@code snapshot == null}
+	 */
+	public static int checksum(GameSnapshot snapshot)
+			throws IllegalArgumentException {
+		if (snapshot == null) {
+			throw new IllegalArgumentException("snapshot must not be null");
+		}
+		final int size = snapshot.getBoardSize();
+		final int[] values = new int[size * size];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = snapshot.getValue(i);
+		}
+		return checksum(size, values);
+	}
+
+	/**
+	 * Reads a record in the format written by {@link #write(OutputStream)}.
+	 * The counts in a damaged record are not trusted: memory is allocated
+	 * only as the items counted are actually read.
+	 * 
+	 * @param in
+	 *            the stream from which to read
+	 * @return the record
+	 * @throws IOException
+	 *             if the stream cannot be read, or does not hold a valid
+	 *             record, including if it ends before the number of moves,
+	 *             spawns or keyframes that it gives
+	 */
+	public static GameRecord read(InputStream in) throws IOException {
+		final DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC) {
+			throw new IOException("not a game record");
+		}
+		final int version = data.readUnsignedByte();
+		if (version < 1 || version > VERSION) {
+			throw new IOException("unsupported record version: " + version);
+		}
+		final int boardSize = data.readUnsignedByte();
+		if (boardSize < BoardLocation.MIN_BOARD_SIZE
+				|| boardSize > BoardLocation.MAX_BOARD_SIZE) {
+			throw new IOException("unsupported board size: " + boardSize);
+		}
+		final long seed = data.readLong();
+
+		final int moveCount = readVarInt(data);
+		final byte[] moves = readBytes(data,
+				(moveCount >>> 2) + ((moveCount & 3) != 0 ? 1 : 0));
+
+		final int spawnCount = readVarInt(data);
+		int[] spawnMoves = new int[Math.min(spawnCount, INITIAL_CAPACITY)];
+		int[] spawnCells = new int[spawnMoves.length];
+		int[] spawnValues = new int[spawnMoves.length];
+		int move = 0;
+		for (int i = 0; i < spawnCount; i++) {
+			if (i == spawnMoves.length) {
+				final int capacity = grow(i, spawnCount);
+				spawnMoves = Arrays.copyOf(spawnMoves, capacity);
+				spawnCells = Arrays.copyOf(spawnCells, capacity);
+				spawnValues = Arrays.copyOf(spawnValues, capacity);
+			}
+			move += readVarInt(data);
+			if (move > moveCount) {
+				throw new IOException("spawn " + i + " after last move");
+			}
+			spawnMoves[i] = move;
+			spawnCells[i] = readVarInt(data);
+			if (spawnCells[i] >= boardSize * boardSize) {
+				throw new IOException("spawn " + i + " off the board");
+			}
+			spawnValues[i] = readVarInt(data);
+		}
+
+		final int score = readVarInt(data);
+		final int checksum = data.readInt();
+
+		int keyframeInterval = 0, keyframeCount = 0;
+		if (version >= 2) {
+			keyframeInterval = readVarInt(data);
+			keyframeCount = readVarInt(data);
+			if (keyframeCount > 0
+					&& (keyframeInterval == 0 || keyframeCount > moveCount
+							/ keyframeInterval)) {
+				throw new IOException("keyframes beyond last move");
+			}
+		}
+		final int cells = boardSize * boardSize;
+		if ((long) keyframeCount * cells > Integer.MAX_VALUE) {
+			throw new IOException("too many keyframes: " + keyframeCount);
+		}
+		int[] keyframeScores = new int[Math.min(keyframeCount,
+				INITIAL_CAPACITY)];
+		int[] keyframeSpawns = new int[keyframeScores.length];
+		byte[] keyframeCells = new byte[keyframeScores.length * cells];
+		for (int k = 0; k < keyframeCount; k++) {
+			if (k == keyframeScores.length) {
+				final int capacity = grow(k, keyframeCount);
+				keyframeScores = Arrays.copyOf(keyframeScores, capacity);
+				keyframeSpawns = Arrays.copyOf(keyframeSpawns, capacity);
+				keyframeCells = Arrays.copyOf(keyframeCells, capacity * cells);
+			}
+			keyframeScores[k] = readVarInt(data);
+			keyframeSpawns[k] = readVarInt(data);
+			if (keyframeSpawns[k] > spawnCount) {
+				throw new IOException("keyframe " + k + " after last spawn");
+			}
+			data.readFully(keyframeCells, k * cells, cells);
+			for (int i = k * cells; i < (k + 1) * cells; i++) {
+				if (keyframeCells[i] < 0
+						|| keyframeCells[i] > ArrayBoard.MAX_EXPONENT) {
+					throw new IOException("keyframe " + k + " has bad cell");
+				}
+			}
+		}
+		return new GameRecord(boardSize, seed, moveCount, moves, spawnMoves,
+				spawnCells, spawnValues, score, checksum, keyframeInterval,
+				keyframeScores, keyframeSpawns, keyframeCells);
+	}
+
+	/**
+	 * Reads a record from an array in the format written by
+	 * {@link #toByteArray()}.
+	 * 
+	 * @param bytes
+	 *            the bytes of the record
+	 * @return the record
+	 * @throws IOException
+	 *             if the array does not hold a valid record
+	 */
+	public static GameRecord fromByteArray(byte[] bytes) throws IOException {
+		return read(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * Reads a variable-length integer, encoded as described in the class
+	 * comment. Other binary formats, such as that of a
+	 * {@link j2048.GameSnapshot}, use the same encoding.
+	 * 
+	 * @param in
+	 *            the input from which to read
+	 * @return the integer
+	 * @throws IOException
+	 *             if the input cannot be read, or the integer is negative or
+	 *             too long
+	 * @see #writeVarInt(DataOutput, int)
+	 */
+	public static int readVarInt(DataInput in) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			final int b = in.readUnsignedByte();
+			result |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				if (result < 0) {
+					throw new IOException("negative length or value");
+				}
+				return result;
+			}
+		}
+		throw new IOException("variable-length integer too long");
+	}
+
+	/**
+	 * Writes a variable-length integer, encoded as described in the class
+	 * comment.
+	 * 
+	 * @param out
+	 *            the output to which to write
+	 * @param value
+	 *            the integer, which must not be negative
+	 * @throws IOException
+	 *             if the output cannot be written
+	 * @see #readVarInt(DataInput)
+	 */
+	public static void writeVarInt(DataOutput out, int value)
+			throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Computes the checksum of the tiles on an array board, which is the
+	 * same as the checksum of a grid with the same tiles.
+	 * 
+	 * @param board
+	 *            the board
+	 * @return the checksum of the board
+	 */
+	static int checksum(ArrayBoard board) {
+		final int size = board.getSize();
+		final int[] values = new int[size * size];
+		for (int i = 0; i < values.length; i++) {
+			final int exponent = board.exponentAt(i);
+			values[i] = exponent == 0 ? 0 : 1 << exponent;
+		}
+		return checksum(size, values);
+	}
+
+	/**
+	 * Computes the checksum of a board given the value in each cell.
+	 * 
+	 * @param size
+	 *            the side length of the board
+	 * @param values
+	 *            the tile value in each cell, or {@code 0} for an empty cell
+	 * @return the CRC-32 of the size and the values
+	 */
+	private static int checksum(int size, int[] values) {
+		final byte[] bytes = new byte[1 + 4 * values.length];
+		bytes[0] = (byte) size;
+		for (int i = 0; i < values.length; i++) {
+			final int v = values[i];
+			bytes[1 + 4 * i] = (byte) (v >>> 24);
+			bytes[2 + 4 * i] = (byte) (v >>> 16);
+			bytes[3 + 4 * i] = (byte) (v >>> 8);
+			bytes[4 + 4 * i] = (byte) v;
+		}
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Gets the two-bit code for a direction.
+	 * 
+	 * @param direction
+	 *            the direction
+	 * @return the index of the direction in {@link #CODES}
+	 */
+	static int codeOf(Direction direction) {
+		switch (direction) {
+		case NORTH:
+			return 0;
+		case EAST:
+			return 1;
+		case SOUTH:
+			return 2;
+		case WEST:
+			return 3;
+		default:
+			throw new AssertionError("Unexpected direction " + direction);
+		}
+	}
+
+	/**
+	 * Computes the new capacity of an array that is being filled while it is
+	 * read.
+	 * 
+	 * @param capacity
+	 *            the current capacity, which is full
+	 * @param count
+	 *            the number of items that the input claims to hold
+	 * @return the new capacity, at most {@code count}
+	 */
+	private static int grow(int capacity, int count) {
+		return (int) Math.min(2L * capacity, count);
+	}
+
+	/**
+	 * Reads a number of bytes, allocating memory only as they are read, so
+	 * that a damaged length cannot exhaust the heap.
+	 * 
+	 * @param in
+	 *            the stream from which to read
+	 * @param length
+	 *            the number of bytes to read
+	 * @return the bytes read
+	 * @throws IOException
+	 *             if the stream cannot be read, or ends before the given
+	 *             number of bytes
+	 */
+	private static byte[] readBytes(DataInputStream in, int length)
+			throws IOException {
+		byte[] bytes = new byte[Math.min(length, INITIAL_CAPACITY)];
+		in.readFully(bytes);
+		while (bytes.length < length) {
+			final int read = bytes.length;
+			bytes = Arrays.copyOf(bytes, grow(read, length));
+			in.readFully(bytes, read, bytes.length - read);
+		}
+		return bytes;
+	}
+
+	/**
+	 * The side length of the board.
+	 */
+	private final int boardSize;
+
+	/**
+	 * The seed of the random number generator used for the game.
+	 */
+	private final long seed;
+
+	/**
+	 * The number of moves.
+	 */
+	private final int moveCount;
+
+	/**
+	 * The moves, packed four to a byte as described in the class comment.
+	 */
+	private final byte[] moves;
+
+	/**
+	 * The move number of each spawn, in order.
+	 */
+	private final int[] spawnMoves;
+
+	/**
+	 * The cell index of each spawn.
+	 */
+	private final int[] spawnCells;
+
+	/**
+	 * The value of each spawned tile.
+	 */
+	private final int[] spawnValues;
+
+	/**
+	 * The final score.
+	 */
+	private final int score;
+
+	/**
+	 * The checksum of the final board.
+	 */
+	private final int checksum;
+
+	/**
+	 * The number of moves between keyframes, or {@code 0} if there are no
+	 * keyframes.
+	 */
+	private final int keyframeInterval;
+
+	/**
+	 * The score at each keyframe.
+	 */
+	private final int[] keyframeScores;
+
+	/**
+	 * The number of spawns up to and including each keyframe's move.
+	 */
+	private final int[] keyframeSpawns;
+
+	/**
+	 * The exponent in each cell of each keyframe, one keyframe after another.
+	 */
+	private final byte[] keyframeCells;
+
+	/**
+	 * Creates a record. The arrays must not be modified after they are passed
+	 * to this constructor.
+	 * 
+	 * @param boardSize
+	 *            the side length of the board
+	 * @param seed
+	 *            the seed of the random number generator
+	 * @param moveCount
+	 *            the number of moves
+	 * @param moves
+	 *            the packed moves
+	 * @param spawnMoves
+	 *            the move number of each spawn, in nondecreasing order
+	 * @param spawnCells
+	 *            the cell index of each spawn
+	 * @param spawnValues
+	 *            the value of each spawned tile
+	 * @param score
+	 *            the final score
+	 * @param checksum
+	 *            the checksum of the final board
+	 * @param keyframeInterval
+	 *            the number of moves between keyframes
+	 * @param keyframeScores
+	 *            the score at each keyframe
+	 * @param keyframeSpawns
+	 *            the number of spawns up to each keyframe
+	 * @param keyframeCells
+	 *            the exponents of the cells of each keyframe
+	 */
+	GameRecord(int boardSize, long seed, int moveCount, byte[] moves,
+			int[] spawnMoves, int[] spawnCells, int[] spawnValues, int score,
+			int checksum, int keyframeInterval, int[] keyframeScores,
+			int[] keyframeSpawns, byte[] keyframeCells) {
+		this.boardSize = boardSize;
+		this.seed = seed;
+		this.moveCount = moveCount;
+		this.moves = moves;
+		this.spawnMoves = spawnMoves;
+		this.spawnCells = spawnCells;
+		this.spawnValues = spawnValues;
+		this.score = score;
+		this.checksum = checksum;
+		this.keyframeInterval = keyframeInterval;
+		this.keyframeScores = keyframeScores;
+		this.keyframeSpawns = keyframeSpawns;
+		this.keyframeCells = keyframeCells;
+	}
+
+	/**
+	 * Gets the side length of the board on which the game was played.
+	 * 
+	 * @return the board size
+	 */
+	public int getBoardSize() {
+		return boardSize;
+	}
+
+	/**
+	 * Gets the checksum of the final board, as computed by
+	 * {@link #checksum(TileGrid)}.
+	 * 
+	 * @return the checksum
+	 */
+	public int getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * Gets the number of keyframes in this record.
+	 * 
+	 * @return the number of keyframes
+	 */
+	public int getKeyframeCount() {
+		return keyframeScores.length;
+	}
+
+	/**
+	 * Gets the number of moves between keyframes. The first keyframe is
+	 * after this many moves.
+	 * 
+	 * @return the keyframe interval, or {@code 0} if the record has no
+	 *         keyframes
+	 */
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	/**
+	 * Gets the direction of a move.
+	 * 
+	 * @param index
+	 *            the zero-based index of the move
+	 * @return the direction of the move
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is negative or not less than
+	 *             {@link #getMoveCount()}
+	 */
+	public Direction getMove(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= moveCount) {
+			throw new IndexOutOfBoundsException("move " + index + " of "
+					+ moveCount);
+		}
+		return CODES[(moves[index >> 2] >> ((index & 3) << 1)) & 3];
+	}
+
+	/**
+	 * Gets the number of moves in the game.
+	 * 
+	 * @return the number of moves
+	 */
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	/**
+	 * Gets the final score of the game.
+	 * 
+	 * @return the final score
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Gets the seed of the random number generator used for the game. A
+	 * replay does not need the seed, because every spawn is recorded, but it
+	 * is kept so that a game can be played again from the same start.
+	 * 
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Gets the cell index at which a tile appeared.
+	 * 
+	 * @param index
+	 *            the zero-based index of the spawn
+	 * @return the cell index, as returned by {@link BoardLocation#getIndex()}
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is negative or not less than
+	 *             {@link #getSpawnCount()}
+	 */
+	public int getSpawnCell(int index) throws IndexOutOfBoundsException {
+		return spawnCells[index];
+	}
+
+	/**
+	 * Gets the number of tiles that appeared during the game, including the
+	 * starting tiles.
+	 * 
+	 * @return the number of spawns
+	 */
+	public int getSpawnCount() {
+		return spawnMoves.length;
+	}
+
+	/**
+	 * Gets the move number of a spawn, as described in the class comment.
+	 * 
+	 * @param index
+	 *            the zero-based index of the spawn
+	 * @return the number of moves made when the tile appeared
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is negative or not less than
+	 *             {@link #getSpawnCount()}
+	 */
+	public int getSpawnMove(int index) throws IndexOutOfBoundsException {
+		return spawnMoves[index];
+	}
+
+	/**
+	 * Gets the value of a tile that appeared.
+	 * 
+	 * @param index
+	 *            the zero-based index of the spawn
+	 * @return the value of the new tile
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is negative or not less than
+	 *             {@link #getSpawnCount()}
+	 */
+	public int getSpawnValue(int index) throws IndexOutOfBoundsException {
+		return spawnValues[index];
+	}
+
+	/**
+	 * Gets the score at a keyframe.
+	 * 
+	 * @param k
+	 *            the index of the keyframe
+	 * @return the score after move {@code (k + 1) * interval}
+	 */
+	int getKeyframeScore(int k) {
+		return keyframeScores[k];
+	}
+
+	/**
+	 * Gets the number of spawns up to and including a keyframe's move.
+	 * 
+	 * @param k
+	 *            the index of the keyframe
+	 * @return the index of the first spawn after the keyframe
+	 */
+	int getKeyframeSpawn(int k) {
+		return keyframeSpawns[k];
+	}
+
+	/**
+	 * Gets the exponent of a cell at a keyframe.
+	 * 
+	 * @param k
+	 *            the index of the keyframe
+	 * @param index
+	 *            the cell index
+	 * @return the exponent, or {@code 0} if the cell is empty
+	 */
+	int getKeyframeExponent(int k, int index) {
+		return keyframeCells[k * boardSize * boardSize + index];
+	}
+
+	/**
+	 * Writes this record in its binary form to a byte array.
+	 * 
+	 * @return the bytes of this record
+	 */
+	public byte[] toByteArray() {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(32
+				+ moves.length + 3 * spawnMoves.length + keyframeCells.length
+				+ 4 * keyframeScores.length);
+		try {
+			write(out);
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public String toString() {
+		return "GameRecord[size=" + boardSize + ", moves=" + moveCount
+				+ ", spawns=" + spawnMoves.length + ", score=" + score + "]";
+	}
+
+	/**
+	 * Writes this record in its binary form, as described in the class
+	 * comment. The stream is not flushed or closed.
+	 * 
+	 * @param out
+	 *            the stream to which to write
+	 * @throws IOException
+	 *             if the stream cannot be written
+	 */
+	public void write(OutputStream out) throws IOException {
+		final DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeByte(VERSION);
+		data.writeByte(boardSize);
+		data.writeLong(seed);
+		writeVarInt(data, moveCount);
+		data.write(moves, 0, (moveCount + 3) / 4);
+		writeVarInt(data, spawnMoves.length);
+		int move = 0;
+		for (int i = 0; i < spawnMoves.length; i++) {
+			writeVarInt(data, spawnMoves[i] - move);
+			writeVarInt(data, spawnCells[i]);
+			writeVarInt(data, spawnValues[i]);
+			move = spawnMoves[i];
+		}
+		writeVarInt(data, score);
+		data.writeInt(checksum);
+		writeVarInt(data, keyframeInterval);
+		writeVarInt(data, keyframeScores.length);
+		final int cells = boardSize * boardSize;
+		for (int k = 0; k < keyframeScores.length; k++) {
+			writeVarInt(data, keyframeScores[k]);
+			writeVarInt(data, keyframeSpawns[k]);
+			data.write(keyframeCells, k * cells, cells);
+		}
+	}
+
+}
@@ -0,0 +1,662 @@
+package j2048.record;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.GameEvent;
+import j2048.GameListener;
+import j2048.GameModel;
+import j2048.GameSnapshot;
+import j2048.Tile;
+import j2048.TileGameContext;
+import j2048.TileGrid;
+import j2048.TurnPerformer;
+import j2048.engine.ArrayBoard;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a {@link GameRecord} while a game is played. The recorder learns of
+ * new tiles by listening to the game, and of moves through a turn performer
+ * {@linkplain #wrap(TurnPerformer) wrapped} by the recorder:
+ * 
+ * <pre>
+ * GameRecorder recorder = new GameRecorder(model.getGrid().getSize(), seed);
+ * model.addGameListener(recorder);
+ * TurnPerformer performer = recorder.wrap(new Logic());
+ * // ... play the game with the wrapped performer ...
+ * GameRecord record = recorder.finish(model);
+ * </pre>
+ * 
+ * Recording costs two bits per move and a few bytes per spawn, and does not
+ * allocate except to grow its buffers and to start a new game. Every
+ * {@linkplain #getKeyframeInterval() few moves}, the wrapped performer also
+ * takes a keyframe: a copy of the board and score, so that a
+ * {@link ReplayCursor} can seek quickly in the finished record. Keyframes
+ * are only taken while every tile has a value that an {@link ArrayBoard} can
+ * hold. This class is not thread-safe, but a {@linkplain #checkpoint()
+ * checkpoint} taken from it may be finished on any thread.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class GameRecorder implements GameListener {
+
+	/**
+	 * The moves and spawns recorded up to some moment, from which a
+	 * {@link GameRecord} can be made later. A checkpoint takes constant time
+	 * to create, because it shares the recorder's buffers: the recorder only
+	 * appends to them, and replaces them when they grow or a new game
+	 * starts, so the part a checkpoint covers never changes. A checkpoint may
+	 * therefore be finished on another thread while recording continues,
+	 * as long as it was handed to that thread safely.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	public static final class Checkpoint {
+
+		/**
+		 * The side length of the board.
+		 */
+		private final int boardSize;
+
+		/**
+		 * The seed of the random number generator for the game.
+		 */
+		private final long seed;
+
+		/**
+		 * The number of moves recorded.
+		 */
+		private final int moveCount;
+
+		/**
+		 * The recorder's move buffer.
+		 */
+		private final byte[] moves;
+
+		/**
+		 * The number of spawns recorded.
+		 */
+		private final int spawnCount;
+
+		/**
+		 * The recorder's buffer of spawn move numbers.
+		 */
+		private final int[] spawnMoves;
+
+		/**
+		 * The recorder's buffer of spawn cells.
+		 */
+		private final int[] spawnCells;
+
+		/**
+		 * The recorder's buffer of spawn values.
+		 */
+		private final int[] spawnValues;
+
+		/**
+		 * The number of moves between keyframes.
+		 */
+		private final int keyframeInterval;
+
+		/**
+		 * The number of keyframes taken.
+		 */
+		private final int keyframeCount;
+
+		/**
+		 * The recorder's buffer of keyframe scores.
+		 */
+		private final int[] keyframeScores;
+
+		/**
+		 * The recorder's buffer of keyframe spawn counts.
+		 */
+		private final int[] keyframeSpawns;
+
+		/**
+		 * The recorder's buffer of keyframe cells.
+		 */
+		private final byte[] keyframeCells;
+
+		/**
+		 * Creates a checkpoint of the current state of a recorder.
+		 * 
+		 * @param recorder
+		 *            the recorder
+		 */
+		private Checkpoint(GameRecorder recorder) {
+			boardSize = recorder.boardSize;
+			seed = recorder.seed;
+			moveCount = recorder.moveCount;
+			moves = recorder.moves;
+			spawnCount = recorder.spawnCount;
+			spawnMoves = recorder.spawnMoves;
+			spawnCells = recorder.spawnCells;
+			spawnValues = recorder.spawnValues;
+			keyframeInterval = recorder.keyframeInterval;
+			keyframeCount = recorder.keyframeCount;
+			keyframeScores = recorder.keyframeScores;
+			keyframeSpawns = recorder.keyframeSpawns;
+			keyframeCells = recorder.keyframeCells;
+		}
+
+		/**
+		 * Creates a record of the game up to this checkpoint.
+		 * 
+		 * @param snapshot
+		 *            the state of the game at this checkpoint, whose board
+		 *            and score are the final state of the record
+		 * @return the record
+		 * @throws IllegalArgumentException
+		 *             if {@code snapshot == null}, or if its board is a
+		 *             different size
+		 */
+		public GameRecord finish(GameSnapshot snapshot)
+				throws IllegalArgumentException {
+			if (snapshot == null) {
+				throw new IllegalArgumentException(
+						"snapshot must not be null");
+			}
+			if (snapshot.getBoardSize() != boardSize) {
+				throw new IllegalArgumentException("size mismatch: "
+						+ snapshot.getBoardSize() + " != " + boardSize);
+			}
+			return finish(snapshot.getScore(), GameRecord.checksum(snapshot));
+		}
+
+		/**
+		 * Gets the side length of the board of the recorded game.
+		 * 
+		 * @return the board size
+		 */
+		public int getBoardSize() {
+			return boardSize;
+		}
+
+		/**
+		 * Gets the number of moves recorded up to this checkpoint.
+		 * 
+		 * @return the number of moves
+		 */
+		public int getMoveCount() {
+			return moveCount;
+		}
+
+		/**
+		 * Creates a record of the game up to this checkpoint.
+		 * 
+		 * @param score
+		 *            the final score
+		 * @param checksum
+		 *            the checksum of the final board
+		 * @return the record
+		 */
+		private GameRecord finish(int score, int checksum) {
+			final int cells = boardSize * boardSize;
+			return new GameRecord(boardSize, seed, moveCount, Arrays.copyOf(
+					moves, (moveCount + 3) / 4), Arrays.copyOf(spawnMoves,
+					spawnCount), Arrays.copyOf(spawnCells, spawnCount),
+					Arrays.copyOf(spawnValues, spawnCount), score, checksum,
+					keyframeInterval, Arrays.copyOf(keyframeScores,
+							keyframeCount), Arrays.copyOf(keyframeSpawns,
+							keyframeCount), Arrays.copyOf(keyframeCells,
+							keyframeCount * cells));
+		}
+
+	}
+
+	/**
+	 * The default number of moves between keyframes. At this interval,
+	 * keyframes add less than a tenth of a byte per move on the standard
+	 * board, and seeking replays at most a few microseconds of moves.
+	 */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 256;
+
+	/**
+	 * The side length of the board.
+	 */
+	private final int boardSize;
+
+	/**
+	 * The seed of the random number generator for the current game.
+	 */
+	private long seed;
+
+	/**
+	 * The number of moves recorded.
+	 */
+	private int moveCount;
+
+	/**
+	 * The moves, packed four to a byte as in {@link GameRecord}.
+	 */
+	private byte[] moves = new byte[64];
+
+	/**
+	 * The number of spawns recorded.
+	 */
+	private int spawnCount;
+
+	/**
+	 * The move number of each spawn.
+	 */
+	private int[] spawnMoves = new int[64];
+
+	/**
+	 * The cell index of each spawn.
+	 */
+	private int[] spawnCells = new int[64];
+
+	/**
+	 * The value of each spawned tile.
+	 */
+	private int[] spawnValues = new int[64];
+
+	/**
+	 * The number of moves between keyframes, or {@code 0} to take none.
+	 */
+	private final int keyframeInterval;
+
+	/**
+	 * The number of keyframes taken.
+	 */
+	private int keyframeCount;
+
+	/**
+	 * Whether keyframes can no longer be taken in this game, because a move
+	 * was recorded without a context or the board held a tile that an
+	 * {@link ArrayBoard} cannot hold.
+	 */
+	private boolean keyframesStopped;
+
+	/**
+	 * The score at each keyframe.
+	 */
+	private int[] keyframeScores = new int[4];
+
+	/**
+	 * The number of spawns up to each keyframe.
+	 */
+	private int[] keyframeSpawns = new int[4];
+
+	/**
+	 * The exponents of the cells of each keyframe.
+	 */
+	private byte[] keyframeCells;
+
+	/**
+	 * Creates a recorder for a game on a board of the given size, with
+	 * keyframes every {@value #DEFAULT_KEYFRAME_INTERVAL} moves.
+	 * 
+	 * @param boardSize
+	 *            the side length of the board
+	 * @param seed
+	 *            the seed of the random number generator for the game
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}
+	 */
+	public GameRecorder(int boardSize, long seed)
+			throws IllegalArgumentException {
+		this(boardSize, seed, DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	/**
+	 * Creates a recorder for a game on a board of the given size.
+	 * 
+	 * @param boardSize
+	 *            the side length of the board
+	 * @param seed
+	 *            the seed of the random number generator for the game
+	 * @param keyframeInterval
+	 *            the number of moves between keyframes, or {@code 0} to take
+	 *            no keyframes
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}, or
+	 *             if the interval is negative
+	 */
+	public GameRecorder(int boardSize, long seed, int keyframeInterval)
+			throws IllegalArgumentException {
+		BoardLocation.checkBoardSize(boardSize);
+		if (keyframeInterval < 0) {
+			throw new IllegalArgumentException(
+					"keyframe interval must not be negative: "
+							+ keyframeInterval);
+		}
+		this.boardSize = boardSize;
+		this.seed = seed;
+		this.keyframeInterval = keyframeInterval;
+		this.keyframeCells = new byte[4 * boardSize * boardSize];
+	}
+
+	/**
+	 * Takes a checkpoint of the game so far, from which a record can be made
+	 * later, possibly on another thread. This takes constant time.
+	 * 
+	 * @return the checkpoint
+	 */
+	public Checkpoint checkpoint() {
+		return new Checkpoint(this);
+	}
+
+	/**
+	 * Creates a record of the game so far. The recorder is not changed, so
+	 * recording can continue. This copies everything recorded; to make a
+	 * record away from the game's thread, use {@link #checkpoint()} instead.
+	 * 
+	 * @param context
+	 *            the game being recorded, whose grid and score are the final
+	 *            state of the record
+	 * @return the record
+	 * @throws IllegalArgumentException
+	 *             if {@code context == null}, or if its grid is a different
+	 *             size
+	 */
+	public GameRecord finish(TileGameContext context)
+			throws IllegalArgumentException {
+		if (context == null) {
+			throw new IllegalArgumentException("context must not be null");
+		}
+		if (context.getGrid().getSize() != boardSize) {
+			throw new IllegalArgumentException("size mismatch: "
+					+ context.getGrid().getSize() + " != " + boardSize);
+		}
+		return checkpoint().finish(context.getScore(),
+				GameRecord.checksum(context.getGrid()));
+	}
+
+	@Override
+	public void gameChanged(List<GameEvent> events) {
+		for (GameEvent event : events) {
+			if (event.getType() == GameEvent.Type.SPAWNED) {
+				recordSpawn(event.getTo(), event.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of moves between keyframes.
+	 * 
+	 * @return the keyframe interval, or {@code 0} if no keyframes are taken
+	 */
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	/**
+	 * Gets the number of moves recorded so far.
+	 * 
+	 * @return the number of moves
+	 */
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	/**
+	 * Records a move. Tiles that appear after this call and before the next
+	 * move belong to this move. Because no board is given, recording a move
+	 * this way stops keyframes from being taken for the rest of the game.
+	 * 
+	 * @param direction
+	 *            the direction of the move
+	 * @throws IllegalArgumentException
+	 *             if {@code direction == null}
+	 */
+	public void recordMove(Direction direction)
+			throws IllegalArgumentException {
+		appendMove(direction);
+		keyframesStopped = true;
+	}
+
+	/**
+	 * Records a tile that appeared during the current move, or before the
+	 * first move.
+	 * 
+	 * @param location
+	 *            the location of the new tile
+	 * @param value
+	 *            the value of the new tile
+	 * @throws IllegalArgumentException
+	 *             if {@code location == null}, if it is on a board of a
+	 *             different size, or if the value is negative
+	 */
+	public void recordSpawn(BoardLocation location, int value)
+			throws IllegalArgumentException {
+		if (location == null) {
+			throw new IllegalArgumentException("location must not be null");
+		}
+		if (location.getBoardSize() != boardSize) {
+			throw new IllegalArgumentException("size mismatch: "
+					+ location.getBoardSize() + " != " + boardSize);
+		}
+		if (value < 0) {
+			throw new IllegalArgumentException("value must not be negative: "
+					+ value);
+		}
+		if (spawnCount == spawnMoves.length) {
+			growSpawns();
+		}
+		spawnMoves[spawnCount] = moveCount;
+		spawnCells[spawnCount] = location.getIndex();
+		spawnValues[spawnCount] = value;
+		spawnCount++;
+	}
+
+	/**
+	 * Discards everything recorded, to start recording a new game.
+	 * 
+	 * @param seed
+	 *            the seed of the random number generator for the new game
+	 */
+	public void reset(long seed) {
+		this.seed = seed;
+		moveCount = 0;
+		spawnCount = 0;
+		keyframeCount = 0;
+		keyframesStopped = false;
+		// Checkpoints may still share the old buffers, so start new ones
+		// rather than writing over them.
+		moves = new byte[64];
+		spawnMoves = new int[64];
+		spawnCells = new int[64];
+		spawnValues = new int[64];
+		keyframeScores = new int[4];
+		keyframeSpawns = new int[4];
+		keyframeCells = new byte[4 * boardSize * boardSize];
+	}
+
+	/**
+	 * Replaces everything recorded with the contents of a record, so that
+	 * recording continues where the record left off. This lets a game that
+	 * was saved with its record and later restored produce one record of the
+	 * whole game. If the record's keyframe interval differs from this
+	 * recorder's, its keyframes are discarded and no more are taken.
+	 * 
+	 * @param record
+	 *            the record of the game so far
+	 * @throws IllegalArgumentException
+	 *             if {@code record == null}, or if it is of a board of a
+	 *             different size
+	 */
+	public void resume(GameRecord record) throws IllegalArgumentException {
+		if (record == null) {
+			throw new IllegalArgumentException("record must not be null");
+		}
+		if (record.getBoardSize() != boardSize) {
+			throw new IllegalArgumentException("size mismatch: "
+					+ record.getBoardSize() + " != " + boardSize);
+		}
+		reset(record.getSeed());
+		for (int i = 0; i < record.getMoveCount(); i++) {
+			appendMove(record.getMove(i));
+		}
+		for (int i = 0; i < record.getSpawnCount(); i++) {
+			if (spawnCount == spawnMoves.length) {
+				growSpawns();
+			}
+			spawnMoves[i] = record.getSpawnMove(i);
+			spawnCells[i] = record.getSpawnCell(i);
+			spawnValues[i] = record.getSpawnValue(i);
+			spawnCount++;
+		}
+		if (record.getKeyframeInterval() != keyframeInterval) {
+			keyframesStopped = true;
+			return;
+		}
+		final int cells = boardSize * boardSize;
+		for (int k = 0; k < record.getKeyframeCount(); k++) {
+			if (keyframeCount == keyframeScores.length) {
+				growKeyframes();
+			}
+			keyframeScores[k] = record.getKeyframeScore(k);
+			keyframeSpawns[k] = record.getKeyframeSpawn(k);
+			for (int i = 0; i < cells; i++) {
+				keyframeCells[k * cells + i] = (byte) record
+						.getKeyframeExponent(k, i);
+			}
+			keyframeCount++;
+		}
+		// A record whose keyframes stopped early cannot have more.
+		keyframesStopped = keyframeInterval > 0
+				&& keyframeCount < moveCount / keyframeInterval;
+	}
+
+	/**
+	 * Wraps a turn performer so that every turn it accepts is recorded as a
+	 * move. Rejected turns are not recorded. If the turn is played on a
+	 * {@link GameModel}, it is bracketed by {@link GameModel#beginTurn()} and
+	 * {@link GameModel#endTurn()}, so that a performer that changes the
+	 * model one call at a time still produces one batch of events per turn.
+	 * 
+	 * @param performer
+	 *            the turn performer
+	 * @return a turn performer that delegates to the given one
+	 * @throws IllegalArgumentException
+	 *             if {@code performer == null}
+	 */
+	public TurnPerformer wrap(final TurnPerformer performer)
+			throws IllegalArgumentException {
+		if (performer == null) {
+			throw new IllegalArgumentException("performer must not be null");
+		}
+		return new TurnPerformer() {
+			@Override
+			public boolean turn(Direction direction, TileGameContext context) {
+				// Record the move first, so that the tile it spawns is
+				// numbered with it; take it back if the turn is rejected.
+				final int spawnsBefore = spawnCount;
+				final GameModel model = context instanceof GameModel
+						? (GameModel) context : null;
+				appendMove(direction);
+				boolean accepted = false;
+				if (model != null) {
+					model.beginTurn();
+				}
+				try {
+					accepted = performer.turn(direction, context);
+				} finally {
+					// The spawns of the turn are heard when it ends, and must
+					// be recorded before the move is taken back.
+					if (model != null) {
+						model.endTurn();
+					}
+					if (!accepted) {
+						moveCount--;
+						for (int i = spawnsBefore; i < spawnCount; i++) {
+							spawnMoves[i] = moveCount;
+						}
+					}
+				}
+				if (accepted && keyframeInterval > 0
+						&& moveCount % keyframeInterval == 0) {
+					takeKeyframe(context);
+				}
+				return accepted;
+			}
+		};
+	}
+
+	/**
+	 * Appends a move to the record.
+	 * 
+	 * @param direction
+	 *            the direction of the move
+	 * @throws IllegalArgumentException
+	 *             if {@code direction == null}
+	 */
+	private void appendMove(Direction direction)
+			throws IllegalArgumentException {
+		if (direction == null) {
+			throw new IllegalArgumentException("direction must not be null");
+		}
+		if (moveCount >> 2 == moves.length) {
+			moves = Arrays.copyOf(moves, moves.length * 2);
+		}
+		final int shift = (moveCount & 3) << 1;
+		moves[moveCount >> 2] &= ~(3 << shift);
+		moves[moveCount >> 2] |= GameRecord.codeOf(direction) << shift;
+		moveCount++;
+	}
+
+	/**
+	 * Doubles the capacity of the keyframe buffers.
+	 */
+	private void growKeyframes() {
+		final int capacity = keyframeScores.length * 2;
+		keyframeScores = Arrays.copyOf(keyframeScores, capacity);
+		keyframeSpawns = Arrays.copyOf(keyframeSpawns, capacity);
+		keyframeCells = Arrays.copyOf(keyframeCells, capacity * boardSize
+				* boardSize);
+	}
+
+	/**
+	 * Doubles the capacity of the spawn buffers.
+	 */
+	private void growSpawns() {
+		final int capacity = spawnMoves.length * 2;
+		spawnMoves = Arrays.copyOf(spawnMoves, capacity);
+		spawnCells = Arrays.copyOf(spawnCells, capacity);
+		spawnValues = Arrays.copyOf(spawnValues, capacity);
+	}
+
+	/**
+	 * Takes a keyframe of the board after the current move, unless keyframes
+	 * have been stopped.
+	 * 
+	 * @param context
+	 *            the game being recorded
+	 */
+	private void takeKeyframe(TileGameContext context) {
+		final TileGrid grid = context.getGrid();
+		final int cells = boardSize * boardSize;
+		if (keyframesStopped || grid.getSize() != boardSize
+				|| moveCount / keyframeInterval != keyframeCount + 1) {
+			keyframesStopped = true;
+			return;
+		}
+		if (keyframeCount == keyframeScores.length) {
+			growKeyframes();
+		}
+		final int offset = keyframeCount * cells;
+		for (int i = 0; i < cells; i++) {
+			final Tile tile = grid.at(BoardLocation.fromIndex(i, boardSize));
+			int exponent = 0;
+			if (tile != null) {
+				final int value = tile.getValue();
+				exponent = Integer.numberOfTrailingZeros(value);
+				if (value < 2 || Integer.bitCount(value) != 1
+						|| exponent > ArrayBoard.MAX_EXPONENT) {
+					keyframesStopped = true;
+					return;
+				}
+			}
+			keyframeCells[offset + i] = (byte) exponent;
+		}
+		keyframeScores[keyframeCount] = context.getScore();
+		keyframeSpawns[keyframeCount] = spawnCount;
+		keyframeCount++;
+	}
+
+}
@@ -0,0 +1,231 @@
+package j2048.record;
+
+import j2048.BoardLocation;
+import j2048.TileGameContext;
+import j2048.TurnPerformer;
+import j2048.engine.ArrayBoard;
+
+/**
+ * Replays {@link GameRecord}s. There are two ways to replay a record:
+ * <ul>
+ * <li>{@link #replay(GameRecord, TurnPerformer, TileGameContext)} runs every
+ * move through a turn performer and a context, so that the game can be
+ * shown, or so that a performer can be checked against a recorded game. New
+ * tiles are taken from the record, so the performer's random choices do not
+ * matter.</li>
+ * <li>{@link #replayBoard(GameRecord)} applies the moves to an
+ * {@link ArrayBoard} with the standard rules, creating no tiles and no
+ * events. This is fast enough to check millions of moves per second, and is
+ * the way to verify an archive of records.</li>
+ * </ul>
+ * Both check that every move is accepted, that every recorded tile appears
+ * when it should, that the game is not lost before its last move, and that
+ * the final board and score match the record. Whether the game is lost is
+ * decided from the board after the recorded tiles appear, never by the turn
+ * performer. To
+ * look at the game at some move, use a {@link ReplayCursor} instead.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class GameReplayer {
+
+	/**
+	 * Replays a record through a turn performer. The moves are performed in
+	 * order on the given context, whose grid must be empty at first and which
+	 * is left in the final state of the game. The context's listeners see the
+	 * game exactly as if it were being played, without any delay.
+	 * 
+	 * @param record
+	 *            the record to replay
+	 * @param performer
+	 *            the turn performer that carries out each move
+	 * @param context
+	 *            the context in which to replay the game
+	 * @throws IllegalArgumentException
+	 *             if any argument is {@code null}, if the context's grid is
+	 *             the wrong size or not empty, or if the replay does not
+	 *             match the record
+	 */
+	public static void replay(GameRecord record, TurnPerformer performer,
+			TileGameContext context) throws IllegalArgumentException {
+		if (record == null) {
+			throw new IllegalArgumentException("record must not be null");
+		}
+		if (performer == null) {
+			throw new IllegalArgumentException("performer must not be null");
+		}
+		if (context == null) {
+			throw new IllegalArgumentException("context must not be null");
+		}
+		if (context.getGrid().getSize() != record.getBoardSize()) {
+			throw new IllegalArgumentException("size mismatch: "
+					+ context.getGrid().getSize() + " != "
+					+ record.getBoardSize());
+		}
+		if (context.getGrid().getOccupiedCount() != 0) {
+			throw new IllegalArgumentException("grid must be empty");
+		}
+
+		final ReplayContext replay = new ReplayContext(record, context);
+		replay.beginMove(0);
+		replay.spawnRemaining();
+		for (int i = 0; i < record.getMoveCount(); i++) {
+			replay.beginMove(i + 1);
+			if (!performer.turn(record.getMove(i), replay)) {
+				throw new IllegalArgumentException("move " + (i + 1) + " ("
+						+ record.getMove(i) + ") was rejected");
+			}
+			replay.endMove();
+		}
+		replay.checkSpawnsUsed();
+		checkResult(record, GameRecord.checksum(context.getGrid()),
+				context.getScore(), replay.getLostMove());
+	}
+
+	/**
+	 * Replays a record on an array board, using the standard rules of the
+	 * game. Any keyframes in the record are checked too.
+	 * 
+	 * @param record
+	 *            the record to replay
+	 * @return the final board
+	 * @throws IllegalArgumentException
+	 *             if {@code record == null}, or if the replay does not match
+	 *             the record
+	 */
+	public static ArrayBoard replayBoard(GameRecord record)
+			throws IllegalArgumentException {
+		if (record == null) {
+			throw new IllegalArgumentException("record must not be null");
+		}
+		final ArrayBoard board = new ArrayBoard(record.getBoardSize());
+		int spawn = placeSpawns(record, board, 0, 0);
+		int score = 0;
+		int lostMove = -1;
+		for (int i = 0; i < record.getMoveCount(); i++) {
+			final int points = board.move(record.getMove(i));
+			if (points < 0) {
+				throw new IllegalArgumentException("move " + (i + 1) + " ("
+						+ record.getMove(i) + ") was rejected");
+			}
+			score += points;
+			spawn = placeSpawns(record, board, spawn, i + 1);
+			if (lostMove < 0 && !board.canMove()) {
+				lostMove = i + 1;
+			}
+			final int interval = record.getKeyframeInterval();
+			if (interval > 0 && (i + 1) % interval == 0
+					&& (i + 1) / interval <= record.getKeyframeCount()) {
+				checkKeyframe(record, (i + 1) / interval - 1, board, spawn,
+						score);
+			}
+		}
+		checkResult(record, GameRecord.checksum(board), score, lostMove);
+		return board;
+	}
+
+	/**
+	 * Checks that the result of a replay matches a record.
+	 * 
+	 * @param record
+	 *            the record
+	 * @param checksum
+	 *            the checksum of the final board
+	 * @param score
+	 *            the final score
+	 * @param lostMove
+	 *            the number of the move after which the game was lost, or
+	 *            {@code -1} if it was not lost
+	 * @throws IllegalArgumentException
+	 *             if the checksum or score does not match, or if the game
+	 *             was lost before its last move
+	 */
+	private static void checkResult(GameRecord record, int checksum,
+			int score, int lostMove) throws IllegalArgumentException {
+		if (lostMove >= 0 && lostMove != record.getMoveCount()) {
+			throw new IllegalArgumentException("game lost at move "
+					+ lostMove + " of " + record.getMoveCount());
+		}
+		if (checksum != record.getChecksum()) {
+			throw new IllegalArgumentException("final board does not match");
+		}
+		if (score != record.getScore()) {
+			throw new IllegalArgumentException("final score " + score
+					+ " != " + record.getScore());
+		}
+	}
+
+	/**
+	 * Checks that the state of a replay matches a keyframe.
+	 * 
+	 * @param record
+	 *            the record
+	 * @param k
+	 *            the index of the keyframe
+	 * @param board
+	 *            the board after the keyframe's move
+	 * @param spawn
+	 *            the number of spawns placed
+	 * @param score
+	 *            the score after the keyframe's move
+	 * @throws IllegalArgumentException
+	 *             if the state does not match
+	 */
+	private static void checkKeyframe(GameRecord record, int k,
+			ArrayBoard board, int spawn, int score)
+			throws IllegalArgumentException {
+		boolean matches = record.getKeyframeScore(k) == score
+				&& record.getKeyframeSpawn(k) == spawn;
+		for (int i = 0; matches && i < board.getSize() * board.getSize(); i++) {
+			matches = record.getKeyframeExponent(k, i) == board.exponentAt(i);
+		}
+		if (!matches) {
+			throw new IllegalArgumentException("keyframe " + k
+					+ " does not match");
+		}
+	}
+
+	/**
+	 * Places the recorded tiles of one move on an array board.
+	 * 
+	 * @param record
+	 *            the record
+	 * @param board
+	 *            the board
+	 * @param spawn
+	 *            the index of the first spawn not yet placed
+	 * @param move
+	 *            the move number
+	 * @return the index of the first spawn of a later move
+	 * @throws IllegalArgumentException
+	 *             if a spawn is on an occupied cell, or its value is not a
+	 *             power of two that the board can hold
+	 */
+	static int placeSpawns(GameRecord record, ArrayBoard board,
+			int spawn, int move) throws IllegalArgumentException {
+		for (; spawn < record.getSpawnCount()
+				&& record.getSpawnMove(spawn) == move; spawn++) {
+			final int cell = record.getSpawnCell(spawn);
+			final int value = record.getSpawnValue(spawn);
+			if (board.exponentAt(cell) != 0) {
+				throw new IllegalArgumentException("spawn " + spawn
+						+ " on occupied cell " + BoardLocation.fromIndex(cell,
+						board.getSize()));
+			}
+			if (value < 2 || Integer.bitCount(value) != 1) {
+				throw new IllegalArgumentException("spawn " + spawn
+						+ " has bad value " + value);
+			}
+			board.setExponent(cell, Integer.numberOfTrailingZeros(value));
+		}
+		return spawn;
+	}
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private GameReplayer() {
+	}
+
+}
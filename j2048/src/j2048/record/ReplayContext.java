@@ -0,0 +1,240 @@
+package j2048.record;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.Tile;
+import j2048.TileGameContext;
+import j2048.TileGrid;
+import j2048.TurnBatch;
+
+import java.util.Random;
+
+/**
+ * A context that passes everything through to another context, except that
+ * every new tile is put where the record says, with the recorded value. This
+ * makes a replay independent of the random choices of the turn performer.
+ * For the same reason, the performer's calls to {@link #loseGame()} are
+ * ignored, since the performer decides them from its own new tiles; instead,
+ * {@link #endMove()} loses the game when the recorded tiles leave no possible
+ * move.
+ * 
+ * @author William Chargin
+ * 
+ */
+class ReplayContext implements TileGameContext {
+
+	/**
+	 * The record being replayed.
+	 */
+	private final GameRecord record;
+
+	/**
+	 * The context being replayed into.
+	 */
+	private final TileGameContext delegate;
+
+	/**
+	 * The number of the move being replayed.
+	 */
+	private int move;
+
+	/**
+	 * The index of the next spawn to use.
+	 */
+	private int nextSpawn;
+
+	/**
+	 * The index of the first spawn that may not be used yet.
+	 */
+	private int spawnLimit;
+
+	/**
+	 * The number of the move after which the game was lost, or {@code -1} if
+	 * it has not been lost.
+	 */
+	private int lostMove = -1;
+
+	/**
+	 * Creates a replay context.
+	 * 
+	 * @param record
+	 *            the record being replayed
+	 * @param delegate
+	 *            the context being replayed into
+	 */
+	ReplayContext(GameRecord record, TileGameContext delegate) {
+		this.record = record;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void addTile(Tile tile, BoardLocation location)
+			throws IllegalArgumentException {
+		if (tile != null && delegate.getGrid().find(tile) == null) {
+			location = takeSpawn(tile);
+		}
+		delegate.addTile(tile, location);
+	}
+
+	/**
+	 * Allows the spawns of the given move to be used, after checking that
+	 * every spawn of the earlier moves has been used.
+	 * 
+	 * @param move
+	 *            the move number, as in {@link GameRecord#getSpawnMove(int)}
+	 * @throws IllegalArgumentException
+	 *             if a spawn of an earlier move has not been used
+	 */
+	void beginMove(int move) throws IllegalArgumentException {
+		checkSpawnsUsed();
+		this.move = move;
+		while (spawnLimit < record.getSpawnCount()
+				&& record.getSpawnMove(spawnLimit) <= move) {
+			spawnLimit++;
+		}
+	}
+
+	/**
+	 * Checks that every spawn that may be used has been used.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if a spawn has not been used
+	 */
+	void checkSpawnsUsed() throws IllegalArgumentException {
+		if (nextSpawn < spawnLimit) {
+			throw new IllegalArgumentException("spawn " + nextSpawn
+					+ " did not happen at move "
+					+ record.getSpawnMove(nextSpawn));
+		}
+	}
+
+	@Override
+	public void commitTurn(TurnBatch batch) throws IllegalArgumentException {
+		if (batch == null) {
+			throw new IllegalArgumentException("batch must not be null");
+		}
+		final TurnBatch replayed = new TurnBatch();
+		for (TurnBatch.Step step : batch.getSteps()) {
+			switch (step.getKind()) {
+			case MOVE:
+				replayed.move(step.getTile(), step.getDirection(),
+						step.getCount());
+				break;
+			case MERGE:
+				replayed.merge(step.getTarget(), step.getTile(),
+						step.getDirection(), step.getCount(),
+						step.getNewValue());
+				break;
+			case SPAWN:
+				replayed.spawn(step.getTile(), takeSpawn(step.getTile()));
+				break;
+			default:
+				throw new AssertionError("Unexpected step " + step.getKind());
+			}
+		}
+		replayed.addPoints(batch.getPoints());
+		if (batch.isWon()) {
+			replayed.win();
+		}
+		delegate.commitTurn(replayed);
+	}
+
+	/**
+	 * Finishes replaying the current move, and loses the game if the board
+	 * that it left has no possible move.
+	 */
+	void endMove() {
+		if (lostMove < 0 && !delegate.getGrid().canMove()) {
+			lostMove = move;
+			delegate.loseGame();
+		}
+	}
+
+	@Override
+	public TileGrid getGrid() {
+		return delegate.getGrid();
+	}
+
+	@Override
+	public Random getRandom() {
+		return delegate.getRandom();
+	}
+
+	@Override
+	public int getScore() {
+		return delegate.getScore();
+	}
+
+	/**
+	 * Gets the number of the move after which the game was lost.
+	 * 
+	 * @return the move number, or {@code -1} if the game has not been lost
+	 */
+	int getLostMove() {
+		return lostMove;
+	}
+
+	@Override
+	public int incrementScoreBy(int value) {
+		return delegate.incrementScoreBy(value);
+	}
+
+	@Override
+	public void loseGame() {
+		// Ignored; see the class comment.
+	}
+
+	@Override
+	public void mergeTiles(Tile target, Tile mover, Direction direction,
+			int movementSteps, int newValue) throws IllegalArgumentException {
+		delegate.mergeTiles(target, mover, direction, movementSteps, newValue);
+	}
+
+	@Override
+	public void moveTile(Tile tile, Direction direction, int count)
+			throws IllegalArgumentException {
+		delegate.moveTile(tile, direction, count);
+	}
+
+	@Override
+	public void setScore(int score) throws IllegalArgumentException {
+		delegate.setScore(score);
+	}
+
+	/**
+	 * Adds the spawns that may be used but have not been, as new tiles.
+	 */
+	void spawnRemaining() {
+		while (nextSpawn < spawnLimit) {
+			addTile(new Tile(), null);
+		}
+	}
+
+	@Override
+	public void winGame() {
+		delegate.winGame();
+	}
+
+	/**
+	 * Uses the next spawn for a new tile, setting the tile's value.
+	 * 
+	 * @param tile
+	 *            the new tile
+	 * @return the location at which to put the tile
+	 * @throws IllegalArgumentException
+	 *             if every spawn of the current move has been used
+	 */
+	private BoardLocation takeSpawn(Tile tile)
+			throws IllegalArgumentException {
+		if (nextSpawn >= spawnLimit) {
+			throw new IllegalArgumentException("unrecorded spawn at move "
+					+ move);
+		}
+		tile.setValue(record.getSpawnValue(nextSpawn));
+		final BoardLocation location = BoardLocation.fromIndex(
+				record.getSpawnCell(nextSpawn), record.getBoardSize());
+		nextSpawn++;
+		return location;
+	}
+
+}
@@ -0,0 +1,238 @@
+package j2048.record;
+
+import j2048.BoardLocation;
+import j2048.Tile;
+import j2048.TileGrid;
+import j2048.engine.ArrayBoard;
+
+/**
+ * A position in a recorded game, which can be moved to any move of the game.
+ * The cursor replays moves on an {@link ArrayBoard} with the standard rules.
+ * Seeking starts from the nearest keyframe at or before the target, or from
+ * the current position if that is closer, so that reaching any move costs at
+ * most one {@linkplain GameRecord#getKeyframeInterval() keyframe interval} of
+ * moves. Stepping back one move costs the same as seeking to it.
+ * <p>
+ * This class is not thread-safe.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class ReplayCursor {
+
+	/**
+	 * The record being replayed.
+	 */
+	private final GameRecord record;
+
+	/**
+	 * The board at the current position.
+	 */
+	private final ArrayBoard board;
+
+	/**
+	 * The number of moves made at the current position.
+	 */
+	private int move;
+
+	/**
+	 * The score at the current position.
+	 */
+	private int score;
+
+	/**
+	 * The index of the first spawn after the current position.
+	 */
+	private int nextSpawn;
+
+	/**
+	 * Creates a cursor at the start of a recorded game, after the starting
+	 * tiles have been placed.
+	 * 
+	 * @param record
+	 *            the record
+	 * @throws IllegalArgumentException
+	 *             if {@code record == null}, or if the starting tiles in the
+	 *             record are invalid
+	 */
+	public ReplayCursor(GameRecord record) throws IllegalArgumentException {
+		if (record == null) {
+			throw new IllegalArgumentException("record must not be null");
+		}
+		this.record = record;
+		this.board = new ArrayBoard(record.getBoardSize());
+		rewind();
+	}
+
+	/**
+	 * Gets the number of moves made at the current position.
+	 * 
+	 * @return the current move number, from {@code 0} to
+	 *         {@link GameRecord#getMoveCount()}
+	 */
+	public int getMove() {
+		return move;
+	}
+
+	/**
+	 * Gets the record being replayed.
+	 * 
+	 * @return the record
+	 */
+	public GameRecord getRecord() {
+		return record;
+	}
+
+	/**
+	 * Gets the score at the current position.
+	 * 
+	 * @return the score
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Gets the value of the tile in a cell at the current position.
+	 * 
+	 * @param index
+	 *            the cell index
+	 * @return the tile value, or {@code 0} if the cell is empty
+	 */
+	public int getValueAt(int index) {
+		final int exponent = board.exponentAt(index);
+		return exponent == 0 ? 0 : 1 << exponent;
+	}
+
+	/**
+	 * Moves forward by one move, if possible.
+	 * 
+	 * @return {@code true} if the cursor moved, or {@code false} if it was
+	 *         already at the end of the game
+	 * @throws IllegalArgumentException
+	 *             if the move is invalid under the standard rules
+	 */
+	public boolean next() throws IllegalArgumentException {
+		if (move == record.getMoveCount()) {
+			return false;
+		}
+		step();
+		return true;
+	}
+
+	/**
+	 * Moves back by one move, if possible.
+	 * 
+	 * @return {@code true} if the cursor moved, or {@code false} if it was
+	 *         already at the start of the game
+	 * @throws IllegalArgumentException
+	 *             if a move is invalid under the standard rules
+	 */
+	public boolean previous() throws IllegalArgumentException {
+		if (move == 0) {
+			return false;
+		}
+		seek(move - 1);
+		return true;
+	}
+
+	/**
+	 * Moves to the position after the given number of moves.
+	 * 
+	 * @param target
+	 *            the move number
+	 * @throws IllegalArgumentException
+	 *             if the move number is negative or greater than
+	 *             {@link GameRecord#getMoveCount()}, or if a move is invalid
+	 *             under the standard rules
+	 */
+	public void seek(int target) throws IllegalArgumentException {
+		if (target < 0 || target > record.getMoveCount()) {
+			throw new IllegalArgumentException("move out of range: " + target);
+		}
+		final int interval = record.getKeyframeInterval();
+		final int keyframes = interval == 0 ? 0 : Math.min(target / interval,
+				record.getKeyframeCount());
+		final int start = keyframes * interval;
+		if (move > target || move < start) {
+			if (keyframes == 0) {
+				rewind();
+			} else {
+				loadKeyframe(keyframes - 1);
+			}
+		}
+		while (move < target) {
+			step();
+		}
+	}
+
+	/**
+	 * Creates a grid holding the tiles at the current position, each a new
+	 * {@link Tile}.
+	 * 
+	 * @return the new grid
+	 */
+	public TileGrid toGrid() {
+		final int size = record.getBoardSize();
+		final TileGrid grid = new TileGrid(size);
+		for (int i = 0; i < size * size; i++) {
+			final int value = getValueAt(i);
+			if (value != 0) {
+				final Tile tile = new Tile();
+				tile.setValue(value);
+				grid.put(BoardLocation.fromIndex(i, size), tile);
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * Moves to a keyframe.
+	 * 
+	 * @param k
+	 *            the index of the keyframe
+	 */
+	private void loadKeyframe(int k) {
+		final int cells = board.getSize() * board.getSize();
+		for (int i = 0; i < cells; i++) {
+			board.setExponent(i, record.getKeyframeExponent(k, i));
+		}
+		move = (k + 1) * record.getKeyframeInterval();
+		score = record.getKeyframeScore(k);
+		nextSpawn = record.getKeyframeSpawn(k);
+	}
+
+	/**
+	 * Moves to the start of the game.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the starting tiles are invalid
+	 */
+	private void rewind() throws IllegalArgumentException {
+		final int cells = board.getSize() * board.getSize();
+		for (int i = 0; i < cells; i++) {
+			board.setExponent(i, 0);
+		}
+		move = 0;
+		score = 0;
+		nextSpawn = GameReplayer.placeSpawns(record, board, 0, 0);
+	}
+
+	/**
+	 * Makes the next move and places the tiles that it spawned.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the move is invalid under the standard rules
+	 */
+	private void step() throws IllegalArgumentException {
+		final int points = board.move(record.getMove(move));
+		if (points < 0) {
+			throw new IllegalArgumentException("move " + (move + 1) + " ("
+					+ record.getMove(move) + ") was rejected");
+		}
+		score += points;
+		move++;
+		nextSpawn = GameReplayer.placeSpawns(record, board, nextSpawn, move);
+	}
+
+}
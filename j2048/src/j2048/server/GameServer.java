@@ -0,0 +1,553 @@
+package j2048.server;
+
+import j2048.BoardLocation;
+import j2048.TurnPerformer;
+import j2048.engine.ArrayBoardTurnPerformer;
+import j2048.metrics.Metrics;
+import j2048.sim.BatchSimulation;
+import j2048.sim.TurnPerformerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A TCP server that hosts many games of 2048 at once, one per connection.
+ * <p>
+ * Each connection gets its own {@link GameSession}, with a headless
+ * {@link j2048.GameModel} and a {@link TurnPerformer} from the server's
+ * factory, and a new game is started as soon as the client connects. The
+ * protocol is line-based ASCII, so a session can be played by hand with
+ * {@code telnet}. Each line from the client is answered by one line:
+ * <ul>
+ * <li>{@code N}, {@code E}, {@code S} or {@code W} plays a move and answers
+ * {@code OK score} if the move was played, {@code NO score} if it was not
+ * possible, or {@code LOST score} if the game is over;</li>
+ * <li>{@code NEW} starts a new game and answers {@code OK 0};</li>
+ * <li>{@code BOARD} answers {@code BOARD} followed by the board size and the
+ * value of each cell in row-major order, with {@code 0} for empty cells.</li>
+ * </ul>
+ * Anything else is answered with a line starting with {@code ERR}. Commands
+ * can be pipelined; responses are sent in order.
+ * <p>
+ * Connections are multiplexed with non-blocking I/O over a small, fixed
+ * number of event loop threads, so an idle connection costs a session and a
+ * pair of buffers but no thread, and thousands of sessions can share one JVM.
+ * A turn takes microseconds, so moves are played on the event loop that read
+ * them.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class GameServer implements Closeable {
+
+	/**
+	 * The port on which {@link #main(String[])} listens by default.
+	 */
+	public static final int DEFAULT_PORT = 2048;
+
+	/**
+	 * The longest line accepted from a client. Clients that send longer
+	 * lines are disconnected.
+	 */
+	private static final int MAX_LINE = 64;
+
+	/**
+	 * The most response data buffered for a client that is not reading.
+	 * Clients that fall further behind are disconnected.
+	 */
+	private static final int MAX_PENDING_OUTPUT = 64 * 1024;
+
+	/**
+	 * The state of one connection.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	private final class Connection {
+
+		/**
+		 * The channel to the client.
+		 */
+		private final SocketChannel channel;
+
+		/**
+		 * The game played over this connection.
+		 */
+		private final GameSession session;
+
+		/**
+		 * The buffer into which data from the client is read.
+		 */
+		private final ByteBuffer input = ByteBuffer.allocate(MAX_LINE);
+
+		/**
+		 * The responses not yet sent, in write mode.
+		 */
+		private ByteBuffer output = ByteBuffer.allocate(MAX_LINE);
+
+		/**
+		 * The part of the current line read so far.
+		 */
+		private final StringBuilder line = new StringBuilder();
+
+		/**
+		 * Creates the state for a new connection.
+		 * 
+		 * @param channel
+		 *            the channel to the client
+		 */
+		private Connection(SocketChannel channel) {
+			this.channel = channel;
+			this.session = new GameSession(factory.create(), boardSize);
+		}
+
+		/**
+		 * Sends as much buffered output as the channel accepts.
+		 * 
+		 * @param key
+		 *            the selection key of the channel
+		 * @throws IOException
+		 *             if the channel cannot be written
+		 */
+		private void flush(SelectionKey key) throws IOException {
+			output.flip();
+			channel.write(output);
+			output.compact();
+			key.interestOps(output.position() == 0 ? SelectionKey.OP_READ
+					: SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+
+		/**
+		 * Reads from the channel and answers every complete line.
+		 * 
+		 * @param key
+		 *            the selection key of the channel
+		 * @return {@code false} if the connection should be closed
+		 * @throws IOException
+		 *             if the channel cannot be read or written
+		 */
+		private boolean read(SelectionKey key) throws IOException {
+			if (channel.read(input) < 0) {
+				return false;
+			}
+			input.flip();
+			while (input.hasRemaining()) {
+				final char c = (char) (input.get() & 0xff);
+				if (c == '\n') {
+					if (!respond(session.handle(line.toString()))) {
+						return false;
+					}
+					line.setLength(0);
+				} else if (c != '\r') {
+					if (line.length() == MAX_LINE) {
+						return false;
+					}
+					line.append(c);
+				}
+			}
+			input.clear();
+			flush(key);
+			return true;
+		}
+
+		/**
+		 * Adds a response to the output buffer.
+		 * 
+		 * @param response
+		 *            the response, without its terminator
+		 * @return {@code false} if too much output is pending
+		 */
+		private boolean respond(String response) {
+			final byte[] bytes = (response + "\n")
+					.getBytes(StandardCharsets.US_ASCII);
+			if (output.remaining() < bytes.length) {
+				final int needed = output.position() + bytes.length;
+				if (needed > MAX_PENDING_OUTPUT) {
+					return false;
+				}
+				final ByteBuffer larger = ByteBuffer.allocate(Math.min(
+						MAX_PENDING_OUTPUT,
+						Math.max(needed, output.capacity() * 2)));
+				output.flip();
+				larger.put(output);
+				output = larger;
+			}
+			output.put(bytes);
+			return true;
+		}
+
+	}
+
+	/**
+	 * One event loop thread and the connections that it serves.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	private final class EventLoop implements Runnable {
+
+		/**
+		 * The selector for the connections of this loop.
+		 */
+		private final Selector selector;
+
+		/**
+		 * The channels accepted for this loop but not yet registered.
+		 */
+		private final Queue<SocketChannel> pending =
+				new ConcurrentLinkedQueue<>();
+
+		/**
+		 * Creates an event loop.
+		 * 
+		 * @throws IOException
+		 *             if the selector cannot be opened
+		 */
+		private EventLoop() throws IOException {
+			selector = Selector.open();
+		}
+
+		/**
+		 * Hands a newly accepted channel to this loop.
+		 * 
+		 * @param channel
+		 *            the channel
+		 */
+		private void add(SocketChannel channel) {
+			pending.add(channel);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!closed) {
+					selector.select();
+					SocketChannel channel;
+					while ((channel = pending.poll()) != null) {
+						register(channel);
+					}
+					final Iterator<SelectionKey> it = selector.selectedKeys()
+							.iterator();
+					while (it.hasNext()) {
+						final SelectionKey key = it.next();
+						it.remove();
+						handle(key);
+					}
+				}
+			} catch (IOException e) {
+				// The selector failed; drop the connections of this loop.
+			} finally {
+				for (SelectionKey key : selector.keys()) {
+					closeQuietly(key);
+				}
+				SocketChannel channel;
+				while ((channel = pending.poll()) != null) {
+					closeQuietly(channel);
+				}
+				try {
+					selector.close();
+				} catch (IOException e) {
+					// Nothing more to release.
+				}
+			}
+		}
+
+		/**
+		 * Handles a ready channel.
+		 * 
+		 * @param key
+		 *            the selection key of the channel
+		 */
+		private void handle(SelectionKey key) {
+			if (!key.isValid()) {
+				return;
+			}
+			try {
+				if (key.isAcceptable()) {
+					accept();
+					return;
+				}
+				final Connection connection = (Connection) key.attachment();
+				if (key.isReadable() && !connection.read(key)) {
+					closeQuietly(key);
+				} else if (key.isValid() && key.isWritable()) {
+					connection.flush(key);
+				}
+			} catch (IOException e) {
+				closeQuietly(key);
+			}
+		}
+
+		/**
+		 * Starts serving a newly accepted channel.
+		 * 
+		 * @param channel
+		 *            the channel
+		 */
+		private void register(SocketChannel channel) {
+			try {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				channel.register(selector, SelectionKey.OP_READ,
+						new Connection(channel));
+				sessions.incrementAndGet();
+			} catch (IOException | RuntimeException e) {
+				closeQuietly(channel);
+			}
+		}
+
+	}
+
+	/**
+	 * Starts a server from the command line and serves until the process is
+	 * stopped.
+	 * <p>
+	 * Usage: {@code GameServer [port [performer-class [size [threads]]]]}. The
+	 * port defaults to {@value #DEFAULT_PORT}, the performer class to
+	 * {@code j2048.engine.ArrayBoardTurnPerformer}, the board size to
+	 * {@value BoardLocation#BOARD_SIZE}, and the number of event loop threads
+	 * to the number of available processors. The server's
+	 * {@linkplain Metrics metrics} can be read and switched on over JMX.
+	 * 
+	 * @param args
+	 *            the command-line arguments
+	 * @throws Exception
+	 *             if the performer class cannot be loaded or the port cannot
+	 *             be bound
+	 */
+	public static void main(String[] args) throws Exception {
+		final int port = args.length > 0 ? Integer.parseInt(args[0])
+				: DEFAULT_PORT;
+		final String className = args.length > 1 ? args[1]
+				: ArrayBoardTurnPerformer.class.getName();
+		final int size = args.length > 2 ? Integer.parseInt(args[2])
+				: BoardLocation.BOARD_SIZE;
+		final int threads = args.length > 3 ? Integer.parseInt(args[3])
+				: Runtime.getRuntime().availableProcessors();
+
+		final GameServer server = new GameServer(
+				BatchSimulation.factoryFor(Class.forName(className)
+						.asSubclass(TurnPerformer.class)), size, threads);
+		server.start(new InetSocketAddress(port));
+		Metrics.registerMBean();
+		System.out.println("Serving " + size + "x" + size + " games on port "
+				+ server.getPort());
+	}
+
+	/**
+	 * The factory that supplies each session with a turn performer.
+	 */
+	private final TurnPerformerFactory factory;
+
+	/**
+	 * The side length of the board in each session.
+	 */
+	private final int boardSize;
+
+	/**
+	 * The event loops, the first of which also accepts connections.
+	 */
+	private final EventLoop[] loops;
+
+	/**
+	 * The number of open sessions.
+	 */
+	private final AtomicInteger sessions = new AtomicInteger();
+
+	/**
+	 * The number of connections accepted, used to spread them over the
+	 * loops.
+	 */
+	private int accepted;
+
+	/**
+	 * The channel on which connections are accepted, or {@code null} if the
+	 * server has not been started.
+	 */
+	private ServerSocketChannel server;
+
+	/**
+	 * The threads running the event loops, or {@code null} if the server has
+	 * not been started.
+	 */
+	private Thread[] threads;
+
+	/**
+	 * Whether {@link #close()} has been called.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Creates a server.
+	 * 
+	 * @param factory
+	 *            the factory for the turn performer of each session
+	 * @param boardSize
+	 *            the side length of the board in each session
+	 * @param threads
+	 *            the number of event loop threads
+	 * @throws IllegalArgumentException
+	 *             if {@code factory == null}, if the size is not supported by
+	 *             {@link BoardLocation}, or if {@code threads < 1}
+	 * @throws IOException
+	 *             if the selectors cannot be opened
+	 */
+	public GameServer(TurnPerformerFactory factory, int boardSize,
+			int threads) throws IllegalArgumentException, IOException {
+		if (factory == null) {
+			throw new IllegalArgumentException("factory must not be null");
+		}
+		BoardLocation.checkBoardSize(boardSize);
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: "
+					+ threads);
+		}
+		this.factory = factory;
+		this.boardSize = boardSize;
+		this.loops = new EventLoop[threads];
+		for (int i = 0; i < threads; i++) {
+			loops[i] = new EventLoop();
+		}
+	}
+
+	/**
+	 * Stops accepting connections, closes every session, and waits for the
+	 * event loop threads to finish.
+	 * 
+	 * @throws IOException
+	 *             if the listening channel cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		for (EventLoop loop : loops) {
+			loop.selector.wakeup();
+		}
+		try {
+			if (threads != null) {
+				for (Thread thread : threads) {
+					thread.join();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (server != null) {
+				server.close();
+			}
+		}
+	}
+
+	/**
+	 * Gets the side length of the board in each session.
+	 * 
+	 * @return the board size
+	 */
+	public int getBoardSize() {
+		return boardSize;
+	}
+
+	/**
+	 * Gets the port on which this server accepts connections.
+	 * 
+	 * @return the local port, or {@code -1} if the server has not been
+	 *         started
+	 */
+	public int getPort() {
+		return server == null ? -1 : server.socket().getLocalPort();
+	}
+
+	/**
+	 * Gets the number of open sessions.
+	 * 
+	 * @return the number of connected clients
+	 */
+	public int getSessionCount() {
+		return sessions.get();
+	}
+
+	/**
+	 * Binds this server to the given address and starts serving.
+	 * 
+	 * @param address
+	 *            the address to listen on; a port of {@code 0} chooses any
+	 *            free port, which {@link #getPort()} then reports
+	 * @throws IllegalStateException
+	 *             if the server has already been started or closed
+	 * @throws IOException
+	 *             if the address cannot be bound
+	 */
+	public synchronized void start(SocketAddress address)
+			throws IllegalStateException, IOException {
+		if (server != null || closed) {
+			throw new IllegalStateException("server already started");
+		}
+		server = ServerSocketChannel.open();
+		server.bind(address, 1024);
+		server.configureBlocking(false);
+		server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+		threads = new Thread[loops.length];
+		for (int i = 0; i < loops.length; i++) {
+			threads[i] = new Thread(loops[i], "game-server-" + i);
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * Accepts every waiting connection and hands each one to an event loop.
+	 * This is called only by the first loop.
+	 * 
+	 * @throws IOException
+	 *             if the listening channel fails
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			loops[accepted++ % loops.length].add(channel);
+		}
+	}
+
+	/**
+	 * Closes a connection, ignoring any error.
+	 * 
+	 * @param key
+	 *            the selection key of the connection
+	 */
+	private void closeQuietly(SelectionKey key) {
+		if (key.isValid() && key.attachment() instanceof Connection) {
+			sessions.decrementAndGet();
+		}
+		key.cancel();
+		closeQuietly(key.channel());
+	}
+
+	/**
+	 * Closes a channel, ignoring any error.
+	 * 
+	 * @param channel
+	 *            the channel to close
+	 */
+	private static void closeQuietly(Channel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// The connection is gone either way.
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package j2048.server;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.GameModel;
+import j2048.LocationSet;
+import j2048.Tile;
+import j2048.TileGrid;
+import j2048.TurnPerformer;
+import j2048.metrics.Metrics;
+
+/**
+ * One game hosted by a {@link GameServer}. A session owns a headless
+ * {@link GameModel} and its own {@link TurnPerformer}, and answers each line
+ * of the {@linkplain GameServer protocol} with one line of response. Sessions
+ * are not thread-safe; the server handles all lines of one connection on the
+ * same thread.
+ * 
+ * @author William Chargin
+ * 
+ */
+final class GameSession {
+
+	/**
+	 * The model of the game.
+	 */
+	private final GameModel model;
+
+	/**
+	 * The turn performer that applies moves to the model, wrapped so that
+	 * its turns are {@linkplain Metrics measured}.
+	 */
+	private final TurnPerformer performer;
+
+	/**
+	 * Creates a session and starts its first game.
+	 * 
+	 * @param performer
+	 *            the turn performer for this session
+	 * @param size
+	 *            the side length of the board
+	 * @throws IllegalArgumentException
+	 *             if {@code performer == null}, or if the size is not
+	 *             supported by {@link BoardLocation}
+	 */
+	GameSession(TurnPerformer performer, int size)
+			throws IllegalArgumentException {
+		if (performer == null) {
+			throw new IllegalArgumentException("performer must not be null");
+		}
+		this.model = new GameModel(size);
+		this.performer = Metrics.wrap(performer);
+		start();
+	}
+
+	/**
+	 * Gets the model of the current game.
+	 * 
+	 * @return the model
+	 */
+	GameModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Handles one line sent by the client.
+	 * 
+	 * @param line
+	 *            the line, without its terminator
+	 * @return the response, without its terminator
+	 */
+	String handle(String line) {
+		switch (line.trim().toUpperCase()) {
+		case "N":
+			return turn(Direction.NORTH);
+		case "E":
+			return turn(Direction.EAST);
+		case "S":
+			return turn(Direction.SOUTH);
+		case "W":
+			return turn(Direction.WEST);
+		case "NEW":
+			model.reset();
+			start();
+			return status("OK");
+		case "BOARD":
+			return board();
+		default:
+			return "ERR unknown command";
+		}
+	}
+
+	/**
+	 * Describes the board of the current game.
+	 * 
+	 * @return {@code BOARD}, followed by the board size and the value in each
+	 *         cell in row-major order, with {@code 0} for empty cells
+	 */
+	private String board() {
+		final TileGrid grid = model.getGrid();
+		final int size = grid.getSize();
+		final StringBuilder sb = new StringBuilder("BOARD ").append(size);
+		for (int i = 0; i < size * size; i++) {
+			final Tile tile = grid.at(BoardLocation.fromIndex(i, size));
+			sb.append(' ').append(tile == null ? 0 : tile.getValue());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Adds two tiles of value {@code 2} to random empty cells, to start a
+	 * game.
+	 */
+	private void start() {
+		for (int i = 0; i < 2; i++) {
+			final LocationSet free = model.getGrid().getUnoccupiedLocations();
+			final Tile tile = new Tile();
+			tile.setValue(2);
+			model.addTile(tile, free.select(model.getRandom().nextInt(
+					free.size())));
+		}
+	}
+
+	/**
+	 * Formats a response that carries the score.
+	 * 
+	 * @param word
+	 *            the first word of the response
+	 * @return the word, a space, and the current score
+	 */
+	private String status(String word) {
+		return word + " " + model.getScore();
+	}
+
+	/**
+	 * Plays a move in the current game.
+	 * 
+	 * @param direction
+	 *            the direction of the move
+	 * @return {@code LOST} if the game is over, {@code OK} if the move was
+	 *         played, {@code NO} if it was not possible, or {@code ERR} if
+	 *         the turn performer failed, followed by the score
+	 */
+	private String turn(Direction direction) {
+		if (model.isLost()) {
+			return status("LOST");
+		}
+		final boolean accepted;
+		try {
+			accepted = performer.turn(direction, model);
+		} catch (RuntimeException e) {
+			return status("ERR");
+		}
+		if (model.isLost()) {
+			return status("LOST");
+		}
+		return status(accepted ? "OK" : "NO");
+	}
+
+}
@@ -0,0 +1,360 @@
+package j2048.server;
+
+import j2048.BoardLocation;
+import j2048.SplitRandom;
+import j2048.engine.ArrayBoardTurnPerformer;
+import j2048.sim.BatchSimulation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Drives many simulated clients against a {@link GameServer} and measures
+ * the round-trip latency of their moves.
+ * <p>
+ * All clients connect before any moves are made, so the server holds every
+ * session at once. The clients are then divided among a fixed number of
+ * threads. Each thread sends one random move for each of its clients in
+ * turn, waiting for the response before sending the next, until every client
+ * has made the requested number of moves; a client whose game is lost starts
+ * a new one. Latency is measured from sending a move to receiving its
+ * response.
+ * <p>
+ * The generator also measures how much the used heap of its own JVM grows
+ * while the clients connect. When the server runs in the same JVM, as it does
+ * when {@link #main(String[])} is given no host, this gives an upper bound on
+ * the heap needed per session.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class LoadGenerator {
+
+	/**
+	 * The moves that clients send.
+	 */
+	private static final String[] MOVES = { "N", "E", "S", "W" };
+
+	/**
+	 * One simulated client, with a blocking connection to the server.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	private static final class Client {
+
+		/**
+		 * The connection to the server.
+		 */
+		private final Socket socket;
+
+		/**
+		 * The stream from the server.
+		 */
+		private final InputStream in;
+
+		/**
+		 * The stream to the server.
+		 */
+		private final OutputStream out;
+
+		/**
+		 * The buffer into which responses are read.
+		 */
+		private final byte[] buffer = new byte[128];
+
+		/**
+		 * Connects a client to the server.
+		 * 
+		 * @param address
+		 *            the address of the server
+		 * @throws IOException
+		 *             if the connection fails
+		 */
+		private Client(InetSocketAddress address) throws IOException {
+			socket = new Socket();
+			socket.setTcpNoDelay(true);
+			socket.connect(address);
+			in = socket.getInputStream();
+			out = socket.getOutputStream();
+		}
+
+		/**
+		 * Sends a command and waits for the whole response. The server sends
+		 * exactly one line per command, so once a read ends with a line
+		 * terminator nothing is left unread.
+		 * 
+		 * @param command
+		 *            the command, without its terminator
+		 * @return the first character of the response
+		 * @throws IOException
+		 *             if the connection fails or the server closes it
+		 */
+		private char send(String command) throws IOException {
+			out.write((command + "\n").getBytes(StandardCharsets.US_ASCII));
+			char first = 0;
+			int n;
+			do {
+				n = in.read(buffer);
+				if (n < 0) {
+					throw new IOException("server closed the connection");
+				}
+				if (first == 0 && n > 0) {
+					first = (char) buffer[0];
+				}
+			} while (n == 0 || buffer[n - 1] != '\n');
+			return first;
+		}
+
+	}
+
+	/**
+	 * Runs a load test from the command line and prints the report.
+	 * <p>
+	 * Usage:
+	 * {@code LoadGenerator [clients [moves [threads [host [port]]]]]}. The
+	 * number of clients defaults to {@code 1000}, the number of moves per
+	 * client to {@code 100}, and the number of threads to the number of
+	 * available processors. If no host is given, a server for
+	 * {@value BoardLocation#BOARD_SIZE}x{@value BoardLocation#BOARD_SIZE}
+	 * games with an {@link ArrayBoardTurnPerformer} is started in this JVM on
+	 * a free port. The port defaults to {@value GameServer#DEFAULT_PORT}.
+	 * <p>
+	 * Each client uses a file descriptor, and an in-process server uses one
+	 * more per client, so large runs may need a higher limit on open files.
+	 * 
+	 * @param args
+	 *            the command-line arguments
+	 * @throws Exception
+	 *             if the server cannot be started or reached
+	 */
+	public static void main(String[] args) throws Exception {
+		final int clients = args.length > 0 ? Integer.parseInt(args[0])
+				: 1000;
+		final int moves = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		final int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		if (args.length > 3) {
+			final int port = args.length > 4 ? Integer.parseInt(args[4])
+					: GameServer.DEFAULT_PORT;
+			final LoadGenerator generator = new LoadGenerator(
+					new InetSocketAddress(args[3], port), clients, threads);
+			System.out.println(generator.run(moves));
+			return;
+		}
+		try (GameServer server = new GameServer(
+				BatchSimulation.factoryFor(ArrayBoardTurnPerformer.class),
+				BoardLocation.BOARD_SIZE, Runtime.getRuntime()
+						.availableProcessors())) {
+			final InetAddress loopback = InetAddress.getLoopbackAddress();
+			server.start(new InetSocketAddress(loopback, 0));
+			final LoadGenerator generator = new LoadGenerator(
+					new InetSocketAddress(loopback, server.getPort()),
+					clients, threads);
+			System.out.println(generator.run(moves));
+		}
+	}
+
+	/**
+	 * Measures the heap in use, after asking the garbage collector to free
+	 * what it can.
+	 * 
+	 * @return the number of bytes of heap in use
+	 */
+	private static long usedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * The address of the server.
+	 */
+	private final InetSocketAddress address;
+
+	/**
+	 * The number of simulated clients.
+	 */
+	private final int clients;
+
+	/**
+	 * The number of threads that drive the clients.
+	 */
+	private final int threads;
+
+	/**
+	 * The seed from which the moves of each thread are derived.
+	 */
+	private long seed = SplitRandom.newSeed();
+
+	/**
+	 * Creates a load generator.
+	 * 
+	 * @param address
+	 *            the address of the server
+	 * @param clients
+	 *            the number of simulated clients
+	 * @param threads
+	 *            the number of threads that drive the clients
+	 * @throws IllegalArgumentException
+	 *             if {@code address == null}, if {@code clients} is
+	 *             negative, or if {@code threads < 1}
+	 */
+	public LoadGenerator(InetSocketAddress address, int clients, int threads)
+			throws IllegalArgumentException {
+		if (address == null) {
+			throw new IllegalArgumentException("address must not be null");
+		}
+		if (clients < 0) {
+			throw new IllegalArgumentException(
+					"clients must not be negative: " + clients);
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: "
+					+ threads);
+		}
+		this.address = address;
+		this.clients = clients;
+		this.threads = threads;
+	}
+
+	/**
+	 * Gets the seed from which the moves of each thread are derived.
+	 * 
+	 * @return the seed of the load generator
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Connects every client, makes the given number of moves with each, and
+	 * reports the results. All connections are closed before this method
+	 * returns.
+	 * 
+	 * @param moves
+	 *            the number of moves per client
+	 * @return the report for the run
+	 * @throws IllegalArgumentException
+	 *             if {@code moves} is negative
+	 * @throws IOException
+	 *             if a client cannot connect
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the
+	 *             client threads
+	 * @throws ExecutionException
+	 *             if a client thread fails, for example because the server
+	 *             closed a connection
+	 */
+	public LoadReport run(final int moves) throws IllegalArgumentException,
+			IOException, InterruptedException, ExecutionException {
+		if (moves < 0) {
+			throw new IllegalArgumentException("moves must not be negative: "
+					+ moves);
+		}
+		final List<Client> connected = new ArrayList<>(clients);
+		try {
+			final long heapBefore = usedHeap();
+			for (int i = 0; i < clients; i++) {
+				connected.add(new Client(address));
+			}
+			// One round trip each makes sure that every session exists.
+			for (Client client : connected) {
+				client.send("BOARD");
+			}
+			final long heapBytes = usedHeap() - heapBefore;
+
+			final int workers = Math.min(threads, Math.max(clients, 1));
+			final long[][] latencies = new long[workers][];
+			final SplitRandom seeder = new SplitRandom(seed);
+			final List<Callable<Void>> tasks = new ArrayList<>(workers);
+			for (int w = 0; w < workers; w++) {
+				final List<Client> mine = new ArrayList<>();
+				for (int i = w; i < clients; i += workers) {
+					mine.add(connected.get(i));
+				}
+				final long[] results = latencies[w] = new long[mine.size()
+						* moves];
+				final SplitRandom random = seeder.split();
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						int n = 0;
+						for (int m = 0; m < moves; m++) {
+							for (Client client : mine) {
+								final String move = MOVES[random
+										.nextInt(MOVES.length)];
+								final long start = System.nanoTime();
+								final char status = client.send(move);
+								results[n++] = System.nanoTime() - start;
+								if (status == 'L') {
+									client.send("NEW");
+								} else if (status == 'E') {
+									throw new IOException("server error");
+								}
+							}
+						}
+						return null;
+					}
+				});
+			}
+
+			final ExecutorService executor = Executors
+					.newFixedThreadPool(workers);
+			final long start = System.nanoTime();
+			try {
+				for (Future<Void> result : executor.invokeAll(tasks)) {
+					result.get();
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+			final long elapsed = System.nanoTime() - start;
+
+			int total = 0;
+			for (long[] results : latencies) {
+				total += results.length;
+			}
+			final long[] all = new long[total];
+			int offset = 0;
+			for (long[] results : latencies) {
+				System.arraycopy(results, 0, all, offset, results.length);
+				offset += results.length;
+			}
+			return new LoadReport(clients, workers, elapsed, all, heapBytes);
+		} finally {
+			for (Client client : connected) {
+				try {
+					client.socket.close();
+				} catch (IOException e) {
+					// The connection is gone either way.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets the seed from which the moves of each thread are derived.
+	 * 
+	 * @param seed
+	 *            the seed of the load generator
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+}
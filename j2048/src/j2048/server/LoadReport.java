@@ -0,0 +1,178 @@
+package j2048.server;
+
+import java.util.Arrays;
+
+/**
+ * The results of a {@link LoadGenerator} run. This class is immutable.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class LoadReport {
+
+	/**
+	 * The number of bytes in a gigabyte.
+	 */
+	private static final double GIGABYTE = 1L << 30;
+
+	/**
+	 * The number of simulated clients.
+	 */
+	private final int clients;
+
+	/**
+	 * The number of threads that drove the clients.
+	 */
+	private final int threads;
+
+	/**
+	 * The wall-clock duration of the move phase, in nanoseconds.
+	 */
+	private final long elapsedNanos;
+
+	/**
+	 * The round-trip latency of each move, in nanoseconds, in ascending order.
+	 */
+	private final long[] latencies;
+
+	/**
+	 * The growth in used heap while the clients connected, in bytes.
+	 */
+	private final long heapBytes;
+
+	/**
+	 * Creates a report from the raw results of a run.
+	 * 
+	 * @param clients
+	 *            the number of simulated clients
+	 * @param threads
+	 *            the number of threads that drove the clients
+	 * @param elapsedNanos
+	 *            the wall-clock duration of the move phase, in nanoseconds
+	 * @param latencies
+	 *            the round-trip latency of each move, in nanoseconds
+	 * @param heapBytes
+	 *            the growth in used heap while the clients connected
+	 */
+	LoadReport(int clients, int threads, long elapsedNanos, long[] latencies,
+			long heapBytes) {
+		this.clients = clients;
+		this.threads = threads;
+		this.elapsedNanos = elapsedNanos;
+		this.latencies = latencies.clone();
+		Arrays.sort(this.latencies);
+		this.heapBytes = Math.max(0, heapBytes);
+	}
+
+	/**
+	 * Gets the heap used per session. This is the growth in used heap of the
+	 * load generator's JVM while the clients connected, divided by the
+	 * number of clients, so it counts the server's side of each connection
+	 * only when the server runs in the same JVM, and then it also counts the
+	 * client's side.
+	 * 
+	 * @return the number of bytes of heap per session
+	 */
+	public long getBytesPerSession() {
+		return clients == 0 ? 0 : heapBytes / clients;
+	}
+
+	/**
+	 * Gets the number of simulated clients.
+	 * 
+	 * @return the client count
+	 */
+	public int getClients() {
+		return clients;
+	}
+
+	/**
+	 * Gets the wall-clock duration of the move phase.
+	 * 
+	 * @return the duration, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Gets a percentile of the round-trip move latencies, using the
+	 * nearest-rank method.
+	 * 
+	 * @param percentile
+	 *            the percentile, between {@code 0} and {@code 100} inclusive
+	 * @return the latency at that percentile, in nanoseconds, or {@code 0}
+	 *         if no moves were made
+	 * @throws IllegalArgumentException
+	 *             if the percentile is out of range
+	 */
+	public long getLatencyPercentile(double percentile)
+			throws IllegalArgumentException {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile out of range: "
+					+ percentile);
+		}
+		if (latencies.length == 0) {
+			return 0;
+		}
+		final int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+		return latencies[Math.max(rank - 1, 0)];
+	}
+
+	/**
+	 * Gets the number of moves made.
+	 * 
+	 * @return the move count
+	 */
+	public int getMoves() {
+		return latencies.length;
+	}
+
+	/**
+	 * Gets the throughput of the move phase.
+	 * 
+	 * @return the number of moves per second of wall-clock time
+	 */
+	public double getMovesPerSecond() {
+		return latencies.length / (elapsedNanos / 1e9);
+	}
+
+	/**
+	 * Estimates how many sessions fit in a gigabyte of heap, from
+	 * {@link #getBytesPerSession()}.
+	 * 
+	 * @return the number of sessions per gigabyte, or
+	 *         {@link Double#POSITIVE_INFINITY} if no heap growth was measured
+	 */
+	public double getSessionsPerGigabyte() {
+		final long bytes = getBytesPerSession();
+		return bytes == 0 ? Double.POSITIVE_INFINITY : GIGABYTE / bytes;
+	}
+
+	/**
+	 * Gets the number of threads that drove the clients.
+	 * 
+	 * @return the thread count
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format(
+				"%d moves by %d clients on %d threads in %.3f s%n",
+				getMoves(), clients, threads, elapsedNanos / 1e9));
+		sb.append(String.format("%.1f moves/s%n", getMovesPerSecond()));
+		sb.append(String.format(
+				"latency: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+				getLatencyPercentile(50) / 1e3,
+				getLatencyPercentile(99) / 1e3,
+				getLatencyPercentile(100) / 1e3));
+		sb.append(String.format("heap: %d bytes/session, %.0f sessions/GB",
+				getBytesPerSession(), getSessionsPerGigabyte()));
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,407 @@
+package j2048.sim;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.GameModel;
+import j2048.LocationSet;
+import j2048.SplitRandom;
+import j2048.Tile;
+import j2048.TurnPerformer;
+import j2048.ai.MoveAdvisor;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays many complete games of 2048 without a view, spread across several
+ * threads, and reports throughput and outcome statistics. This can be used to
+ * load-test a {@link TurnPerformer} on a machine with no display.
+ * <p>
+ * Each game starts with two tiles of value {@code 2}, like the GUI. On each
+ * turn the simulation first tries the direction recommended by the
+ * {@link MoveAdvisor}, if one is set, and then the remaining directions in a
+ * random order until the turn performer accepts one. The game ends when the
+ * turn performer calls {@link GameModel#loseGame()}, when it rejects every
+ * direction, or when the turn limit is reached.
+ * <p>
+ * Every game has its own {@link SplitRandom}, so the threads share no source
+ * of randomness. The seed of game {@code i} is the {@code i}-th value of
+ * {@link SplitRandom#nextLong()} from a generator seeded with the
+ * {@linkplain #getSeed() simulation's seed}, so a whole run, or any one game
+ * of it, can be played again, as long as the turn performer draws from
+ * {@link GameModel#getRandom()}.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class BatchSimulation {
+
+	/**
+	 * The default maximum number of turns in a single game.
+	 */
+	public static final int DEFAULT_MAX_TURNS = 100000;
+
+	/**
+	 * Creates a factory that instantiates the given class with its no-argument
+	 * constructor.
+	 * 
+	 * @param type
+	 *            the turn performer class
+	 * @return a factory for instances of the class
+	 * @throws IllegalArgumentException
+	 *             if {@code type == null}
+	 */
+	public static TurnPerformerFactory factoryFor(
+			final Class<? extends TurnPerformer> type)
+			throws IllegalArgumentException {
+		if (type == null) {
+			throw new IllegalArgumentException("type must not be null");
+		}
+		return new TurnPerformerFactory() {
+			@Override
+			public TurnPerformer create() {
+				try {
+					return type.newInstance();
+				} catch (InstantiationException | IllegalAccessException e) {
+					throw new IllegalStateException("cannot instantiate "
+							+ type.getName(), e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Runs a simulation from the command line and prints the report.
+	 * <p>
+	 * Usage:
+	 * {@code BatchSimulation [performer-class [games [threads [advisor-class [size]]]]]}
+	 * . The performer class defaults to {@code j2048.Logic}, the number of
+	 * games to {@code 1000}, the number of threads to the number of available
+	 * processors, and the board size to {@value BoardLocation#BOARD_SIZE}. By
+	 * default, or if the advisor class is {@code -}, no advisor is used.
+	 * 
+	 * @param args
+	 *            the command-line arguments
+	 * @throws Exception
+	 *             if the performer class cannot be loaded or a simulation
+	 *             thread fails
+	 */
+	public static void main(String[] args) throws Exception {
+		final String className = args.length > 0 ? args[0] : "j2048.Logic";
+		final int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		final int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+
+		final Class<? extends TurnPerformer> type = Class.forName(className)
+				.asSubclass(TurnPerformer.class);
+		final BatchSimulation simulation = new BatchSimulation(
+				factoryFor(type), threads);
+		if (args.length > 3 && !args[3].equals("-")) {
+			simulation.setAdvisor(Class.forName(args[3])
+					.asSubclass(MoveAdvisor.class).newInstance());
+		}
+		if (args.length > 4) {
+			simulation.setBoardSize(Integer.parseInt(args[4]));
+		}
+		try {
+			System.out.println(simulation.run(games));
+		} finally {
+			if (simulation.getAdvisor() instanceof Closeable) {
+				((Closeable) simulation.getAdvisor()).close();
+			}
+		}
+	}
+
+	/**
+	 * The factory that supplies each thread with a turn performer.
+	 */
+	private final TurnPerformerFactory factory;
+
+	/**
+	 * The number of threads that play games.
+	 */
+	private final int threads;
+
+	/**
+	 * The maximum number of turns in a single game.
+	 */
+	private int maxTurns = DEFAULT_MAX_TURNS;
+
+	/**
+	 * The side length of the board in each game.
+	 */
+	private int boardSize = BoardLocation.BOARD_SIZE;
+
+	/**
+	 * The advisor that chooses moves, or {@code null} to move randomly.
+	 */
+	private MoveAdvisor advisor;
+
+	/**
+	 * The seed from which the seed of each game is derived.
+	 */
+	private long seed = SplitRandom.newSeed();
+
+	/**
+	 * Creates a simulation that uses one thread per available processor.
+	 * 
+	 * @param factory
+	 *            the factory for turn performers
+	 * @throws IllegalArgumentException
+	 *             if {@code factory == null}
+	 */
+	public BatchSimulation(TurnPerformerFactory factory)
+			throws IllegalArgumentException {
+		this(factory, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a simulation that uses the given number of threads.
+	 * 
+	 * @param factory
+	 *            the factory for turn performers
+	 * @param threads
+	 *            the number of threads
+	 * @throws IllegalArgumentException
+	 *             if {@code factory == null} or {@code threads < 1}
+	 */
+	public BatchSimulation(TurnPerformerFactory factory, int threads)
+			throws IllegalArgumentException {
+		if (factory == null) {
+			throw new IllegalArgumentException("factory must not be null");
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: "
+					+ threads);
+		}
+		this.factory = factory;
+		this.threads = threads;
+	}
+
+	/**
+	 * Gets the advisor that chooses moves.
+	 * 
+	 * @return the advisor, or {@code null} if moves are chosen randomly
+	 */
+	public MoveAdvisor getAdvisor() {
+		return advisor;
+	}
+
+	/**
+	 * Gets the side length of the board in each game.
+	 * 
+	 * @return the board size
+	 */
+	public int getBoardSize() {
+		return boardSize;
+	}
+
+	/**
+	 * Gets the maximum number of turns in a single game.
+	 * 
+	 * @return the turn limit
+	 */
+	public int getMaxTurns() {
+		return maxTurns;
+	}
+
+	/**
+	 * Gets the seed from which the seed of each game is derived.
+	 * 
+	 * @return the seed of the simulation
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Plays the given number of games and reports the results.
+	 * 
+	 * @param games
+	 *            the number of games to play
+	 * @return the report for the run
+	 * @throws IllegalArgumentException
+	 *             if {@code games} is negative
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the
+	 *             simulation threads
+	 * @throws ExecutionException
+	 *             if a simulation thread fails outside of a turn performer
+	 */
+	public SimulationReport run(final int games)
+			throws IllegalArgumentException, InterruptedException,
+			ExecutionException {
+		if (games < 0) {
+			throw new IllegalArgumentException("games must not be negative: "
+					+ games);
+		}
+		final int size = boardSize;
+		final long[] seeds = new long[games];
+		final SplitRandom seeder = new SplitRandom(seed);
+		for (int game = 0; game < games; game++) {
+			seeds[game] = seeder.nextLong();
+		}
+		final AtomicInteger nextGame = new AtomicInteger();
+		final int[] scores = new int[games];
+		final int[] maxTiles = new int[games];
+		final boolean[] failed = new boolean[games];
+
+		final List<Callable<Long>> workers = new ArrayList<>(threads);
+		for (int i = 0; i < threads; i++) {
+			workers.add(new Callable<Long>() {
+				@Override
+				public Long call() {
+					final TurnPerformer performer = factory.create();
+					final GameModel model = new GameModel(size);
+					long turns = 0;
+					int game;
+					while ((game = nextGame.getAndIncrement()) < games) {
+						try {
+							model.reset(seeds[game]);
+							turns += play(performer, model);
+							scores[game] = model.getScore();
+							maxTiles[game] = model.getGrid().getMaxValue();
+						} catch (RuntimeException e) {
+							failed[game] = true;
+						}
+					}
+					return turns;
+				}
+			});
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final long start = System.nanoTime();
+		long turns = 0;
+		try {
+			for (Future<Long> result : executor.invokeAll(workers)) {
+				turns += result.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		final long elapsed = System.nanoTime() - start;
+
+		int failedGames = 0;
+		for (boolean f : failed) {
+			if (f) {
+				failedGames++;
+			}
+		}
+		final int[] completedScores = new int[games - failedGames];
+		final int[] completedMaxTiles = new int[games - failedGames];
+		for (int game = 0, i = 0; game < games; game++) {
+			if (!failed[game]) {
+				completedScores[i] = scores[game];
+				completedMaxTiles[i] = maxTiles[game];
+				i++;
+			}
+		}
+		return new SimulationReport(threads, elapsed, turns, failedGames,
+				completedScores, completedMaxTiles);
+	}
+
+	/**
+	 * Sets the advisor that chooses moves. The advisor is shared by all
+	 * simulation threads.
+	 * 
+	 * @param advisor
+	 *            the advisor, or {@code null} to choose moves randomly
+	 */
+	public void setAdvisor(MoveAdvisor advisor) {
+		this.advisor = advisor;
+	}
+
+	/**
+	 * Sets the side length of the board in each game. The turn performer and
+	 * the advisor, if any, must support boards of this size.
+	 * 
+	 * @param boardSize
+	 *            the new board size
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}
+	 */
+	public void setBoardSize(int boardSize) throws IllegalArgumentException {
+		BoardLocation.checkBoardSize(boardSize);
+		this.boardSize = boardSize;
+	}
+
+	/**
+	 * Sets the maximum number of turns in a single game. This guards against
+	 * turn performers that never end the game.
+	 * 
+	 * @param maxTurns
+	 *            the new turn limit
+	 * @throws IllegalArgumentException
+	 *             if {@code maxTurns < 1}
+	 */
+	public void setMaxTurns(int maxTurns) throws IllegalArgumentException {
+		if (maxTurns < 1) {
+			throw new IllegalArgumentException("maxTurns must be positive: "
+					+ maxTurns);
+		}
+		this.maxTurns = maxTurns;
+	}
+
+	/**
+	 * Sets the seed from which the seed of each game is derived.
+	 * 
+	 * @param seed
+	 *            the seed of the simulation
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Plays one complete game on the given model, which must have been reset.
+	 * The initial tiles are drawn from the model's source of randomness, and
+	 * the move order from a generator split from it.
+	 * 
+	 * @param performer
+	 *            the turn performer
+	 * @param model
+	 *            the model to play on
+	 * @return the number of accepted turns
+	 */
+	private int play(TurnPerformer performer, GameModel model) {
+		final SplitRandom random = model.getRandom().split();
+		for (int i = 0; i < 2; i++) {
+			final LocationSet free = model.getGrid().getUnoccupiedLocations();
+			final Tile tile = new Tile();
+			tile.setValue(2);
+			model.addTile(tile, free.select(model.getRandom().nextInt(
+					free.size())));
+		}
+
+		final Direction[] directions = Direction.values();
+		int turns = 0;
+		while (!model.isLost() && turns < maxTurns) {
+			final Direction advised = advisor == null ? null : advisor
+					.advise(model.getGrid());
+			boolean accepted = advised != null
+					&& performer.turn(advised, model);
+			for (int i = directions.length; i > 0 && !accepted; i--) {
+				final int pick = random.nextInt(i);
+				final Direction direction = directions[pick];
+				directions[pick] = directions[i - 1];
+				directions[i - 1] = direction;
+				accepted = direction != advised
+						&& performer.turn(direction, model);
+			}
+			if (!accepted) {
+				break;
+			}
+			turns++;
+		}
+		return turns;
+	}
+
+}
@@ -0,0 +1,667 @@
+package j2048.sim;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.GameModel;
+import j2048.SplitRandom;
+import j2048.Tile;
+import j2048.TurnPerformer;
+import j2048.engine.ArrayBoard;
+import j2048.engine.ArrayBoardTurnPerformer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks a candidate {@link TurnPerformer} against a reference one on many
+ * generated positions, spread across several threads, and reports the
+ * smallest position on which they disagree.
+ * <p>
+ * Each {@linkplain FuzzCase case} is a board, a score, and a move. Both
+ * performers make the move from the same position, each through its own
+ * recording context, and the fuzzer compares whether the move was accepted,
+ * the board and score after it, whether the game was won or lost, and how
+ * many new tiles were added. New tiles must go in empty cells with the value
+ * {@code 2} or {@code 4}; the context then moves each one to the cell chosen
+ * by the case and gives it the value {@code 2}, and decides from the board
+ * whether the game is lost, so that the performers' random choices do not
+ * matter. Each performer's {@link j2048.TileGameContext#getRandom()} is
+ * seeded from the case, so a case gives the same outcome each time it is
+ * checked.
+ * <p>
+ * Boards are generated in four styles, in equal proportion: sparse boards
+ * with tiles of any value, full boards of a few small values, boards of two
+ * adjacent values, which produce long chains of merges, and boards of values
+ * close to {@link ArrayBoardTurnPerformer#WINNING_VALUE}. Tile values range
+ * up to {@code 2^}{@linkplain #getMaxExponent() max exponent}.
+ * <p>
+ * When the performers disagree on some case, the first such case is shrunk:
+ * cells are emptied and tiles halved, and the score and spawn choice set to
+ * zero, for as long as the performers still disagree. The result is usually
+ * a board of two or three tiles that shows the fault at a glance.
+ * <p>
+ * Case {@code i} is generated by a {@link SplitRandom} seeded with the
+ * {@linkplain #getSeed() fuzzer's seed} plus {@code i}, so a run, or any one
+ * case of it, can be checked again.
+ * 
+ * @author William Chargin
+ * 
+ */
+public class DifferentialFuzzer {
+
+	/**
+	 * The default largest base-2 exponent of a generated tile value. Tiles
+	 * up to this value are supported by every engine in this project.
+	 */
+	public static final int DEFAULT_MAX_EXPONENT = 13;
+
+	/**
+	 * What a turn performer did with one case.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	private static final class Outcome {
+
+		/**
+		 * The exception thrown by the performer, or {@code null} if it
+		 * returned normally.
+		 */
+		private final String error;
+
+		/**
+		 * Whether the performer accepted the move.
+		 */
+		private final boolean accepted;
+
+		/**
+		 * The value in each cell after the move.
+		 */
+		private final int[] values;
+
+		/**
+		 * The score after the move.
+		 */
+		private final int score;
+
+		/**
+		 * Whether the performer won the game.
+		 */
+		private final boolean won;
+
+		/**
+		 * Whether the performer lost the game.
+		 */
+		private final boolean lost;
+
+		/**
+		 * The number of new tiles.
+		 */
+		private final int spawns;
+
+		/**
+		 * A description of the first invalid new tile, or {@code null}.
+		 */
+		private final String badSpawn;
+
+		/**
+		 * Records the outcome of a turn.
+		 * 
+		 * @param error
+		 *            the exception thrown by the performer, or {@code null}
+		 * @param accepted
+		 *            whether the performer accepted the move
+		 * @param model
+		 *            the model after the move
+		 * @param context
+		 *            the context through which the move was made
+		 */
+		private Outcome(String error, boolean accepted, GameModel model,
+				FuzzContext context) {
+			this.error = error;
+			this.accepted = accepted;
+			final int size = model.getGrid().getSize();
+			this.values = new int[size * size];
+			for (int i = 0; i < values.length; i++) {
+				final Tile tile = model.getGrid().at(
+						BoardLocation.fromIndex(i, size));
+				values[i] = tile == null ? 0 : tile.getValue();
+			}
+			this.score = model.getScore();
+			this.won = context.isWon();
+			this.lost = context.isLost();
+			this.spawns = context.getSpawns();
+			this.badSpawn = context.getBadSpawn();
+		}
+
+		/**
+		 * Determines whether this outcome is correct, given that another
+		 * outcome of the same case is.
+		 * 
+		 * @param expected
+		 *            the reference outcome
+		 * @return {@code true} if the outcomes agree in every respect
+		 */
+		private boolean matches(Outcome expected) {
+			return error == null && expected.error == null
+					&& badSpawn == null && expected.badSpawn == null
+					&& accepted == expected.accepted
+					&& Arrays.equals(values, expected.values)
+					&& score == expected.score && won == expected.won
+					&& lost == expected.lost && spawns == expected.spawns;
+		}
+
+		@Override
+		public String toString() {
+			if (error != null) {
+				return "threw " + error;
+			}
+			final StringBuilder sb = new StringBuilder();
+			sb.append(accepted ? "accepted" : "rejected");
+			sb.append(", score ").append(score);
+			sb.append(", ").append(spawns).append(" new tiles");
+			if (badSpawn != null) {
+				sb.append(" (").append(badSpawn).append(')');
+			}
+			if (won) {
+				sb.append(", won");
+			}
+			if (lost) {
+				sb.append(", lost");
+			}
+			sb.append(", board ").append(Arrays.toString(values));
+			return sb.toString();
+		}
+
+	}
+
+	/**
+	 * A pair of turn performers, each with its own model, that checks cases
+	 * on one thread.
+	 * 
+	 * @author William Chargin
+	 * 
+	 */
+	private final class Checker {
+
+		/**
+		 * The turn performer under test.
+		 */
+		private final TurnPerformer candidate = candidateFactory.create();
+
+		/**
+		 * The turn performer that gives the expected outcomes.
+		 */
+		private final TurnPerformer reference = referenceFactory.create();
+
+		/**
+		 * The model on which the candidate plays.
+		 */
+		private final GameModel candidateModel = new GameModel(boardSize);
+
+		/**
+		 * The model on which the reference plays.
+		 */
+		private final GameModel referenceModel = new GameModel(boardSize);
+
+		/**
+		 * The context through which the candidate plays.
+		 */
+		private final FuzzContext candidateContext = new FuzzContext(
+				candidateModel);
+
+		/**
+		 * The context through which the reference plays.
+		 */
+		private final FuzzContext referenceContext = new FuzzContext(
+				referenceModel);
+
+		/**
+		 * Determines whether the performers agree on one case.
+		 * 
+		 * @param c
+		 *            the case
+		 * @return {@code true} if the outcomes agree in every respect
+		 */
+		private boolean agrees(FuzzCase c) {
+			return play(c, candidate, candidateModel, candidateContext)
+					.matches(play(c, reference, referenceModel,
+							referenceContext));
+		}
+
+		/**
+		 * Checks one case.
+		 * 
+		 * @param c
+		 *            the case
+		 * @return a description of the two outcomes if the performers
+		 *         disagree, or {@code null} if they agree
+		 */
+		private String check(FuzzCase c) {
+			final Outcome actual = play(c, candidate, candidateModel,
+					candidateContext);
+			final Outcome expected = play(c, reference, referenceModel,
+					referenceContext);
+			if (actual.matches(expected)) {
+				return null;
+			}
+			return String.format("candidate: %s%nreference: %s", actual,
+					expected);
+		}
+
+		/**
+		 * Shrinks a case on which the performers disagree.
+		 * 
+		 * @param c
+		 *            the case
+		 * @return the smallest case found on which the performers still
+		 *         disagree
+		 */
+		private FuzzCase shrink(FuzzCase c) {
+			boolean changed = true;
+			while (changed) {
+				changed = false;
+				final int[] values = c.getValues();
+				for (int i = 0; i < values.length; i++) {
+					while (values[i] != 0) {
+						final int old = values[i];
+						values[i] = old == 2 ? 0 : old / 2;
+						final FuzzCase smaller = c.withValues(values);
+						if (agrees(smaller)) {
+							values[i] = old;
+							break;
+						}
+						c = smaller;
+						changed = true;
+					}
+					if (values[i] != 0) {
+						final int old = values[i];
+						values[i] = 0;
+						final FuzzCase smaller = c.withValues(values);
+						if (agrees(smaller)) {
+							values[i] = old;
+						} else {
+							c = smaller;
+							changed = true;
+						}
+					}
+				}
+				if (c.getScore() != 0 || c.getSpawnChoice() != 0) {
+					final FuzzCase smaller = new FuzzCase(boardSize,
+							c.getValues(), 0, c.getDirection(), 0);
+					if (!agrees(smaller)) {
+						c = smaller;
+						changed = true;
+					}
+				}
+			}
+			return c;
+		}
+
+	}
+
+	/**
+	 * Runs the fuzzer from the command line and prints the report.
+	 * <p>
+	 * Usage:
+	 * {@code DifferentialFuzzer [candidate-class [cases [threads [reference-class [size]]]]]}
+	 * . The candidate class defaults to {@code j2048.Logic}, the number of
+	 * cases to {@code 1000000}, the number of threads to the number of
+	 * available processors, the reference class to
+	 * {@link ArrayBoardTurnPerformer}, and the board size to
+	 * {@value BoardLocation#BOARD_SIZE}.
+	 * 
+	 * @param args
+	 *            the command-line arguments
+	 * @throws Exception
+	 *             if a performer class cannot be loaded or a fuzzing thread
+	 *             fails
+	 */
+	public static void main(String[] args) throws Exception {
+		final String candidate = args.length > 0 ? args[0] : "j2048.Logic";
+		final int cases = args.length > 1 ? Integer.parseInt(args[1])
+				: 1000000;
+		final int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		final String reference = args.length > 3 ? args[3]
+				: ArrayBoardTurnPerformer.class.getName();
+
+		final DifferentialFuzzer fuzzer = new DifferentialFuzzer(
+				BatchSimulation.factoryFor(Class.forName(candidate)
+						.asSubclass(TurnPerformer.class)),
+				BatchSimulation.factoryFor(Class.forName(reference)
+						.asSubclass(TurnPerformer.class)), threads);
+		if (args.length > 4) {
+			fuzzer.setBoardSize(Integer.parseInt(args[4]));
+		}
+		System.out.println(fuzzer.run(cases));
+	}
+
+	/**
+	 * Plays one case.
+	 * 
+	 * @param c
+	 *            the case
+	 * @param performer
+	 *            the turn performer
+	 * @param model
+	 *            the model to play on
+	 * @param context
+	 *            the recording context for the model
+	 * @return the outcome of the case
+	 */
+	private static Outcome play(FuzzCase c, TurnPerformer performer,
+			GameModel model, FuzzContext context) {
+		model.reset(c.getRandomSeed());
+		final int size = c.getBoardSize();
+		for (int i = 0; i < size * size; i++) {
+			if (c.getValue(i) != 0) {
+				final Tile tile = new Tile();
+				tile.setValue(c.getValue(i));
+				model.addTile(tile, BoardLocation.fromIndex(i, size));
+			}
+		}
+		model.setScore(c.getScore());
+		context.begin(c.getSpawnChoice());
+		String error = null;
+		boolean accepted = false;
+		try {
+			accepted = performer.turn(c.getDirection(), context);
+		} catch (RuntimeException e) {
+			error = e.toString();
+		}
+		context.end();
+		return new Outcome(error, accepted, model, context);
+	}
+
+	/**
+	 * The factory for the turn performer under test.
+	 */
+	private final TurnPerformerFactory candidateFactory;
+
+	/**
+	 * The factory for the turn performer that gives the expected outcomes.
+	 */
+	private final TurnPerformerFactory referenceFactory;
+
+	/**
+	 * The number of threads that check cases.
+	 */
+	private final int threads;
+
+	/**
+	 * The side length of the board in each case.
+	 */
+	private int boardSize = BoardLocation.BOARD_SIZE;
+
+	/**
+	 * The largest base-2 exponent of a generated tile value.
+	 */
+	private int maxExponent = DEFAULT_MAX_EXPONENT;
+
+	/**
+	 * The seed from which each case is generated.
+	 */
+	private long seed = SplitRandom.newSeed();
+
+	/**
+	 * Creates a fuzzer that uses the given number of threads.
+	 * 
+	 * @param candidate
+	 *            the factory for the turn performer under test
+	 * @param reference
+	 *            the factory for the turn performer that gives the expected
+	 *            outcomes
+	 * @param threads
+	 *            the number of threads
+	 * @throws IllegalArgumentException
+	 *             if either factory is {@code null}, or if {@code threads < 1}
+	 */
+	public DifferentialFuzzer(TurnPerformerFactory candidate,
+			TurnPerformerFactory reference, int threads)
+			throws IllegalArgumentException {
+		if (candidate == null) {
+			throw new IllegalArgumentException("candidate must not be null");
+		}
+		if (reference == null) {
+			throw new IllegalArgumentException("reference must not be null");
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: "
+					+ threads);
+		}
+		this.candidateFactory = candidate;
+		this.referenceFactory = reference;
+		this.threads = threads;
+	}
+
+	/**
+	 * Checks a single case on the calling thread.
+	 * 
+	 * @param c
+	 *            the case
+	 * @return the outcome of the case for each performer if they disagree,
+	 *         or {@code null} if they agree
+	 * @throws IllegalArgumentException
+	 *             if {@code c == null}, or if its board size differs from
+	 *             this fuzzer's
+	 */
+	public String check(FuzzCase c) throws IllegalArgumentException {
+		if (c == null) {
+			throw new IllegalArgumentException("case must not be null");
+		}
+		if (c.getBoardSize() != boardSize) {
+			throw new IllegalArgumentException("size mismatch: "
+					+ c.getBoardSize() + " != " + boardSize);
+		}
+		return new Checker().check(c);
+	}
+
+	/**
+	 * Generates a case.
+	 * 
+	 * @param index
+	 *            the case number
+	 * @return the case
+	 */
+	public FuzzCase generate(int index) {
+		return generate(new SplitRandom(seed + index));
+	}
+
+	/**
+	 * Gets the side length of the board in each case.
+	 * 
+	 * @return the board size
+	 */
+	public int getBoardSize() {
+		return boardSize;
+	}
+
+	/**
+	 * Gets the largest base-2 exponent of a generated tile value.
+	 * 
+	 * @return the largest exponent
+	 */
+	public int getMaxExponent() {
+		return maxExponent;
+	}
+
+	/**
+	 * Gets the seed from which each case is generated.
+	 * 
+	 * @return the seed of the fuzzer
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Checks the given number of cases and reports the results.
+	 * 
+	 * @param cases
+	 *            the number of cases to check
+	 * @return the report for the run
+	 * @throws IllegalArgumentException
+	 *             if {@code cases} is negative
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the
+	 *             fuzzing threads
+	 * @throws ExecutionException
+	 *             if a fuzzing thread fails outside of a turn performer
+	 */
+	public FuzzReport run(final int cases) throws IllegalArgumentException,
+			InterruptedException, ExecutionException {
+		if (cases < 0) {
+			throw new IllegalArgumentException("cases must not be negative: "
+					+ cases);
+		}
+		final AtomicInteger nextCase = new AtomicInteger();
+		final AtomicInteger mismatches = new AtomicInteger();
+
+		final List<Callable<Integer>> workers = new ArrayList<>(threads);
+		for (int i = 0; i < threads; i++) {
+			workers.add(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					final Checker checker = new Checker();
+					final SplitRandom random = new SplitRandom();
+					int first = -1;
+					int index;
+					while ((index = nextCase.getAndIncrement()) < cases) {
+						random.setSeed(seed + index);
+						if (!checker.agrees(generate(random))) {
+							mismatches.incrementAndGet();
+							if (first < 0) {
+								first = index;
+							}
+						}
+					}
+					return first;
+				}
+			});
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final long start = System.nanoTime();
+		int first = -1;
+		try {
+			for (Future<Integer> result : executor.invokeAll(workers)) {
+				final int index = result.get();
+				if (index >= 0 && (first < 0 || index < first)) {
+					first = index;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		final long elapsed = System.nanoTime() - start;
+
+		if (first < 0) {
+			return new FuzzReport(cases, threads, elapsed, 0, -1, null, null);
+		}
+		final Checker checker = new Checker();
+		final FuzzCase counterexample = checker.shrink(generate(first));
+		return new FuzzReport(cases, threads, elapsed, mismatches.get(),
+				first, counterexample, checker.check(counterexample));
+	}
+
+	/**
+	 * Sets the side length of the board in each case. Both turn performers
+	 * must support boards of this size.
+	 * 
+	 * @param boardSize
+	 *            the new board size
+	 * @throws IllegalArgumentException
+	 *             if the size is not supported by {@link BoardLocation}
+	 */
+	public void setBoardSize(int boardSize) throws IllegalArgumentException {
+		BoardLocation.checkBoardSize(boardSize);
+		this.boardSize = boardSize;
+	}
+
+	/**
+	 * Sets the largest base-2 exponent of a generated tile value. Both turn
+	 * performers must support tiles of value {@code 2^maxExponent}.
+	 * 
+	 * @param maxExponent
+	 *            the new largest exponent
+	 * @throws IllegalArgumentException
+	 *             if the exponent is less than {@code 2} or greater than
+	 *             {@value ArrayBoard#MAX_EXPONENT}
+	 */
+	public void setMaxExponent(int maxExponent)
+			throws IllegalArgumentException {
+		if (maxExponent < 2 || maxExponent > ArrayBoard.MAX_EXPONENT) {
+			throw new IllegalArgumentException("maxExponent out of range: "
+					+ maxExponent);
+		}
+		this.maxExponent = maxExponent;
+	}
+
+	/**
+	 * Sets the seed from which each case is generated.
+	 * 
+	 * @param seed
+	 *            the seed of the fuzzer
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Generates a case, in one of the styles described in the class comment.
+	 * 
+	 * @param random
+	 *            the source of randomness for the case
+	 * @return the case
+	 */
+	private FuzzCase generate(SplitRandom random) {
+		final int cells = boardSize * boardSize;
+		final int winning = Integer
+				.numberOfTrailingZeros(ArrayBoardTurnPerformer.WINNING_VALUE);
+		final int style = random.nextInt(4);
+		final int tiles = style == 1 ? cells : random.nextInt(cells + 1);
+		final int low;
+		final int range;
+		switch (style) {
+		case 0:
+			low = 1;
+			range = maxExponent;
+			break;
+		case 1:
+			low = 1;
+			range = Math.min(maxExponent, 3);
+			break;
+		case 2:
+			low = 1 + random.nextInt(maxExponent - 1);
+			range = 2;
+			break;
+		case 3:
+			low = Math.max(1, Math.min(winning, maxExponent) - 2);
+			range = Math.min(maxExponent, winning) - low + 1;
+			break;
+		default:
+			throw new AssertionError("Unexpected style " + style);
+		}
+
+		final int[] values = new int[cells];
+		for (int i = 0; i < cells; i++) {
+			if (random.nextInt(cells) < tiles) {
+				values[i] = 1 << (low + random.nextInt(range));
+			}
+		}
+		final int score = random.nextInt(4) == 0 ? 0 : random
+				.nextInt(1 << 20);
+		final Direction direction = Direction.values()[random.nextInt(4)];
+		return new FuzzCase(boardSize, values, score, direction,
+				random.nextInt(cells));
+	}
+
+}
@@ -0,0 +1,229 @@
+package j2048.sim;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+
+/**
+ * One test case of a {@link DifferentialFuzzer}: a board, a score, and a move
+ * to make from that position. This class is immutable.
+ * <p>
+ * The case also fixes where the new tile of the turn appears, so that the
+ * outcome of the turn does not depend on the random choices of the turn
+ * performer. Whatever cell the performer picks, the new tile is put in the
+ * empty cell whose rank, in row-major order, is the
+ * {@linkplain #getSpawnChoice() spawn choice} modulo the number of empty
+ * cells, with the value {@code 2}. Whether the game is lost is then decided
+ * from the board, not by the performer, and the source of randomness that
+ * the performer is given is {@linkplain #getRandomSeed() seeded} from the
+ * case, so checking a case again gives the same outcome.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class FuzzCase {
+
+	/**
+	 * The side length of the board.
+	 */
+	private final int boardSize;
+
+	/**
+	 * The value in each cell, in row-major order, or {@code 0} for an empty
+	 * cell.
+	 */
+	private final int[] values;
+
+	/**
+	 * The score before the move.
+	 */
+	private final int score;
+
+	/**
+	 * The direction of the move.
+	 */
+	private final Direction direction;
+
+	/**
+	 * The choice of cell for the new tile.
+	 */
+	private final int spawnChoice;
+
+	/**
+	 * Creates a test case.
+	 * 
+	 * @param boardSize
+	 *            the side length of the board
+	 * @param values
+	 *            the value in each cell, in row-major order, with {@code 0}
+	 *            for an empty cell; the array is copied
+	 * @param score
+	 *            the score before the move
+	 * @param direction
+	 *            the direction of the move
+	 * @param spawnChoice
+	 *            the choice of cell for the new tile, as described in the
+	 *            class comment
+	 * @throws IllegalArgumentException
+	 *             if the board size is not supported by {@link BoardLocation},
+	 *             if {@code values} is {@code null} or does not have one
+	 *             entry per cell, if any value is neither {@code 0} nor a
+	 *             power of two greater than {@code 1}, if the score or the
+	 *             spawn choice is negative, or if {@code direction == null}
+	 */
+	public FuzzCase(int boardSize, int[] values, int score,
+			Direction direction, int spawnChoice)
+			throws IllegalArgumentException {
+		BoardLocation.checkBoardSize(boardSize);
+		if (values == null) {
+			throw new IllegalArgumentException("values must not be null");
+		}
+		if (values.length != boardSize * boardSize) {
+			throw new IllegalArgumentException("expected "
+					+ boardSize * boardSize + " values, got " + values.length);
+		}
+		for (int value : values) {
+			if (value != 0 && (value < 2 || Integer.bitCount(value) != 1)) {
+				throw new IllegalArgumentException("not a tile value: "
+						+ value);
+			}
+		}
+		if (score < 0) {
+			throw new IllegalArgumentException("score must not be negative: "
+					+ score);
+		}
+		if (direction == null) {
+			throw new IllegalArgumentException("direction must not be null");
+		}
+		if (spawnChoice < 0) {
+			throw new IllegalArgumentException(
+					"spawnChoice must not be negative: " + spawnChoice);
+		}
+		this.boardSize = boardSize;
+		this.values = values.clone();
+		this.score = score;
+		this.direction = direction;
+		this.spawnChoice = spawnChoice;
+	}
+
+	/**
+	 * Gets the side length of the board.
+	 * 
+	 * @return the board size
+	 */
+	public int getBoardSize() {
+		return boardSize;
+	}
+
+	/**
+	 * Gets the direction of the move.
+	 * 
+	 * @return the direction
+	 */
+	public Direction getDirection() {
+		return direction;
+	}
+
+	/**
+	 * Gets the seed of the source of randomness given to each turn performer
+	 * on this case. Equal cases have equal seeds, in every run.
+	 * 
+	 * @return the seed
+	 */
+	long getRandomSeed() {
+		long seed = boardSize;
+		for (int value : values) {
+			seed = 31 * seed + value;
+		}
+		seed = 31 * seed + score;
+		seed = 31 * seed + direction.ordinal();
+		return 31 * seed + spawnChoice;
+	}
+
+	/**
+	 * Gets the score before the move.
+	 * 
+	 * @return the score
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Gets the choice of cell for the new tile, as described in the class
+	 * comment.
+	 * 
+	 * @return the spawn choice
+	 */
+	public int getSpawnChoice() {
+		return spawnChoice;
+	}
+
+	/**
+	 * Counts the tiles on the board.
+	 * 
+	 * @return the number of occupied cells
+	 */
+	public int getTileCount() {
+		int count = 0;
+		for (int value : values) {
+			if (value != 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the value in a cell.
+	 * 
+	 * @param index
+	 *            the cell index, as returned by
+	 *            {@link BoardLocation#getIndex()}
+	 * @return the value of the tile in that cell, or {@code 0} if the cell is
+	 *         empty
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is out of range
+	 */
+	public int getValue(int index) throws IndexOutOfBoundsException {
+		return values[index];
+	}
+
+	/**
+	 * Gets the value in every cell.
+	 * 
+	 * @return a new array of the value in each cell, in row-major order
+	 */
+	public int[] getValues() {
+		return values.clone();
+	}
+
+	/**
+	 * Creates a copy of this case with a different board.
+	 * 
+	 * @param values
+	 *            the value in each cell of the new board
+	 * @return the new case
+	 * @throws IllegalArgumentException
+	 *             if the values are not valid, as in the constructor
+	 */
+	public FuzzCase withValues(int[] values) throws IllegalArgumentException {
+		return new FuzzCase(boardSize, values, score, direction, spawnChoice);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%s from score %d, spawn choice %d:",
+				direction, score, spawnChoice));
+		for (int y = 0; y < boardSize; y++) {
+			sb.append(String.format("%n "));
+			for (int x = 0; x < boardSize; x++) {
+				final int value = values[y * boardSize + x];
+				sb.append(value == 0 ? String.format("%6s", ".") : String
+						.format("%6d", value));
+			}
+		}
+		return sb.toString();
+	}
+
+}
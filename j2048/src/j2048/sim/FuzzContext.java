@@ -0,0 +1,264 @@
+package j2048.sim;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.GameModel;
+import j2048.LocationSet;
+import j2048.Tile;
+import j2048.TileGameContext;
+import j2048.TileGrid;
+import j2048.TurnBatch;
+
+import java.util.Random;
+
+/**
+ * A context that passes everything through to a {@link GameModel}, and
+ * records what a turn performer does with it during one turn of a
+ * {@link DifferentialFuzzer}: whether it won or lost the game, and how many
+ * new tiles it added.
+ * <p>
+ * Each new tile is checked, and then put where the {@link FuzzCase} says with
+ * the value {@code 2}, whatever the performer chose. This makes the board
+ * after the turn independent of the performer's random choices, so the boards
+ * left by two performers can be compared cell by cell. For the same reason,
+ * the performer's calls to {@link #loseGame()} are ignored: a performer
+ * decides them from its own new tile, not the one put on the board. Instead,
+ * {@link #end()} loses the game if the board left by the turn has no
+ * possible move.
+ * 
+ * @author William Chargin
+ * 
+ */
+class FuzzContext implements TileGameContext {
+
+	/**
+	 * The model being played on.
+	 */
+	private final GameModel model;
+
+	/**
+	 * The choice of cell for new tiles, as in
+	 * {@link FuzzCase#getSpawnChoice()}.
+	 */
+	private int spawnChoice;
+
+	/**
+	 * The number of new tiles added this turn.
+	 */
+	private int spawns;
+
+	/**
+	 * A description of the first invalid new tile this turn, or {@code null}
+	 * if there was none.
+	 */
+	private String badSpawn;
+
+	/**
+	 * Whether the game was won this turn.
+	 */
+	private boolean won;
+
+	/**
+	 * Whether the game was lost this turn.
+	 */
+	private boolean lost;
+
+	/**
+	 * Creates a context for the given model.
+	 * 
+	 * @param model
+	 *            the model being played on
+	 */
+	FuzzContext(GameModel model) {
+		this.model = model;
+	}
+
+	@Override
+	public void addTile(Tile tile, BoardLocation location)
+			throws IllegalArgumentException {
+		if (tile != null && location != null
+				&& model.getGrid().find(tile) == null) {
+			spawn(tile, location);
+		} else {
+			model.addTile(tile, location);
+		}
+	}
+
+	/**
+	 * Starts recording a new turn.
+	 * 
+	 * @param spawnChoice
+	 *            the choice of cell for new tiles this turn
+	 */
+	void begin(int spawnChoice) {
+		this.spawnChoice = spawnChoice;
+		spawns = 0;
+		badSpawn = null;
+		won = false;
+		lost = false;
+	}
+
+	@Override
+	public void commitTurn(TurnBatch batch) throws IllegalArgumentException {
+		if (batch == null) {
+			throw new IllegalArgumentException("batch must not be null");
+		}
+		// The new tiles go in after the moves, so that their cells can be
+		// checked against the board as the moves leave it.
+		final TurnBatch moves = new TurnBatch();
+		for (TurnBatch.Step step : batch.getSteps()) {
+			switch (step.getKind()) {
+			case MOVE:
+				moves.move(step.getTile(), step.getDirection(),
+						step.getCount());
+				break;
+			case MERGE:
+				moves.merge(step.getTarget(), step.getTile(),
+						step.getDirection(), step.getCount(),
+						step.getNewValue());
+				break;
+			case SPAWN:
+				break;
+			default:
+				throw new AssertionError("Unexpected step " + step.getKind());
+			}
+		}
+		moves.addPoints(batch.getPoints());
+		if (batch.isWon()) {
+			moves.win();
+			won = true;
+		}
+		model.commitTurn(moves);
+		for (TurnBatch.Step step : batch.getSteps()) {
+			if (step.getKind() == TurnBatch.Kind.SPAWN) {
+				spawn(step.getTile(), step.getLocation());
+			}
+		}
+	}
+
+	/**
+	 * Finishes recording the turn, and loses the game if a new tile was added
+	 * and left no empty cell and no possible merge.
+	 */
+	void end() {
+		if (spawns > 0 && !model.getGrid().canMove()) {
+			lost = true;
+			model.loseGame();
+		}
+	}
+
+	/**
+	 * Gets a description of the first invalid new tile this turn.
+	 * 
+	 * @return the description, or {@code null} if every new tile was valid
+	 */
+	String getBadSpawn() {
+		return badSpawn;
+	}
+
+	@Override
+	public TileGrid getGrid() {
+		return model.getGrid();
+	}
+
+	@Override
+	public Random getRandom() {
+		return model.getRandom();
+	}
+
+	@Override
+	public int getScore() {
+		return model.getScore();
+	}
+
+	/**
+	 * Gets the number of new tiles added this turn.
+	 * 
+	 * @return the spawn count
+	 */
+	int getSpawns() {
+		return spawns;
+	}
+
+	@Override
+	public int incrementScoreBy(int value) {
+		return model.incrementScoreBy(value);
+	}
+
+	/**
+	 * Determines whether the game was lost this turn.
+	 * 
+	 * @return {@code true} if the performer lost the game this turn
+	 */
+	boolean isLost() {
+		return lost;
+	}
+
+	/**
+	 * Determines whether the game was won this turn.
+	 * 
+	 * @return {@code true} if the performer won the game this turn
+	 */
+	boolean isWon() {
+		return won;
+	}
+
+	@Override
+	public void loseGame() {
+		// Ignored; see the class comment.
+	}
+
+	@Override
+	public void mergeTiles(Tile target, Tile mover, Direction direction,
+			int movementSteps, int newValue) throws IllegalArgumentException {
+		model.mergeTiles(target, mover, direction, movementSteps, newValue);
+	}
+
+	@Override
+	public void moveTile(Tile tile, Direction direction, int count)
+			throws IllegalArgumentException {
+		model.moveTile(tile, direction, count);
+	}
+
+	@Override
+	public void setScore(int score) throws IllegalArgumentException {
+		model.setScore(score);
+	}
+
+	@Override
+	public void winGame() {
+		won = true;
+		model.winGame();
+	}
+
+	/**
+	 * Checks a new tile, and adds it in the cell given by the spawn choice
+	 * with the value {@code 2}.
+	 * 
+	 * @param tile
+	 *            the new tile
+	 * @param location
+	 *            the cell that the performer chose for the tile
+	 */
+	private void spawn(Tile tile, BoardLocation location) {
+		spawns++;
+		final TileGrid grid = model.getGrid();
+		if (badSpawn == null) {
+			if (grid.at(location) != null) {
+				badSpawn = "new tile on occupied cell " + location;
+			} else if (tile.getValue() != 2 && tile.getValue() != 4) {
+				badSpawn = "new tile with value " + tile.getValue();
+			}
+		}
+		final LocationSet free = grid.getUnoccupiedLocations();
+		if (free.isEmpty()) {
+			if (badSpawn == null) {
+				badSpawn = "new tile on a full board";
+			}
+			return;
+		}
+		tile.setValue(2);
+		model.addTile(tile, free.select(spawnChoice % free.size()));
+	}
+
+}
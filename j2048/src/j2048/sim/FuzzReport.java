@@ -0,0 +1,178 @@
+package j2048.sim;
+
+/**
+ * The results of a {@link DifferentialFuzzer} run. This class is immutable.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class FuzzReport {
+
+	/**
+	 * The number of cases checked.
+	 */
+	private final int cases;
+
+	/**
+	 * The number of threads that checked cases.
+	 */
+	private final int threads;
+
+	/**
+	 * The wall-clock duration of the run, not counting shrinking, in
+	 * nanoseconds.
+	 */
+	private final long elapsedNanos;
+
+	/**
+	 * The number of cases on which the performers disagreed.
+	 */
+	private final int mismatches;
+
+	/**
+	 * The number of the first case on which the performers disagreed, or
+	 * {@code -1} if there was none.
+	 */
+	private final int firstMismatch;
+
+	/**
+	 * The first case on which the performers disagreed, shrunk, or
+	 * {@code null} if there was none.
+	 */
+	private final FuzzCase counterexample;
+
+	/**
+	 * How the performers disagreed on the counterexample, or {@code null} if
+	 * there was none.
+	 */
+	private final String difference;
+
+	/**
+	 * Creates a report from the raw results of a run.
+	 * 
+	 * @param cases
+	 *            the number of cases checked
+	 * @param threads
+	 *            the number of threads that checked cases
+	 * @param elapsedNanos
+	 *            the wall-clock duration of the run, in nanoseconds
+	 * @param mismatches
+	 *            the number of cases on which the performers disagreed
+	 * @param firstMismatch
+	 *            the number of the first such case, or {@code -1}
+	 * @param counterexample
+	 *            the first such case, shrunk, or {@code null}
+	 * @param difference
+	 *            how the performers disagreed on the counterexample, or
+	 *            {@code null}
+	 */
+	FuzzReport(int cases, int threads, long elapsedNanos, int mismatches,
+			int firstMismatch, FuzzCase counterexample, String difference) {
+		this.cases = cases;
+		this.threads = threads;
+		this.elapsedNanos = elapsedNanos;
+		this.mismatches = mismatches;
+		this.firstMismatch = firstMismatch;
+		this.counterexample = counterexample;
+		this.difference = difference;
+	}
+
+	/**
+	 * Gets the number of cases checked.
+	 * 
+	 * @return the case count
+	 */
+	public int getCases() {
+		return cases;
+	}
+
+	/**
+	 * Gets the throughput of the run.
+	 * 
+	 * @return the number of cases checked per second of wall-clock time
+	 */
+	public double getCasesPerSecond() {
+		return cases / (elapsedNanos / 1e9);
+	}
+
+	/**
+	 * Gets a minimal case on which the performers disagree. This is the
+	 * first such case of the run, shrunk by emptying cells, halving tiles,
+	 * and zeroing the score and the spawn choice for as long as the
+	 * performers still disagree.
+	 * 
+	 * @return the counterexample, or {@code null} if the performers agreed
+	 *         on every case
+	 */
+	public FuzzCase getCounterexample() {
+		return counterexample;
+	}
+
+	/**
+	 * Describes how the performers disagree on the
+	 * {@linkplain #getCounterexample() counterexample}.
+	 * 
+	 * @return the outcome of the case for each performer, or {@code null} if
+	 *         the performers agreed on every case
+	 */
+	public String getDifference() {
+		return difference;
+	}
+
+	/**
+	 * Gets the wall-clock duration of the run, not counting the time taken to
+	 * shrink the counterexample.
+	 * 
+	 * @return the duration, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Gets the number of the first case on which the performers disagreed.
+	 * Together with the fuzzer's seed, this identifies the case before it
+	 * was shrunk.
+	 * 
+	 * @return the case number, or {@code -1} if the performers agreed on
+	 *         every case
+	 */
+	public int getFirstMismatch() {
+		return firstMismatch;
+	}
+
+	/**
+	 * Gets the number of cases on which the performers disagreed.
+	 * 
+	 * @return the mismatch count
+	 */
+	public int getMismatches() {
+		return mismatches;
+	}
+
+	/**
+	 * Gets the number of threads that checked cases.
+	 * 
+	 * @return the thread count
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d cases on %d threads in %.3f s%n", cases,
+				threads, elapsedNanos / 1e9));
+		sb.append(String.format("%.1f cases/s%n", getCasesPerSecond()));
+		if (counterexample == null) {
+			sb.append("no mismatches");
+		} else {
+			sb.append(String.format(
+					"%d mismatches; case %d shrinks to %s%n%s", mismatches,
+					firstMismatch, counterexample, difference));
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,214 @@
+package j2048.sim;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The results of a {@link BatchSimulation} run. This class is immutable.
+ * 
+ * @author William Chargin
+ * 
+ */
+public final class SimulationReport {
+
+	/**
+	 * The number of threads that played games.
+	 */
+	private final int threads;
+
+	/**
+	 * The wall-clock duration of the run, in nanoseconds.
+	 */
+	private final long elapsedNanos;
+
+	/**
+	 * The total number of accepted turns over all games.
+	 */
+	private final long turns;
+
+	/**
+	 * The number of games that were abandoned because the turn performer
+	 * threw an exception.
+	 */
+	private final int failedGames;
+
+	/**
+	 * The final score of each completed game, in ascending order.
+	 */
+	private final int[] scores;
+
+	/**
+	 * The number of completed games that ended with each highest tile value.
+	 */
+	private final SortedMap<Integer, Integer> maxTileCounts;
+
+	/**
+	 * Creates a report from the raw results of a run.
+	 * 
+	 * @param threads
+	 *            the number of threads that played games
+	 * @param elapsedNanos
+	 *            the wall-clock duration of the run, in nanoseconds
+	 * @param turns
+	 *            the total number of accepted turns
+	 * @param failedGames
+	 *            the number of games abandoned because of an exception
+	 * @param scores
+	 *            the final score of each completed game
+	 * @param maxTiles
+	 *            the highest tile value of each completed game
+	 */
+	SimulationReport(int threads, long elapsedNanos, long turns,
+			int failedGames, int[] scores, int[] maxTiles) {
+		this.threads = threads;
+		this.elapsedNanos = elapsedNanos;
+		this.turns = turns;
+		this.failedGames = failedGames;
+		this.scores = scores.clone();
+		Arrays.sort(this.scores);
+		final SortedMap<Integer, Integer> counts = new TreeMap<>();
+		for (int tile : maxTiles) {
+			final Integer count = counts.get(tile);
+			counts.put(tile, count == null ? 1 : count + 1);
+		}
+		this.maxTileCounts = Collections.unmodifiableSortedMap(counts);
+	}
+
+	/**
+	 * Gets the wall-clock duration of the run.
+	 * 
+	 * @return the duration, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Gets the number of games that were abandoned because the turn
+	 * performer threw an exception. These games are not included in any other
+	 * statistic except the elapsed time.
+	 * 
+	 * @return the number of failed games
+	 */
+	public int getFailedGames() {
+		return failedGames;
+	}
+
+	/**
+	 * Gets the number of games that were played to completion.
+	 * 
+	 * @return the number of completed games
+	 */
+	public int getGames() {
+		return scores.length;
+	}
+
+	/**
+	 * Gets the throughput of the run in completed games.
+	 * 
+	 * @return the number of completed games per second of wall-clock time
+	 */
+	public double getGamesPerSecond() {
+		return scores.length / (elapsedNanos / 1e9);
+	}
+
+	/**
+	 * Gets the distribution of the highest tile reached in each game.
+	 * 
+	 * @return an unmodifiable map from tile value to the number of games whose
+	 *         highest tile had that value, in ascending order of tile value
+	 */
+	public SortedMap<Integer, Integer> getMaxTileCounts() {
+		return maxTileCounts;
+	}
+
+	/**
+	 * Gets the mean final score.
+	 * 
+	 * @return the mean score, or {@code 0} if no games were completed
+	 */
+	public double getMeanScore() {
+		if (scores.length == 0) {
+			return 0;
+		}
+		long total = 0;
+		for (int score : scores) {
+			total += score;
+		}
+		return (double) total / scores.length;
+	}
+
+	/**
+	 * Gets a percentile of the final scores, using the nearest-rank method.
+	 * 
+	 * @param percentile
+	 *            the percentile, between {@code 0} and {@code 100} inclusive
+	 * @return the score at that percentile, or {@code 0} if no games were
+	 *         completed
+	 * @throws IllegalArgumentException
+	 *             if the percentile is out of range
+	 */
+	public int getScorePercentile(double percentile)
+			throws IllegalArgumentException {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile out of range: "
+					+ percentile);
+		}
+		if (scores.length == 0) {
+			return 0;
+		}
+		final int rank = (int) Math.ceil(percentile / 100 * scores.length);
+		return scores[Math.max(rank - 1, 0)];
+	}
+
+	/**
+	 * Gets the number of threads that played games.
+	 * 
+	 * @return the thread count
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Gets the total number of accepted turns over all completed games.
+	 * 
+	 * @return the turn count
+	 */
+	public long getTurns() {
+		return turns;
+	}
+
+	/**
+	 * Gets the throughput of the run in accepted turns.
+	 * 
+	 * @return the number of turns per second of wall-clock time
+	 */
+	public double getTurnsPerSecond() {
+		return turns / (elapsedNanos / 1e9);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d games (%d failed) on %d threads in %.3f s%n",
+				getGames(), failedGames, threads, elapsedNanos / 1e9));
+		sb.append(String.format("%.1f games/s, %.1f turns/s%n",
+				getGamesPerSecond(), getTurnsPerSecond()));
+		sb.append(String.format(
+				"score: min %d, p50 %d, p90 %d, p99 %d, max %d, mean %.1f%n",
+				getScorePercentile(0), getScorePercentile(50),
+				getScorePercentile(90), getScorePercentile(99),
+				getScorePercentile(100), getMeanScore()));
+		sb.append("max tile:");
+		for (Map.Entry<Integer, Integer> entry : maxTileCounts.entrySet()) {
+			sb.append(String.format("%n  %6d: %d (%.2f%%)", entry.getKey(),
+					entry.getValue(), 100.0 * entry.getValue() / getGames()));
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,21 @@
+package j2048.sim;
+
+import j2048.TurnPerformer;
+
+/**
+ * A source of {@link TurnPerformer} instances. Turn performers may keep
+ * per-game state, so each simulation thread asks the factory for its own.
+ * 
+ * @author William Chargin
+ * 
+ */
+public interface TurnPerformerFactory {
+
+	/**
+	 * Creates a new turn performer.
+	 * 
+	 * @return a turn performer that is not shared with any other caller
+	 */
+	public TurnPerformer create();
+
+}
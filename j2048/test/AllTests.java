@@ -3,7 +3,21 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ j2048.BoardLocationTest.class, j2048.TileGridTest.class })
+@SuiteClasses({ j2048.BoardLocationTest.class, j2048.GameModelTest.class,
+		j2048.LocationSetTest.class, j2048.SplitRandomTest.class,
+		j2048.TileGridTest.class, j2048.TurnBatchTest.class,
+		j2048.ai.ExpectimaxAdvisorTest.class,
+		j2048.ai.MonteCarloAdvisorTest.class,
+		j2048.ai.TranspositionTableTest.class,
+		j2048.engine.ArrayBoardTest.class, j2048.engine.BitboardTest.class,
+		j2048.jgamegui.GridPanelTest.class,
+		j2048.jgamegui.RollingHistogramTest.class,
+		j2048.jgamegui.SaveFileTest.class,
+		j2048.metrics.MetricsTest.class,
+		j2048.record.GameRecordTest.class,
+		j2048.record.ReplayCursorTest.class,
+		j2048.server.GameServerTest.class,
+		j2048.sim.DifferentialFuzzerTest.class })
 public class AllTests {
 
 }
@@ -2,9 +2,11 @@ package j2048;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.Test;
@@ -103,6 +105,21 @@ public class BoardLocationTest {
 		}
 	}
 
+	@Test
+	public void testGetIndex() {
+		final int cells = BoardLocation.BOARD_SIZE * BoardLocation.BOARD_SIZE;
+		final Set<Integer> seen = new HashSet<>();
+		for (int i = 0; i < BoardLocation.BOARD_SIZE; i++) {
+			for (int j = 0; j < BoardLocation.BOARD_SIZE; j++) {
+				final BoardLocation loc = new BoardLocation(i, j);
+				final int index = loc.getIndex();
+				assertTrue(index >= 0 && index < cells);
+				assertTrue(seen.add(index));
+				assertEquals(loc, BoardLocation.fromIndex(index));
+			}
+		}
+	}
+
 	@Test
 	public void testGetXY() {
 		for (int i = 0; i < BoardLocation.BOARD_SIZE; i++) {
@@ -164,6 +181,36 @@ public class BoardLocationTest {
 		}
 	}
 
+	@Test
+	public void testOf() {
+		final int size = BoardLocation.BOARD_SIZE;
+		final int range = 2 * size;
+		for (int i = -range; i < range; i++) {
+			for (int j = -range; j < range; j++) {
+				if (i >= 0 && j >= 0 && i < size && j < size) {
+					final BoardLocation loc = BoardLocation.of(i, j);
+					assertSame(loc, BoardLocation.of(i, j));
+					assertEquals(new BoardLocation(i, j), loc);
+					for (Direction dir : Direction.values()) {
+						final BoardLocation adjacent = loc
+								.getAdjacentLocation(dir);
+						if (adjacent != null) {
+							assertSame(BoardLocation.of(adjacent.getX(),
+									adjacent.getY()), adjacent);
+						}
+					}
+				} else {
+					try {
+						fail("Got out-of-range location "
+								+ BoardLocation.of(i, j));
+					} catch (IllegalArgumentException e) {
+						// Test passed.
+					}
+				}
+			}
+		}
+	}
+
 	@Test
 	public void testHashCode() {
 		for (int i = 0; i < BoardLocation.BOARD_SIZE; i++) {
@@ -0,0 +1,270 @@
+package j2048;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import j2048.engine.BitboardTurnPerformer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GameModelTest {
+
+	private static Tile tile(int value) {
+		final Tile tile = new Tile();
+		tile.setValue(value);
+		return tile;
+	}
+
+	@Test
+	public void testEvents() {
+		final GameModel model = new GameModel();
+		final GameEventQueue queue = new GameEventQueue();
+		final Tile a = tile(2), b = tile(2);
+		model.addTile(a, BoardLocation.of(1, 0));
+		model.addGameListener(queue);
+		model.addTile(b, BoardLocation.of(3, 0));
+		model.commitTurn(new TurnBatch().move(a, Direction.WEST, 1)
+				.merge(a, b, Direction.WEST, 3, 4).addPoints(4).win());
+		model.reset();
+
+		List<GameEvent> batch = queue.poll();
+		assertEquals(1, batch.size());
+		assertEquals(GameEvent.Type.SPAWNED, batch.get(0).getType());
+		assertSame(b, batch.get(0).getTile());
+
+		batch = queue.poll();
+		assertEquals(4, batch.size());
+		assertEquals(GameEvent.Type.MOVED, batch.get(0).getType());
+		assertEquals(BoardLocation.of(1, 0), batch.get(0).getFrom());
+		assertEquals(BoardLocation.of(0, 0), batch.get(0).getTo());
+		final GameEvent merge = batch.get(1);
+		assertEquals(GameEvent.Type.MERGED, merge.getType());
+		assertSame(b, merge.getTile());
+		assertSame(a, merge.getTarget());
+		assertEquals(4, merge.getValue());
+		assertEquals(GameEvent.Type.SCORE_CHANGED, batch.get(2).getType());
+		assertEquals(4, batch.get(2).getScore());
+		assertEquals(GameEvent.Type.WON, batch.get(3).getType());
+
+		batch = queue.poll();
+		assertEquals(GameEvent.Type.REMOVED, batch.get(0).getType());
+		assertSame(b, batch.get(0).getTile());
+		assertEquals(0, batch.get(1).getScore());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testTurnEvents() {
+		final GameModel model = new GameModel();
+		final Tile a = tile(2), b = tile(2), c = tile(4);
+		model.addTile(a, BoardLocation.of(1, 0));
+		model.addTile(b, BoardLocation.of(3, 0));
+		model.addTile(c, BoardLocation.of(2, 2));
+		final List<List<GameEvent>> batches = new ArrayList<>();
+		model.addGameListener(new GameListener() {
+			@Override
+			public void gameChanged(List<GameEvent> events) {
+				batches.add(events);
+			}
+		});
+
+		// A turn made one call at a time, as Logic does, is one batch.
+		model.beginTurn();
+		model.moveTile(a, Direction.WEST, 1);
+		model.mergeTiles(a, b, Direction.WEST, 3, 4);
+		model.beginTurn();
+		model.moveTile(c, Direction.WEST, 2);
+		model.endTurn();
+		model.incrementScoreBy(4);
+		assertTrue(batches.isEmpty());
+		model.endTurn();
+		assertEquals(1, batches.size());
+		final List<GameEvent> batch = batches.get(0);
+		assertEquals(4, batch.size());
+		assertEquals(GameEvent.Type.MOVED, batch.get(0).getType());
+		assertEquals(GameEvent.Type.MERGED, batch.get(1).getType());
+		assertEquals(GameEvent.Type.MOVED, batch.get(2).getType());
+		assertEquals(GameEvent.Type.SCORE_CHANGED, batch.get(3).getType());
+
+		// An empty turn sends nothing, and outside a turn each call is a
+		// batch of its own.
+		model.beginTurn();
+		model.endTurn();
+		model.incrementScoreBy(4);
+		assertEquals(2, batches.size());
+	}
+
+	@Test
+	public void testValueChanged() {
+		final GameModel model = new GameModel();
+		final GameEventQueue queue = new GameEventQueue();
+		final Tile a = tile(2), b = tile(2), c = tile(8);
+		model.addTile(a, BoardLocation.of(0, 0));
+		model.addTile(b, BoardLocation.of(1, 0));
+		model.addTile(c, BoardLocation.of(3, 3));
+		model.addGameListener(queue);
+
+		c.setValue(16);
+		List<GameEvent> batch = queue.poll();
+		assertEquals(1, batch.size());
+		assertEquals(GameEvent.Type.VALUE_CHANGED, batch.get(0).getType());
+		assertSame(c, batch.get(0).getTile());
+		assertEquals(BoardLocation.of(3, 3), batch.get(0).getTo());
+		assertEquals(16, batch.get(0).getValue());
+
+		// A merge is reported only as a merge, and tiles that have left the
+		// grid are no longer followed.
+		model.mergeTiles(a, b, Direction.WEST, 1, 4);
+		batch = queue.poll();
+		assertEquals(1, batch.size());
+		assertEquals(GameEvent.Type.MERGED, batch.get(0).getType());
+		a.setValue(64);
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testEndTurnWithoutBegin() {
+		new GameModel().endTurn();
+	}
+
+	@Test
+	public void testMergeTiles() {
+		final GameModel model = new GameModel();
+		final Tile target = tile(2), mover = tile(2);
+		model.addTile(target, new BoardLocation(0, 0));
+		model.addTile(mover, new BoardLocation(3, 0));
+		model.mergeTiles(target, mover, Direction.WEST, 3, 4);
+		assertSame(mover, model.getGrid().at(new BoardLocation(0, 0)));
+		assertEquals(4, mover.getValue());
+		assertNull(model.getGrid().find(target));
+		assertEquals(1, model.getGrid().getAllOccupiedLocations().size());
+	}
+
+	@Test
+	public void testMoveTooFar() {
+		final GameModel model = new GameModel();
+		final Tile t = tile(2);
+		final BoardLocation loc = new BoardLocation(1, 1);
+		model.addTile(t, loc);
+		try {
+			model.moveTile(t, Direction.NORTH, 2);
+			fail("Moving off the board did not throw an exception!");
+		} catch (IllegalArgumentException e) {
+			// good
+		}
+		assertEquals(loc, model.getGrid().find(t));
+	}
+
+	@Test
+	public void testPlayToCompletion() {
+		final GameModel model = new GameModel();
+		final TurnPerformer performer = new BitboardTurnPerformer(new Random(
+				2048));
+		model.addTile(tile(2), new BoardLocation(0, 0));
+		final Direction[] directions = Direction.values();
+		int rejected = 0;
+		for (int turn = 0; !model.isLost(); turn++) {
+			if (performer.turn(directions[turn % 4], model)) {
+				rejected = 0;
+			} else {
+				assertTrue("All directions rejected before a loss",
+						++rejected < 4);
+			}
+		}
+		assertTrue(model.getScore() > 0);
+		assertEquals(0, model.getGrid().getAllUnoccupiedLocations().size());
+	}
+
+	@Test
+	public void testReset() {
+		final GameModel model = new GameModel();
+		model.addTile(tile(2), new BoardLocation(2, 3));
+		model.incrementScoreBy(4);
+		model.winGame();
+		model.loseGame();
+		model.reset();
+		assertEquals(0, model.getScore());
+		assertFalse(model.isWon());
+		assertFalse(model.isLost());
+		assertEquals(0, model.getGrid().getAllOccupiedLocations().size());
+	}
+
+	@Test
+	public void testSeed() {
+		// The same seed and moves give the same game, and reset draws the
+		// next seed from the game, so the second games match too.
+		final GameModel a = new GameModel(4, 99), b = new GameModel(4, 99);
+		for (int game = 0; game < 2; game++) {
+			assertEquals(a.getSeed(), b.getSeed());
+			for (GameModel model : new GameModel[] { a, b }) {
+				model.addTile(tile(2), new BoardLocation(0, 0));
+				final TurnPerformer performer = new BitboardTurnPerformer();
+				for (int turn = 0; !model.isLost() && turn < 1000; turn++) {
+					performer.turn(Direction.values()[turn % 4], model);
+				}
+			}
+			assertEquals(a.getScore(), b.getScore());
+			for (BoardLocation loc : LocationSet.all(4)) {
+				final Tile ta = a.getGrid().at(loc), tb = b.getGrid().at(loc);
+				assertEquals(ta == null ? 0 : ta.getValue(), tb == null ? 0
+						: tb.getValue());
+			}
+			a.reset();
+			b.reset();
+		}
+		a.reset(7);
+		assertEquals(7, a.getSeed());
+		assertEquals(new SplitRandom(7).nextLong(), a.getRandom().nextLong());
+	}
+
+	@Test
+	public void testSnapshot() throws IOException {
+		final GameModel a = new GameModel(4, 5);
+		a.addTile(tile(2), new BoardLocation(0, 0));
+		final TurnPerformer performer = new BitboardTurnPerformer();
+		for (int turn = 0; turn < 100; turn++) {
+			performer.turn(Direction.values()[turn % 4], a);
+		}
+		final GameSnapshot snapshot = GameSnapshot.fromByteArray(a
+				.snapshot().toByteArray());
+		assertEquals(a.getScore(), snapshot.getScore());
+		assertEquals(a.getSeed(), snapshot.getSeed());
+
+		final GameModel b = new GameModel(4);
+		b.addTile(tile(4), new BoardLocation(3, 3));
+		final GameEventQueue queue = new GameEventQueue();
+		b.addGameListener(queue);
+		b.restore(snapshot);
+		assertEquals(1, queue.size());
+		assertEquals(a.getSeed(), b.getSeed());
+
+		// The restored game continues exactly as the original.
+		for (int turn = 0; turn < 100; turn++) {
+			final Direction direction = Direction.values()[turn % 3];
+			assertEquals(performer.turn(direction, a),
+					performer.turn(direction, b));
+		}
+		assertEquals(a.getScore(), b.getScore());
+		assertEquals(a.isLost(), b.isLost());
+		for (BoardLocation loc : LocationSet.all(4)) {
+			final Tile ta = a.getGrid().at(loc), tb = b.getGrid().at(loc);
+			assertEquals(ta == null ? 0 : ta.getValue(), tb == null ? 0 : tb
+					.getValue());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetNegativeScore() {
+		new GameModel().setScore(-1);
+	}
+
+}
@@ -0,0 +1,111 @@
+package j2048;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LocationSetTest {
+
+	/**
+	 * Creates a random set on the given board, along with a reference copy.
+	 */
+	private static LocationSet randomSet(Random r, int size,
+			Set<BoardLocation> reference) {
+		LocationSet set = LocationSet.empty(size);
+		for (int i = 0; i < size * size; i++) {
+			if (r.nextBoolean()) {
+				final BoardLocation loc = BoardLocation.fromIndex(i, size);
+				set = set.with(loc);
+				reference.add(loc);
+			}
+		}
+		return set;
+	}
+
+	@Test
+	public void testAll() {
+		final int max = BoardLocation.MAX_BOARD_SIZE;
+		for (int size = BoardLocation.MIN_BOARD_SIZE; size <= max; size++) {
+			final LocationSet all = LocationSet.all(size);
+			assertEquals(size * size, all.size());
+			assertTrue(all.complement().isEmpty());
+			assertFalse(all.containsIndex(size * size));
+		}
+	}
+
+	@Test
+	public void testIteration() {
+		final Random r = new Random(8);
+		for (int size : new int[] { 4, 9, 16 }) {
+			final Set<BoardLocation> reference = new HashSet<>();
+			final LocationSet set = randomSet(r, size, reference);
+			assertEquals(reference, set);
+			assertEquals(set, reference);
+			assertEquals(reference.hashCode(), set.hashCode());
+
+			final List<BoardLocation> iterated = new ArrayList<>(set);
+			int previous = -1;
+			for (int i = 0; i < iterated.size(); i++) {
+				final BoardLocation loc = iterated.get(i);
+				assertSame(BoardLocation.fromIndex(loc.getIndex(), size), loc);
+				assertTrue(loc.getIndex() > previous);
+				assertSame(loc, set.select(i));
+				assertEquals(loc.getIndex(), set.nextIndex(previous + 1));
+				previous = loc.getIndex();
+			}
+			assertEquals(-1, set.nextIndex(previous + 1));
+		}
+	}
+
+	@Test
+	public void testSetOperations() {
+		final Random r = new Random(2048);
+		for (int size : new int[] { 3, 4, 12 }) {
+			final Set<BoardLocation> a = new HashSet<>();
+			final Set<BoardLocation> b = new HashSet<>();
+			final LocationSet setA = randomSet(r, size, a);
+			final LocationSet setB = randomSet(r, size, b);
+
+			final Set<BoardLocation> union = new HashSet<>(a);
+			union.addAll(b);
+			assertEquals(union, setA.union(setB));
+
+			final Set<BoardLocation> intersection = new HashSet<>(a);
+			intersection.retainAll(b);
+			assertEquals(intersection, setA.intersection(setB));
+
+			assertEquals(size * size, setA.size() + setA.complement().size());
+			assertTrue(setA.intersection(setA.complement()).isEmpty());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSelectOutOfRange() {
+		LocationSet.empty(4).with(BoardLocation.of(1, 1)).select(1);
+	}
+
+	@Test
+	public void testWithWithout() {
+		final BoardLocation loc = BoardLocation.of(2, 3);
+		final LocationSet set = LocationSet.empty(4).with(loc);
+		assertTrue(set.contains(loc));
+		assertFalse(set.contains(BoardLocation.of(2, 3, 5)));
+		assertSame(set, set.with(loc));
+		assertTrue(set.without(loc).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnionWrongSize() {
+		LocationSet.empty(4).union(LocationSet.empty(5));
+	}
+
+}
@@ -0,0 +1,64 @@
+package j2048;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SplitRandomTest {
+
+	@Test
+	public void testKnownValues() {
+		// The same values as java.util.SplittableRandom with seed 0.
+		final SplitRandom random = new SplitRandom(0);
+		assertEquals(0xe220a8397b1dcdafL, random.nextLong());
+		assertEquals(1660418793, random.nextInt());
+		assertEquals(37, random.nextInt(100));
+	}
+
+	@Test
+	public void testNextIntBound() {
+		final SplitRandom random = new SplitRandom(1);
+		final int[] counts = new int[10];
+		for (int i = 0; i < 100000; i++) {
+			counts[random.nextInt(10)]++;
+		}
+		for (int count : counts) {
+			assertTrue(count > 9000 && count < 11000);
+		}
+		for (int i = 0; i < 1000; i++) {
+			final int r = random.nextInt(16);
+			assertTrue(r >= 0 && r < 16);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNextIntZero() {
+		new SplitRandom().nextInt(0);
+	}
+
+	@Test
+	public void testSetSeed() {
+		final SplitRandom a = new SplitRandom(5);
+		a.split();
+		a.nextDouble();
+		a.setSeed(42);
+		final SplitRandom b = new SplitRandom(42);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(b.nextLong(), a.nextLong());
+		}
+	}
+
+	@Test
+	public void testSplit() {
+		final SplitRandom a = new SplitRandom(3), b = new SplitRandom(3);
+		final SplitRandom sa = a.split(), sb = b.split();
+		for (int i = 0; i < 100; i++) {
+			assertEquals(sb.nextLong(), sa.nextLong());
+			assertEquals(b.nextLong(), a.nextLong());
+		}
+		assertNotEquals(a.nextLong(), sa.nextLong());
+	}
+
+}
@@ -1,8 +1,14 @@
 package j2048;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -18,6 +24,29 @@ public class TileGridTest {
 		new TileGrid().at(null);
 	}
 
+	@Test
+	public void testCanMove() {
+		final TileGrid grid = new TileGrid(2);
+		assertTrue(grid.canMove());
+		final int[] values = { 2, 4, 8, 2 };
+		final Tile[] tiles = new Tile[values.length];
+		for (int i = 0; i < values.length; i++) {
+			tiles[i] = new Tile();
+			tiles[i].setValue(values[i]);
+			grid.put(BoardLocation.fromIndex(i, 2), tiles[i]);
+		}
+		assertFalse(grid.canMove());
+		// Equal neighbors across a row, then down a column.
+		tiles[3].setValue(8);
+		assertTrue(grid.canMove());
+		tiles[3].setValue(4);
+		assertTrue(grid.canMove());
+		tiles[3].setValue(16);
+		assertFalse(grid.canMove());
+		grid.remove(BoardLocation.fromIndex(0, 2));
+		assertTrue(grid.canMove());
+	}
+
 	@Test
 	public void testFind() {
 		final TileGrid grid = new TileGrid();
@@ -41,6 +70,19 @@ public class TileGridTest {
 		}
 	}
 
+	@Test
+	public void testFindAfterMove() {
+		final TileGrid grid = new TileGrid();
+		final Tile tile = new Tile();
+		final BoardLocation from = new BoardLocation(0, 0);
+		final BoardLocation to = new BoardLocation(3, 2);
+		grid.put(from, tile);
+		grid.put(to, tile);
+		assertEquals(to, grid.find(tile));
+		assertNull(grid.at(from));
+		assertEquals(1, grid.getOccupiedCount());
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testFindNull() {
 		new TileGrid().find(null);
@@ -105,6 +147,90 @@ public class TileGridTest {
 				new HashSet<>(grid.getAllUnoccupiedLocations()));
 	}
 
+	@Test
+	public void testGetMaxValue() {
+		final TileGrid grid = new TileGrid();
+		assertEquals(0, grid.getMaxValue());
+
+		final Tile small = new Tile(), large = new Tile();
+		small.setValue(2);
+		large.setValue(64);
+		grid.put(new BoardLocation(0, 0), small);
+		grid.put(new BoardLocation(1, 0), large);
+		assertEquals(64, grid.getMaxValue());
+
+		// Changes made directly to tiles in the grid are tracked.
+		small.setValue(128);
+		assertEquals(128, grid.getMaxValue());
+		small.setValue(4);
+		assertEquals(64, grid.getMaxValue());
+
+		grid.remove(new BoardLocation(1, 0));
+		assertEquals(4, grid.getMaxValue());
+
+		// Tiles no longer in the grid are not tracked.
+		large.setValue(1024);
+		assertEquals(4, grid.getMaxValue());
+	}
+
+	@Test
+	public void testGetAllOccupiedLocationsIsCopy() {
+		final TileGrid grid = new TileGrid();
+		final BoardLocation a = new BoardLocation(0, 0);
+		final BoardLocation b = new BoardLocation(1, 0);
+		grid.put(a, new Tile());
+
+		// The returned set may be modified without affecting the grid.
+		final Set<BoardLocation> occupied = grid.getAllOccupiedLocations();
+		occupied.remove(a);
+		occupied.add(b);
+		assertNotNull(grid.at(a));
+		assertNull(grid.at(b));
+		assertEquals(Collections.singleton(a), grid.getOccupiedLocations());
+
+		final Set<BoardLocation> unoccupied = grid.getAllUnoccupiedLocations();
+		unoccupied.add(a);
+		assertFalse(grid.getUnoccupiedLocations().contains(a));
+	}
+
+	@Test
+	public void testGetOccupiedLocationsIsCached() {
+		final TileGrid grid = new TileGrid();
+		final BoardLocation a = new BoardLocation(0, 0);
+		grid.put(a, new Tile());
+		final LocationSet occupied = grid.getOccupiedLocations();
+		final LocationSet unoccupied = grid.getUnoccupiedLocations();
+		assertSame(occupied, grid.getOccupiedLocations());
+		assertSame(unoccupied, grid.getUnoccupiedLocations());
+
+		// A change to the grid does not change the sets already returned.
+		grid.remove(a);
+		assertTrue(occupied.contains(a));
+		assertFalse(unoccupied.contains(a));
+		assertTrue(grid.getOccupiedLocations().isEmpty());
+		assertTrue(grid.getUnoccupiedLocations().contains(a));
+	}
+
+	@Test
+	public void testOccupiedCount() {
+		final TileGrid grid = new TileGrid();
+		final int cells = BoardLocation.BOARD_SIZE * BoardLocation.BOARD_SIZE;
+		final Random r = new Random();
+		for (int n = 0; n < 1000; n++) {
+			final BoardLocation loc = new BoardLocation(
+					r.nextInt(BoardLocation.BOARD_SIZE),
+					r.nextInt(BoardLocation.BOARD_SIZE));
+			if (r.nextBoolean()) {
+				grid.put(loc, new Tile());
+			} else {
+				grid.remove(loc);
+			}
+			final int occupied = grid.getAllOccupiedLocations().size();
+			assertEquals(occupied, grid.getOccupiedCount());
+			assertEquals(cells - occupied, grid.getUnoccupiedCount());
+		}
+	}
+
 	@Test
 	public void testPutAndAt() {
 		final TileGrid tg = new TileGrid();
@@ -0,0 +1,79 @@
+package j2048;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class TurnBatchTest {
+
+	private static Tile tile(int value) {
+		final Tile tile = new Tile();
+		tile.setValue(value);
+		return tile;
+	}
+
+	@Test
+	public void testCommit() {
+		final GameModel model = new GameModel();
+		final Tile a = tile(2), b = tile(2), c = tile(4), spawned = tile(2);
+		model.addTile(a, BoardLocation.of(1, 0));
+		model.addTile(b, BoardLocation.of(3, 0));
+		model.addTile(c, BoardLocation.of(2, 2));
+
+		model.commitTurn(new TurnBatch().move(a, Direction.WEST, 1)
+				.merge(a, b, Direction.WEST, 3, 4)
+				.move(c, Direction.WEST, 2)
+				.spawn(spawned, BoardLocation.of(3, 3)).addPoints(4).win());
+
+		final TileGrid grid = model.getGrid();
+		assertSame(b, grid.at(BoardLocation.of(0, 0)));
+		assertEquals(4, b.getValue());
+		assertNull(grid.find(a));
+		assertSame(c, grid.at(BoardLocation.of(0, 2)));
+		assertSame(spawned, grid.at(BoardLocation.of(3, 3)));
+		assertEquals(3, grid.getOccupiedCount());
+		assertEquals(4, model.getScore());
+		assertTrue(model.isWon());
+		assertFalse(model.isLost());
+	}
+
+	@Test
+	public void testFailedCommitChangesNothing() {
+		final GameModel model = new GameModel();
+		final Tile a = tile(2), b = tile(8);
+		model.addTile(a, BoardLocation.of(0, 0));
+		model.addTile(b, BoardLocation.of(3, 3));
+		try {
+			model.commitTurn(new TurnBatch().move(a, Direction.EAST, 3)
+					.move(b, Direction.SOUTH, 1).addPoints(16));
+			fail("Moving off the board did not throw an exception!");
+		} catch (IllegalArgumentException e) {
+			// good
+		}
+		assertSame(a, model.getGrid().at(BoardLocation.of(0, 0)));
+		assertSame(b, model.getGrid().at(BoardLocation.of(3, 3)));
+		assertEquals(0, model.getScore());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeMissesTarget() {
+		final GameModel model = new GameModel();
+		final Tile a = tile(2), b = tile(2);
+		model.addTile(a, BoardLocation.of(0, 0));
+		model.addTile(b, BoardLocation.of(3, 0));
+		model.commitTurn(new TurnBatch().merge(a, b, Direction.WEST, 2, 4));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSpawnOnOccupiedCell() {
+		final GameModel model = new GameModel();
+		model.addTile(tile(2), BoardLocation.of(1, 1));
+		model.commitTurn(new TurnBatch().spawn(tile(2), BoardLocation.of(1, 1)));
+	}
+
+}
@@ -0,0 +1,111 @@
+package j2048.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.Tile;
+import j2048.TileGrid;
+import j2048.engine.Bitboard;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ExpectimaxAdvisorTest {
+
+	private final TranspositionTable table = new TranspositionTable(1 << 16);
+
+	private final ExpectimaxAdvisor advisor = new ExpectimaxAdvisor(2, 2,
+			table);
+
+	@After
+	public void tearDown() {
+		advisor.close();
+	}
+
+	@Test
+	public void testAdviseLegalMove() {
+		// A lone tile in the top-left corner can only move east or south.
+		final TileGrid grid = new TileGrid();
+		final Tile tile = new Tile();
+		tile.setValue(2);
+		grid.put(new BoardLocation(0, 0), tile);
+		final Direction d = advisor.advise(grid);
+		assertTrue(d == Direction.EAST || d == Direction.SOUTH);
+	}
+
+	@Test
+	public void testAdviseChangesBoard() {
+		long board = 0;
+		board = Bitboard.withExponent(board, 0, 1);
+		board = Bitboard.withExponent(board, 5, 2);
+		board = Bitboard.withExponent(board, 10, 1);
+		final Direction d = advisor.advise(board);
+		assertNotEquals(board, Bitboard.move(board, d));
+	}
+
+	@Test
+	public void testAdviseStuckBoard() {
+		long board = 0;
+		for (int i = 0; i < Bitboard.CELLS; i++) {
+			board = Bitboard.withExponent(board, i, 1 + ((i + i / 4) & 1));
+		}
+		assertNull(advisor.advise(board));
+	}
+
+	@Test
+	public void testStoresInTable() {
+		long board = 0;
+		board = Bitboard.withExponent(board, 0, 3);
+		board = Bitboard.withExponent(board, 1, 1);
+		board = Bitboard.withExponent(board, 6, 2);
+		final Direction d = advisor.advise(board);
+		// The position after the advised move is a chance node one move
+		// from the end of the search.
+		final long entry = table.probe(Bitboard.move(board, d));
+		assertNotEquals(TranspositionTable.MISS, entry);
+		assertEquals(1, TranspositionTable.depthOf(entry));
+	}
+
+	@Test
+	public void testReadsTable() {
+		long board = 0;
+		board = Bitboard.withExponent(board, 5, 1);
+		board = Bitboard.withExponent(board, 10, 2);
+		// Whichever move is made to look best in the table is advised, so
+		// the search takes its values from the table.
+		for (Direction d : Direction.values()) {
+			final TranspositionTable rigged = new TranspositionTable(1 << 16);
+			rigged.store(Bitboard.move(board, d),
+					TranspositionTable.MAX_DEPTH, 1e30, null);
+			final ExpectimaxAdvisor a = new ExpectimaxAdvisor(2, 1, rigged);
+			try {
+				assertEquals(d, a.advise(board));
+			} finally {
+				a.close();
+			}
+		}
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void testAdviseAfterClose() {
+		advisor.close();
+		advisor.advise(Bitboard.withExponent(0, 5, 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullTable() {
+		new ExpectimaxAdvisor(2, 1, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAdviseNull() {
+		advisor.advise((TileGrid) null);
+	}
+
+}
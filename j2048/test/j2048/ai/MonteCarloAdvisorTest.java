@@ -0,0 +1,76 @@
+package j2048.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import j2048.Direction;
+import j2048.engine.Bitboard;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MonteCarloAdvisorTest {
+
+	private final MonteCarloAdvisor advisor = new MonteCarloAdvisor(20, 2);
+
+	@After
+	public void tearDown() {
+		advisor.close();
+	}
+
+	@Test
+	public void testAdviseChangesBoard() {
+		long board = 0;
+		board = Bitboard.withExponent(board, 0, 1);
+		board = Bitboard.withExponent(board, 5, 2);
+		board = Bitboard.withExponent(board, 10, 1);
+		final Direction d = advisor.advise(board);
+		assertNotEquals(board, Bitboard.move(board, d));
+	}
+
+	@Test
+	public void testAdviseOnlyMove() {
+		// A full column of distinct tiles with the rest empty can move east.
+		long board = 0;
+		for (int y = 0; y < Bitboard.SIZE; y++) {
+			board = Bitboard.withExponent(board, 4 * y, 1 + y);
+		}
+		assertEquals(Direction.EAST, advisor.advise(board));
+	}
+
+	@Test
+	public void testAdviseStuckBoard() {
+		long board = 0;
+		for (int i = 0; i < Bitboard.CELLS; i++) {
+			board = Bitboard.withExponent(board, i, 1 + ((i + i / 4) & 1));
+		}
+		assertNull(advisor.advise(board));
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void testClose() {
+		advisor.close();
+		advisor.advise(Bitboard.withExponent(0, 0, 1));
+	}
+
+	@Test
+	public void testTimeBudget() {
+		final MonteCarloAdvisor slow = new MonteCarloAdvisor(1000000, 2);
+		slow.setTimeBudget(50, TimeUnit.MILLISECONDS);
+		final long start = System.nanoTime();
+		try {
+			slow.advise(Bitboard.withExponent(0, 0, 1));
+		} finally {
+			slow.close();
+		}
+		final long elapsed = System.nanoTime() - start;
+		assertTrue("took " + elapsed + " ns",
+				elapsed < TimeUnit.SECONDS.toNanos(5));
+	}
+
+}
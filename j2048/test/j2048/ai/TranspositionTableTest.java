@@ -0,0 +1,118 @@
+package j2048.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import j2048.Direction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TranspositionTableTest {
+
+	@Test
+	public void testStoreAndProbe() {
+		final TranspositionTable table = new TranspositionTable(1 << 16);
+		final long board = 0x1234000000210001L;
+		assertEquals(TranspositionTable.MISS, table.probe(board));
+		table.store(board, 3, 1234.5, Direction.WEST);
+		final long entry = table.probe(board);
+		assertEquals(3, TranspositionTable.depthOf(entry));
+		assertEquals(1234.5, TranspositionTable.valueOf(entry), 0);
+		assertEquals(Direction.WEST, TranspositionTable.moveOf(entry));
+		assertEquals(TranspositionTable.MISS, table.probe(board + 1));
+
+		table.store(0, 1, -2, null);
+		assertNull(TranspositionTable.moveOf(table.probe(0)));
+		table.clear();
+		assertEquals(TranspositionTable.MISS, table.probe(board));
+	}
+
+	@Test
+	public void testSize() {
+		final TranspositionTable table = new TranspositionTable(100000);
+		assertEquals(65536, table.getSizeBytes());
+		assertEquals(4096, table.getCapacity());
+		assertEquals(1 << 20, TranspositionTable.ofGigabytes(1.0 / 1024)
+				.getSizeBytes());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooSmall() {
+		new TranspositionTable(63);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadDepth() {
+		new TranspositionTable(64).store(1, 0, 0, null);
+	}
+
+	@Test
+	public void testReplacement() {
+		// One bucket: four entries, all boards collide.
+		final TranspositionTable table = new TranspositionTable(64);
+		for (int i = 1; i <= 4; i++) {
+			table.store(i, 10 + i, i, null);
+		}
+		// A shallower result for a stored board is ignored...
+		table.store(4, 1, -1, null);
+		assertEquals(4, TranspositionTable.valueOf(table.probe(4)), 0);
+		// ...and a new board replaces the shallowest entry.
+		table.store(5, 2, 5, null);
+		assertEquals(TranspositionTable.MISS, table.probe(1));
+		assertEquals(5, TranspositionTable.valueOf(table.probe(5)), 0);
+
+		// After a new search, old entries go first, however deep.
+		table.newSearch();
+		table.store(6, 1, 6, null);
+		assertEquals(TranspositionTable.MISS, table.probe(5));
+		table.store(7, 1, 7, null);
+		assertEquals(TranspositionTable.MISS, table.probe(2));
+		// A stale entry may be overwritten by a shallower fresh one.
+		table.store(4, 1, 8, null);
+		assertEquals(8, TranspositionTable.valueOf(table.probe(4)), 0);
+	}
+
+	@Test
+	public void testConcurrentStores() throws InterruptedException {
+		// Small enough that threads fight over every bucket.
+		final TranspositionTable table = new TranspositionTable(1 << 10);
+		final List<Thread> threads = new ArrayList<>();
+		final boolean[] bad = new boolean[1];
+		for (int t = 0; t < 4; t++) {
+			final long seed = t;
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					final Random random = new Random(seed);
+					for (int i = 0; i < 200000; i++) {
+						// The value is a function of the board, so any hit
+						// can be checked.
+						final long board = random.nextInt(5000);
+						final long entry = table.probe(board);
+						if (entry != TranspositionTable.MISS
+								&& (TranspositionTable.valueOf(entry) != board
+										|| TranspositionTable.depthOf(entry)
+										!= 1 + board % 7)) {
+							bad[0] = true;
+						}
+						table.store(board, (int) (1 + board % 7), board,
+								Direction.values()[(int) (board % 4)]);
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertFalse(bad[0]);
+	}
+
+}
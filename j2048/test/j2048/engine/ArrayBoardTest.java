@@ -0,0 +1,125 @@
+package j2048.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.GameModel;
+import j2048.Tile;
+import j2048.TileGrid;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ArrayBoardTest {
+
+	@Test
+	public void testCanMove() {
+		// A full checkerboard of 2s and 4s is stuck.
+		final int size = 5;
+		final ArrayBoard board = new ArrayBoard(size);
+		for (int i = 0; i < size * size; i++) {
+			board.setExponent(i, 1 + ((i % size + i / size) & 1));
+		}
+		assertFalse(board.canMove());
+		board.setExponent(7, 0);
+		assertTrue(board.canMove());
+	}
+
+	@Test
+	public void testLoad() {
+		final TileGrid grid = new TileGrid(6);
+		final Tile tile = new Tile();
+		tile.setValue(64);
+		grid.put(BoardLocation.of(5, 4, 6), tile);
+
+		final ArrayBoard board = new ArrayBoard(6);
+		board.load(grid);
+		assertEquals(6, board.exponentAt(4 * 6 + 5));
+		assertEquals(35, board.countEmpty());
+		assertEquals(6, board.maxExponent());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLoadWrongSize() {
+		new ArrayBoard(5).load(new TileGrid(4));
+	}
+
+	@Test
+	public void testMatchesBitboard() {
+		final Random r = new Random(16);
+		final ArrayBoard board = new ArrayBoard(Bitboard.SIZE);
+		for (int n = 0; n < 2000; n++) {
+			long packed = 0;
+			for (int i = 0; i < Bitboard.CELLS; i++) {
+				if (r.nextBoolean()) {
+					packed = Bitboard.withExponent(packed, i, 1 + r.nextInt(4));
+				}
+			}
+			for (Direction d : Direction.values()) {
+				for (int i = 0; i < Bitboard.CELLS; i++) {
+					board.setExponent(i, Bitboard.exponentAt(packed, i));
+				}
+				final long moved = Bitboard.move(packed, d);
+				final int score = board.move(d);
+				if (moved == packed) {
+					assertEquals(-1, score);
+				} else {
+					assertEquals(Bitboard.moveScore(packed, d), score);
+				}
+				for (int i = 0; i < Bitboard.CELLS; i++) {
+					assertEquals(Bitboard.exponentAt(moved, i),
+							board.exponentAt(i));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMove() {
+		// 2 2 4 _ 4 moves west to 4 8 _ _ _ for 12 points.
+		final ArrayBoard board = new ArrayBoard(5);
+		board.setExponent(0, 1);
+		board.setExponent(1, 1);
+		board.setExponent(2, 2);
+		board.setExponent(4, 2);
+		assertEquals(12, board.move(Direction.WEST));
+		assertEquals(2, board.exponentAt(0));
+		assertEquals(3, board.exponentAt(1));
+		assertEquals(0, board.exponentAt(2));
+		assertEquals(0, board.exponentAt(4));
+		assertEquals(-1, board.move(Direction.WEST));
+	}
+
+	@Test
+	public void testPlayLargeBoard() {
+		final int size = 6;
+		final GameModel model = new GameModel(size);
+		final ArrayBoardTurnPerformer performer = new ArrayBoardTurnPerformer(
+				new Random(2048));
+		final Tile first = new Tile();
+		first.setValue(2);
+		model.addTile(first, BoardLocation.of(0, 0, size));
+
+		final Random r = new Random(6);
+		final Direction[] directions = Direction.values();
+		int turns = 0;
+		while (!model.isLost() && turns < 100000) {
+			if (performer.turn(directions[r.nextInt(directions.length)],
+					model)) {
+				turns++;
+			}
+		}
+		assertTrue(model.isLost());
+
+		// The grid must agree with a freshly loaded board.
+		final ArrayBoard board = new ArrayBoard(size);
+		board.load(model.getGrid());
+		assertFalse(board.canMove());
+		assertEquals(0, board.countEmpty());
+	}
+
+}
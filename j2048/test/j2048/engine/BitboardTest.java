@@ -0,0 +1,150 @@
+package j2048.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.Tile;
+import j2048.TileGrid;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitboardTest {
+
+	/**
+	 * Creates a random board with roughly half of its cells occupied.
+	 */
+	private static long randomBoard(Random r) {
+		long board = 0;
+		for (int i = 0; i < Bitboard.CELLS; i++) {
+			if (r.nextBoolean()) {
+				board = Bitboard.withExponent(board, i, 1 + r.nextInt(4));
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Moves a board one cell at a time, as a straightforward reference.
+	 */
+	private static long referenceMove(long board, Direction d, int[] score) {
+		final int size = Bitboard.SIZE;
+		long result = 0;
+		for (int line = 0; line < size; line++) {
+			int next = 0, last = 0;
+			for (int i = 0; i < size; i++) {
+				final int e = Bitboard.exponentAt(board, index(d, line, i));
+				if (e == 0) {
+					continue;
+				}
+				if (e == last && e < Bitboard.MAX_EXPONENT) {
+					result = Bitboard.withExponent(result,
+							index(d, line, next - 1), e + 1);
+					score[0] += 1 << (e + 1);
+					last = 0;
+				} else {
+					result = Bitboard.withExponent(result,
+							index(d, line, next++), e);
+					last = e;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static int index(Direction d, int line, int i) {
+		final int last = Bitboard.SIZE - 1;
+		switch (d) {
+		case WEST:
+			return 4 * line + i;
+		case EAST:
+			return 4 * line + last - i;
+		case NORTH:
+			return 4 * i + line;
+		case SOUTH:
+			return 4 * (last - i) + line;
+		default:
+			throw new AssertionError("Unexpected direction " + d);
+		}
+	}
+
+	@Test
+	public void testCanMove() {
+		// A full checkerboard of 2s and 4s is stuck.
+		long board = 0;
+		for (int i = 0; i < Bitboard.CELLS; i++) {
+			board = Bitboard.withExponent(board, i, 1 + ((i + i / 4) & 1));
+		}
+		assertFalse(Bitboard.canMove(board));
+		assertTrue(Bitboard.canMove(Bitboard.withExponent(board, 5, 0)));
+		assertTrue(Bitboard.canMove(Bitboard.withExponent(board, 5, 2)));
+	}
+
+	@Test
+	public void testEmptyCells() {
+		final Random r = new Random();
+		for (int n = 0; n < 1000; n++) {
+			final long board = randomBoard(r);
+			int count = 0;
+			for (int i = 0; i < Bitboard.CELLS; i++) {
+				if (Bitboard.exponentAt(board, i) == 0) {
+					assertEquals(i, Bitboard.emptyCellIndex(board, count));
+					count++;
+				}
+			}
+			assertEquals(count, Bitboard.countEmpty(board));
+		}
+	}
+
+	@Test
+	public void testEncode() {
+		final TileGrid grid = new TileGrid();
+		final Tile tile = new Tile();
+		tile.setValue(2048);
+		grid.put(new BoardLocation(2, 1), tile);
+		final long board = Bitboard.encode(grid);
+		assertEquals(11, Bitboard.exponentAt(board, 6));
+		assertEquals(11, Bitboard.maxExponent(board));
+		assertEquals(Bitboard.CELLS - 1, Bitboard.countEmpty(board));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExponentOfNonPowerOfTwo() {
+		Bitboard.exponentOf(6);
+	}
+
+	@Test
+	public void testMove() {
+		final Random r = new Random();
+		for (int n = 0; n < 10000; n++) {
+			final long board = randomBoard(r);
+			for (Direction d : Direction.values()) {
+				final int[] score = new int[1];
+				assertEquals(referenceMove(board, d, score),
+						Bitboard.move(board, d));
+				assertEquals(score[0], Bitboard.moveScore(board, d));
+			}
+		}
+	}
+
+	@Test
+	public void testTranspose() {
+		final Random r = new Random();
+		for (int n = 0; n < 1000; n++) {
+			final long board = randomBoard(r);
+			final long t = Bitboard.transpose(board);
+			for (int x = 0; x < Bitboard.SIZE; x++) {
+				for (int y = 0; y < Bitboard.SIZE; y++) {
+					assertEquals(Bitboard.exponentAt(board, 4 * y + x),
+							Bitboard.exponentAt(t, 4 * x + y));
+				}
+			}
+			assertEquals(board, Bitboard.transpose(t));
+		}
+	}
+
+}
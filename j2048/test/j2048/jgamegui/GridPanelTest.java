@@ -0,0 +1,137 @@
+package j2048.jgamegui;
+
+import static org.junit.Assert.assertEquals;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.GameModel;
+import j2048.LocationSet;
+import j2048.SampleBadLogic;
+import j2048.Tile;
+import j2048.TileGameContext;
+import j2048.TileGrid;
+import j2048.TurnPerformer;
+import j2048.record.GameRecorder;
+
+import org.junit.Test;
+
+public class GridPanelTest {
+
+	/**
+	 * Slides every tile in the top row one cell east or west, one call at a
+	 * time, and adds a tile in the last empty cell.
+	 */
+	private static final TurnPerformer PER_CALL = new TurnPerformer() {
+		@Override
+		public boolean turn(Direction direction, TileGameContext context) {
+			final TileGrid grid = context.getGrid();
+			for (int i = 0; i < 4; i++) {
+				final BoardLocation loc = BoardLocation.of(
+						direction == Direction.WEST ? i : 3 - i, 0);
+				if (grid.at(loc) != null
+						&& loc.hasAdjacentLocation(direction)
+						&& grid.at(loc.getAdjacentLocation(direction))
+								== null) {
+					context.moveTile(grid.at(loc), direction, 1);
+				}
+			}
+			context.incrementScoreBy(4);
+			final LocationSet free = grid.getUnoccupiedLocations();
+			context.addTile(tile(2), free.select(free.size() - 1));
+			return true;
+		}
+	};
+
+	private static Tile tile(int value) {
+		final Tile tile = new Tile();
+		tile.setValue(value);
+		return tile;
+	}
+
+	/**
+	 * Creates a model with three tiles in the top row, shown in a grid panel
+	 * with nothing left to animate.
+	 * 
+	 * @param model
+	 *            an empty model
+	 * @return the panel
+	 */
+	private static GridPanel show(GameModel model) {
+		for (int x = 1; x < 4; x++) {
+			model.addTile(tile(2 << x), BoardLocation.of(x, 0));
+		}
+		final GridPanel grid = new GridPanel();
+		grid.showGrid(model.getGrid());
+		model.addGameListener(grid);
+		return grid;
+	}
+
+	@Test
+	public void testSingleTurnDuration() {
+		final GameModel model = new GameModel();
+		final GridPanel grid = show(model);
+		new GameRecorder(4, model.getSeed()).wrap(PER_CALL).turn(
+				Direction.WEST, model);
+
+		// With nothing waiting behind it, the turn is not sped up: all three
+		// moves and the new tile are animated for the full duration.
+		grid.nextFrame();
+		assertEquals(4, grid.getActiveTweens());
+		for (int i = 1; i < GridPanel.TURN_DURATION; i++) {
+			assertEquals(1, grid.getPendingTurns());
+			grid.nextFrame();
+		}
+		assertEquals(1, grid.getPendingTurns());
+		grid.nextFrame();
+		assertEquals(0, grid.getPendingTurns());
+		assertEquals(0, grid.getActiveTweens());
+	}
+
+	@Test
+	public void testBacklogDuration() {
+		final GameModel model = new GameModel();
+		final GridPanel grid = show(model);
+		final TurnPerformer performer = new GameRecorder(4, model.getSeed())
+				.wrap(PER_CALL);
+		performer.turn(Direction.WEST, model);
+		performer.turn(Direction.EAST, model);
+
+		// With one turn waiting, the first is shown at half speed.
+		grid.nextFrame();
+		for (int i = 1; i < GridPanel.TURN_DURATION / 2; i++) {
+			assertEquals(2, grid.getPendingTurns());
+			grid.nextFrame();
+		}
+		assertEquals(2, grid.getPendingTurns());
+		grid.nextFrame();
+		assertEquals(1, grid.getPendingTurns());
+	}
+
+	@Test
+	public void testDirectValueChange() {
+		final GameModel model = new GameModel();
+		final GridPanel grid = show(model);
+		final Tile tile = model.getGrid().at(BoardLocation.of(1, 0));
+		// This doubles every tile that is not on the east edge, without
+		// moving anything.
+		new GameRecorder(4, model.getSeed()).wrap(new SampleBadLogic()).turn(
+				Direction.EAST, model);
+		assertEquals(4, grid.viewOf(tile).getValue());
+		grid.nextFrame();
+		assertEquals(8, grid.viewOf(tile).getValue());
+		assertEquals(8, tile.getValue());
+	}
+
+	@Test
+	public void testPerCallTurnIsOnePendingTurn() {
+		final GameModel model = new GameModel();
+		final GridPanel grid = show(model);
+		final GameRecorder recorder = new GameRecorder(4, model.getSeed());
+		model.addGameListener(recorder);
+		// GamePanel plays every turn through the recorder's wrapper.
+		final TurnPerformer performer = recorder.wrap(PER_CALL);
+		performer.turn(Direction.WEST, model);
+		assertEquals(1, grid.getPendingTurns());
+	}
+
+}
@@ -0,0 +1,60 @@
+package j2048.jgamegui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RollingHistogramTest {
+
+	@Test
+	public void testEmpty() {
+		final RollingHistogram histogram = new RollingHistogram(4);
+		assertEquals(0, histogram.size());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getMean(), 0);
+		assertEquals(0, histogram.getPercentile(50));
+	}
+
+	@Test
+	public void testPercentiles() {
+		final RollingHistogram histogram = new RollingHistogram(1000);
+		for (int i = 1; i <= 1000; i++) {
+			histogram.add(i * 100000L);
+		}
+		assertEquals(1000, histogram.size());
+		assertEquals(100000000L, histogram.getMax());
+		assertEquals(100000000L, histogram.getPercentile(100));
+		assertEquals(50050000.0, histogram.getMean(), 1e-6);
+		// Buckets are a sixteenth of a power of two wide.
+		final long p50 = histogram.getPercentile(50);
+		assertTrue(p50 >= 50000000L && p50 <= 50000000L * 17 / 16);
+		final long p99 = histogram.getPercentile(99);
+		assertTrue(p99 >= 99000000L && p99 <= 100000000L);
+		final long p0 = histogram.getPercentile(0);
+		assertTrue(p0 >= 100000L && p0 <= 100000L * 17 / 16);
+	}
+
+	@Test
+	public void testRolling() {
+		final RollingHistogram histogram = new RollingHistogram(3);
+		histogram.add(1000);
+		histogram.add(5);
+		histogram.add(6);
+		histogram.add(7);
+		assertEquals(3, histogram.size());
+		assertEquals(7, histogram.getMax());
+		assertEquals(6, histogram.getMean(), 0);
+		assertEquals(7, histogram.getRecent(0));
+		assertEquals(5, histogram.getRecent(2));
+		assertEquals(6, histogram.getPercentile(50));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testRecentOutOfRange() {
+		final RollingHistogram histogram = new RollingHistogram(3);
+		histogram.add(1);
+		histogram.getRecent(1);
+	}
+
+}
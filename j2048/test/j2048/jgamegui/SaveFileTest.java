@@ -0,0 +1,89 @@
+package j2048.jgamegui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import j2048.BoardLocation;
+import j2048.GameModel;
+import j2048.Tile;
+import j2048.record.GameRecorder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SaveFileTest {
+
+	private Path path;
+
+	private SaveFile saveFile;
+
+	private GameModel model;
+
+	@Before
+	public void setUp() throws IOException {
+		path = Files.createTempFile("j2048", ".sav");
+		Files.delete(path);
+		saveFile = new SaveFile(path);
+		model = new GameModel(4, 7);
+		final Tile tile = new Tile();
+		tile.setValue(8);
+		model.addTile(tile, BoardLocation.of(2, 1));
+		model.incrementScoreBy(12);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		saveFile.close();
+		Files.deleteIfExists(path);
+	}
+
+	private void save() {
+		saveFile.save(100, model.snapshot(),
+				new GameRecorder(4, model.getSeed()).checkpoint());
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		assertNull(saveFile.load());
+		save();
+		saveFile.close();
+		final SaveFile.Contents contents = saveFile.load();
+		assertEquals(100, contents.getBestScore());
+		assertEquals(12, contents.getSnapshot().getScore());
+		assertEquals(8, contents.getSnapshot().getValue(
+				BoardLocation.of(2, 1).getIndex()));
+	}
+
+	@Test
+	public void testCorruptByte() throws IOException {
+		save();
+		saveFile.close();
+		final byte[] bytes = Files.readAllBytes(path);
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] ^= 0x40;
+			Files.write(path, bytes);
+			try {
+				saveFile.load();
+				fail("Corrupt byte " + i + " was not detected");
+			} catch (IOException e) {
+				// good
+			}
+			bytes[i] ^= 0x40;
+		}
+	}
+
+	@Test
+	public void testSaveAfterClose() throws IOException {
+		saveFile.close();
+		save();
+		save();
+		assertNull(saveFile.load());
+	}
+
+}
@@ -0,0 +1,106 @@
+package j2048.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.GameModel;
+import j2048.Tile;
+import j2048.TurnPerformer;
+import j2048.engine.ArrayBoardTurnPerformer;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.Attribute;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MetricsTest {
+
+	private static int play(TurnPerformer performer, int turns) {
+		final GameModel model = new GameModel(4, 1);
+		final Tile tile = new Tile();
+		tile.setValue(2);
+		model.addTile(tile, new BoardLocation(0, 0));
+		int accepted = 0;
+		for (int turn = 0; turn < turns && !model.isLost(); turn++) {
+			if (performer.turn(Direction.values()[turn % 4], model)) {
+				accepted++;
+			}
+		}
+		return accepted;
+	}
+
+	@After
+	public void disable() {
+		Metrics.setEnabled(false);
+		Metrics.reset();
+	}
+
+	@Test
+	public void testDisabled() {
+		Metrics.setEnabled(false);
+		final TurnPerformer performer = Metrics
+				.wrap(new ArrayBoardTurnPerformer());
+		final Metric nanos = Metrics
+				.get("turn.ArrayBoardTurnPerformer.nanos");
+		final long before = nanos.getCount();
+		play(performer, 50);
+		assertEquals(before, nanos.getCount());
+	}
+
+	@Test
+	public void testMetric() {
+		final Metric metric = Metrics.get("test.metric");
+		assertSame(metric, Metrics.get("test.metric"));
+		assertTrue(Metrics.getAll().containsKey("test.metric"));
+		metric.reset();
+		assertEquals(0, metric.getMax());
+		assertEquals(0, metric.getMean(), 0);
+		metric.record(3);
+		metric.record(-1);
+		metric.record(7);
+		assertEquals(3, metric.getCount());
+		assertEquals(9, metric.getTotal());
+		assertEquals(7, metric.getMax());
+		assertEquals(3, metric.getMean(), 0);
+		metric.reset();
+		assertEquals(0, metric.getCount());
+		assertEquals(0, metric.getTotal());
+	}
+
+	@Test
+	public void testRegisterMBean() throws Exception {
+		Metrics.registerMBean();
+		Metrics.registerMBean();
+		final ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+		ManagementFactory.getPlatformMBeanServer().setAttribute(name,
+				new Attribute("Enabled", true));
+		assertTrue(Metrics.isEnabled());
+		assertTrue(ManagementFactory.getPlatformMBeanServer().getAttribute(
+				name, "Metrics") != null);
+	}
+
+	@Test
+	public void testWrap() {
+		Metrics.setEnabled(true);
+		Metrics.reset();
+		final int turns = play(Metrics.wrap(new ArrayBoardTurnPerformer()),
+				100);
+		final String prefix = "turn.ArrayBoardTurnPerformer.";
+		assertEquals(100, Metrics.get(prefix + "nanos").getCount());
+		assertEquals(100, Metrics.get(prefix + "calls").getCount());
+		// Each accepted turn commits one batch, and every turn reads the grid.
+		assertTrue(Metrics.get(prefix + "calls").getTotal() >= 100 + turns);
+		assertTrue(Metrics.get(prefix + "moved").getTotal()
+				+ Metrics.get(prefix + "merged").getTotal() >= turns);
+		assertTrue(Metrics.get(prefix + "merged").getTotal() > 0);
+		if (Metrics.allocatedBytes() >= 0) {
+			assertEquals(100, Metrics.get(prefix + "bytes").getCount());
+		}
+	}
+
+}
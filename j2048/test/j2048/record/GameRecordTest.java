@@ -0,0 +1,275 @@
+package j2048.record;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.GameModel;
+import j2048.LocationSet;
+import j2048.Tile;
+import j2048.TurnPerformer;
+import j2048.engine.ArrayBoard;
+import j2048.engine.ArrayBoardTurnPerformer;
+import j2048.engine.BitboardTurnPerformer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GameRecordTest {
+
+	/**
+	 * Plays a game with random moves and records it.
+	 * 
+	 * @param size
+	 *            the board size
+	 * @param seed
+	 *            the seed for the game
+	 * @param model
+	 *            an empty model to play on
+	 * @return the record of the game
+	 */
+	private static GameRecord play(int size, long seed, GameModel model) {
+		final Random random = new Random(seed);
+		final GameRecorder recorder = new GameRecorder(size, seed);
+		model.addGameListener(recorder);
+		final TurnPerformer performer = recorder
+				.wrap(new ArrayBoardTurnPerformer(random));
+		for (int i = 0; i < 2; i++) {
+			final LocationSet free = model.getGrid().getUnoccupiedLocations();
+			final Tile tile = new Tile();
+			tile.setValue(2);
+			model.addTile(tile, free.select(random.nextInt(free.size())));
+		}
+		final Direction[] directions = Direction.values();
+		int misses = 0;
+		while (!model.isLost() && misses < 100) {
+			if (performer.turn(directions[random.nextInt(4)], model)) {
+				misses = 0;
+			} else {
+				misses++;
+			}
+		}
+		model.removeGameListener(recorder);
+		return recorder.finish(model);
+	}
+
+	/**
+	 * Records a game on a 2-by-2 board that fills the last empty cell, and
+	 * replays it with a performer that always draws the same value.
+	 * 
+	 * @param recorded
+	 *            the recorded value of the last tile
+	 * @param drawn
+	 *            the value of every tile that the performer draws
+	 * @return whether the replayed game is lost
+	 */
+	private static boolean replayLastCell(int recorded, final int drawn) {
+		final int[] values = { 2, 4, 8, recorded };
+		final GameRecorder recorder = new GameRecorder(2, 0);
+		recorder.recordSpawn(BoardLocation.fromIndex(0, 2), values[0]);
+		recorder.recordSpawn(BoardLocation.fromIndex(1, 2), values[1]);
+		recorder.recordSpawn(BoardLocation.fromIndex(3, 2), values[2]);
+		// The 8 slides west, leaving the last cell empty.
+		recorder.recordMove(Direction.WEST);
+		recorder.recordSpawn(BoardLocation.fromIndex(3, 2), recorded);
+		final GameModel end = new GameModel(2);
+		for (int i = 0; i < values.length; i++) {
+			final Tile tile = new Tile();
+			tile.setValue(values[i]);
+			end.addTile(tile, BoardLocation.fromIndex(i, 2));
+		}
+		final GameRecord record = recorder.finish(end);
+
+		final GameModel replayed = new GameModel(2);
+		GameReplayer.replay(record, new ArrayBoardTurnPerformer(new Random() {
+			@Override
+			public int nextInt(int bound) {
+				// A 4 comes from nextInt(10) == 0.
+				return drawn == 4 ? 0 : bound - 1;
+			}
+		}), replayed);
+		return replayed.isLost();
+	}
+
+	/**
+	 * Writes the start of a record for a standard board, up to but not
+	 * including the number of moves.
+	 * 
+	 * @param data
+	 *            the stream to which to write
+	 * @throws IOException
+	 *             if the stream cannot be written
+	 */
+	private static void writeHeader(DataOutputStream data) throws IOException {
+		data.writeBytes("2048");
+		data.writeByte(2);
+		data.writeByte(BoardLocation.BOARD_SIZE);
+		data.writeLong(0);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final GameModel model = new GameModel();
+		final GameRecord record = play(4, 1, model);
+		assertTrue(record.getMoveCount() > 50);
+		assertEquals(record.getMoveCount() + 2, record.getSpawnCount());
+
+		final byte[] bytes = record.toByteArray();
+		final GameRecord copy = GameRecord.fromByteArray(bytes);
+		assertEquals(record.getBoardSize(), copy.getBoardSize());
+		assertEquals(record.getSeed(), copy.getSeed());
+		assertEquals(record.getScore(), copy.getScore());
+		assertEquals(record.getChecksum(), copy.getChecksum());
+		assertEquals(record.getMoveCount(), copy.getMoveCount());
+		for (int i = 0; i < record.getMoveCount(); i++) {
+			assertEquals(record.getMove(i), copy.getMove(i));
+		}
+		assertEquals(record.getSpawnCount(), copy.getSpawnCount());
+		for (int i = 0; i < record.getSpawnCount(); i++) {
+			assertEquals(record.getSpawnMove(i), copy.getSpawnMove(i));
+			assertEquals(record.getSpawnCell(i), copy.getSpawnCell(i));
+			assertEquals(record.getSpawnValue(i), copy.getSpawnValue(i));
+		}
+		assertArrayEquals(bytes, copy.toByteArray());
+		assertEquals(model.getScore(), record.getScore());
+		assertEquals(GameRecord.checksum(model.getGrid()),
+				record.getChecksum());
+	}
+
+	@Test
+	public void testCheckpoint() {
+		final GameModel model = new GameModel();
+		final GameRecord record = play(4, 8, model);
+		final GameRecorder recorder = new GameRecorder(4, 0);
+		recorder.resume(record);
+		final GameRecorder.Checkpoint checkpoint = recorder.checkpoint();
+		assertEquals(record.getMoveCount(), checkpoint.getMoveCount());
+
+		// Recording more, growing the buffers, and starting a new game must
+		// not change what the checkpoint covers.
+		for (int i = 0; i < 1000; i++) {
+			recorder.recordMove(Direction.values()[i % 4]);
+			recorder.recordSpawn(BoardLocation.of(i % 4, 0), 4);
+		}
+		recorder.reset(1);
+		for (int i = 0; i < 10; i++) {
+			recorder.recordMove(Direction.NORTH);
+			recorder.recordSpawn(BoardLocation.of(3, 3), 2);
+		}
+		assertArrayEquals(record.toByteArray(),
+				checkpoint.finish(model.snapshot()).toByteArray());
+	}
+
+	@Test
+	public void testResume() {
+		final GameModel model = new GameModel();
+		final GameRecord record = play(4, 6, model);
+		final GameRecorder recorder = new GameRecorder(4, 0);
+		recorder.resume(record);
+		assertEquals(record.getMoveCount(), recorder.getMoveCount());
+		assertArrayEquals(record.toByteArray(), recorder.finish(model)
+				.toByteArray());
+
+		final GameRecorder other = new GameRecorder(4, 0, 7);
+		other.resume(record);
+		final GameRecord resumed = other.finish(model);
+		assertEquals(0, resumed.getKeyframeCount());
+		assertEquals(record.getSpawnCount(), resumed.getSpawnCount());
+		GameReplayer.replayBoard(resumed);
+	}
+
+	@Test
+	public void testReplay() {
+		final GameRecord record = play(4, 2, new GameModel());
+		final GameModel replayed = new GameModel();
+		// A differently seeded performer of another kind must still follow
+		// the recorded spawns.
+		GameReplayer.replay(record, new BitboardTurnPerformer(new Random(99)),
+				replayed);
+		assertEquals(record.getScore(), replayed.getScore());
+		assertTrue(replayed.isLost());
+	}
+
+	@Test
+	public void testReplayDecidesLoss() {
+		// With a 2 in the last empty cell the game is lost, and with a 4 it
+		// is not, whatever the performer draws for itself.
+		assertTrue(replayLastCell(2, 4));
+		assertFalse(replayLastCell(4, 2));
+	}
+
+	@Test
+	public void testReplayBoard() {
+		final GameModel model = new GameModel(6);
+		final GameRecord record = play(6, 3, model);
+		final ArrayBoard board = GameReplayer.replayBoard(record);
+		for (int i = 0; i < 36; i++) {
+			final Tile tile = model.getGrid().at(BoardLocation.fromIndex(i, 6));
+			assertEquals(tile == null ? 0 : tile.getValue(),
+					board.exponentAt(i) == 0 ? 0 : 1 << board.exponentAt(i));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReplayBoardCorrupt() throws IOException {
+		final GameRecord record = play(4, 4, new GameModel());
+		final byte[] bytes = record.toByteArray();
+		// Change four moves in the middle of the game. The moves follow the
+		// header and the move count.
+		final int moves = 4 + 1 + 1 + 8 + (record.getMoveCount() < 128 ? 1 : 2);
+		bytes[moves + record.getMoveCount() / 8] ^= 0xff;
+		GameReplayer.replayBoard(GameRecord.fromByteArray(bytes));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReplayWrongMove() {
+		final GameModel model = new GameModel();
+		final GameRecorder recorder = new GameRecorder(4, 0);
+		model.addGameListener(recorder);
+		final Tile tile = new Tile();
+		tile.setValue(2);
+		model.addTile(tile, BoardLocation.of(0, 0));
+		// Moving west from the corner is impossible.
+		recorder.recordMove(Direction.WEST);
+		GameReplayer.replay(recorder.finish(model),
+				new BitboardTurnPerformer(), new GameModel());
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadGarbage() throws IOException {
+		GameRecord.fromByteArray(new byte[] { 1, 2, 3, 4, 5, 6 });
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadHugeMoveCount() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream data = new DataOutputStream(bytes);
+		writeHeader(data);
+		GameRecord.writeVarInt(data, Integer.MAX_VALUE);
+		data.write(new byte[16]);
+		GameRecord.fromByteArray(bytes.toByteArray());
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadHugeSpawnCount() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream data = new DataOutputStream(bytes);
+		writeHeader(data);
+		GameRecord.writeVarInt(data, 0);
+		GameRecord.writeVarInt(data, Integer.MAX_VALUE);
+		for (int i = 0; i < 4; i++) {
+			GameRecord.writeVarInt(data, 0);
+			GameRecord.writeVarInt(data, i);
+			GameRecord.writeVarInt(data, 2);
+		}
+		GameRecord.fromByteArray(bytes.toByteArray());
+	}
+
+}
@@ -0,0 +1,167 @@
+package j2048.record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import j2048.BoardLocation;
+import j2048.Direction;
+import j2048.GameModel;
+import j2048.LocationSet;
+import j2048.Tile;
+import j2048.TileGrid;
+import j2048.TurnPerformer;
+import j2048.engine.BitboardTurnPerformer;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ReplayCursorTest {
+
+	/**
+	 * Plays a game with random moves, recording it with the given keyframe
+	 * interval.
+	 * 
+	 * @param seed
+	 *            the seed for the game
+	 * @param keyframeInterval
+	 *            the number of moves between keyframes
+	 * @return the record of the game
+	 */
+	private static GameRecord play(long seed, int keyframeInterval) {
+		final Random random = new Random(seed);
+		final GameModel model = new GameModel();
+		final GameRecorder recorder = new GameRecorder(4, seed,
+				keyframeInterval);
+		model.addGameListener(recorder);
+		final TurnPerformer performer = recorder
+				.wrap(new BitboardTurnPerformer(random));
+		for (int i = 0; i < 2; i++) {
+			final LocationSet free = model.getGrid().getUnoccupiedLocations();
+			final Tile tile = new Tile();
+			tile.setValue(2);
+			model.addTile(tile, free.select(random.nextInt(free.size())));
+		}
+		// Prefer west and north so that the game lasts a while.
+		final Direction[] order = { Direction.WEST, Direction.NORTH,
+				Direction.EAST, Direction.SOUTH };
+		while (!model.isLost()) {
+			boolean accepted = false;
+			for (int i = 0; !accepted && i < order.length; i++) {
+				final Direction d = i < 2 ? order[random.nextInt(2)]
+						: order[i];
+				accepted = performer.turn(d, model);
+			}
+			if (!accepted) {
+				break;
+			}
+		}
+		return recorder.finish(model);
+	}
+
+	/**
+	 * Checks that a cursor shows the same board and score as a cursor that
+	 * stepped forward from the start.
+	 * 
+	 * @param expected
+	 *            the cursor that stepped forward
+	 * @param actual
+	 *            the cursor under test
+	 */
+	private static void assertSamePosition(ReplayCursor expected,
+			ReplayCursor actual) {
+		assertEquals(expected.getMove(), actual.getMove());
+		assertEquals(expected.getScore(), actual.getScore());
+		for (int i = 0; i < 16; i++) {
+			assertEquals(expected.getValueAt(i), actual.getValueAt(i));
+		}
+	}
+
+	@Test
+	public void testKeyframes() throws IOException {
+		final GameRecord record = GameRecord.fromByteArray(play(1, 16)
+				.toByteArray());
+		assertEquals(16, record.getKeyframeInterval());
+		assertEquals(record.getMoveCount() / 16, record.getKeyframeCount());
+		assertTrue(record.getKeyframeCount() > 3);
+		// The fast replay checks every keyframe against the moves.
+		GameReplayer.replayBoard(record);
+	}
+
+	@Test
+	public void testNoKeyframes() {
+		final GameRecord record = play(2, 0);
+		assertEquals(0, record.getKeyframeCount());
+		final ReplayCursor cursor = new ReplayCursor(record);
+		cursor.seek(record.getMoveCount());
+		assertEquals(record.getScore(), cursor.getScore());
+		assertEquals(record.getChecksum(),
+				GameRecord.checksum(cursor.toGrid()));
+	}
+
+	@Test
+	public void testSeek() {
+		final GameRecord record = play(3, 8);
+		final ReplayCursor stepper = new ReplayCursor(record);
+		final ReplayCursor seeker = new ReplayCursor(record);
+		final Random random = new Random(3);
+		for (int move = 0; move <= record.getMoveCount(); move++) {
+			// Jump somewhere else first, so that the seek has to use a
+			// keyframe or the start of the game.
+			seeker.seek(random.nextInt(record.getMoveCount() + 1));
+			seeker.seek(move);
+			assertSamePosition(stepper, seeker);
+			stepper.next();
+		}
+		assertFalse(stepper.next());
+		assertEquals(record.getScore(), stepper.getScore());
+	}
+
+	@Test
+	public void testPrevious() {
+		final GameRecord record = play(4, 8);
+		final ReplayCursor cursor = new ReplayCursor(record);
+		cursor.seek(record.getMoveCount());
+		final TileGrid end = cursor.toGrid();
+		assertEquals(record.getChecksum(), GameRecord.checksum(end));
+		final ReplayCursor expected = new ReplayCursor(record);
+		expected.seek(record.getMoveCount() - 1);
+		assertTrue(cursor.previous());
+		assertSamePosition(expected, cursor);
+		cursor.seek(0);
+		assertFalse(cursor.previous());
+		assertEquals(2, cursor.toGrid().getOccupiedCount());
+		assertEquals(0, cursor.getScore());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSeekOutOfRange() {
+		final GameRecord record = play(5, 8);
+		new ReplayCursor(record).seek(record.getMoveCount() + 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadKeyframe() throws IOException {
+		final GameRecord record = play(6, 8);
+		final byte[] bytes = record.toByteArray();
+		// Change a cell of the last keyframe, which is at the end.
+		bytes[bytes.length - 1] = (byte) (bytes[bytes.length - 1] == 0 ? 1 : 0);
+		GameReplayer.replayBoard(GameRecord.fromByteArray(bytes));
+	}
+
+	@Test
+	public void testBoardLocationValues() {
+		final GameRecord record = play(7, 8);
+		final ReplayCursor cursor = new ReplayCursor(record);
+		cursor.seek(record.getMoveCount() / 2);
+		final TileGrid grid = cursor.toGrid();
+		for (int i = 0; i < 16; i++) {
+			final Tile tile = grid.at(BoardLocation.fromIndex(i));
+			assertEquals(cursor.getValueAt(i), tile == null ? 0 : tile
+					.getValue());
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package j2048.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import j2048.BoardLocation;
+import j2048.engine.ArrayBoardTurnPerformer;
+import j2048.sim.BatchSimulation;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.junit.Test;
+
+public class GameServerTest {
+
+	@Test
+	public void testSessionProtocol() {
+		final GameSession session = new GameSession(
+				new ArrayBoardTurnPerformer(), 4);
+		final String[] board = session.handle("board").split(" ");
+		assertEquals("BOARD", board[0]);
+		assertEquals("4", board[1]);
+		assertEquals(2 + 16, board.length);
+		int tiles = 0;
+		for (int i = 2; i < board.length; i++) {
+			if (!board[i].equals("0")) {
+				assertEquals("2", board[i]);
+				tiles++;
+			}
+		}
+		assertEquals(2, tiles);
+
+		assertTrue(session.handle("bogus").startsWith("ERR"));
+		boolean moved = false;
+		for (String move : new String[] { "N", "E", "S", "W" }) {
+			final String response = session.handle(move);
+			assertTrue(response, response.matches("(OK|NO) \\d+"));
+			moved |= response.startsWith("OK");
+		}
+		assertTrue(moved);
+		assertEquals("OK 0", session.handle(" NEW\r"));
+		assertEquals(2, session.getModel().getGrid().getOccupiedCount());
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+		final InetAddress loopback = InetAddress.getLoopbackAddress();
+		try (GameServer server = new GameServer(
+				BatchSimulation.factoryFor(ArrayBoardTurnPerformer.class),
+				BoardLocation.BOARD_SIZE, 2)) {
+			server.start(new InetSocketAddress(loopback, 0));
+			final LoadGenerator generator = new LoadGenerator(
+					new InetSocketAddress(loopback, server.getPort()), 20, 3);
+			generator.setSeed(2048);
+			final LoadReport report = generator.run(50);
+			assertEquals(20 * 50, report.getMoves());
+			assertEquals(20, report.getClients());
+			assertEquals(3, report.getThreads());
+			assertTrue(report.getLatencyPercentile(50) > 0);
+			assertTrue(report.getLatencyPercentile(99) >= report
+					.getLatencyPercentile(50));
+
+			// The sessions close once the server sees the disconnections.
+			final long deadline = System.currentTimeMillis() + 10000;
+			while (server.getSessionCount() > 0
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(0, server.getSessionCount());
+		}
+	}
+
+}
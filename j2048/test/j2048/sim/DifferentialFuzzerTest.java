@@ -0,0 +1,89 @@
+package j2048.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import j2048.Direction;
+import j2048.SampleBadLogic;
+import j2048.SplitRandom;
+import j2048.TurnPerformer;
+import j2048.engine.ArrayBoardTurnPerformer;
+import j2048.engine.BitboardTurnPerformer;
+
+import org.junit.Test;
+
+public class DifferentialFuzzerTest {
+
+	private static DifferentialFuzzer against(
+			TurnPerformerFactory candidate) {
+		final DifferentialFuzzer fuzzer = new DifferentialFuzzer(candidate,
+				BatchSimulation.factoryFor(ArrayBoardTurnPerformer.class), 2);
+		fuzzer.setSeed(2048);
+		return fuzzer;
+	}
+
+	@Test
+	public void testBadLogic() throws Exception {
+		final DifferentialFuzzer fuzzer = against(BatchSimulation
+				.factoryFor(SampleBadLogic.class));
+		final FuzzReport report = fuzzer.run(1000);
+		assertTrue(report.getMismatches() > 0);
+		final FuzzCase counterexample = report.getCounterexample();
+		assertNotNull(counterexample);
+		assertEquals(report.getDifference(), fuzzer.check(counterexample));
+		// The sample accepts every move, even on an empty board.
+		assertEquals(0, counterexample.getTileCount());
+	}
+
+	@Test
+	public void testCheck() {
+		final DifferentialFuzzer fuzzer = against(BatchSimulation
+				.factoryFor(BitboardTurnPerformer.class));
+		final int[] values = new int[16];
+		values[0] = values[1] = values[2] = values[3] = 2;
+		assertNull(fuzzer.check(new FuzzCase(4, values, 0, Direction.EAST,
+				5)));
+	}
+
+	@Test
+	public void testShrink() throws Exception {
+		// The bitboard engine does not merge tiles above 2^15.
+		final DifferentialFuzzer fuzzer = against(BatchSimulation
+				.factoryFor(BitboardTurnPerformer.class));
+		fuzzer.setMaxExponent(15);
+		final FuzzReport report = fuzzer.run(5000);
+		assertTrue(report.getMismatches() > 0);
+		final FuzzCase counterexample = report.getCounterexample();
+		assertEquals(2, counterexample.getTileCount());
+		for (int value : counterexample.getValues()) {
+			assertTrue(value == 0 || value == 1 << 15);
+		}
+		assertEquals(0, counterexample.getScore());
+	}
+
+	@Test
+	public void testRandomDoesNotMatter() throws Exception {
+		// The same engine, drawing its new tiles from its own source of
+		// randomness, must agree with the reference on every case, including
+		// those it would have lost with a different new tile.
+		final FuzzReport report = against(new TurnPerformerFactory() {
+			@Override
+			public TurnPerformer create() {
+				return new ArrayBoardTurnPerformer(new SplitRandom(12345));
+			}
+		}).run(50000);
+		assertEquals(report.getDifference(), 0, report.getMismatches());
+	}
+
+	@Test
+	public void testEnginesAgree() throws Exception {
+		final FuzzReport report = against(
+				BatchSimulation.factoryFor(BitboardTurnPerformer.class)).run(
+				20000);
+		assertEquals(20000, report.getCases());
+		assertEquals(report.getDifference(), 0, report.getMismatches());
+		assertNull(report.getCounterexample());
+	}
+
+}